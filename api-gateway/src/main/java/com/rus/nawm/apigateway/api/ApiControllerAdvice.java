@@ -1,5 +1,6 @@
 package com.rus.nawm.apigateway.api;
 
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.http.HttpStatus;
@@ -40,6 +41,7 @@ public class ApiControllerAdvice {
     log.error("Custom exception: ", ex);
     Map<String, String> response = new HashMap<>();
     response.put("message", ex.getMessage());
-    return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+    HttpStatus status = ex.getStatus().getCode() == Status.Code.INVALID_ARGUMENT ? HttpStatus.BAD_REQUEST : HttpStatus.NOT_FOUND;
+    return new ResponseEntity<>(response, status);
   }
 }
\ No newline at end of file
@@ -1,14 +1,36 @@
 package com.rus.nawm.apigateway.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.rus.nawm.apigateway.api.dto.TouristImportJobDTO;
+import com.rus.nawm.apigateway.api.dto.TouristPageDTO;
 import com.rus.nawm.apigateway.api.dto.TouristRequestDTO;
 import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import com.rus.nawm.apigateway.api.dto.TouristSuggestionDTO;
+import com.rus.nawm.apigateway.service.TouristImportService;
 import com.rus.nawm.apigateway.service.TouristService;
+import com.rus.nawm.apigateway.service.TouristWriteReply;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/v1/tourist")
@@ -16,88 +38,319 @@ import java.util.List;
 @Log4j2
 public class TouristController {
 
+  public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+  public static final String TEXT_CSV_VALUE = "text/csv";
+
   private final TouristService touristService;
+  private final TouristImportService touristImportService;
+  private final ObjectMapper objectMapper;
 
   @GetMapping("/all")
-  public ResponseEntity<List<TouristResponseDTO>> getAll() {
+  public CompletableFuture<ResponseEntity<List<TouristResponseDTO>>> getAll(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
     log.info("Received request to get all tourists");
-    List<TouristResponseDTO> tourists = touristService.getAllTourists();
-    log.info("Returning {} tourists", tourists.size());
-    return ResponseEntity.ok(tourists);
+    return conditionally(ifNoneMatch, touristService.getAllTouristsTagAsync(), () -> touristService.getAllTouristsAsync()
+            .thenApply(tourists -> {
+              log.info("Returning {} tourists", tourists.size());
+              return tourists;
+            }), touristService::tagOf);
+  }
+
+  @GetMapping
+  public CompletableFuture<ResponseEntity<TouristPageDTO>> list(@RequestParam(defaultValue = "" + TouristService.DEFAULT_PAGE_LIMIT) int limit,
+                                                                @RequestParam(required = false) String pageToken,
+                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    log.info("Received request to list tourists with limit: {} and page token: {}", limit, pageToken);
+    return conditionally(ifNoneMatch, touristService.listTouristsTagAsync(limit, pageToken), () -> touristService.listTouristsAsync(limit, pageToken)
+            .thenApply(page -> {
+              log.info("Returning page of {} tourists", page.getTourists().size());
+              return page;
+            }), touristService::tagOf);
+  }
+
+  @GetMapping(value = "/all/stream", produces = APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamAll(@RequestParam(defaultValue = "500") int chunkSize) {
+    log.info("Received request to stream all tourists with chunk size: {}", chunkSize);
+    ObjectWriter writer = objectMapper.writerFor(TouristResponseDTO.class);
+    StreamingResponseBody body = outputStream -> {
+      AtomicLong written = new AtomicLong();
+      touristService.streamAllTourists(chunkSize, tourists -> {
+        for (TouristResponseDTO tourist : tourists) {
+          outputStream.write(writer.writeValueAsBytes(tourist));
+          outputStream.write('\n');
+        }
+        outputStream.flush();
+        written.addAndGet(tourists.size());
+      });
+      log.info("Streamed {} tourists", written.get());
+    };
+    return ResponseEntity.ok().body(body);
   }
 
   @GetMapping("/{id}")
-  public ResponseEntity<TouristResponseDTO> getById(@PathVariable String id) {
+  public CompletableFuture<ResponseEntity<TouristResponseDTO>> getById(@PathVariable String id,
+                                                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
     log.info("Received request to get tourist by ID: {}", id);
-    TouristResponseDTO tourist = touristService.getTouristById(id);
-    log.info("Returning tourist: {}", tourist);
-    return ResponseEntity.ok(tourist);
+    return conditionally(ifNoneMatch, touristService.getTouristTagAsync(id), () -> touristService.getTouristByIdAsync(id)
+            .thenApply(tourist -> {
+              log.info("Returning tourist with ID: {}", tourist.getId());
+              return tourist;
+            }));
+  }
+
+  @GetMapping("/batch")
+  public ResponseEntity<?> getByIds(@RequestParam List<String> ids) {
+    log.info("Received request to get {} tourists by ID", ids.size());
+    if (ids.size() > TouristService.MAX_BATCH_SIZE) {
+      return batchTooLarge(ids.size());
+    }
+    List<TouristResponseDTO> tourists = touristService.getTouristsByIds(ids);
+    log.info("Returning {} tourists", tourists.size());
+    return ResponseEntity.ok().eTag(TouristETags.of(tourists)).body(tourists);
+  }
+
+  @GetMapping("/email/batch")
+  public ResponseEntity<?> getByEmails(@RequestParam List<String> emails) {
+    log.info("Received request to get {} tourists by email", emails.size());
+    if (emails.size() > TouristService.MAX_BATCH_SIZE) {
+      return batchTooLarge(emails.size());
+    }
+    List<TouristResponseDTO> tourists = touristService.getTouristsByEmails(emails);
+    log.info("Returning {} tourists", tourists.size());
+    return ResponseEntity.ok().eTag(TouristETags.of(tourists)).body(tourists);
+  }
+
+  @GetMapping("/phone/batch")
+  public ResponseEntity<?> getByPhoneNumbers(@RequestParam List<String> phoneNumbers) {
+    log.info("Received request to get {} tourists by phone number", phoneNumbers.size());
+    if (phoneNumbers.size() > TouristService.MAX_BATCH_SIZE) {
+      return batchTooLarge(phoneNumbers.size());
+    }
+    List<TouristResponseDTO> tourists = touristService.getTouristsByPhoneNumbers(phoneNumbers);
+    log.info("Returning {} tourists", tourists.size());
+    return ResponseEntity.ok().eTag(TouristETags.of(tourists)).body(tourists);
   }
 
   @GetMapping("/email/{email}")
-  public ResponseEntity<TouristResponseDTO> getByEmail(@PathVariable String email) {
+  public CompletableFuture<ResponseEntity<TouristResponseDTO>> getByEmail(@PathVariable String email,
+                                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
     log.info("Received request to get tourist by email: {}", email);
-    TouristResponseDTO tourist = touristService.getTouristByEmail(email);
-    log.info("Returning tourist: {}", tourist);
-    return ResponseEntity.ok(tourist);
+    return conditionally(ifNoneMatch, touristService.getTouristByEmailTagAsync(email), () -> touristService.getTouristByEmailAsync(email)
+            .thenApply(tourist -> {
+              log.info("Returning tourist with ID: {}", tourist.getId());
+              return tourist;
+            }));
   }
 
   @GetMapping("/phone/{phoneNumber}")
-  public ResponseEntity<TouristResponseDTO> getByPhoneNumber(@PathVariable String phoneNumber) {
+  public CompletableFuture<ResponseEntity<TouristResponseDTO>> getByPhoneNumber(@PathVariable String phoneNumber,
+                                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
     log.info("Received request to get tourist by phone number: {}", phoneNumber);
-    TouristResponseDTO tourist = touristService.getTouristByPhoneNumber(phoneNumber);
-    log.info("Returning tourist: {}", tourist);
-    return ResponseEntity.ok(tourist);
+    return conditionally(ifNoneMatch, touristService.getTouristByPhoneNumberTagAsync(phoneNumber), () -> touristService.getTouristByPhoneNumberAsync(phoneNumber)
+            .thenApply(tourist -> {
+              log.info("Returning tourist with ID: {}", tourist.getId());
+              return tourist;
+            }));
   }
 
   @GetMapping("/name/{name}/surname/{surname}")
-  public ResponseEntity<List<TouristResponseDTO>> getByNameAndSurname(@PathVariable String name, @PathVariable String surname) {
+  public CompletableFuture<ResponseEntity<List<TouristResponseDTO>>> getByNameAndSurname(@PathVariable String name, @PathVariable String surname,
+                                                                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
     log.info("Received request to get tourists by name: {} and surname: {}", name, surname);
-    List<TouristResponseDTO> tourists = touristService.getTouristsByNameAndSurname(name, surname);
-    log.info("Returning {} tourists", tourists.size());
-    return ResponseEntity.ok(tourists);
+    return conditionally(ifNoneMatch, touristService.getTouristsByNameAndSurnameTagAsync(name, surname), () -> touristService.getTouristsByNameAndSurnameAsync(name, surname)
+            .thenApply(tourists -> {
+              log.info("Returning {} tourists", tourists.size());
+              return tourists;
+            }), touristService::tagOf);
+  }
+
+  @GetMapping("/search")
+  public CompletableFuture<ResponseEntity<List<TouristSuggestionDTO>>> search(@RequestParam String q,
+                                                                              @RequestParam(defaultValue = "" + TouristService.DEFAULT_SEARCH_LIMIT) int limit) {
+    log.info("Received request to search tourists by prefix: {} with limit: {}", q, limit);
+    return touristService.searchTouristsAsync(q, limit).thenApply(suggestions -> {
+      log.info("Returning {} suggestions", suggestions.size());
+      return ResponseEntity.ok(suggestions);
+    });
+  }
+
+  @GetMapping("/country/{country}")
+  public CompletableFuture<ResponseEntity<TouristPageDTO>> listByCountry(@PathVariable String country,
+                                                                         @RequestParam(defaultValue = "" + TouristService.DEFAULT_PAGE_LIMIT) int limit,
+                                                                         @RequestParam(required = false) String pageToken,
+                                                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    log.info("Received request to list tourists of country: {} with limit: {} and page token: {}", country, limit, pageToken);
+    return conditionally(ifNoneMatch, touristService.listTouristsByCountryTagAsync(country, limit, pageToken), () -> touristService.listTouristsByCountryAsync(country, limit, pageToken)
+            .thenApply(page -> {
+              log.info("Returning page of {} tourists", page.getTourists().size());
+              return page;
+            }), touristService::tagOf);
+  }
+
+  @GetMapping("/stats/countries")
+  public CompletableFuture<ResponseEntity<Map<String, Long>>> getCountryStats() {
+    log.info("Received request to get tourist counts per country");
+    return touristService.getCountryStatsAsync().thenApply(stats -> {
+      log.info("Returning tourist counts of {} countries", stats.size());
+      return ResponseEntity.ok(stats);
+    });
   }
 
   @PostMapping
-  public ResponseEntity<?> createNewTourist(@RequestBody TouristRequestDTO touristRequestDTO) {
-    log.info("Received request to create new tourist: {}", touristRequestDTO);
+  public CompletableFuture<ResponseEntity<?>> createNewTourist(@RequestBody TouristRequestDTO touristRequestDTO) {
+    log.info("Received request to create new tourist with email: {}", touristRequestDTO.getEmail());
     try {
+      if (touristService.getWriteMode() == TouristService.WriteMode.AWAIT_REPLY) {
+        return touristService.saveNewTouristAwaitingReply(touristRequestDTO)
+                .handle((reply, error) -> writeResponse(reply, error, HttpStatus.CREATED));
+      }
       touristService.saveNewTourist(touristRequestDTO);
-      log.info("Tourist successfully created: {}", touristRequestDTO);
-      return ResponseEntity.ok("Created");
+      log.info("Tourist with email {} successfully created.", touristRequestDTO.getEmail());
+      return CompletableFuture.completedFuture(ResponseEntity.ok("Created"));
     } catch (Exception e) {
       log.error("Error occurred while creating new tourist: {}", touristRequestDTO, e);
-      return ResponseEntity.status(500).body(e.getLocalizedMessage());
+      return CompletableFuture.completedFuture(writeFailure(e));
     }
   }
 
+  /**
+   * Replaces a tourist. A version in the body or an {@code If-Match} ETag from an earlier read makes
+   * the update conditional: it is rejected with 409 once the tourist has moved past that version.
+   */
   @PutMapping("/{id}")
-  public ResponseEntity<?> updateTourist(@PathVariable String id, @RequestBody TouristRequestDTO touristRequestDTO) {
+  public CompletableFuture<ResponseEntity<?>> updateTourist(@PathVariable String id, @RequestBody TouristRequestDTO touristRequestDTO,
+                                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
     if(touristRequestDTO.getId() == null) {
       touristRequestDTO.setId(id);
     }
-    log.info("Received request to update tourist with ID: {} and data: {}", id, touristRequestDTO);
+    if (ifMatch != null && !ifMatch.isBlank() && !"*".equals(ifMatch.trim()) && touristRequestDTO.getVersion() == null) {
+      Long version = TouristETags.versionOf(ifMatch, touristRequestDTO.getId());
+      if (version == null) {
+        log.warn("Rejecting update of tourist with ID {}: If-Match {} is not one of its ETags", id, ifMatch);
+        return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body("If-Match does not name a version of this tourist"));
+      }
+      touristRequestDTO.setVersion(version);
+    }
+    log.info("Received request to update tourist with ID: {}", id);
     try {
+      if (touristService.getWriteMode() == TouristService.WriteMode.AWAIT_REPLY) {
+        return touristService.updateTouristAwaitingReply(id, touristRequestDTO)
+                .handle((reply, error) -> writeResponse(reply, error, HttpStatus.OK));
+      }
       touristService.updateTourist(id, touristRequestDTO);
       log.info("Tourist with ID {} successfully updated.", id);
-      return ResponseEntity.ok("Updated");
+      return CompletableFuture.completedFuture(ResponseEntity.ok("Updated"));
     } catch (Exception e) {
       log.error("Error occurred while updating tourist with ID {}: {}", id, touristRequestDTO, e);
-      return ResponseEntity.status(500).body(e.getLocalizedMessage());
+      return CompletableFuture.completedFuture(writeFailure(e));
     }
   }
 
   @DeleteMapping("/{id}")
-  public ResponseEntity<?> deleteTourist(@PathVariable String id) {
+  public CompletableFuture<ResponseEntity<?>> deleteTourist(@PathVariable String id) {
 
     log.info("Received request to delete tourist with ID: {}", id);
     try {
+      if (touristService.getWriteMode() == TouristService.WriteMode.AWAIT_REPLY) {
+        return touristService.deleteTouristAwaitingReply(id)
+                .handle((reply, error) -> writeResponse(reply, error, HttpStatus.OK));
+      }
       touristService.deleteTourist(id);
       log.info("Tourist with ID {} successfully deleted.", id);
-      return ResponseEntity.ok("Deleted");
+      return CompletableFuture.completedFuture(ResponseEntity.ok("Deleted"));
     } catch (Exception e) {
       log.error("Error occurred while deleting tourist with ID {}: {}", id, e.getMessage(), e);
-      return ResponseEntity.status(500).body(e.getLocalizedMessage());
+      return CompletableFuture.completedFuture(writeFailure(e));
+    }
+  }
+
+  /**
+   * Imports an NDJSON or CSV file of tourists. The body is streamed rather than buffered; the
+   * call returns once it has been read and handed on, with the job to poll for the outcome.
+   */
+  @PostMapping(value = "/import", consumes = {APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+  public ResponseEntity<?> importTourists(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) throws IOException {
+    TouristImportService.Format format = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType(TEXT_CSV_VALUE))
+            ? TouristImportService.Format.CSV
+            : TouristImportService.Format.NDJSON;
+    log.info("Received {} tourist import", format);
+    try {
+      TouristImportJobDTO job = touristImportService.importTourists(body, format);
+      return ResponseEntity.accepted().location(URI.create("/api/v1/tourist/import/" + job.getJobId())).body(job);
+    } catch (IllegalArgumentException e) {
+      log.warn("Rejecting tourist import: {}", e.getMessage());
+      return ResponseEntity.badRequest().body(e.getMessage());
+    }
+  }
+
+  @GetMapping("/import/{jobId}")
+  public ResponseEntity<TouristImportJobDTO> getImportJob(@PathVariable String jobId) {
+    log.info("Received request to get import job: {}", jobId);
+    return ResponseEntity.of(touristImportService.getJob(jobId));
+  }
+
+  /**
+   * Answers a list request from its tag stored in Redis: a matching {@code If-None-Match} gets 304
+   * before the list is read at all, anything else gets the list with that tag or, when none was
+   * stored yet, with {@code tagOfLoaded} of what was sent.
+   */
+  private static <T> CompletableFuture<ResponseEntity<T>> conditionally(String ifNoneMatch, CompletableFuture<String> storedTag,
+                                                                        Supplier<CompletableFuture<T>> body, Function<T, String> tagOfLoaded) {
+    return storedTag.thenCompose(tag -> {
+      if (TouristETags.matches(ifNoneMatch, tag)) {
+        log.info("List unchanged since ETag {}", tag);
+        return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tag).<T>build());
+      }
+      return body.get().thenApply(value -> ResponseEntity.ok().eTag(tag != null ? tag : tagOfLoaded.apply(value)).body(value));
+    });
+  }
+
+  /**
+   * As for lists, but a loaded tourist is always sent with its own tag: it may be newer than the
+   * cached version the stored tag was read from.
+   */
+  private static CompletableFuture<ResponseEntity<TouristResponseDTO>> conditionally(String ifNoneMatch, CompletableFuture<String> storedTag,
+                                                                                    Supplier<CompletableFuture<TouristResponseDTO>> body) {
+    return storedTag.thenCompose(tag -> {
+      if (TouristETags.matches(ifNoneMatch, tag)) {
+        log.info("Tourist unchanged since ETag {}", tag);
+        return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tag).<TouristResponseDTO>build());
+      }
+      return body.get().thenApply(tourist -> ResponseEntity.ok().eTag(TouristETags.of(tourist)).body(tourist));
+    });
+  }
+
+  /**
+   * Maps domain-service's reply to the HTTP response; a successful write carries the persisted
+   * entity.
+   */
+  private ResponseEntity<?> writeResponse(TouristWriteReply reply, Throwable error, HttpStatus successStatus) {
+    if (error != null) {
+      return writeFailure(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
     }
+    log.info("Write completed with {}: {}", reply.status(), reply.tourist() != null ? reply.tourist().getId() : reply.message());
+    return switch (reply.status()) {
+      case OK -> ResponseEntity.status(successStatus).body(reply.tourist());
+      case NOT_FOUND -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(reply.message());
+      case CONFLICT -> ResponseEntity.status(HttpStatus.CONFLICT).body(reply.message());
+      case ERROR -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(reply.message());
+    };
+  }
+
+  private ResponseEntity<?> writeFailure(Throwable error) {
+    if (error instanceof TimeoutException) {
+      log.warn("No reply from domain-service in time");
+      return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body("No reply from domain-service in time, the write may still be applied");
+    }
+    if (error instanceof RejectedExecutionException) {
+      log.warn("Rejecting write: {}", error.getMessage());
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error.getMessage());
+    }
+    log.error("Write failed", error);
+    return ResponseEntity.status(500).body(error.getLocalizedMessage());
+  }
+
+  private ResponseEntity<?> batchTooLarge(int size) {
+    log.warn("Rejecting batch lookup of {} keys", size);
+    return ResponseEntity.badRequest().body("At most " + TouristService.MAX_BATCH_SIZE + " tourists can be requested at once");
   }
 }
\ No newline at end of file
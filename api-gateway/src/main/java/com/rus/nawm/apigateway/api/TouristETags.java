@@ -0,0 +1,78 @@
+package com.rus.nawm.apigateway.api;
+
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * ETags of tourist responses, built from ids and versions rather than from the rendered body.
+ * Spring compares the ETag of a returned {@code ResponseEntity} with {@code If-None-Match} and
+ * answers a match with 304 without writing the body.
+ * <p>
+ * A tourist's tag is {@code <id>-<version>}, and a batch lookup's is the MD5 of its ids and
+ * versions in order. Tourists cached before they had a version get no tag, and neither does a
+ * batch holding one of them. Cached lists and pages keep their tags in Redis next to the list,
+ * see {@code TouristRedisStore}, and a cached tourist's tag follows from the version in its meta
+ * hash; both are matched with {@link #matches} before the body is read.
+ */
+final class TouristETags {
+
+  private TouristETags() {
+  }
+
+  static String of(TouristResponseDTO tourist) {
+    return tourist.getVersion() == null ? null : tourist.getId() + "-" + tourist.getVersion();
+  }
+
+  static String of(List<TouristResponseDTO> tourists) {
+    StringBuilder idsAndVersions = new StringBuilder(tourists.size() * 32);
+    for (TouristResponseDTO tourist : tourists) {
+      if (tourist.getVersion() == null) {
+        return null;
+      }
+      idsAndVersions.append(tourist.getId()).append(':').append(tourist.getVersion()).append(',');
+    }
+    return DigestUtils.md5DigestAsHex(idsAndVersions.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Whether an {@code If-None-Match} value names {@code tag}. It compares weakly, as
+   * {@code If-None-Match} does, and {@code *} matches any tag.
+   */
+  static boolean matches(String ifNoneMatch, String tag) {
+    if (ifNoneMatch == null || tag == null) {
+      return false;
+    }
+    String quoted = "\"" + tag + "\"";
+    for (String candidate : ifNoneMatch.split(",")) {
+      String value = candidate.trim();
+      if (value.startsWith("W/")) {
+        value = value.substring(2);
+      }
+      if (value.equals("*") || value.equals(quoted)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The version named by an {@code If-Match} value holding one tag of {@link #of(TouristResponseDTO)}
+   * for {@code id}, or {@code null} for anything else. Weak tags never match, as {@code If-Match}
+   * compares strongly.
+   */
+  static Long versionOf(String ifMatch, String id) {
+    String tag = ifMatch.trim();
+    String prefix = "\"" + id + "-";
+    if (!tag.startsWith(prefix) || !tag.endsWith("\"") || tag.length() <= prefix.length() + 1) {
+      return null;
+    }
+    try {
+      return Long.parseLong(tag.substring(prefix.length(), tag.length() - 1));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.rus.nawm.apigateway.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TouristImportJobDTO {
+  private String jobId;
+  private String status;
+  private String format;
+  private long rowsRead;
+  private long submitted;
+  private long accepted;
+  private long rejected;
+  private long invalidRows;
+  private long duplicateEmails;
+  private long duplicatePhoneNumbers;
+  private long failed;
+  private double rowsPerSecond;
+  private Instant startedAt;
+  private Instant finishedAt;
+  private List<String> conflicts;
+}
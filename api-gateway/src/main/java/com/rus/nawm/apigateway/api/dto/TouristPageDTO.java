@@ -0,0 +1,17 @@
+package com.rus.nawm.apigateway.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TouristPageDTO {
+  private List<TouristResponseDTO> tourists;
+  private String nextPageToken;
+}
@@ -16,4 +16,6 @@ public class TouristRequestDTO {
   private String email;
   private String phoneNumber;
   private String country;
+  // version the update was based on; a stale one gets the update rejected
+  private Long version;
 }
@@ -16,4 +16,5 @@ public class TouristResponseDTO {
   private String email;
   private String phoneNumber;
   private String country;
+  private Long version;
 }
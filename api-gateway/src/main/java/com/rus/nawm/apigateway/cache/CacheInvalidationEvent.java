@@ -0,0 +1,20 @@
+package com.rus.nawm.apigateway.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Broadcast to every gateway instance when a near-cached entry changes. A {@code null} key
+ * means the whole cache was cleared.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CacheInvalidationEvent {
+  private String instanceId;
+  private String cacheName;
+  private String key;
+}
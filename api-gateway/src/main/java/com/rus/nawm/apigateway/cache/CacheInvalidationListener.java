@@ -0,0 +1,30 @@
+package com.rus.nawm.apigateway.cache;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies invalidations published by other gateway instances to the local near cache.
+ * Every instance consumes from its own auto-delete queue bound to the fanout exchange.
+ */
+@Component
+@Log4j2
+public class CacheInvalidationListener {
+  private final TwoLevelCacheManager cacheManager;
+  private final CacheInvalidationPublisher invalidationPublisher;
+
+  public CacheInvalidationListener(TwoLevelCacheManager cacheManager, CacheInvalidationPublisher invalidationPublisher) {
+    this.cacheManager = cacheManager;
+    this.invalidationPublisher = invalidationPublisher;
+  }
+
+  @RabbitListener(queues = "#{cacheInvalidationQueue.name}")
+  public void onInvalidation(CacheInvalidationEvent event) {
+    if (invalidationPublisher.getInstanceId().equals(event.getInstanceId())) {
+      return;
+    }
+    log.debug("Evicting near cache entry {}::{}", event.getCacheName(), event.getKey());
+    cacheManager.evictLocal(event.getCacheName(), event.getKey());
+  }
+}
@@ -0,0 +1,38 @@
+package com.rus.nawm.apigateway.cache;
+
+import com.rus.nawm.apigateway.config.RabbitMQConfig;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Publishes near-cache invalidations on a fanout exchange so that every gateway instance
+ * drops its in-process copy of a key that has just been written or evicted.
+ */
+@Component
+@Log4j2
+public class CacheInvalidationPublisher {
+  private final String instanceId = UUID.randomUUID().toString();
+  private final RabbitTemplate rabbitTemplate;
+
+  public CacheInvalidationPublisher(RabbitTemplate rabbitTemplate) {
+    this.rabbitTemplate = rabbitTemplate;
+  }
+
+  public String getInstanceId() {
+    return instanceId;
+  }
+
+  public void publish(String cacheName, Object key) {
+    CacheInvalidationEvent event = new CacheInvalidationEvent(instanceId, cacheName, key == null ? null : key.toString());
+    try {
+      rabbitTemplate.convertAndSend(RabbitMQConfig.cacheInvalidationExchangeName, "", event);
+    } catch (AmqpException e) {
+      // the local TTL bounds how long other instances can serve the stale entry
+      log.warn("Failed to publish cache invalidation for {}::{}", cacheName, key, e);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package com.rus.nawm.apigateway.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate read counts per tourist id, and the {@code cache.hot-keys.top-k} most read of them.
+ * <p>
+ * Counts live in a count-min sketch of {@value #DEPTH} rows of {@code cache.hot-keys.sketch-width}
+ * counters, so memory stays fixed however many distinct tourists are read; an estimate can only
+ * overcount, by colliding keys. A key whose estimate beats the smallest one in the top-k replaces
+ * it. Reads that cannot make it into the top-k only touch the sketch, without taking the lock.
+ * <p>
+ * {@link #decay()} halves every count, so that the top-k follows what is hot now rather than
+ * since startup. Served through the {@code hotkeys} actuator endpoint.
+ */
+@Component
+@Endpoint(id = "hotkeys")
+public class HotKeyTracker {
+  static final int DEPTH = 4;
+
+  public record HotKey(String key, long estimate) {
+  }
+
+  private static final Comparator<HotKey> BY_ESTIMATE = Comparator.comparingLong(HotKey::estimate).thenComparing(HotKey::key);
+
+  private final int width;
+  private final int topK;
+  private final AtomicLongArray counters;
+  private final Map<String, Long> top = new ConcurrentHashMap<>();
+  private final TreeSet<HotKey> ranking = new TreeSet<>(BY_ESTIMATE);
+  // estimate a key must beat to enter a full top-k, read without the lock
+  private volatile long admissionFloor;
+
+  public HotKeyTracker(@Value("${cache.hot-keys.sketch-width:8192}") int width,
+                       @Value("${cache.hot-keys.top-k:1000}") int topK) {
+    this.width = width;
+    this.topK = topK;
+    this.counters = new AtomicLongArray(DEPTH * width);
+  }
+
+  public void record(String key) {
+    if (key == null) {
+      return;
+    }
+    long estimate = Long.MAX_VALUE;
+    long hash = key.hashCode();
+    for (int row = 0; row < DEPTH; row++) {
+      estimate = Math.min(estimate, counters.incrementAndGet(row * width + bucket(hash, row)));
+    }
+    if (estimate > admissionFloor || top.containsKey(key)) {
+      offer(key, estimate);
+    }
+  }
+
+  /**
+   * The top-k, most read first.
+   */
+  @ReadOperation
+  public List<HotKey> hotKeys() {
+    synchronized (ranking) {
+      return new ArrayList<>(ranking.descendingSet());
+    }
+  }
+
+  /**
+   * Halves every count and every estimate in the top-k.
+   */
+  public void decay() {
+    for (int i = 0; i < counters.length(); i++) {
+      counters.updateAndGet(i, count -> count >> 1);
+    }
+    synchronized (ranking) {
+      // keys read once since the last decay drop out
+      List<HotKey> halved = ranking.stream()
+              .map(hot -> new HotKey(hot.key(), hot.estimate() >> 1))
+              .filter(hot -> hot.estimate() > 0)
+              .toList();
+      ranking.clear();
+      top.clear();
+      halved.forEach(hot -> {
+        ranking.add(hot);
+        top.put(hot.key(), hot.estimate());
+      });
+      admissionFloor = ranking.size() < topK ? 0 : ranking.first().estimate();
+    }
+  }
+
+  private void offer(String key, long estimate) {
+    synchronized (ranking) {
+      Long current = top.get(key);
+      if (current != null) {
+        if (estimate <= current) {
+          return;
+        }
+        ranking.remove(new HotKey(key, current));
+      } else if (ranking.size() >= topK) {
+        HotKey coldest = ranking.first();
+        if (estimate <= coldest.estimate()) {
+          return;
+        }
+        ranking.pollFirst();
+        top.remove(coldest.key());
+      }
+      ranking.add(new HotKey(key, estimate));
+      top.put(key, estimate);
+      admissionFloor = ranking.size() < topK ? 0 : ranking.first().estimate();
+    }
+  }
+
+  /**
+   * splitmix64 finalizer with a different seed per row, so that keys colliding in one row are
+   * unlikely to collide in the others.
+   */
+  private int bucket(long hash, int row) {
+    long h = hash + (row + 1) * 0x9E3779B97F4A7C15L;
+    h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+    h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+    h ^= h >>> 31;
+    return (int) Math.floorMod(h, (long) width);
+  }
+}
@@ -0,0 +1,104 @@
+package com.rus.nawm.apigateway.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent loads of the same key: the first caller runs the loader, callers
+ * arriving while it is in flight wait for and share its result (or its exception).
+ * <p>
+ * Publishes {@code tourist.upstream.calls} (loads actually executed),
+ * {@code tourist.upstream.coalesced} (callers that piggybacked on an in-flight load) and
+ * {@code tourist.upstream.inflight}, all tagged with the operation name.
+ */
+public class SingleFlight<T> {
+  private final ConcurrentMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+  private final Counter calls;
+  private final Counter coalesced;
+
+  public SingleFlight(String operation, MeterRegistry meterRegistry) {
+    this.calls = Counter.builder("tourist.upstream.calls")
+            .description("Upstream loads executed after a cache miss")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    this.coalesced = Counter.builder("tourist.upstream.coalesced")
+            .description("Cache misses served by an upstream load already in flight")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    Gauge.builder("tourist.upstream.inflight", inFlight, ConcurrentMap::size)
+            .description("Upstream loads currently in flight")
+            .tag("operation", operation)
+            .register(meterRegistry);
+  }
+
+  public T execute(String key, Supplier<T> loader) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    CompletableFuture<T> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      coalesced.increment();
+      return await(existing);
+    }
+    calls.increment();
+    try {
+      T value = loader.get();
+      future.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  /**
+   * Non-blocking variant of {@link #execute}. Shares in-flight loads with blocking callers of the
+   * same key; the returned future is a copy, so a caller cancelling it does not affect the others.
+   */
+  public CompletableFuture<T> executeAsync(String key, Supplier<CompletableFuture<T>> loader) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    CompletableFuture<T> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      coalesced.increment();
+      return existing.copy();
+    }
+    calls.increment();
+    CompletableFuture<T> load;
+    try {
+      load = loader.get();
+    } catch (RuntimeException | Error e) {
+      load = CompletableFuture.failedFuture(e);
+    }
+    load.whenComplete((value, error) -> {
+      inFlight.remove(key, future);
+      if (error != null) {
+        future.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+      } else {
+        future.complete(value);
+      }
+    });
+    return future.copy();
+  }
+
+  private T await(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      // rethrow the leader's exception as is, so callers see e.g. the same gRPC status
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof Error cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package com.rus.nawm.apigateway.cache;
+
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Exposes one lookup dimension of the {@link TouristRedisStore} as a Spring {@link Cache}, so the
+ * read path keeps working through {@code CacheManager} (and the near cache on top of it) while
+ * the data underneath is stored once per tourist.
+ */
+public class TouristIndexCache implements Cache {
+
+  public enum Dimension {
+    ID, EMAIL, PHONE_NUMBER, NAME_AND_SURNAME, ALL
+  }
+
+  private final String name;
+  private final Dimension dimension;
+  private final TouristRedisStore store;
+
+  public TouristIndexCache(String name, Dimension dimension, TouristRedisStore store) {
+    this.name = name;
+    this.dimension = dimension;
+    this.store = store;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return store;
+  }
+
+  @Override
+  public ValueWrapper get(Object key) {
+    Object value = lookup(key.toString());
+    return value != null ? new SimpleValueWrapper(value) : null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Class<T> type) {
+    Object value = lookup(key.toString());
+    if (value != null && type != null && !type.isInstance(value)) {
+      throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+    }
+    return (T) value;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Callable<T> valueLoader) {
+    Object value = lookup(key.toString());
+    if (value != null) {
+      return (T) value;
+    }
+    try {
+      T loaded = valueLoader.call();
+      put(key, loaded);
+      return loaded;
+    } catch (Exception e) {
+      throw new ValueRetrievalException(key, valueLoader, e);
+    }
+  }
+
+  /**
+   * Non-blocking lookup; completes with {@code null} on a miss.
+   */
+  @Override
+  public CompletableFuture<?> retrieve(Object key) {
+    String lookupKey = key.toString();
+    return switch (dimension) {
+      case ID -> store.getAsync(lookupKey);
+      case EMAIL -> store.getByEmailAsync(lookupKey);
+      case PHONE_NUMBER -> store.getByPhoneNumberAsync(lookupKey);
+      case NAME_AND_SURNAME -> store.getByNameAndSurnameAsync(lookupKey);
+      case ALL -> store.getAllAsync();
+    };
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void put(Object key, Object value) {
+    if (value == null) {
+      evict(key);
+      return;
+    }
+    switch (dimension) {
+      case ID, EMAIL, PHONE_NUMBER -> store.upsert((TouristResponseDTO) value);
+      case NAME_AND_SURNAME -> store.putByNameAndSurname(key.toString(), (List<TouristResponseDTO>) value);
+      case ALL -> store.putAll((List<TouristResponseDTO>) value);
+    }
+  }
+
+  @Override
+  public void evict(Object key) {
+    switch (dimension) {
+      case ID -> store.remove(TouristResponseDTO.builder().id(key.toString()).build());
+      case EMAIL -> store.evictEmail(key.toString());
+      case PHONE_NUMBER -> store.evictPhoneNumber(key.toString());
+      case NAME_AND_SURNAME -> store.evictNameAndSurname(key.toString());
+      case ALL -> store.evictAll();
+    }
+  }
+
+  /**
+   * Every dimension is a view of the same store, so clearing any of them drops every cached
+   * tourist and index entry.
+   */
+  @Override
+  public void clear() {
+    store.clear();
+  }
+
+  private Object lookup(String key) {
+    return switch (dimension) {
+      case ID -> store.get(key);
+      case EMAIL -> store.getByEmail(key);
+      case PHONE_NUMBER -> store.getByPhoneNumber(key);
+      case NAME_AND_SURNAME -> store.getByNameAndSurname(key);
+      case ALL -> store.getAll();
+    };
+  }
+}
@@ -0,0 +1,182 @@
+package com.rus.nawm.apigateway.cache;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.rus.nawm.apigateway.TouristServiceOuterClass;
+import com.rus.nawm.apigateway.api.dto.TouristPageDTO;
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import com.rus.nawm.apigateway.mapper.TouristMapper;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact cache value codec built on the protobuf messages the gateway already generates.
+ * <p>
+ * Every value starts with one header byte: the low bits say which message follows (a single
+ * {@code Tourist}, a {@code GetTouristsResponse} for lists, a {@code ListTouristsResponse} for
+ * pages) and {@link #FLAG_DEFLATE} marks payloads deflated because they exceeded the
+ * compression threshold. Values of any other type, and values written by the JSON serializer
+ * before a cache was switched over (they start with '{' or '['), go through
+ * {@link GenericJackson2JsonRedisSerializer}.
+ */
+public class TouristProtobufRedisSerializer implements RedisSerializer<Object> {
+  static final byte TAG_TOURIST = 1;
+  static final byte TAG_TOURIST_LIST = 2;
+  static final byte TAG_TOURIST_PAGE = 3;
+  static final byte FLAG_DEFLATE = (byte) 0x80;
+
+  private final GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer();
+  private final int compressionThreshold;
+
+  /**
+   * @param compressionThreshold encoded size in bytes above which the payload is deflated,
+   *                             {@code 0} or less disables compression
+   */
+  public TouristProtobufRedisSerializer(int compressionThreshold) {
+    this.compressionThreshold = compressionThreshold;
+  }
+
+  @Override
+  public byte[] serialize(Object value) throws SerializationException {
+    if (value == null) {
+      return null;
+    }
+    if (value instanceof TouristResponseDTO tourist) {
+      return encode(TAG_TOURIST, TouristMapper.toProto(tourist).toByteArray());
+    }
+    if (value instanceof TouristPageDTO page && isTouristCollection(page.getTourists())) {
+      TouristServiceOuterClass.ListTouristsResponse.Builder builder = TouristServiceOuterClass.ListTouristsResponse.newBuilder();
+      if (page.getTourists() != null) {
+        page.getTourists().forEach(tourist -> builder.addTourists(TouristMapper.toProto(tourist)));
+      }
+      if (page.getNextPageToken() != null) {
+        builder.setNextPageToken(page.getNextPageToken());
+      }
+      return encode(TAG_TOURIST_PAGE, builder.build().toByteArray());
+    }
+    if (value instanceof List<?> list && isTouristCollection(list)) {
+      TouristServiceOuterClass.GetTouristsResponse.Builder builder = TouristServiceOuterClass.GetTouristsResponse.newBuilder();
+      list.forEach(tourist -> builder.addTourists(TouristMapper.toProto((TouristResponseDTO) tourist)));
+      return encode(TAG_TOURIST_LIST, builder.build().toByteArray());
+    }
+    return jsonSerializer.serialize(value);
+  }
+
+  @Override
+  public Object deserialize(byte[] bytes) throws SerializationException {
+    if (bytes == null || bytes.length == 0) {
+      return null;
+    }
+    byte header = bytes[0];
+    byte tag = (byte) (header & ~FLAG_DEFLATE);
+    if (tag != TAG_TOURIST && tag != TAG_TOURIST_LIST && tag != TAG_TOURIST_PAGE) {
+      return jsonSerializer.deserialize(bytes);
+    }
+    byte[] payload = (header & FLAG_DEFLATE) != 0 ? inflate(bytes) : copyPayload(bytes);
+    try {
+      if (tag == TAG_TOURIST) {
+        return fromProto(TouristServiceOuterClass.Tourist.parseFrom(payload));
+      }
+      if (tag == TAG_TOURIST_LIST) {
+        return fromProto(TouristServiceOuterClass.GetTouristsResponse.parseFrom(payload).getTouristsList());
+      }
+      TouristServiceOuterClass.ListTouristsResponse page = TouristServiceOuterClass.ListTouristsResponse.parseFrom(payload);
+      return TouristPageDTO.builder()
+              .tourists(fromProto(page.getTouristsList()))
+              .nextPageToken(page.getNextPageToken().isEmpty() ? null : page.getNextPageToken())
+              .build();
+    } catch (InvalidProtocolBufferException e) {
+      throw new SerializationException("Could not read protobuf cache value", e);
+    }
+  }
+
+  private static boolean isTouristCollection(Collection<?> values) {
+    if (values == null) {
+      return true;
+    }
+    for (Object value : values) {
+      if (!(value instanceof TouristResponseDTO)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<TouristResponseDTO> fromProto(List<TouristServiceOuterClass.Tourist> tourists) {
+    List<TouristResponseDTO> result = new ArrayList<>(tourists.size());
+    for (TouristServiceOuterClass.Tourist tourist : tourists) {
+      result.add(fromProto(tourist));
+    }
+    return result;
+  }
+
+  // unlike the gRPC read path, a cached DTO must come back exactly as it was stored, nulls included
+  private static TouristResponseDTO fromProto(TouristServiceOuterClass.Tourist tourist) {
+    return new TouristResponseDTO(
+            tourist.hasId() ? tourist.getId() : null,
+            tourist.hasName() ? tourist.getName() : null,
+            tourist.hasSurname() ? tourist.getSurname() : null,
+            tourist.hasEmail() ? tourist.getEmail() : null,
+            tourist.hasPhoneNumber() ? tourist.getPhoneNumber() : null,
+            tourist.hasCountry() ? tourist.getCountry() : null,
+            tourist.hasVersion() ? tourist.getVersion() : null);
+  }
+
+  private byte[] encode(byte tag, byte[] payload) {
+    if (compressionThreshold > 0 && payload.length > compressionThreshold) {
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try {
+        deflater.setInput(payload);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 16);
+        out.write(tag | FLAG_DEFLATE);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+          out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return out.toByteArray();
+      } finally {
+        deflater.end();
+      }
+    }
+    byte[] bytes = new byte[payload.length + 1];
+    bytes[0] = tag;
+    System.arraycopy(payload, 0, bytes, 1, payload.length);
+    return bytes;
+  }
+
+  private static byte[] copyPayload(byte[] bytes) {
+    byte[] payload = new byte[bytes.length - 1];
+    System.arraycopy(bytes, 1, payload, 0, payload.length);
+    return payload;
+  }
+
+  private static byte[] inflate(byte[] bytes) {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(bytes, 1, bytes.length - 1);
+      ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+      byte[] buffer = new byte[4096];
+      while (!inflater.finished()) {
+        int read = inflater.inflate(buffer);
+        if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new SerializationException("Truncated compressed cache value");
+        }
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    } catch (DataFormatException e) {
+      throw new SerializationException("Could not inflate cache value", e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
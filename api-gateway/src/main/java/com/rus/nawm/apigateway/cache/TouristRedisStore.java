@@ -0,0 +1,627 @@
+package com.rus.nawm.apigateway.cache;
+
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.Limit;
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import static com.rus.nawm.apigateway.config.RedisConfig.*;
+
+/**
+ * Normalized Redis layout for cached tourists.
+ * <ul>
+ *   <li>{@code tourists::<id>} holds the one canonical encoded copy of a tourist,</li>
+ *   <li>{@code touristIndex::<id>} remembers which index entries currently point at it, and the
+ *   version of the cached copy,</li>
+ *   <li>{@code touristsByEmail::<email>} and {@code touristsByPhone::<phone>} hold just the id,</li>
+ *   <li>{@code touristsByNameAndSurname::<name-surname>} and {@code allTourists::allTourists}
+ *   are sorted sets of ids, all scored 0 so they list in id order, present only once the full
+ *   list has been loaded,</li>
+ *   <li>{@code touristListTags::<set key>} holds the ETag of such a list: the MD5 of its encoded
+ *   members when loaded, then a SHA-1 chained from the previous tag by every write that changes
+ *   the list, so a conditional GET is answered without reading or decoding a single member,</li>
+ *   <li>{@code touristListTags::touristPages} holds a random generation, renewed whenever the
+ *   cached pages are dropped, from which page ETags are derived.</li>
+ * </ul>
+ * Every write event is one Lua script call, so the entity and all of its index entries change
+ * atomically and concurrent listeners cannot lose each other's updates. The index keys a tourist
+ * had before a write are read from its meta hash inside the script and derived from the key
+ * prefixes passed in, so those keys are not declared in {@code KEYS}; that and one call spanning
+ * several tourists' keys, e.g. an email index and the all-tourists set, mean the store needs a
+ * single Redis node (with or without replicas) rather than Redis Cluster. A loaded list is
+ * written in chunks under a temporary key and renamed into place.
+ * <p>
+ * Reads follow index entries and list members from the client, a bounded number of keys per
+ * command, so a large list never holds Redis up for other clients. The {@code *Async} reads go
+ * through a dedicated, lazily opened Lettuce connection and never block the calling thread; their
+ * futures complete on the Lettuce event loop.
+ */
+public class TouristRedisStore implements AutoCloseable {
+  static final String KEY_SEPARATOR = "::";
+  static final String META_PREFIX = "touristIndex" + KEY_SEPARATOR;
+  static final String ENTITY_PREFIX = REDIS_TOURIST_BY_ID_CACHE_KEY + KEY_SEPARATOR;
+  static final String EMAIL_PREFIX = REDIS_TOURIST_BY_EMAIL_CACHE_KEY + KEY_SEPARATOR;
+  static final String PHONE_PREFIX = REDIS_TOURIST_BY_PHONE_CACHE_KEY + KEY_SEPARATOR;
+  static final String NAME_AND_SURNAME_PREFIX = REDIS_TOURIST_BY_NAME_AND_SURNAME_CACHE_KEY + KEY_SEPARATOR;
+  static final String ALL_TOURISTS_KEY = REDIS_ALL_TOURISTS_CACHE_KEY + KEY_SEPARATOR + REDIS_ALL_TOURISTS_CACHE_KEY;
+  static final String LIST_TAG_PREFIX = "touristListTags" + KEY_SEPARATOR;
+  static final String PAGES_GENERATION_KEY = LIST_TAG_PREFIX + REDIS_TOURIST_PAGES_CACHE_KEY;
+  // keeps a loaded but empty list distinguishable from one that was never loaded; sorts before every id
+  static final String LOADED_MARKER = "";
+  static final int MEMBERS_CHUNK_SIZE = 1000;
+  // tourists per script call when loading a list, so a long list never holds Redis up at once
+  static final int WRITE_CHUNK_SIZE = 200;
+
+  @SuppressWarnings("rawtypes")
+  private static final RedisScript<List> UPSERT_SCRIPT = RedisScript.of(new ClassPathResource("scripts/tourist_upsert.lua"), List.class);
+  @SuppressWarnings("rawtypes")
+  private static final RedisScript<List> REMOVE_SCRIPT = RedisScript.of(new ClassPathResource("scripts/tourist_remove.lua"), List.class);
+  private static final RedisScript<Boolean> REPLACE_MEMBERS_SCRIPT = RedisScript.of(new ClassPathResource("scripts/tourist_replace_members.lua"), Boolean.class);
+  private static final RedisScript<Boolean> PUBLISH_MEMBERS_SCRIPT = RedisScript.of(new ClassPathResource("scripts/tourist_publish_members.lua"), Boolean.class);
+
+  private final RedisTemplate<String, byte[]> redisTemplate;
+  private final LettuceConnectionFactory connectionFactory;
+  private final RedisSerializer<Object> valueSerializer;
+  private final byte[] ttlSeconds;
+  private volatile StatefulRedisConnection<String, byte[]> asyncConnection;
+
+  public TouristRedisStore(RedisTemplate<String, byte[]> redisTemplate, LettuceConnectionFactory connectionFactory,
+                           RedisSerializer<Object> valueSerializer, Duration ttl) {
+    this.redisTemplate = redisTemplate;
+    this.connectionFactory = connectionFactory;
+    this.valueSerializer = valueSerializer;
+    this.ttlSeconds = bytes(Long.toString(ttl.toSeconds()));
+  }
+
+  public static String nameAndSurnameKey(String name, String surname) {
+    return name + "-" + surname;
+  }
+
+  public TouristResponseDTO get(String id) {
+    return decode(redisTemplate.opsForValue().get(ENTITY_PREFIX + id));
+  }
+
+  public TouristResponseDTO getByEmail(String email) {
+    return await(getByEmailAsync(email));
+  }
+
+  public TouristResponseDTO getByPhoneNumber(String phoneNumber) {
+    return await(getByPhoneNumberAsync(phoneNumber));
+  }
+
+  public CompletableFuture<TouristResponseDTO> getAsync(String id) {
+    return async().get(ENTITY_PREFIX + id).toCompletableFuture().thenApply(this::decode);
+  }
+
+  public CompletableFuture<TouristResponseDTO> getByEmailAsync(String email) {
+    // an index entry left behind by an email change resolves to someone else's current state
+    return resolveAsync(EMAIL_PREFIX + email)
+            .thenApply(tourist -> tourist != null && email.equals(tourist.getEmail()) ? tourist : null);
+  }
+
+  public CompletableFuture<TouristResponseDTO> getByPhoneNumberAsync(String phoneNumber) {
+    return resolveAsync(PHONE_PREFIX + phoneNumber)
+            .thenApply(tourist -> tourist != null && phoneNumber.equals(tourist.getPhoneNumber()) ? tourist : null);
+  }
+
+  public CompletableFuture<List<TouristResponseDTO>> getByNameAndSurnameAsync(String nameAndSurnameKey) {
+    return membersAsync(NAME_AND_SURNAME_PREFIX + nameAndSurnameKey)
+            .thenApply(tourists -> matchesNameAndSurname(nameAndSurnameKey, tourists) ? tourists : null);
+  }
+
+  public CompletableFuture<List<TouristResponseDTO>> getAllAsync() {
+    return membersAsync(ALL_TOURISTS_KEY);
+  }
+
+  /**
+   * Version of the cached copy of a tourist, read from its meta hash alone, {@code null} when it
+   * is not cached or has no version. Lets a conditional GET be answered without the entity.
+   */
+  public CompletableFuture<Long> getVersionAsync(String id) {
+    return async().hget(META_PREFIX + id, "version").toCompletableFuture().thenApply(version -> parseVersion(string(version)));
+  }
+
+  public CompletableFuture<IdAndVersion> getVersionByEmailAsync(String email) {
+    return indexedVersionAsync(EMAIL_PREFIX + email, "email", email);
+  }
+
+  public CompletableFuture<IdAndVersion> getVersionByPhoneNumberAsync(String phoneNumber) {
+    return indexedVersionAsync(PHONE_PREFIX + phoneNumber, "phone", phoneNumber);
+  }
+
+  /**
+   * ETag of the cached list of all tourists, {@code null} when it is not loaded. Read it before
+   * the list, so that a tag never claims a newer state than the list it is sent with.
+   */
+  public CompletableFuture<String> getAllTagAsync() {
+    return async().get(LIST_TAG_PREFIX + ALL_TOURISTS_KEY).toCompletableFuture().thenApply(TouristRedisStore::string);
+  }
+
+  public CompletableFuture<String> getNameAndSurnameTagAsync(String nameAndSurnameKey) {
+    return async().get(LIST_TAG_PREFIX + NAME_AND_SURNAME_PREFIX + nameAndSurnameKey).toCompletableFuture().thenApply(TouristRedisStore::string);
+  }
+
+  /**
+   * ETag of the cached page under {@code pageKey}, derived from the current page generation, which
+   * is created on first use. Read it before the page, like the list tags.
+   */
+  public CompletableFuture<String> getPageTagAsync(String pageKey) {
+    RedisAsyncCommands<String, byte[]> commands = async();
+    return commands.get(PAGES_GENERATION_KEY).toCompletableFuture()
+            .thenCompose(generation -> generation != null
+                    ? CompletableFuture.completedFuture(generation)
+                    : commands.setnx(PAGES_GENERATION_KEY, bytes(UUID.randomUUID().toString()))
+                    .thenCompose(created -> commands.get(PAGES_GENERATION_KEY)))
+            .thenApply(generation -> DigestUtils.md5DigestAsHex(bytes(string(generation) + KEY_SEPARATOR + pageKey)));
+  }
+
+  /**
+   * Gives every page a new ETag; call it after dropping the cached pages, never before, or a page
+   * read in between would be sent with a tag that outlives it.
+   */
+  public void renewPageTags() {
+    redisTemplate.opsForValue().set(PAGES_GENERATION_KEY, bytes(UUID.randomUUID().toString()));
+  }
+
+  /**
+   * The tag a list gets when it is loaded into the store, for sending with a list that had none.
+   */
+  public String tagOf(List<TouristResponseDTO> tourists) {
+    MessageDigest digest = md5();
+    tourists.forEach(tourist -> digest.update(encode(tourist)));
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Reads many tourists with a single {@code MGET}; ids that are not cached are absent from the map.
+   */
+  public Map<String, TouristResponseDTO> getByIds(Collection<String> ids) {
+    List<String> keys = ids.stream().map(id -> ENTITY_PREFIX + id).toList();
+    List<byte[]> values = keys.isEmpty() ? List.of() : redisTemplate.opsForValue().multiGet(keys);
+    Map<String, TouristResponseDTO> tourists = new HashMap<>();
+    if (values == null) {
+      return tourists;
+    }
+    for (byte[] value : values) {
+      TouristResponseDTO tourist = decode(value);
+      if (tourist != null) {
+        tourists.put(tourist.getId(), tourist);
+      }
+    }
+    return tourists;
+  }
+
+  public Map<String, TouristResponseDTO> getByEmails(Collection<String> emails) {
+    return resolveMany(EMAIL_PREFIX, emails, TouristResponseDTO::getEmail);
+  }
+
+  public Map<String, TouristResponseDTO> getByPhoneNumbers(Collection<String> phoneNumbers) {
+    return resolveMany(PHONE_PREFIX, phoneNumbers, TouristResponseDTO::getPhoneNumber);
+  }
+
+  public List<TouristResponseDTO> getByNameAndSurname(String nameAndSurnameKey) {
+    return await(getByNameAndSurnameAsync(nameAndSurnameKey));
+  }
+
+  public List<TouristResponseDTO> getAll() {
+    return await(getAllAsync());
+  }
+
+  public void putByNameAndSurname(String nameAndSurnameKey, List<TouristResponseDTO> tourists) {
+    replaceMembers(NAME_AND_SURNAME_PREFIX + nameAndSurnameKey, tourists);
+  }
+
+  public void putAll(List<TouristResponseDTO> tourists) {
+    replaceMembers(ALL_TOURISTS_KEY, tourists);
+  }
+
+  /**
+   * Stores tourists loaded by a batch lookup, together with their index entries, in one call.
+   */
+  public void putMany(List<TouristResponseDTO> tourists) {
+    if (!tourists.isEmpty()) {
+      replaceMembers(null, tourists);
+    }
+  }
+
+  /**
+   * Writes the tourist and re-points all of its index entries, in one script call. A versioned
+   * tourist is not written when the store already holds the same or a newer version of it, so
+   * repeating a write, e.g. from the change stream after its response, changes nothing.
+   *
+   * @return the index values the tourist was reachable by before this write
+   */
+  public IndexedValues upsert(TouristResponseDTO tourist) {
+    String id = tourist.getId();
+    String email = nullToEmpty(tourist.getEmail());
+    String phoneNumber = nullToEmpty(tourist.getPhoneNumber());
+    String nameAndSurname = nameAndSurnameKey(tourist.getName(), tourist.getSurname());
+    List<?> previous = eval(UPSERT_SCRIPT,
+            List.of(ENTITY_PREFIX + id,
+                    META_PREFIX + id,
+                    EMAIL_PREFIX + email,
+                    PHONE_PREFIX + phoneNumber,
+                    NAME_AND_SURNAME_PREFIX + nameAndSurname,
+                    ALL_TOURISTS_KEY,
+                    LIST_TAG_PREFIX + NAME_AND_SURNAME_PREFIX + nameAndSurname,
+                    LIST_TAG_PREFIX + ALL_TOURISTS_KEY),
+            bytes(id),
+            encode(tourist),
+            ttlSeconds,
+            bytes(email),
+            bytes(phoneNumber),
+            bytes(nameAndSurname),
+            bytes(versionOf(tourist)),
+            bytes(EMAIL_PREFIX),
+            bytes(PHONE_PREFIX),
+            bytes(NAME_AND_SURNAME_PREFIX),
+            bytes(LIST_TAG_PREFIX));
+    return IndexedValues.of(previous);
+  }
+
+  /**
+   * Removes the tourist and every index entry pointing at it, in one script call.
+   *
+   * @return the index values the tourist was reachable by before removal
+   */
+  public IndexedValues remove(TouristResponseDTO tourist) {
+    String id = tourist.getId();
+    String email = nullToEmpty(tourist.getEmail());
+    String phoneNumber = nullToEmpty(tourist.getPhoneNumber());
+    String nameAndSurname = tourist.getName() == null && tourist.getSurname() == null ? "" : nameAndSurnameKey(tourist.getName(), tourist.getSurname());
+    List<?> previous = eval(REMOVE_SCRIPT,
+            List.of(ENTITY_PREFIX + id,
+                    META_PREFIX + id,
+                    ALL_TOURISTS_KEY,
+                    EMAIL_PREFIX + email,
+                    PHONE_PREFIX + phoneNumber,
+                    NAME_AND_SURNAME_PREFIX + nameAndSurname,
+                    LIST_TAG_PREFIX + ALL_TOURISTS_KEY,
+                    LIST_TAG_PREFIX + NAME_AND_SURNAME_PREFIX + nameAndSurname),
+            bytes(id),
+            bytes(email),
+            bytes(phoneNumber),
+            bytes(nameAndSurname),
+            ttlSeconds,
+            bytes(EMAIL_PREFIX),
+            bytes(PHONE_PREFIX),
+            bytes(NAME_AND_SURNAME_PREFIX),
+            bytes(LIST_TAG_PREFIX));
+    return IndexedValues.of(previous);
+  }
+
+  public void evictEmail(String email) {
+    redisTemplate.delete(EMAIL_PREFIX + email);
+  }
+
+  public void evictPhoneNumber(String phoneNumber) {
+    redisTemplate.delete(PHONE_PREFIX + phoneNumber);
+  }
+
+  public void evictNameAndSurname(String nameAndSurnameKey) {
+    redisTemplate.delete(List.of(NAME_AND_SURNAME_PREFIX + nameAndSurnameKey, LIST_TAG_PREFIX + NAME_AND_SURNAME_PREFIX + nameAndSurnameKey));
+  }
+
+  public void evictAll() {
+    redisTemplate.delete(List.of(ALL_TOURISTS_KEY, LIST_TAG_PREFIX + ALL_TOURISTS_KEY));
+  }
+
+  /**
+   * Deletes every tourist and index entry, {@code SCAN}ning by key prefix and unlinking a batch
+   * at a time rather than blocking Redis with {@code KEYS}.
+   */
+  public void clear() {
+    // the page generation is under the tag prefix too, so pages get new tags as well
+    for (String prefix : List.of(ENTITY_PREFIX, META_PREFIX, EMAIL_PREFIX, PHONE_PREFIX, NAME_AND_SURNAME_PREFIX, LIST_TAG_PREFIX)) {
+      List<String> batch = new ArrayList<>(MEMBERS_CHUNK_SIZE);
+      try (Cursor<String> keys = redisTemplate.scan(ScanOptions.scanOptions().match(prefix + "*").count(MEMBERS_CHUNK_SIZE).build())) {
+        while (keys.hasNext()) {
+          batch.add(keys.next());
+          if (batch.size() == MEMBERS_CHUNK_SIZE) {
+            redisTemplate.unlink(batch);
+            batch.clear();
+          }
+        }
+      }
+      if (!batch.isEmpty()) {
+        redisTemplate.unlink(batch);
+      }
+    }
+    evictAll();
+  }
+
+  @Override
+  public void close() {
+    StatefulRedisConnection<String, byte[]> connection = asyncConnection;
+    if (connection != null) {
+      connection.close();
+    }
+  }
+
+  private static boolean matchesNameAndSurname(String nameAndSurnameKey, List<TouristResponseDTO> tourists) {
+    if (tourists == null) {
+      return false;
+    }
+    for (TouristResponseDTO tourist : tourists) {
+      if (!nameAndSurnameKey.equals(nameAndSurnameKey(tourist.getName(), tourist.getSurname()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Map<String, TouristResponseDTO> resolveMany(String indexPrefix, Collection<String> indexValues,
+                                                      Function<TouristResponseDTO, String> indexedBy) {
+    Map<String, TouristResponseDTO> tourists = new HashMap<>();
+    if (indexValues.isEmpty()) {
+      return tourists;
+    }
+    List<byte[]> ids = redisTemplate.opsForValue().multiGet(indexValues.stream().map(value -> indexPrefix + value).toList());
+    List<String> entityKeys = ids == null ? List.of() : ids.stream()
+            .filter(id -> id != null)
+            .map(id -> ENTITY_PREFIX + new String(id, StandardCharsets.UTF_8))
+            .toList();
+    List<byte[]> values = entityKeys.isEmpty() ? List.of() : redisTemplate.opsForValue().multiGet(entityKeys);
+    if (values == null) {
+      return tourists;
+    }
+    for (byte[] value : values) {
+      TouristResponseDTO tourist = decode(value);
+      // same check as the single lookups: a stale index entry may point at a tourist that has moved on
+      if (tourist != null && indexValues.contains(indexedBy.apply(tourist))) {
+        tourists.put(indexedBy.apply(tourist), tourist);
+      }
+    }
+    return tourists;
+  }
+
+  private CompletableFuture<TouristResponseDTO> resolveAsync(String indexKey) {
+    RedisAsyncCommands<String, byte[]> commands = async();
+    return commands.get(indexKey).toCompletableFuture().thenCompose(id -> id == null
+            ? CompletableFuture.completedFuture(null)
+            : commands.get(ENTITY_PREFIX + new String(id, StandardCharsets.UTF_8)).toCompletableFuture().thenApply(this::decode));
+  }
+
+  /**
+   * Follows an index entry to the meta hash of its tourist; as with {@link #getByEmailAsync}, an
+   * entry the tourist has since moved away from resolves to nothing.
+   */
+  private CompletableFuture<IdAndVersion> indexedVersionAsync(String indexKey, String field, String value) {
+    RedisAsyncCommands<String, byte[]> commands = async();
+    return commands.get(indexKey).toCompletableFuture().thenCompose(id -> {
+      if (id == null) {
+        return CompletableFuture.completedFuture(null);
+      }
+      String touristId = string(id);
+      return commands.hmget(META_PREFIX + touristId, field, "version").toCompletableFuture().thenApply(values -> {
+        Long version = parseVersion(string(values.get(1).getValueOrElse(null)));
+        return value.equals(string(values.get(0).getValueOrElse(null))) && version != null ? new IdAndVersion(touristId, version) : null;
+      });
+    });
+  }
+
+  /**
+   * Reads every tourist of an id set in id order, {@value #MEMBERS_CHUNK_SIZE} ids and one
+   * {@code MGET} at a time, each chunk starting after the last id of the one before. Completes
+   * with {@code null} when the set is not loaded or any member has expired, so the caller
+   * reloads the whole list.
+   */
+  private CompletableFuture<List<TouristResponseDTO>> membersAsync(String setKey) {
+    return membersAsync(setKey, Range.Boundary.including(bytes(LOADED_MARKER)), new ArrayList<>(), true)
+            .exceptionallyCompose(e -> {
+              Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+              // an id set written by an older version as a plain set: reload, which replaces it
+              if (cause instanceof RedisCommandExecutionException && String.valueOf(cause.getMessage()).startsWith("WRONGTYPE")) {
+                return CompletableFuture.completedFuture(null);
+              }
+              return CompletableFuture.failedFuture(cause);
+            });
+  }
+
+  private CompletableFuture<List<TouristResponseDTO>> membersAsync(String setKey, Range.Boundary<byte[]> from,
+                                                                   List<TouristResponseDTO> tourists, boolean first) {
+    RedisAsyncCommands<String, byte[]> commands = async();
+    return commands.zrangebylex(setKey, Range.from(from, Range.Boundary.unbounded()), Limit.create(0, MEMBERS_CHUNK_SIZE))
+            .toCompletableFuture()
+            .thenCompose(ids -> {
+              if (first && ids.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+              }
+              List<String> entityKeys = new ArrayList<>(ids.size());
+              for (byte[] id : ids) {
+                if (id.length > 0) {
+                  entityKeys.add(ENTITY_PREFIX + new String(id, StandardCharsets.UTF_8));
+                }
+              }
+              CompletableFuture<List<KeyValue<String, byte[]>>> values = entityKeys.isEmpty()
+                      ? CompletableFuture.completedFuture(List.of())
+                      : commands.mget(entityKeys.toArray(String[]::new)).toCompletableFuture();
+              return values.thenCompose(entities -> {
+                for (KeyValue<String, byte[]> entity : entities) {
+                  TouristResponseDTO tourist = entity.hasValue() ? decode(entity.getValue()) : null;
+                  if (tourist == null) {
+                    return CompletableFuture.completedFuture(null);
+                  }
+                  tourists.add(tourist);
+                }
+                if (ids.size() < MEMBERS_CHUNK_SIZE) {
+                  return CompletableFuture.completedFuture(tourists);
+                }
+                return membersAsync(setKey, Range.Boundary.excluding(ids.get(ids.size() - 1)), tourists, false);
+              });
+            });
+  }
+
+  /**
+   * Stores loaded tourists {@value #WRITE_CHUNK_SIZE} per script call. An id set is built under a
+   * temporary key and renamed into place with its tag once complete, so readers never see part of
+   * it; the temporary key expires with the TTL should the load be cut short.
+   */
+  private void replaceMembers(String setKey, List<TouristResponseDTO> tourists) {
+    String loadingKey = setKey == null ? null : setKey + KEY_SEPARATOR + "loading" + KEY_SEPARATOR + UUID.randomUUID();
+    int from = 0;
+    do {
+      putMembers(loadingKey, tourists.subList(from, Math.min(from + WRITE_CHUNK_SIZE, tourists.size())));
+      from += WRITE_CHUNK_SIZE;
+    } while (from < tourists.size());
+    if (setKey != null) {
+      eval(PUBLISH_MEMBERS_SCRIPT, List.of(loadingKey, setKey, LIST_TAG_PREFIX + setKey), bytes(tagOf(tourists)), ttlSeconds);
+    }
+  }
+
+  private void putMembers(String setKey, List<TouristResponseDTO> tourists) {
+    List<String> keys = new ArrayList<>(1 + tourists.size() * 4);
+    Object[] args = new Object[3 + tourists.size() * 6];
+    args[0] = ttlSeconds;
+    args[1] = bytes(LOADED_MARKER);
+    args[2] = bytes(setKey != null ? "1" : "0");
+    if (setKey != null) {
+      keys.add(setKey);
+    }
+    int i = 3;
+    for (TouristResponseDTO tourist : tourists) {
+      String email = nullToEmpty(tourist.getEmail());
+      String phoneNumber = nullToEmpty(tourist.getPhoneNumber());
+      keys.add(ENTITY_PREFIX + tourist.getId());
+      keys.add(META_PREFIX + tourist.getId());
+      keys.add(EMAIL_PREFIX + email);
+      keys.add(PHONE_PREFIX + phoneNumber);
+      args[i++] = bytes(tourist.getId());
+      args[i++] = encode(tourist);
+      args[i++] = bytes(email);
+      args[i++] = bytes(phoneNumber);
+      args[i++] = bytes(nameAndSurnameKey(tourist.getName(), tourist.getSurname()));
+      args[i++] = bytes(versionOf(tourist));
+    }
+    eval(REPLACE_MEMBERS_SCRIPT, keys, args);
+  }
+
+  /**
+   * Runs a script with raw byte arguments; bulk replies come back as {@code byte[]}, integers as is.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T eval(RedisScript<T> script, List<String> keys, Object... args) {
+    RedisSerializer<T> resultSerializer = (RedisSerializer<T>) (RedisSerializer<?>) RedisSerializer.byteArray();
+    return redisTemplate.execute(script, RedisSerializer.byteArray(), resultSerializer, keys, args);
+  }
+
+  private RedisAsyncCommands<String, byte[]> async() {
+    StatefulRedisConnection<String, byte[]> connection = asyncConnection;
+    if (connection == null) {
+      synchronized (this) {
+        connection = asyncConnection;
+        if (connection == null) {
+          // same client, and so the same host and credentials, as the connection factory
+          RedisClient client = (RedisClient) connectionFactory.getRequiredNativeClient();
+          connection = client.connect(RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE));
+          asyncConnection = connection;
+        }
+      }
+    }
+    return connection.async();
+  }
+
+  /**
+   * Waits for a read on the calling thread, for the blocking lookups.
+   */
+  private static <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while reading from Redis", e);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : new IllegalStateException(e.getCause());
+    }
+  }
+
+  private byte[] encode(TouristResponseDTO tourist) {
+    return valueSerializer.serialize(tourist);
+  }
+
+  private TouristResponseDTO decode(byte[] value) {
+    Object decoded = value != null ? valueSerializer.deserialize(value) : null;
+    return decoded instanceof TouristResponseDTO tourist ? tourist : null;
+  }
+
+  private static MessageDigest md5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String string(byte[] value) {
+    return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+  }
+
+  private static Long parseVersion(String version) {
+    return version == null || version.isEmpty() ? null : Long.valueOf(version);
+  }
+
+  private static String versionOf(TouristResponseDTO tourist) {
+    return tourist.getVersion() == null ? "" : tourist.getVersion().toString();
+  }
+
+  private static String nullToEmpty(String value) {
+    return value == null ? "" : value;
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Index values a tourist was reachable by, and the version it was cached at, as recorded in
+   * Redis before a write. Any of them may be {@code null} when the tourist was not cached.
+   */
+  public record IdAndVersion(String id, long version) {
+  }
+
+  public record IndexedValues(String email, String phoneNumber, String nameAndSurname, Long version) {
+    static IndexedValues of(List<?> values) {
+      if (values == null || values.size() < 3) {
+        return new IndexedValues(null, null, null, null);
+      }
+      String version = values.size() > 3 ? string(values.get(3)) : null;
+      return new IndexedValues(string(values.get(0)), string(values.get(1)), string(values.get(2)),
+              version == null ? null : Long.valueOf(version));
+    }
+
+    private static String string(Object value) {
+      return value instanceof byte[] bytes && bytes.length > 0 ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+  }
+}
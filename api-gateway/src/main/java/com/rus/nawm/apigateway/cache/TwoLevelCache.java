@@ -0,0 +1,146 @@
+package com.rus.nawm.apigateway.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link Cache} that keeps a size-bounded, short-lived in-process copy (L1) in front of a
+ * Redis cache (L2). Reads are served from L1 when possible; every write goes to L2 first and
+ * is then broadcast so other instances drop their L1 copy of the key. Read-through fills go
+ * through {@link #fill} instead, which stores the loaded value without a broadcast.
+ * <p>
+ * Values in L1 are shared between requests and must be treated as read-only.
+ */
+public class TwoLevelCache implements Cache {
+  private final Cache remote;
+  private final com.github.benmanes.caffeine.cache.Cache<Object, Object> local;
+  private final CacheInvalidationPublisher invalidationPublisher;
+
+  public TwoLevelCache(Cache remote,
+                       com.github.benmanes.caffeine.cache.Cache<Object, Object> local,
+                       CacheInvalidationPublisher invalidationPublisher) {
+    this.remote = remote;
+    this.local = local;
+    this.invalidationPublisher = invalidationPublisher;
+  }
+
+  @Override
+  public String getName() {
+    return remote.getName();
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return remote.getNativeCache();
+  }
+
+  @Override
+  public ValueWrapper get(Object key) {
+    Object value = local.getIfPresent(key);
+    if (value != null) {
+      return new SimpleValueWrapper(value);
+    }
+    ValueWrapper wrapper = remote.get(key);
+    if (wrapper != null && wrapper.get() != null) {
+      local.put(key, wrapper.get());
+    }
+    return wrapper;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Class<T> type) {
+    ValueWrapper wrapper = get(key);
+    Object value = wrapper != null ? wrapper.get() : null;
+    if (value != null && type != null && !type.isInstance(value)) {
+      throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+    }
+    return (T) value;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Callable<T> valueLoader) {
+    ValueWrapper wrapper = get(key);
+    if (wrapper != null) {
+      return (T) wrapper.get();
+    }
+    T value = remote.get(key, valueLoader);
+    if (value != null) {
+      local.put(key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Completes immediately on a local hit, otherwise asks the remote cache without blocking and
+   * keeps the value locally once it arrives. Like {@link Cache#retrieve}, returns {@code null}
+   * when the remote cache says up front that it holds no value.
+   */
+  @Override
+  public CompletableFuture<?> retrieve(Object key) {
+    Object value = local.getIfPresent(key);
+    if (value != null) {
+      return CompletableFuture.completedFuture(value);
+    }
+    CompletableFuture<?> remoteValue = remote.retrieve(key);
+    if (remoteValue == null) {
+      return null;
+    }
+    return remoteValue.thenApply(retrieved -> {
+      Object unwrapped = retrieved instanceof ValueWrapper wrapper ? wrapper.get() : retrieved;
+      if (unwrapped != null) {
+        local.put(key, unwrapped);
+      }
+      return unwrapped;
+    });
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    remote.put(key, value);
+    if (value != null) {
+      local.put(key, value);
+    } else {
+      local.invalidate(key);
+    }
+    invalidationPublisher.publish(getName(), key);
+  }
+
+  /**
+   * Stores a value just loaded for a miss in both tiers of this instance only. Other instances
+   * hold no newer copy to drop: a write to the key evicts theirs, and a read-through fill does
+   * not change what the key maps to.
+   */
+  public void fill(Object key, Object value) {
+    remote.put(key, value);
+    if (value != null) {
+      local.put(key, value);
+    }
+  }
+
+  @Override
+  public void evict(Object key) {
+    remote.evict(key);
+    local.invalidate(key);
+    invalidationPublisher.publish(getName(), key);
+  }
+
+  @Override
+  public void clear() {
+    remote.clear();
+    local.invalidateAll();
+    invalidationPublisher.publish(getName(), null);
+  }
+
+  void evictLocal(Object key) {
+    if (key == null) {
+      local.invalidateAll();
+    } else {
+      local.invalidate(key);
+    }
+  }
+}
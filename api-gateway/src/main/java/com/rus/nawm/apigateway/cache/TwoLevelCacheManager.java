@@ -0,0 +1,82 @@
+package com.rus.nawm.apigateway.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decorates the Redis {@link CacheManager} with an in-process near cache for the configured
+ * cache names. All other caches are handed out unchanged.
+ */
+public class TwoLevelCacheManager implements CacheManager {
+  private final CacheManager remoteCacheManager;
+  private final Set<String> nearCacheNames;
+  private final long maximumSize;
+  private final Duration ttl;
+  private final CacheInvalidationPublisher invalidationPublisher;
+  private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+  public TwoLevelCacheManager(CacheManager remoteCacheManager,
+                              Set<String> nearCacheNames,
+                              long maximumSize,
+                              Duration ttl,
+                              CacheInvalidationPublisher invalidationPublisher) {
+    this.remoteCacheManager = remoteCacheManager;
+    this.nearCacheNames = nearCacheNames;
+    this.maximumSize = maximumSize;
+    this.ttl = ttl;
+    this.invalidationPublisher = invalidationPublisher;
+  }
+
+  @Override
+  public Cache getCache(String name) {
+    if (!nearCacheNames.contains(name)) {
+      return remoteCacheManager.getCache(name);
+    }
+    TwoLevelCache cache = caches.get(name);
+    if (cache != null) {
+      return cache;
+    }
+    Cache remote = remoteCacheManager.getCache(name);
+    if (remote == null) {
+      return null;
+    }
+    return caches.computeIfAbsent(name, key -> new TwoLevelCache(remote, Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .build(), invalidationPublisher));
+  }
+
+  @Override
+  public Collection<String> getCacheNames() {
+    return remoteCacheManager.getCacheNames();
+  }
+
+  /**
+   * Drops a key from the local tier of this and every other instance, for writes that bypassed
+   * {@link Cache#put}/{@link Cache#evict}. A no-op for caches without a near tier.
+   */
+  public void invalidate(String cacheName, String key) {
+    if (key == null || !nearCacheNames.contains(cacheName)) {
+      return;
+    }
+    evictLocal(cacheName, key);
+    invalidationPublisher.publish(cacheName, key);
+  }
+
+  /**
+   * Drops a key (or the whole cache when {@code key} is {@code null}) from the local tier only.
+   */
+  public void evictLocal(String cacheName, String key) {
+    TwoLevelCache cache = caches.get(cacheName);
+    if (cache != null) {
+      cache.evictLocal(key);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package com.rus.nawm.apigateway.config;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.devh.boot.grpc.client.interceptor.GrpcGlobalClientInterceptor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every call to domain-service from start to close, in {@code tourist.grpc.client} tagged
+ * with the method as {@code operation} and the status code, so that a deadline or an unavailable
+ * upstream shows up as its own series.
+ */
+@GrpcGlobalClientInterceptor
+public class GrpcMetricsInterceptor implements ClientInterceptor {
+  private final MeterRegistry meterRegistry;
+  // by method, then status code, so a closing call does not look its timer up in the registry
+  private final ConcurrentMap<String, ConcurrentMap<Status.Code, Timer>> timers = new ConcurrentHashMap<>();
+
+  public GrpcMetricsInterceptor(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+                                                             Channel next) {
+    String operation = method.getBareMethodName();
+    ConcurrentMap<Status.Code, Timer> operationTimers = timers.computeIfAbsent(operation, name -> new ConcurrentHashMap<>());
+    return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+      @Override
+      public void start(Listener<RespT> responseListener, Metadata headers) {
+        long start = System.nanoTime();
+        super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+          @Override
+          public void onClose(Status status, Metadata trailers) {
+            operationTimers.computeIfAbsent(status.getCode(), code -> timer(operation, code))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            super.onClose(status, trailers);
+          }
+        }, headers);
+      }
+    };
+  }
+
+  private Timer timer(String operation, Status.Code code) {
+    return Timer.builder("tourist.grpc.client")
+            .description("Time from starting a gRPC call to domain-service to its close")
+            .tag("operation", operation)
+            .tag("status", code.name())
+            .register(meterRegistry);
+  }
+}
@@ -0,0 +1,78 @@
+package com.rus.nawm.apigateway.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps a configured share of the INFO and lower events of the given loggers and their children,
+ * set in {@code logback-spring.xml} from {@code logging.sampling.rates}, e.g.
+ * {@code com.rus.nawm.apigateway.api=0.1}. WARN and ERROR are always kept.
+ * <p>
+ * The decision is made at the enablement check the Log4j API makes before it builds the message,
+ * so a sampled-out event is never formatted and its arguments' {@code toString} never runs; the
+ * call that follows for a kept event is let through. Events are counted per configured logger in
+ * {@link #sampledOut()}.
+ */
+public class LogSamplingFilter extends TurboFilter {
+  private static final Map<String, LongAdder> SAMPLED_OUT = new ConcurrentHashMap<>();
+
+  private final Map<String, Double> rates = new ConcurrentHashMap<>();
+  // logger name -> the configured name it falls under, or "" when none
+  private final Map<String, String> sampledLoggers = new ConcurrentHashMap<>();
+
+  public void setRates(String rates) {
+    for (String entry : rates.split(",")) {
+      if (entry.isBlank()) {
+        continue;
+      }
+      String[] loggerAndRate = entry.split("=");
+      this.rates.put(loggerAndRate[0].trim(), Double.parseDouble(loggerAndRate[1].trim()));
+    }
+  }
+
+  @Override
+  public void start() {
+    rates.keySet().forEach(logger -> SAMPLED_OUT.computeIfAbsent(logger, name -> new LongAdder()));
+    addInfo("Sampling loggers " + rates);
+    super.start();
+  }
+
+  @Override
+  public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+    if (format != null || level.isGreaterOrEqual(Level.WARN) || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+      return FilterReply.NEUTRAL;
+    }
+    String sampled = sampledLoggers.computeIfAbsent(logger.getName(), this::configuredLogger);
+    if (sampled.isEmpty() || ThreadLocalRandom.current().nextDouble() < rates.get(sampled)) {
+      return FilterReply.NEUTRAL;
+    }
+    SAMPLED_OUT.get(sampled).increment();
+    return FilterReply.DENY;
+  }
+
+  private String configuredLogger(String name) {
+    for (String candidate = name; ; candidate = candidate.substring(0, candidate.lastIndexOf('.'))) {
+      if (rates.containsKey(candidate)) {
+        return candidate;
+      }
+      if (candidate.indexOf('.') < 0) {
+        return "";
+      }
+    }
+  }
+
+  /**
+   * Events dropped by sampling so far, by configured logger.
+   */
+  public static Map<String, LongAdder> sampledOut() {
+    return SAMPLED_OUT;
+  }
+}
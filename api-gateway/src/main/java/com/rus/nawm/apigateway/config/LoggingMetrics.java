@@ -0,0 +1,29 @@
+package com.rus.nawm.apigateway.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exports the log events that never reached an appender: {@code tourist.logging.dropped} by
+ * appender, for events a full async buffer dropped rather than block the logging thread, and
+ * {@code tourist.logging.sampled} by logger, for events left out by {@link LogSamplingFilter}.
+ */
+@Component
+public class LoggingMetrics {
+
+  public LoggingMetrics(MeterRegistry meterRegistry) {
+    DroppedLogEventsListener.dropped().forEach((appender, dropped) ->
+            FunctionCounter.builder("tourist.logging.dropped", dropped, LongAdder::sum)
+                    .description("Log events dropped because the appender's buffer was full")
+                    .tag("appender", appender)
+                    .register(meterRegistry));
+    LogSamplingFilter.sampledOut().forEach((logger, sampledOut) ->
+            FunctionCounter.builder("tourist.logging.sampled", sampledOut, LongAdder::sum)
+                    .description("Log events left out by sampling")
+                    .tag("logger", logger)
+                    .register(meterRegistry));
+  }
+}
@@ -0,0 +1,25 @@
+package com.rus.nawm.apigateway.config;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Adds the name of the controller method that served a request as the {@code operation} tag of
+ * {@code http.server.requests}, e.g. {@code getById}, which stays put when a URI template changes.
+ * {@code none} for requests no handler method served, e.g. actuator endpoints and 404s.
+ */
+@Component
+public class OperationObservationConvention extends DefaultServerRequestObservationConvention {
+
+  @Override
+  public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+    Object handler = context.getCarrier().getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+    String operation = handler instanceof HandlerMethod method ? method.getMethod().getName() : "none";
+    return super.getLowCardinalityKeyValues(context).and(KeyValue.of("operation", operation));
+  }
+}
@@ -1,16 +1,30 @@
 package com.rus.nawm.apigateway.config;
 
+import com.rus.nawm.apigateway.cache.CacheInvalidationPublisher;
+import com.rus.nawm.apigateway.cache.TouristIndexCache;
+import com.rus.nawm.apigateway.cache.TouristProtobufRedisSerializer;
+import com.rus.nawm.apigateway.cache.TouristRedisStore;
+import com.rus.nawm.apigateway.cache.TwoLevelCacheManager;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.support.CompositeCacheManager;
+import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.cache.BatchStrategies;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Set;
 
 @Configuration
 public class RedisConfig {
@@ -20,11 +34,27 @@ public class RedisConfig {
   @Value("${spring.data.redis.port}")
   private int redisPort;
 
+  @Value("${cache.near.caches:tourists,touristsByEmail,touristsByPhone}")
+  private Set<String> nearCacheNames;
+
+  @Value("${cache.near.maximum-size:10000}")
+  private long nearCacheMaximumSize;
+
+  @Value("${cache.near.ttl:30s}")
+  private Duration nearCacheTtl;
+
+  @Value("${cache.protobuf-codec.caches:}")
+  private Set<String> protobufCodecCacheNames;
+
+  @Value("${cache.protobuf-codec.compression-threshold:1024}")
+  private int protobufCompressionThreshold;
+
   public static final String REDIS_ALL_TOURISTS_CACHE_KEY = "allTourists";
   public static final String REDIS_TOURIST_BY_ID_CACHE_KEY = "tourists";
   public static final String REDIS_TOURIST_BY_EMAIL_CACHE_KEY = "touristsByEmail";
   public static final String REDIS_TOURIST_BY_PHONE_CACHE_KEY = "touristsByPhone";
   public static final String REDIS_TOURIST_BY_NAME_AND_SURNAME_CACHE_KEY = "touristsByNameAndSurname";
+  public static final String REDIS_TOURIST_PAGES_CACHE_KEY = "touristPages";
 
   @Bean
   public LettuceConnectionFactory redisConnectionFactory() {
@@ -36,18 +66,50 @@ public class RedisConfig {
   }
 
   @Bean
-  public RedisCacheManager cacheManager(LettuceConnectionFactory redisConnectionFactory) {
+  @Primary
+  public TwoLevelCacheManager cacheManager(RedisCacheManager redisCacheManager,
+                                           TouristRedisStore touristRedisStore,
+                                           CacheInvalidationPublisher invalidationPublisher) {
+    SimpleCacheManager touristCacheManager = new SimpleCacheManager();
+    touristCacheManager.setCaches(List.of(
+            new TouristIndexCache(REDIS_TOURIST_BY_ID_CACHE_KEY, TouristIndexCache.Dimension.ID, touristRedisStore),
+            new TouristIndexCache(REDIS_TOURIST_BY_EMAIL_CACHE_KEY, TouristIndexCache.Dimension.EMAIL, touristRedisStore),
+            new TouristIndexCache(REDIS_TOURIST_BY_PHONE_CACHE_KEY, TouristIndexCache.Dimension.PHONE_NUMBER, touristRedisStore),
+            new TouristIndexCache(REDIS_TOURIST_BY_NAME_AND_SURNAME_CACHE_KEY, TouristIndexCache.Dimension.NAME_AND_SURNAME, touristRedisStore),
+            new TouristIndexCache(REDIS_ALL_TOURISTS_CACHE_KEY, TouristIndexCache.Dimension.ALL, touristRedisStore)));
+    touristCacheManager.afterPropertiesSet();
+    CompositeCacheManager remoteCacheManager = new CompositeCacheManager(touristCacheManager, redisCacheManager);
+    return new TwoLevelCacheManager(remoteCacheManager, nearCacheNames, nearCacheMaximumSize, nearCacheTtl, invalidationPublisher);
+  }
+
+  @Bean
+  public RedisTemplate<String, byte[]> touristRedisTemplate(LettuceConnectionFactory redisConnectionFactory) {
+    RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+    template.setConnectionFactory(redisConnectionFactory);
+    template.setKeySerializer(RedisSerializer.string());
+    template.setValueSerializer(RedisSerializer.byteArray());
+    return template;
+  }
+
+  @Bean
+  public TouristRedisStore touristRedisStore(RedisTemplate<String, byte[]> touristRedisTemplate,
+                                             LettuceConnectionFactory redisConnectionFactory) {
+    // tourists are stored once, so the codec chosen for the by-id cache applies to every lookup
+    return new TouristRedisStore(touristRedisTemplate, redisConnectionFactory,
+            valueSerializer(REDIS_TOURIST_BY_ID_CACHE_KEY), Duration.ofMinutes(10));
+  }
+
+  @Bean
+  public RedisCacheManager redisCacheManager(LettuceConnectionFactory redisConnectionFactory) {
     RedisCacheConfiguration cacheConfig = myDefaultCacheConfig(Duration.ofMinutes(10))
             .disableCachingNullValues();
 
-    return RedisCacheManager.builder(redisConnectionFactory)
-            .cacheDefaults(cacheConfig)
+    // pages are dropped wholesale on every write, so clear() must SCAN instead of blocking Redis with KEYS
+    RedisCacheWriter cacheWriter = RedisCacheWriter.nonLockingRedisCacheWriter(redisConnectionFactory, BatchStrategies.scan(1000));
+
+    return RedisCacheManager.builder(cacheWriter)
             .cacheDefaults(cacheConfig)
-            .withCacheConfiguration(REDIS_TOURIST_BY_NAME_AND_SURNAME_CACHE_KEY, myDefaultCacheConfig(Duration.ofMinutes(10)))
-            .withCacheConfiguration(REDIS_TOURIST_BY_PHONE_CACHE_KEY, myDefaultCacheConfig(Duration.ofMinutes(10)))
-            .withCacheConfiguration(REDIS_TOURIST_BY_EMAIL_CACHE_KEY, myDefaultCacheConfig(Duration.ofMinutes(10)))
-            .withCacheConfiguration(REDIS_TOURIST_BY_ID_CACHE_KEY, myDefaultCacheConfig(Duration.ofMinutes(10)))
-            .withCacheConfiguration(REDIS_ALL_TOURISTS_CACHE_KEY, myDefaultCacheConfig(Duration.ofMinutes(10)))
+            .withCacheConfiguration(REDIS_TOURIST_PAGES_CACHE_KEY, myDefaultCacheConfig(REDIS_TOURIST_PAGES_CACHE_KEY, Duration.ofMinutes(10)))
             .build();
   }
 
@@ -57,4 +119,18 @@ public class RedisConfig {
             .entryTtl(duration)
             .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer()));
   }
+
+  private RedisCacheConfiguration myDefaultCacheConfig(String cacheName, Duration duration) {
+    return RedisCacheConfiguration
+            .defaultCacheConfig()
+            .entryTtl(duration)
+            .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer(cacheName)));
+  }
+
+  private RedisSerializer<Object> valueSerializer(String cacheName) {
+    if (protobufCodecCacheNames.contains(cacheName)) {
+      return new TouristProtobufRedisSerializer(protobufCompressionThreshold);
+    }
+    return new GenericJackson2JsonRedisSerializer();
+  }
 }
@@ -0,0 +1,75 @@
+package com.rus.nawm.apigateway.mapper;
+
+import com.rus.nawm.apigateway.TouristServiceOuterClass;
+import com.rus.nawm.apigateway.api.dto.TouristRequestDTO;
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import com.rus.nawm.apigateway.api.dto.TouristSuggestionDTO;
+
+/**
+ * Hand-written conversions between the protobuf {@code Tourist} message and the REST DTOs.
+ * Plain field copies only: no reflection and no intermediate objects, since these run once
+ * per tourist on every read path.
+ */
+public final class TouristMapper {
+
+  private TouristMapper() {
+  }
+
+  public static TouristResponseDTO toResponseDTO(TouristServiceOuterClass.Tourist tourist) {
+    return new TouristResponseDTO(
+            tourist.getId(),
+            tourist.getName(),
+            tourist.getSurname(),
+            tourist.getEmail(),
+            tourist.getPhoneNumber(),
+            tourist.getCountry(),
+            tourist.hasVersion() ? tourist.getVersion() : null);
+  }
+
+  public static TouristSuggestionDTO toSuggestionDTO(TouristServiceOuterClass.TouristSuggestion suggestion) {
+    return new TouristSuggestionDTO(
+            suggestion.getId(),
+            suggestion.getName(),
+            suggestion.getSurname(),
+            suggestion.getEmail());
+  }
+
+  public static TouristServiceOuterClass.Tourist toProto(TouristResponseDTO tourist) {
+    return toProto(tourist.getId(), tourist.getName(), tourist.getSurname(),
+            tourist.getEmail(), tourist.getPhoneNumber(), tourist.getCountry(), tourist.getVersion());
+  }
+
+  public static TouristServiceOuterClass.Tourist toProto(TouristRequestDTO tourist) {
+    return toProto(tourist.getId(), tourist.getName(), tourist.getSurname(),
+            tourist.getEmail(), tourist.getPhoneNumber(), tourist.getCountry(), tourist.getVersion());
+  }
+
+  private static TouristServiceOuterClass.Tourist toProto(String id, String name, String surname,
+                                                          String email, String phoneNumber, String country,
+                                                          Long version) {
+    TouristServiceOuterClass.Tourist.Builder builder = TouristServiceOuterClass.Tourist.newBuilder();
+    // protobuf builders reject nulls, absent fields keep the proto3 default
+    if (id != null) {
+      builder.setId(id);
+    }
+    if (name != null) {
+      builder.setName(name);
+    }
+    if (surname != null) {
+      builder.setSurname(surname);
+    }
+    if (email != null) {
+      builder.setEmail(email);
+    }
+    if (phoneNumber != null) {
+      builder.setPhoneNumber(phoneNumber);
+    }
+    if (country != null) {
+      builder.setCountry(country);
+    }
+    if (version != null) {
+      builder.setVersion(version);
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,135 @@
+package com.rus.nawm.apigateway.mapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rus.nawm.apigateway.TouristServiceOuterClass;
+import com.rus.nawm.apigateway.api.dto.TouristRequestDTO;
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import com.rus.nawm.apigateway.service.TouristChange;
+import com.rus.nawm.apigateway.service.TouristWriteReply;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Builds write commands and reads results and replies in either payload format, told apart by
+ * content type:
+ * <ul>
+ *   <li>{@code application/x-protobuf}: the protobuf messages from {@code tourist_service.proto};</li>
+ *   <li>anything else is the legacy JSON format, a JSON document serialized to bytes and then
+ *   wrapped by {@link Jackson2JsonMessageConverter} into a base64 JSON string.</li>
+ * </ul>
+ * Commands are written in the configured format; results and replies are read in whichever
+ * format they arrive, since domain-service answers in the format of the request.
+ * <p>
+ * Commands carry their publish time as the AMQP timestamp, which domain-service copies into the
+ * {@value #REQUESTED_AT_HEADER} header of its results. Updates and deletes share a partition queue
+ * and carry their operation in the {@value #OPERATION_HEADER} header.
+ */
+public final class TouristMessageCodec {
+
+  public static final String PROTOBUF_CONTENT_TYPE = "application/x-protobuf";
+  public static final String REQUESTED_AT_HEADER = "x-requested-at";
+  public static final String OPERATION_HEADER = "x-tourist-operation";
+
+  public enum Format {
+    JSON, PROTOBUF;
+
+    public static Format of(Message message) {
+      return PROTOBUF_CONTENT_TYPE.equals(message.getMessageProperties().getContentType()) ? PROTOBUF : JSON;
+    }
+  }
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Jackson2JsonMessageConverter jsonConverter = new Jackson2JsonMessageConverter();
+
+  public Message command(TouristRequestDTO tourist, Format format) throws IOException {
+    if (format == Format.PROTOBUF) {
+      return protobuf(TouristMapper.toProto(tourist).toByteArray());
+    }
+    return json(objectMapper.writeValueAsBytes(tourist));
+  }
+
+  public Message updateCommand(TouristRequestDTO tourist, Format format) throws IOException {
+    Message message = command(tourist, format);
+    message.getMessageProperties().setHeader(OPERATION_HEADER, "PUT");
+    return message;
+  }
+
+  public Message deleteCommand(String id, Format format) {
+    Message message = format == Format.PROTOBUF
+            ? protobuf(TouristServiceOuterClass.TouristDeleteCommand.newBuilder().setId(id).build().toByteArray())
+            : json(id.getBytes());
+    message.getMessageProperties().setHeader(OPERATION_HEADER, "DELETE");
+    return message;
+  }
+
+  /**
+   * A result holds one tourist or, from domain-service's batch listener, every tourist applied
+   * by one bulk write.
+   */
+  public List<TouristResponseDTO> readResults(Message message) throws IOException {
+    if (Format.of(message) == Format.PROTOBUF) {
+      List<TouristServiceOuterClass.Tourist> tourists = TouristServiceOuterClass.TouristWriteResults.parseFrom(message.getBody()).getTouristsList();
+      List<TouristResponseDTO> results = new ArrayList<>(tourists.size());
+      tourists.forEach(tourist -> results.add(TouristMapper.toResponseDTO(tourist)));
+      return results;
+    }
+    byte[] json = unwrapJson(message);
+    for (byte b : json) {
+      if (!Character.isWhitespace(b)) {
+        return b == '['
+                ? objectMapper.readValue(json, objectMapper.getTypeFactory().constructCollectionType(List.class, TouristResponseDTO.class))
+                : List.of(objectMapper.readValue(json, TouristResponseDTO.class));
+      }
+    }
+    throw new IOException("Empty result message");
+  }
+
+  public TouristWriteReply readReply(Message message) throws IOException {
+    if (Format.of(message) == Format.PROTOBUF) {
+      TouristServiceOuterClass.TouristWriteReply reply = TouristServiceOuterClass.TouristWriteReply.parseFrom(message.getBody());
+      return new TouristWriteReply(
+              TouristWriteReply.Status.of(reply.getStatus().name()),
+              reply.hasMessage() ? reply.getMessage() : null,
+              reply.hasTourist() ? TouristMapper.toResponseDTO(reply.getTourist()) : null);
+    }
+    return objectMapper.readValue(unwrapJson(message), TouristWriteReply.class);
+  }
+
+  /**
+   * Change events only exist in protobuf.
+   */
+  public TouristChange readChange(Message message) throws IOException {
+    TouristServiceOuterClass.TouristChangeEvent event = TouristServiceOuterClass.TouristChangeEvent.parseFrom(message.getBody());
+    boolean upsert = event.getOperation() == TouristServiceOuterClass.TouristChangeEvent.Operation.UPSERT && event.hasTourist();
+    return new TouristChange(event.getId(), upsert ? TouristMapper.toResponseDTO(event.getTourist()) : null);
+  }
+
+  /**
+   * Epoch millis at which the oldest command answered by a result was published, {@code null}
+   * for results from a domain-service that does not stamp them.
+   */
+  public Long readRequestedAt(Message message) {
+    return message.getMessageProperties().getHeader(REQUESTED_AT_HEADER) instanceof Number requestedAt ? requestedAt.longValue() : null;
+  }
+
+  private byte[] unwrapJson(Message message) throws IOException {
+    return objectMapper.readValue(message.getBody(), byte[].class);
+  }
+
+  private Message json(byte[] payload) {
+    MessageProperties properties = new MessageProperties();
+    properties.setTimestamp(new Date());
+    return jsonConverter.toMessage(payload, properties);
+  }
+
+  private static Message protobuf(byte[] body) {
+    return MessageBuilder.withBody(body).setContentType(PROTOBUF_CONTENT_TYPE).setTimestamp(new Date()).build();
+  }
+}
@@ -0,0 +1,182 @@
+package com.rus.nawm.apigateway.service;
+
+import com.rus.nawm.apigateway.cache.HotKeyTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.rus.nawm.apigateway.service.TouristService.MAX_BATCH_SIZE;
+
+/**
+ * Keeps the most read tourists cached across deploys and TTL expiry.
+ * <p>
+ * Every {@code cache.hot-keys.refresh-interval}, which should stay below the Redis TTL, the reads
+ * {@link HotKeyTracker} counted since the previous run are added with {@code ZINCRBY} to the
+ * {@value #HOT_KEYS_KEY} sorted set, shared by all gateway instances and trimmed to
+ * {@code cache.hot-keys.top-k}. The tourists of that set are then reloaded from domain-service in
+ * batches of {@link TouristService#MAX_BATCH_SIZE} and stored again, which restarts their TTL, and
+ * the tracker is decayed. The shared set is halved about once per interval too, by whichever
+ * instance takes {@value #HOT_KEYS_DECAY_KEY} first, and scores that fall below one are dropped, so
+ * a tourist nobody reads any more leaves the set even while gateways keep refreshing its TTL. The
+ * first run happens right at startup, so a freshly deployed gateway warms the cache from the keys
+ * its predecessors persisted instead of letting the first wave of reads fall through to Mongo.
+ */
+@Component
+@Log4j2
+public class CacheWarmer implements SmartLifecycle {
+  static final String HOT_KEYS_KEY = "touristHotKeys";
+  static final String HOT_KEYS_DECAY_KEY = HOT_KEYS_KEY + "::decayed";
+
+  private final HotKeyTracker hotKeys;
+  private final TouristService touristService;
+  private final StringRedisTemplate redisTemplate;
+  private final boolean enabled;
+  private final int topK;
+  private final Duration refreshInterval;
+  private final Duration persistedTtl;
+  private final Timer warmUpTimer;
+  private final Counter warmedTourists;
+  // the estimates already added to the shared set, halved along with the tracker
+  private final Map<String, Long> persisted = new HashMap<>();
+
+  private ScheduledExecutorService scheduler;
+  private volatile boolean running;
+
+  public CacheWarmer(HotKeyTracker hotKeys, TouristService touristService, StringRedisTemplate redisTemplate,
+                     MeterRegistry meterRegistry,
+                     @Value("${cache.hot-keys.enabled:true}") boolean enabled,
+                     @Value("${cache.hot-keys.top-k:1000}") int topK,
+                     @Value("${cache.hot-keys.refresh-interval:5m}") Duration refreshInterval,
+                     @Value("${cache.hot-keys.persisted-ttl:1d}") Duration persistedTtl) {
+    this.hotKeys = hotKeys;
+    this.touristService = touristService;
+    this.redisTemplate = redisTemplate;
+    this.enabled = enabled;
+    this.topK = topK;
+    this.refreshInterval = refreshInterval;
+    this.persistedTtl = persistedTtl;
+    this.warmUpTimer = Timer.builder("tourist.cache.warmup")
+            .description("Time to persist the hot keys and reload their tourists into Redis")
+            .register(meterRegistry);
+    this.warmedTourists = Counter.builder("tourist.cache.warmup.tourists")
+            .description("Hot tourists reloaded into Redis ahead of their expiry")
+            .register(meterRegistry);
+  }
+
+  @Override
+  public void start() {
+    if (!enabled) {
+      log.info("Hot key cache warm-up is disabled");
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("cache-warmer-"));
+    scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    running = true;
+  }
+
+  @Override
+  public void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    scheduler.shutdownNow();
+    try {
+      // hands the keys read since the last run over to the next deploy
+      persist();
+    } catch (Exception e) {
+      log.warn("Could not persist the hot keys on shutdown: {}", e.getMessage());
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  private void refresh() {
+    long start = System.nanoTime();
+    try {
+      persist();
+      Set<String> ids = redisTemplate.opsForZSet().reverseRange(HOT_KEYS_KEY, 0, topK - 1L);
+      List<String> hot = ids == null ? List.of() : new ArrayList<>(ids);
+      int warmed = 0;
+      for (int from = 0; from < hot.size(); from += MAX_BATCH_SIZE) {
+        warmed += touristService.refreshTourists(hot.subList(from, Math.min(from + MAX_BATCH_SIZE, hot.size())));
+      }
+      decay();
+      warmedTourists.increment(warmed);
+      log.info("Warmed {} of {} hot tourists in {} ms", warmed, hot.size(), (System.nanoTime() - start) / 1_000_000);
+    } catch (Exception e) {
+      log.warn("Hot key cache warm-up failed, retrying in {}: {}", refreshInterval, e.getMessage());
+    } finally {
+      warmUpTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Adds the reads of the local hot keys since the last call to the shared set, on top of what the
+   * other instances added, and drops all but the {@code topK} highest.
+   */
+  private synchronized void persist() {
+    Map<String, Long> increments = new HashMap<>();
+    for (HotKeyTracker.HotKey hot : hotKeys.hotKeys()) {
+      long increment = hot.estimate() - persisted.getOrDefault(hot.key(), 0L);
+      if (increment > 0) {
+        increments.put(hot.key(), increment);
+      }
+      persisted.put(hot.key(), hot.estimate());
+    }
+    if (increments.isEmpty()) {
+      return;
+    }
+    redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+      StringRedisConnection commands = (StringRedisConnection) connection;
+      increments.forEach((key, increment) -> commands.zIncrBy(HOT_KEYS_KEY, increment, key));
+      return null;
+    });
+    redisTemplate.opsForZSet().removeRange(HOT_KEYS_KEY, 0, -topK - 1L);
+    redisTemplate.expire(HOT_KEYS_KEY, persistedTtl);
+  }
+
+  /**
+   * Halves the local counts and, when no other instance did within the last interval, the shared
+   * set, in place with {@code ZUNIONSTORE}.
+   */
+  private synchronized void decay() {
+    hotKeys.decay();
+    Set<String> tracked = new HashSet<>();
+    hotKeys.hotKeys().forEach(hot -> tracked.add(hot.key()));
+    persisted.keySet().retainAll(tracked);
+    persisted.replaceAll((key, estimate) -> estimate >> 1);
+    // a little shorter than the interval, so the instance that took it last takes it again next run
+    Duration decayLease = refreshInterval.minus(refreshInterval.dividedBy(10));
+    if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(HOT_KEYS_DECAY_KEY, "1", decayLease))) {
+      return;
+    }
+    redisTemplate.opsForZSet().unionAndStore(HOT_KEYS_KEY, List.of(), HOT_KEYS_KEY, Aggregate.SUM, Weights.of(0.5));
+    redisTemplate.opsForZSet().removeRangeByScore(HOT_KEYS_KEY, Double.NEGATIVE_INFINITY, Math.nextDown(1.0));
+    redisTemplate.expire(HOT_KEYS_KEY, persistedTtl);
+  }
+}
@@ -0,0 +1,99 @@
+package com.rus.nawm.apigateway.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Bounded table of writes waiting for their domain-service reply, keyed by correlation id. No
+ * thread waits: every entry is a future completed by the reply listener, or failed with a
+ * {@link TimeoutException} by {@link CompletableFuture#orTimeout}'s shared scheduler.
+ * <p>
+ * Publishes {@code tourist.write.pending}, {@code tourist.write.rejected} and
+ * {@code tourist.write.round.trip}, the latter tagged with the operation and its outcome.
+ */
+@Log4j2
+public class PendingReplies {
+  private final ConcurrentMap<String, CompletableFuture<TouristWriteReply>> pending = new ConcurrentHashMap<>();
+  private final Semaphore slots;
+  private final Duration timeout;
+  private final MeterRegistry meterRegistry;
+  private final Counter rejected;
+  // registered once per operation and outcome rather than looked up in the registry on every reply
+  private final ConcurrentMap<RoundTrip, Timer> roundTripTimers = new ConcurrentHashMap<>();
+
+  public PendingReplies(int maxPending, Duration timeout, MeterRegistry meterRegistry) {
+    this.slots = new Semaphore(maxPending);
+    this.timeout = timeout;
+    this.meterRegistry = meterRegistry;
+    this.rejected = Counter.builder("tourist.write.rejected")
+            .description("Writes refused because too many were already awaiting a reply")
+            .register(meterRegistry);
+    Gauge.builder("tourist.write.pending", pending, ConcurrentMap::size)
+            .description("Writes awaiting a reply from domain-service")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Registers a write about to be published. The returned future completes with the reply, or
+   * fails with a {@link TimeoutException} once the reply timeout has passed.
+   *
+   * @throws RejectedExecutionException if the table is full
+   */
+  public CompletableFuture<TouristWriteReply> register(String correlationId, String operation) {
+    if (!slots.tryAcquire()) {
+      rejected.increment();
+      throw new RejectedExecutionException("Too many writes awaiting a reply");
+    }
+    long start = System.nanoTime();
+    CompletableFuture<TouristWriteReply> reply = new CompletableFuture<>();
+    pending.put(correlationId, reply);
+    reply.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((result, error) -> {
+      pending.remove(correlationId);
+      slots.release();
+      String outcome = error == null ? result.status().name() : error instanceof TimeoutException ? "TIMEOUT" : "ERROR";
+      roundTripTimers.computeIfAbsent(new RoundTrip(operation, outcome), this::roundTripTimer)
+              .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    });
+    return reply;
+  }
+
+  public void complete(String correlationId, TouristWriteReply reply) {
+    CompletableFuture<TouristWriteReply> future = pending.get(correlationId);
+    if (future == null) {
+      // the write timed out already, its outcome reaches the caches through the response queues
+      log.warn("Dropping reply for unknown or expired correlation id: {}", correlationId);
+      return;
+    }
+    future.complete(reply);
+  }
+
+  public void fail(String correlationId, Throwable error) {
+    CompletableFuture<TouristWriteReply> future = pending.get(correlationId);
+    if (future != null) {
+      future.completeExceptionally(error);
+    }
+  }
+
+  private Timer roundTripTimer(RoundTrip roundTrip) {
+    return Timer.builder("tourist.write.round.trip")
+            .description("Time from publishing a write to receiving its reply")
+            .tag("operation", roundTrip.operation())
+            .tag("outcome", roundTrip.outcome())
+            .register(meterRegistry);
+  }
+
+  private record RoundTrip(String operation, String outcome) {
+  }
+}
@@ -0,0 +1,14 @@
+package com.rus.nawm.apigateway.service;
+
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+
+/**
+ * A change to the tourists collection as published by domain-service's change stream tailer.
+ * {@code tourist} is the tourist as stored after the change, {@code null} when it was deleted.
+ */
+public record TouristChange(String id, TouristResponseDTO tourist) {
+
+  public boolean deleted() {
+    return tourist == null;
+  }
+}
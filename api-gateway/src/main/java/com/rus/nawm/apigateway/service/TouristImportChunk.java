@@ -0,0 +1,11 @@
+package com.rus.nawm.apigateway.service;
+
+import com.rus.nawm.apigateway.api.dto.TouristRequestDTO;
+
+import java.util.List;
+
+/**
+ * One chunk of a bulk import job, sent to domain-service as a single message.
+ */
+public record TouristImportChunk(String jobId, List<TouristRequestDTO> tourists) {
+}
@@ -0,0 +1,19 @@
+package com.rus.nawm.apigateway.service;
+
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+
+import java.util.List;
+
+/**
+ * domain-service's answer to one {@link TouristImportChunk}: how its rows were applied, the
+ * conflicting values of rejected duplicates, and the tourists that were inserted.
+ */
+public record TouristImportResult(String jobId,
+                                  int submitted,
+                                  int accepted,
+                                  int duplicateEmails,
+                                  int duplicatePhoneNumbers,
+                                  int failed,
+                                  List<String> conflicts,
+                                  List<TouristResponseDTO> tourists) {
+}
@@ -0,0 +1,349 @@
+package com.rus.nawm.apigateway.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rus.nawm.apigateway.api.dto.TouristImportJobDTO;
+import com.rus.nawm.apigateway.api.dto.TouristRequestDTO;
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import com.rus.nawm.apigateway.cache.TouristRedisStore;
+import com.rus.nawm.apigateway.cache.TwoLevelCacheManager;
+import com.rus.nawm.apigateway.config.RabbitMQConfig;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static com.rus.nawm.apigateway.config.RedisConfig.REDIS_TOURIST_PAGES_CACHE_KEY;
+
+/**
+ * Streams partner files into domain-service. The upload is read line by line and published in
+ * chunks of {@code gateway.import.chunk-size} tourists, so memory use does not depend on the file
+ * size. Job progress lives in a Redis hash, updated by the uploading request and by the chunk
+ * results coming back from domain-service, so any gateway instance can report it.
+ */
+@Service
+@Log4j2
+public class TouristImportService {
+
+  public enum Format {
+    NDJSON, CSV
+  }
+
+  public enum Status {
+    UPLOADING, PROCESSING, COMPLETED, FAILED
+  }
+
+  private static final String JOB_KEY_PREFIX = "touristImport::";
+  private static final String CONFLICTS_KEY_SUFFIX = "::conflicts";
+  private static final int MAX_CONFLICTS = 100;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final RabbitTemplate rabbitTemplate;
+  private final StringRedisTemplate redisTemplate;
+  private final TouristRedisStore touristRedisStore;
+  private final TwoLevelCacheManager cacheManager;
+  private final int chunkSize;
+  private final Duration jobTtl;
+
+  @Autowired
+  public TouristImportService(RabbitTemplate rabbitTemplate, StringRedisTemplate redisTemplate,
+                              TouristRedisStore touristRedisStore, TwoLevelCacheManager cacheManager,
+                              @Value("${gateway.import.chunk-size:1000}") int chunkSize,
+                              @Value("${gateway.import.job-ttl:1d}") Duration jobTtl) {
+    this.rabbitTemplate = rabbitTemplate;
+    this.redisTemplate = redisTemplate;
+    this.touristRedisStore = touristRedisStore;
+    this.cacheManager = cacheManager;
+    this.chunkSize = chunkSize;
+    this.jobTtl = jobTtl;
+  }
+
+  /**
+   * Reads the whole upload and publishes it in chunks. Returns once the last chunk has been
+   * published; domain-service may still be applying them.
+   *
+   * @throws IllegalArgumentException if a CSV upload has no header naming email and phoneNumber
+   */
+  public TouristImportJobDTO importTourists(InputStream input, Format format) throws IOException {
+    String jobId = UUID.randomUUID().toString();
+    String key = jobKey(jobId);
+    hash().putAll(key, Map.of(
+            "status", Status.UPLOADING.name(),
+            "format", format.name(),
+            "startedAt", String.valueOf(System.currentTimeMillis())));
+    redisTemplate.expire(key, jobTtl);
+    log.info("Started {} import job {}", format, jobId);
+
+    long rowsRead = 0;
+    long invalidRows = 0;
+    long submitted = 0;
+    List<TouristRequestDTO> chunk = new ArrayList<>(chunkSize);
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+      Function<String, TouristRequestDTO> parser = format == Format.CSV ? csvParser(reader.readLine()) : this::parseJson;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isBlank()) {
+          continue;
+        }
+        rowsRead++;
+        TouristRequestDTO tourist = parser.apply(line);
+        if (tourist == null) {
+          invalidRows++;
+          continue;
+        }
+        chunk.add(tourist);
+        if (chunk.size() == chunkSize) {
+          submitted += publish(jobId, chunk);
+          chunk = new ArrayList<>(chunkSize);
+          recordUpload(key, rowsRead, invalidRows, submitted);
+        }
+      }
+      if (!chunk.isEmpty()) {
+        submitted += publish(jobId, chunk);
+      }
+    } catch (IOException | RuntimeException e) {
+      log.error("Import job {} failed after {} rows", jobId, rowsRead, e);
+      recordUpload(key, rowsRead, invalidRows, submitted);
+      hash().put(key, "status", Status.FAILED.name());
+      throw e;
+    }
+    recordUpload(key, rowsRead, invalidRows, submitted);
+    hash().put(key, "uploadedAt", String.valueOf(System.currentTimeMillis()));
+    hash().put(key, "status", Status.PROCESSING.name());
+    completeIfDone(key);
+    log.info("Import job {} read {} rows, submitted {}, {} invalid", jobId, rowsRead, submitted, invalidRows);
+    return getJob(jobId).orElseThrow();
+  }
+
+  public Optional<TouristImportJobDTO> getJob(String jobId) {
+    Map<String, String> fields = hash().entries(jobKey(jobId));
+    if (fields.isEmpty()) {
+      return Optional.empty();
+    }
+    long invalidRows = count(fields, "invalidRows");
+    long accepted = count(fields, "accepted");
+    long duplicateEmails = count(fields, "duplicateEmails");
+    long duplicatePhoneNumbers = count(fields, "duplicatePhoneNumbers");
+    long failed = count(fields, "failed");
+    long processed = accepted + duplicateEmails + duplicatePhoneNumbers + failed;
+    Instant startedAt = Instant.ofEpochMilli(count(fields, "startedAt"));
+    Instant finishedAt = fields.containsKey("finishedAt") ? Instant.ofEpochMilli(count(fields, "finishedAt")) : null;
+    double seconds = Math.max(Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now()).toMillis(), 1) / 1000.0;
+    return Optional.of(TouristImportJobDTO.builder()
+            .jobId(jobId)
+            .status(finishedAt != null ? Status.COMPLETED.name() : fields.get("status"))
+            .format(fields.get("format"))
+            .rowsRead(count(fields, "rowsRead"))
+            .submitted(count(fields, "submitted"))
+            .accepted(accepted)
+            .rejected(invalidRows + duplicateEmails + duplicatePhoneNumbers + failed)
+            .invalidRows(invalidRows)
+            .duplicateEmails(duplicateEmails)
+            .duplicatePhoneNumbers(duplicatePhoneNumbers)
+            .failed(failed)
+            .rowsPerSecond(Math.round((processed + invalidRows) / seconds * 10) / 10.0)
+            .startedAt(startedAt)
+            .finishedAt(finishedAt)
+            .conflicts(redisTemplate.opsForList().range(jobKey(jobId) + CONFLICTS_KEY_SUFFIX, 0, -1))
+            .build());
+  }
+
+  @RabbitListener(queues = {RabbitMQConfig.touristImportResponseQueueName})
+  private void onImportResultMessage(byte[] message) {
+    try {
+      TouristImportResult result = objectMapper.readValue(message, TouristImportResult.class);
+      log.info("Received import result for job {}: {} of {} accepted", result.jobId(), result.accepted(), result.submitted());
+      onImportResult(result);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void onImportResult(TouristImportResult result) {
+    String key = jobKey(result.jobId());
+    hash().increment(key, "accepted", result.accepted());
+    hash().increment(key, "duplicateEmails", result.duplicateEmails());
+    hash().increment(key, "duplicatePhoneNumbers", result.duplicatePhoneNumbers());
+    hash().increment(key, "failed", result.failed());
+    redisTemplate.expire(key, jobTtl);
+    if (!result.conflicts().isEmpty()) {
+      String conflictsKey = key + CONFLICTS_KEY_SUFFIX;
+      redisTemplate.opsForList().rightPushAll(conflictsKey, result.conflicts());
+      redisTemplate.opsForList().trim(conflictsKey, 0, MAX_CONFLICTS - 1);
+      redisTemplate.expire(conflictsKey, jobTtl);
+    }
+    completeIfDone(key);
+    evictListings(result.tourists());
+  }
+
+  /**
+   * New tourists are not in any cached entry of their own, only in the listings that would now
+   * include them.
+   */
+  private void evictListings(List<TouristResponseDTO> tourists) {
+    if (tourists.isEmpty()) {
+      return;
+    }
+    Cache pages = cacheManager.getCache(REDIS_TOURIST_PAGES_CACHE_KEY);
+    if (pages != null) {
+      pages.clear();
+      touristRedisStore.renewPageTags();
+    }
+    touristRedisStore.evictAll();
+    Set<String> nameAndSurnameKeys = new LinkedHashSet<>();
+    tourists.forEach(tourist -> nameAndSurnameKeys.add(TouristRedisStore.nameAndSurnameKey(tourist.getName(), tourist.getSurname())));
+    nameAndSurnameKeys.forEach(touristRedisStore::evictNameAndSurname);
+  }
+
+  /**
+   * Marks the job finished once the upload is over and every submitted row has a result. Both
+   * the uploading request and the result listener call this after their own writes, so whichever
+   * comes last sees the other's and sets the timestamp.
+   */
+  private void completeIfDone(String key) {
+    Map<String, String> fields = hash().entries(key);
+    if (!fields.containsKey("uploadedAt")) {
+      return;
+    }
+    long processed = count(fields, "accepted") + count(fields, "duplicateEmails")
+            + count(fields, "duplicatePhoneNumbers") + count(fields, "failed");
+    if (processed >= count(fields, "submitted")
+            && Boolean.TRUE.equals(hash().putIfAbsent(key, "finishedAt", String.valueOf(System.currentTimeMillis())))) {
+      log.info("Import job {} completed", key.substring(JOB_KEY_PREFIX.length()));
+    }
+  }
+
+  private long publish(String jobId, List<TouristRequestDTO> chunk) throws IOException {
+    byte[] message = objectMapper.writeValueAsBytes(new TouristImportChunk(jobId, chunk));
+    rabbitTemplate.convertAndSend(RabbitMQConfig.directExchangeName, RabbitMQConfig.touristImportRequestQueueRoutingKey, message);
+    return chunk.size();
+  }
+
+  private void recordUpload(String key, long rowsRead, long invalidRows, long submitted) {
+    hash().putAll(key, Map.of(
+            "rowsRead", String.valueOf(rowsRead),
+            "invalidRows", String.valueOf(invalidRows),
+            "submitted", String.valueOf(submitted)));
+  }
+
+  private TouristRequestDTO parseJson(String line) {
+    try {
+      return validOrNull(objectMapper.readValue(line, TouristRequestDTO.class));
+    } catch (IOException e) {
+      log.debug("Skipping malformed NDJSON row: {}", line, e);
+      return null;
+    }
+  }
+
+  /**
+   * Maps CSV rows by the header's column names, so columns may come in any order and unknown
+   * ones are ignored.
+   */
+  private Function<String, TouristRequestDTO> csvParser(String header) {
+    if (header == null) {
+      throw new IllegalArgumentException("CSV upload has no header row");
+    }
+    Map<String, Integer> columns = new HashMap<>();
+    List<String> names = splitCsv(header);
+    for (int i = 0; i < names.size(); i++) {
+      columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+    }
+    if (!columns.containsKey("email") || !columns.containsKey("phonenumber")) {
+      throw new IllegalArgumentException("CSV header must name the email and phoneNumber columns");
+    }
+    return line -> {
+      List<String> values = splitCsv(line);
+      Function<String, String> column = name -> {
+        Integer index = columns.get(name);
+        return index == null || index >= values.size() ? null : values.get(index).trim();
+      };
+      return validOrNull(TouristRequestDTO.builder()
+              .name(column.apply("name"))
+              .surname(column.apply("surname"))
+              .email(column.apply("email"))
+              .phoneNumber(column.apply("phonenumber"))
+              .country(column.apply("country"))
+              .build());
+    };
+  }
+
+  /**
+   * Splits one RFC 4180 line; fields may be quoted, with {@code ""} standing for a quote.
+   * Quoted line breaks are not supported.
+   */
+  private static List<String> splitCsv(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          field.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  // email and phone number are the tourist's unique keys, a row without them cannot be imported
+  private static TouristRequestDTO validOrNull(TouristRequestDTO tourist) {
+    if (tourist.getEmail() == null || tourist.getEmail().isBlank()
+            || tourist.getPhoneNumber() == null || tourist.getPhoneNumber().isBlank()) {
+      return null;
+    }
+    // an import only ever inserts, so a row never names the tourist it would replace
+    tourist.setId(null);
+    tourist.setVersion(null);
+    return tourist;
+  }
+
+  private static long count(Map<String, String> fields, String field) {
+    String value = fields.get(field);
+    return value == null ? 0 : Long.parseLong(value);
+  }
+
+  private HashOperations<String, String, String> hash() {
+    return redisTemplate.opsForHash();
+  }
+
+  private static String jobKey(String jobId) {
+    return JOB_KEY_PREFIX + jobId;
+  }
+}
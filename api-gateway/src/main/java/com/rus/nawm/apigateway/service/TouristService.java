@@ -1,26 +1,69 @@
 package com.rus.nawm.apigateway.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rus.nawm.apigateway.TouristServiceGrpc;
 import com.rus.nawm.apigateway.TouristServiceOuterClass;
+import com.rus.nawm.apigateway.api.dto.TouristPageDTO;
 import com.rus.nawm.apigateway.api.dto.TouristRequestDTO;
 import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import com.rus.nawm.apigateway.api.dto.TouristSuggestionDTO;
+import com.rus.nawm.apigateway.cache.HotKeyTracker;
+import com.rus.nawm.apigateway.cache.SingleFlight;
+import com.rus.nawm.apigateway.cache.TouristRedisStore;
+import com.rus.nawm.apigateway.cache.TwoLevelCache;
+import com.rus.nawm.apigateway.cache.TwoLevelCacheManager;
 import com.rus.nawm.apigateway.config.RabbitMQConfig;
+import com.rus.nawm.apigateway.mapper.TouristMapper;
+import com.rus.nawm.apigateway.mapper.TouristMessageCodec;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Context;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.log4j.Log4j2;
 import net.devh.boot.grpc.client.inject.GrpcClient;
-import org.modelmapper.ModelMapper;
 import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
-import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.rus.nawm.apigateway.config.RedisConfig.*;
 
@@ -28,125 +71,733 @@ import static com.rus.nawm.apigateway.config.RedisConfig.*;
 @Log4j2
 public class TouristService {
 
-  private final ModelMapper modelMapper = new ModelMapper();
-  private final CacheManager cacheManager;
-  private final ObjectMapper objectMapper = new ObjectMapper();
+  public static final int DEFAULT_PAGE_LIMIT = 50;
+  public static final int MAX_PAGE_LIMIT = 1000;
+  public static final int DEFAULT_SEARCH_LIMIT = 10;
+  public static final int MAX_SEARCH_LIMIT = 100;
+  public static final int MAX_BATCH_SIZE = 1000;
+  // loaded lists are put in the order the store's sorted id sets return them in once cached
+  private static final Comparator<TouristResponseDTO> BY_ID = Comparator.comparing(TouristResponseDTO::getId);
+
+  /**
+   * How the read endpoints run. {@code BLOCKING} does all I/O on the servlet thread;
+   * {@code ASYNC} returns the servlet thread to the pool and completes the request from
+   * Redis and gRPC callbacks.
+   */
+  public enum ExecutionMode {
+    BLOCKING, ASYNC
+  }
+
+  /**
+   * How writes are answered. {@code FIRE_AND_FORGET} acknowledges as soon as the request is
+   * published; {@code AWAIT_REPLY} sends a correlation id and reply-to queue along and completes
+   * the request with domain-service's reply, without holding a thread while it waits.
+   */
+  public enum WriteMode {
+    FIRE_AND_FORGET, AWAIT_REPLY
+  }
+
+  private final TwoLevelCacheManager cacheManager;
+  private final TouristRedisStore touristRedisStore;
+  private final HotKeyTracker hotKeys;
+  private final TouristMessageCodec messageCodec = new TouristMessageCodec();
 
   @GrpcClient("touristService")
   private TouristServiceGrpc.TouristServiceBlockingStub touristServiceGrpc;
 
+  @GrpcClient("touristService")
+  private TouristServiceGrpc.TouristServiceFutureStub touristServiceFutureStub;
+
+  private final ExecutionMode executionMode;
+  private final Duration upstreamTimeout;
+  // async loads store their result off the Redis and gRPC callback threads, best effort
+  private final ThreadPoolExecutor cacheWriteBackExecutor;
+
   private final RabbitTemplate rabbitTemplate;
+  private final TouristMessageCodec.Format payloadFormat;
+  private final WriteMode writeMode;
+  private final String writeReplyQueueName;
+  private final PendingReplies pendingReplies;
+
+  // clears of the cached pages asked for by change events, coalesced per instance
+  private final ScheduledExecutorService pagesClearScheduler;
+  private final AtomicBoolean pagesClearPending = new AtomicBoolean();
+  private final Duration pagesClearDelay;
+
+  private record CacheMeters(Timer lookup, Counter hits, Counter misses) {
+  }
+
+  // registered once per cache and operation rather than looked up in the registry on every call
+  private final Map<String, CacheMeters> cacheMeters;
+  private final Map<String, Timer> propagationTimers;
+
+  private final SingleFlight<List<TouristResponseDTO>> allTouristsFlight;
+  private final SingleFlight<TouristPageDTO> pagesFlight;
+  private final SingleFlight<TouristPageDTO> countryPagesFlight;
+  private final SingleFlight<TouristResponseDTO> byIdFlight;
+  private final SingleFlight<TouristResponseDTO> byEmailFlight;
+  private final SingleFlight<TouristResponseDTO> byPhoneFlight;
+  private final SingleFlight<List<TouristResponseDTO>> byNameAndSurnameFlight;
 
   @Autowired
-  public TouristService(CacheManager cacheManager1, RabbitTemplate rabbitTemplate) {
-    this.cacheManager = cacheManager1;
+  public TouristService(TwoLevelCacheManager cacheManager, TouristRedisStore touristRedisStore, HotKeyTracker hotKeys,
+                        RabbitTemplate rabbitTemplate, MeterRegistry meterRegistry,
+                        @Value("${gateway.messaging.payload-format:json}") TouristMessageCodec.Format payloadFormat,
+                        @Value("${gateway.execution-mode:blocking}") ExecutionMode executionMode,
+                        @Value("${gateway.async.upstream-timeout:10s}") Duration upstreamTimeout,
+                        @Value("${gateway.async.write-back-threads:2}") int writeBackThreads,
+                        @Value("${gateway.async.write-back-queue-capacity:10000}") int writeBackQueueCapacity,
+                        @Qualifier("touristWriteReplyQueue") Queue touristWriteReplyQueue,
+                        @Value("${gateway.write-mode:fire-and-forget}") WriteMode writeMode,
+                        @Value("${gateway.write.reply-timeout:5s}") Duration replyTimeout,
+                        @Value("${gateway.write.max-pending:10000}") int maxPendingWrites,
+                        @Value("${gateway.changes.pages-clear-delay:200ms}") Duration pagesClearDelay) {
+    this.cacheManager = cacheManager;
+    this.touristRedisStore = touristRedisStore;
+    this.hotKeys = hotKeys;
     this.rabbitTemplate = rabbitTemplate;
+    this.payloadFormat = payloadFormat;
+    this.executionMode = executionMode;
+    this.upstreamTimeout = upstreamTimeout;
+    this.cacheWriteBackExecutor = new ThreadPoolExecutor(writeBackThreads, writeBackThreads, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(writeBackQueueCapacity),
+            new CustomizableThreadFactory("cache-write-back-"),
+            new ThreadPoolExecutor.DiscardPolicy());
+    log.info("Gateway read path runs in {} mode", executionMode);
+    this.writeMode = writeMode;
+    this.writeReplyQueueName = touristWriteReplyQueue.getName();
+    this.pendingReplies = new PendingReplies(maxPendingWrites, replyTimeout, meterRegistry);
+    log.info("Gateway writes run in {} mode with {} payloads", writeMode, payloadFormat);
+    this.pagesClearScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("pages-clear-"));
+    this.pagesClearDelay = pagesClearDelay;
+    this.cacheMeters = Stream.of(REDIS_ALL_TOURISTS_CACHE_KEY, REDIS_TOURIST_PAGES_CACHE_KEY, REDIS_TOURIST_BY_ID_CACHE_KEY,
+                    REDIS_TOURIST_BY_EMAIL_CACHE_KEY, REDIS_TOURIST_BY_PHONE_CACHE_KEY, REDIS_TOURIST_BY_NAME_AND_SURNAME_CACHE_KEY)
+            .collect(Collectors.toUnmodifiableMap(Function.identity(), cacheName -> cacheMeters(cacheName, meterRegistry)));
+    this.propagationTimers = Stream.of("POST", "PUT", "DELETE")
+            .collect(Collectors.toUnmodifiableMap(Function.identity(), operation -> Timer.builder("tourist.write.propagation")
+                    .description("Time from publishing a write to applying its result to the caches")
+                    .tag("operation", operation)
+                    .register(meterRegistry)));
+    this.allTouristsFlight = new SingleFlight<>("getAllTourists", meterRegistry);
+    this.pagesFlight = new SingleFlight<>("listTourists", meterRegistry);
+    this.countryPagesFlight = new SingleFlight<>("listTouristsByCountry", meterRegistry);
+    this.byIdFlight = new SingleFlight<>("getTouristById", meterRegistry);
+    this.byEmailFlight = new SingleFlight<>("getTouristByEmail", meterRegistry);
+    this.byPhoneFlight = new SingleFlight<>("getTouristByPhoneNumber", meterRegistry);
+    this.byNameAndSurnameFlight = new SingleFlight<>("getTouristsByNameAndSurname", meterRegistry);
   }
 
   public List<TouristResponseDTO> getAllTourists() {
-    Cache cache = cacheManager.getCache(REDIS_ALL_TOURISTS_CACHE_KEY);
-    List<TouristResponseDTO> tourists = cache != null ? cache.get("allTourists", List.class) : null;
-
-    if (tourists == null) {
+    return getCachedOrLoad(REDIS_ALL_TOURISTS_CACHE_KEY, REDIS_ALL_TOURISTS_CACHE_KEY, List.class, allTouristsFlight, () -> {
       log.info("Fetching all tourists from gRPC service");
       var response = touristServiceGrpc.getAllTourists(TouristServiceOuterClass.Empty.newBuilder().build());
-      tourists = response.getTouristsList()
+      return response.getTouristsList()
               .stream()
-              .map(tourist -> modelMapper.map(tourist, TouristResponseDTO.class))
+              .map(TouristMapper::toResponseDTO)
+              .sorted(BY_ID)
               .collect(Collectors.toList());
+    });
+  }
 
-      if (cache != null) {
-        cache.put("allTourists", tourists);
-      }
-    }
 
-    return tourists;
+  /**
+   * Returns one keyset page of tourists. Every page is cached as its own entry keyed by limit and
+   * continuation token, so reading a page never touches the rest of the collection.
+   */
+  public TouristPageDTO listTourists(int limit, String pageToken) {
+    int pageLimit = clampPageLimit(limit);
+    String token = pageToken == null ? "" : pageToken;
+    String cacheKey = pageLimit + ":" + token;
+    return getCachedOrLoad(REDIS_TOURIST_PAGES_CACHE_KEY, cacheKey, TouristPageDTO.class, pagesFlight, () -> {
+      log.info("Fetching tourist page from gRPC service with limit: {} and token: {}", pageLimit, token);
+      var request = TouristServiceOuterClass.ListTouristsRequest.newBuilder()
+              .setLimit(pageLimit)
+              .setPageToken(token)
+              .build();
+      var response = touristServiceGrpc.listTourists(request);
+      return TouristPageDTO.builder()
+              .tourists(response.getTouristsList()
+                      .stream()
+                      .map(TouristMapper::toResponseDTO)
+                      .collect(Collectors.toList()))
+              .nextPageToken(response.getNextPageToken().isEmpty() ? null : response.getNextPageToken())
+              .build();
+    });
   }
 
-  public TouristResponseDTO getTouristById(String id) {
-    Cache cache = cacheManager.getCache(REDIS_TOURIST_BY_ID_CACHE_KEY);
-    TouristResponseDTO tourist = cache != null ? cache.get(id, TouristResponseDTO.class) : null;
+  /**
+   * Returns one keyset page of the tourists of a country, cached next to the unfiltered pages and
+   * evicted with them.
+   */
+  public TouristPageDTO listTouristsByCountry(String country, int limit, String pageToken) {
+    int pageLimit = clampPageLimit(limit);
+    String token = pageToken == null ? "" : pageToken;
+    String cacheKey = countryPageKey(country, pageLimit, token);
+    return getCachedOrLoad(REDIS_TOURIST_PAGES_CACHE_KEY, cacheKey, TouristPageDTO.class, countryPagesFlight, () -> {
+      log.info("Fetching tourist page of country {} from gRPC service with limit: {} and token: {}", country, pageLimit, token);
+      return toPageDTO(touristServiceGrpc.listTouristsByCountry(countryPageRequest(country, pageLimit, token)));
+    });
+  }
 
-    if (tourist == null) {
-      log.info("Fetching tourist by ID from gRPC service: {}", id);
-      var request = TouristServiceOuterClass.GetTouristByIdRequest.newBuilder().setId(id).build();
-      var response = touristServiceGrpc.getTouristById(request);
-      tourist = modelMapper.map(response, TouristResponseDTO.class);
+  /**
+   * Tourist counts per country. Not cached: the domain service keeps the counters up to date and
+   * reads them with one document per country.
+   */
+  public Map<String, Long> getCountryStats() {
+    log.info("Fetching country stats from gRPC service");
+    return toCountryStats(touristServiceGrpc.getCountryStats(TouristServiceOuterClass.Empty.newBuilder().build()));
+  }
 
-      if (cache != null) {
-        cache.put(id, tourist);
+  /**
+   * Typeahead search on name, surname and email prefixes. Not cached: the domain service answers
+   * from an in-memory index, and typeahead queries rarely repeat exactly.
+   */
+  public List<TouristSuggestionDTO> searchTourists(String query, int limit) {
+    log.info("Searching tourists from gRPC service by prefix: {} with limit: {}", query, limit);
+    return toSuggestions(touristServiceGrpc.searchTourists(searchRequest(query, limit)));
+  }
+
+  /**
+   * Pulls the whole collection from the domain service as a server stream and hands it to
+   * {@code chunkHandler} chunk by chunk. Nothing is cached: the gRPC call only requests the next
+   * chunk once the previous one has been handled, so memory stays bounded by a single chunk.
+   */
+  public void streamAllTourists(int chunkSize, TouristChunkHandler chunkHandler) throws IOException {
+    log.info("Streaming all tourists from gRPC service");
+    var request = TouristServiceOuterClass.StreamTouristsRequest.newBuilder().setChunkSize(chunkSize).build();
+    Context.CancellableContext context = Context.current().withCancellation();
+    Context previous = context.attach();
+    try {
+      Iterator<TouristServiceOuterClass.GetTouristsResponse> chunks = touristServiceGrpc.streamAllTourists(request);
+      while (chunks.hasNext()) {
+        List<TouristResponseDTO> tourists = chunks.next().getTouristsList()
+                .stream()
+                .map(TouristMapper::toResponseDTO)
+                .collect(Collectors.toList());
+        chunkHandler.accept(tourists);
       }
+    } catch (IOException | RuntimeException e) {
+      log.warn("Streaming of all tourists aborted: {}", e.getMessage());
+      context.cancel(e);
+      throw e;
+    } finally {
+      context.detach(previous);
+      context.cancel(null);
     }
+  }
 
-    return tourist;
+  public TouristResponseDTO getTouristById(String id) {
+    return recordRead(getCachedOrLoad(REDIS_TOURIST_BY_ID_CACHE_KEY, id, TouristResponseDTO.class, byIdFlight, () -> {
+      log.info("Fetching tourist by ID from gRPC service: {}", id);
+      var request = TouristServiceOuterClass.GetTouristByIdRequest.newBuilder().setId(id).build();
+      return TouristMapper.toResponseDTO(touristServiceGrpc.getTouristById(request));
+    }));
   }
 
   public TouristResponseDTO getTouristByEmail(String email) {
-    Cache cache = cacheManager.getCache(REDIS_TOURIST_BY_EMAIL_CACHE_KEY);
-    TouristResponseDTO tourist = cache != null ? cache.get(email, TouristResponseDTO.class) : null;
-
-    if (tourist == null) {
+    return recordRead(getCachedOrLoad(REDIS_TOURIST_BY_EMAIL_CACHE_KEY, email, TouristResponseDTO.class, byEmailFlight, () -> {
       log.info("Fetching tourist by email from gRPC service: {}", email);
       var request = TouristServiceOuterClass.GetTouristsByEmailRequest.newBuilder().setEmail(email).build();
-      var response = touristServiceGrpc.getTouristByEmail(request);
-      tourist = modelMapper.map(response, TouristResponseDTO.class);
+      return TouristMapper.toResponseDTO(touristServiceGrpc.getTouristByEmail(request));
+    }));
+  }
 
-      if (cache != null) {
-        cache.put(email, tourist);
-      }
+  public TouristResponseDTO getTouristByPhoneNumber(String phoneNumber) {
+    return recordRead(getCachedOrLoad(REDIS_TOURIST_BY_PHONE_CACHE_KEY, phoneNumber, TouristResponseDTO.class, byPhoneFlight, () -> {
+      log.info("Fetching tourist by phone number from gRPC service: {}", phoneNumber);
+      var request = TouristServiceOuterClass.GetTouristsByPhoneRequest.newBuilder().setPhoneNumber(phoneNumber).build();
+      return TouristMapper.toResponseDTO(touristServiceGrpc.getTouristByPhoneNumber(request));
+    }));
+  }
+
+  public List<TouristResponseDTO> getTouristsByNameAndSurname(String name, String surname) {
+    String cacheKey = TouristRedisStore.nameAndSurnameKey(name, surname);
+    return getCachedOrLoad(REDIS_TOURIST_BY_NAME_AND_SURNAME_CACHE_KEY, cacheKey, List.class, byNameAndSurnameFlight, () -> {
+      log.info("Fetching tourists by name and surname from gRPC service: {} {}", name, surname);
+      var request = TouristServiceOuterClass.GetTouristsByNameAndSurnameRequest.newBuilder()
+              .setName(name)
+              .setSurname(surname)
+              .build();
+      var response = touristServiceGrpc.getTouristsByNameAndSurname(request);
+      return response.getTouristsList()
+              .stream()
+              .map(TouristMapper::toResponseDTO)
+              .sorted(BY_ID)
+              .collect(Collectors.toList());
+    });
+  }
+
+  public CompletableFuture<List<TouristResponseDTO>> getAllTouristsAsync() {
+    if (executionMode == ExecutionMode.BLOCKING) {
+      return CompletableFuture.completedFuture(getAllTourists());
     }
+    return getCachedOrLoadAsync(REDIS_ALL_TOURISTS_CACHE_KEY, REDIS_ALL_TOURISTS_CACHE_KEY, List.class, allTouristsFlight, () -> {
+      log.info("Fetching all tourists from gRPC service");
+      var request = TouristServiceOuterClass.Empty.newBuilder().build();
+      return toCompletableFuture(futureStub().getAllTourists(request))
+              .thenApply(response -> response.getTouristsList()
+                      .stream()
+                      .map(TouristMapper::toResponseDTO)
+                      .sorted(BY_ID)
+                      .collect(Collectors.toList()));
+    });
+  }
 
-    return tourist;
+  public CompletableFuture<TouristPageDTO> listTouristsAsync(int limit, String pageToken) {
+    if (executionMode == ExecutionMode.BLOCKING) {
+      return CompletableFuture.completedFuture(listTourists(limit, pageToken));
+    }
+    int pageLimit = clampPageLimit(limit);
+    String token = pageToken == null ? "" : pageToken;
+    String cacheKey = pageLimit + ":" + token;
+    return getCachedOrLoadAsync(REDIS_TOURIST_PAGES_CACHE_KEY, cacheKey, TouristPageDTO.class, pagesFlight, () -> {
+      log.info("Fetching tourist page from gRPC service with limit: {} and token: {}", pageLimit, token);
+      var request = TouristServiceOuterClass.ListTouristsRequest.newBuilder()
+              .setLimit(pageLimit)
+              .setPageToken(token)
+              .build();
+      return toCompletableFuture(futureStub().listTourists(request))
+              .thenApply(response -> TouristPageDTO.builder()
+                      .tourists(response.getTouristsList()
+                              .stream()
+                              .map(TouristMapper::toResponseDTO)
+                              .collect(Collectors.toList()))
+                      .nextPageToken(response.getNextPageToken().isEmpty() ? null : response.getNextPageToken())
+                      .build());
+    });
   }
 
-  public TouristResponseDTO getTouristByPhoneNumber(String phoneNumber) {
-    Cache cache = cacheManager.getCache(REDIS_TOURIST_BY_PHONE_CACHE_KEY);
-    TouristResponseDTO tourist = cache != null ? cache.get(phoneNumber, TouristResponseDTO.class) : null;
+  public CompletableFuture<TouristPageDTO> listTouristsByCountryAsync(String country, int limit, String pageToken) {
+    if (executionMode == ExecutionMode.BLOCKING) {
+      return CompletableFuture.completedFuture(listTouristsByCountry(country, limit, pageToken));
+    }
+    int pageLimit = clampPageLimit(limit);
+    String token = pageToken == null ? "" : pageToken;
+    String cacheKey = countryPageKey(country, pageLimit, token);
+    return getCachedOrLoadAsync(REDIS_TOURIST_PAGES_CACHE_KEY, cacheKey, TouristPageDTO.class, countryPagesFlight, () -> {
+      log.info("Fetching tourist page of country {} from gRPC service with limit: {} and token: {}", country, pageLimit, token);
+      return toCompletableFuture(futureStub().listTouristsByCountry(countryPageRequest(country, pageLimit, token)))
+              .thenApply(TouristService::toPageDTO);
+    });
+  }
 
-    if (tourist == null) {
-      log.info("Fetching tourist by phone number from gRPC service: {}", phoneNumber);
-      var request = TouristServiceOuterClass.GetTouristsByPhoneRequest.newBuilder().setPhoneNumber(phoneNumber).build();
-      var response = touristServiceGrpc.getTouristByPhoneNumber(request);
-      tourist = modelMapper.map(response, TouristResponseDTO.class);
+  public CompletableFuture<Map<String, Long>> getCountryStatsAsync() {
+    if (executionMode == ExecutionMode.BLOCKING) {
+      return CompletableFuture.completedFuture(getCountryStats());
+    }
+    log.info("Fetching country stats from gRPC service");
+    return toCompletableFuture(futureStub().getCountryStats(TouristServiceOuterClass.Empty.newBuilder().build()))
+            .thenApply(TouristService::toCountryStats);
+  }
 
-      if (cache != null) {
-        cache.put(phoneNumber, tourist);
-      }
+  public CompletableFuture<List<TouristSuggestionDTO>> searchTouristsAsync(String query, int limit) {
+    if (executionMode == ExecutionMode.BLOCKING) {
+      return CompletableFuture.completedFuture(searchTourists(query, limit));
+    }
+    log.info("Searching tourists from gRPC service by prefix: {} with limit: {}", query, limit);
+    return toCompletableFuture(futureStub().searchTourists(searchRequest(query, limit)))
+            .thenApply(TouristService::toSuggestions);
+  }
+
+  public CompletableFuture<TouristResponseDTO> getTouristByIdAsync(String id) {
+    if (executionMode == ExecutionMode.BLOCKING) {
+      return CompletableFuture.completedFuture(getTouristById(id));
     }
+    return getCachedOrLoadAsync(REDIS_TOURIST_BY_ID_CACHE_KEY, id, TouristResponseDTO.class, byIdFlight, () -> {
+      log.info("Fetching tourist by ID from gRPC service: {}", id);
+      var request = TouristServiceOuterClass.GetTouristByIdRequest.newBuilder().setId(id).build();
+      return toCompletableFuture(futureStub().getTouristById(request)).thenApply(TouristMapper::toResponseDTO);
+    }).thenApply(this::recordRead);
+  }
 
-    return tourist;
+  public CompletableFuture<TouristResponseDTO> getTouristByEmailAsync(String email) {
+    if (executionMode == ExecutionMode.BLOCKING) {
+      return CompletableFuture.completedFuture(getTouristByEmail(email));
+    }
+    return getCachedOrLoadAsync(REDIS_TOURIST_BY_EMAIL_CACHE_KEY, email, TouristResponseDTO.class, byEmailFlight, () -> {
+      log.info("Fetching tourist by email from gRPC service: {}", email);
+      var request = TouristServiceOuterClass.GetTouristsByEmailRequest.newBuilder().setEmail(email).build();
+      return toCompletableFuture(futureStub().getTouristByEmail(request)).thenApply(TouristMapper::toResponseDTO);
+    }).thenApply(this::recordRead);
   }
 
-  public List<TouristResponseDTO> getTouristsByNameAndSurname(String name, String surname) {
-    String cacheKey = name + "-" + surname;
-    Cache cache = cacheManager.getCache(REDIS_TOURIST_BY_NAME_AND_SURNAME_CACHE_KEY);
-    List<TouristResponseDTO> tourists = cache != null ? cache.get(cacheKey, List.class) : null;
+  public CompletableFuture<TouristResponseDTO> getTouristByPhoneNumberAsync(String phoneNumber) {
+    if (executionMode == ExecutionMode.BLOCKING) {
+      return CompletableFuture.completedFuture(getTouristByPhoneNumber(phoneNumber));
+    }
+    return getCachedOrLoadAsync(REDIS_TOURIST_BY_PHONE_CACHE_KEY, phoneNumber, TouristResponseDTO.class, byPhoneFlight, () -> {
+      log.info("Fetching tourist by phone number from gRPC service: {}", phoneNumber);
+      var request = TouristServiceOuterClass.GetTouristsByPhoneRequest.newBuilder().setPhoneNumber(phoneNumber).build();
+      return toCompletableFuture(futureStub().getTouristByPhoneNumber(request)).thenApply(TouristMapper::toResponseDTO);
+    }).thenApply(this::recordRead);
+  }
 
-    if (tourists == null) {
+  public CompletableFuture<List<TouristResponseDTO>> getTouristsByNameAndSurnameAsync(String name, String surname) {
+    if (executionMode == ExecutionMode.BLOCKING) {
+      return CompletableFuture.completedFuture(getTouristsByNameAndSurname(name, surname));
+    }
+    String cacheKey = TouristRedisStore.nameAndSurnameKey(name, surname);
+    return getCachedOrLoadAsync(REDIS_TOURIST_BY_NAME_AND_SURNAME_CACHE_KEY, cacheKey, List.class, byNameAndSurnameFlight, () -> {
       log.info("Fetching tourists by name and surname from gRPC service: {} {}", name, surname);
       var request = TouristServiceOuterClass.GetTouristsByNameAndSurnameRequest.newBuilder()
               .setName(name)
               .setSurname(surname)
               .build();
-      var response = touristServiceGrpc.getTouristsByNameAndSurname(request);
-      tourists = response.getTouristsList()
+      return toCompletableFuture(futureStub().getTouristsByNameAndSurname(request))
+              .thenApply(response -> response.getTouristsList()
+                      .stream()
+                      .map(TouristMapper::toResponseDTO)
+                      .sorted(BY_ID)
+                      .collect(Collectors.toList()));
+    });
+  }
+
+  /**
+   * ETag stored with the cached list of all tourists, {@code null} when there is none. Read it
+   * before the list, see {@link TouristRedisStore#getAllTagAsync}.
+   */
+  public CompletableFuture<String> getAllTouristsTagAsync() {
+    return storedTag(touristRedisStore.getAllTagAsync());
+  }
+
+  public CompletableFuture<String> getTouristsByNameAndSurnameTagAsync(String name, String surname) {
+    return storedTag(touristRedisStore.getNameAndSurnameTagAsync(TouristRedisStore.nameAndSurnameKey(name, surname)));
+  }
+
+  public CompletableFuture<String> listTouristsTagAsync(int limit, String pageToken) {
+    return storedTag(touristRedisStore.getPageTagAsync(clampPageLimit(limit) + ":" + (pageToken == null ? "" : pageToken)));
+  }
+
+  public CompletableFuture<String> listTouristsByCountryTagAsync(String country, int limit, String pageToken) {
+    return storedTag(touristRedisStore.getPageTagAsync(countryPageKey(country, clampPageLimit(limit), pageToken == null ? "" : pageToken)));
+  }
+
+  /**
+   * ETag of the cached copy of a tourist, read from its version alone, {@code null} when it is not
+   * cached. Unlike the list tags it is not sent with the body, which carries its own.
+   */
+  public CompletableFuture<String> getTouristTagAsync(String id) {
+    return storedTag(touristRedisStore.getVersionAsync(id).thenApply(version -> version == null ? null : id + "-" + version));
+  }
+
+  public CompletableFuture<String> getTouristByEmailTagAsync(String email) {
+    return storedTag(touristRedisStore.getVersionByEmailAsync(email).thenApply(TouristService::tagOf));
+  }
+
+  public CompletableFuture<String> getTouristByPhoneNumberTagAsync(String phoneNumber) {
+    return storedTag(touristRedisStore.getVersionByPhoneNumberAsync(phoneNumber).thenApply(TouristService::tagOf));
+  }
+
+  /**
+   * The tag a list of all tourists or of one name and surname gets once it is stored, for a list
+   * that was sent without a stored one.
+   */
+  public String tagOf(List<TouristResponseDTO> tourists) {
+    return touristRedisStore.tagOf(tourists);
+  }
+
+  /**
+   * The tag of a page that was sent without a stored one: its tourists and the token after it.
+   */
+  public String tagOf(TouristPageDTO page) {
+    return DigestUtils.md5DigestAsHex((tagOf(page.getTourists()) + ":" + page.getNextPageToken()).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String tagOf(TouristRedisStore.IdAndVersion idAndVersion) {
+    return idAndVersion == null ? null : idAndVersion.id() + "-" + idAndVersion.version();
+  }
+
+  /**
+   * A tag that cannot be read only costs the conditional GET its 304. In blocking mode the read
+   * is waited for here, so that the caller's continuation does not run on the Redis event loop.
+   */
+  private CompletableFuture<String> storedTag(CompletableFuture<String> tag) {
+    CompletableFuture<String> orNull = tag.exceptionally(e -> {
+      log.warn("Could not read list ETag: {}", e.getMessage());
+      return null;
+    });
+    return executionMode == ExecutionMode.BLOCKING ? CompletableFuture.completedFuture(orNull.join()) : orNull;
+  }
+
+  public List<TouristResponseDTO> getTouristsByIds(List<String> ids) {
+    return getBatchCachedOrLoad(REDIS_TOURIST_BY_ID_CACHE_KEY, ids, TouristResponseDTO::getId, touristRedisStore::getByIds, misses -> {
+      log.info("Fetching {} tourists by ID from gRPC service", misses.size());
+      var request = TouristServiceOuterClass.GetTouristsByIdsRequest.newBuilder().addAllIds(misses).build();
+      return touristServiceGrpc.getTouristsByIds(request);
+    });
+  }
+
+  public List<TouristResponseDTO> getTouristsByEmails(List<String> emails) {
+    return getBatchCachedOrLoad(REDIS_TOURIST_BY_EMAIL_CACHE_KEY, emails, TouristResponseDTO::getEmail, touristRedisStore::getByEmails, misses -> {
+      log.info("Fetching {} tourists by email from gRPC service", misses.size());
+      var request = TouristServiceOuterClass.GetTouristsByEmailsRequest.newBuilder().addAllEmails(misses).build();
+      return touristServiceGrpc.getTouristsByEmails(request);
+    });
+  }
+
+  public List<TouristResponseDTO> getTouristsByPhoneNumbers(List<String> phoneNumbers) {
+    return getBatchCachedOrLoad(REDIS_TOURIST_BY_PHONE_CACHE_KEY, phoneNumbers, TouristResponseDTO::getPhoneNumber, touristRedisStore::getByPhoneNumbers, misses -> {
+      log.info("Fetching {} tourists by phone number from gRPC service", misses.size());
+      var request = TouristServiceOuterClass.GetTouristsByPhoneNumbersRequest.newBuilder().addAllPhoneNumbers(misses).build();
+      return touristServiceGrpc.getTouristsByPhoneNumbers(request);
+    });
+  }
+
+  /**
+   * Resolves a batch of lookup keys with one Redis round trip for the hits and a single gRPC call
+   * for all misses, then stores the loaded tourists in one more round trip. Results follow the
+   * order of {@code keys}; keys that match no tourist are left out.
+   */
+  private List<TouristResponseDTO> getBatchCachedOrLoad(String cacheName, List<String> keys,
+                                                        Function<TouristResponseDTO, String> keyOf,
+                                                        Function<Set<String>, Map<String, TouristResponseDTO>> cachedLookup,
+                                                        Function<List<String>, TouristServiceOuterClass.GetTouristsResponse> loader) {
+    Set<String> distinctKeys = new LinkedHashSet<>(keys);
+    long start = System.nanoTime();
+    Map<String, TouristResponseDTO> tourists = new HashMap<>(cachedLookup.apply(distinctKeys));
+    List<String> misses = distinctKeys.stream()
+            .filter(key -> !tourists.containsKey(key))
+            .collect(Collectors.toList());
+    recordCacheLookup(cacheName, start, tourists.size(), misses.size());
+    log.debug("Batch lookup of {} keys: {} cached, {} missed", distinctKeys.size(), tourists.size(), misses.size());
+    if (!misses.isEmpty()) {
+      List<TouristResponseDTO> loaded = loader.apply(misses).getTouristsList()
               .stream()
-              .map(tourist -> modelMapper.map(tourist, TouristResponseDTO.class))
+              .map(TouristMapper::toResponseDTO)
               .collect(Collectors.toList());
+      touristRedisStore.putMany(loaded);
+      loaded.forEach(tourist -> tourists.put(keyOf.apply(tourist), tourist));
+    }
+    return distinctKeys.stream()
+            .map(tourists::get)
+            .filter(Objects::nonNull)
+            .map(this::recordRead)
+            .collect(Collectors.toList());
+  }
 
+  /**
+   * Loads the given tourists from the domain service, bypassing the cache, and stores them with
+   * their email and phone number entries, so their TTL starts over. Ids of deleted tourists are
+   * skipped.
+   *
+   * @return the number of tourists stored
+   */
+  public int refreshTourists(List<String> ids) {
+    var request = TouristServiceOuterClass.GetTouristsByIdsRequest.newBuilder().addAllIds(ids).build();
+    List<TouristResponseDTO> loaded = touristServiceGrpc.getTouristsByIds(request).getTouristsList()
+            .stream()
+            .map(TouristMapper::toResponseDTO)
+            .collect(Collectors.toList());
+    touristRedisStore.putMany(loaded);
+    return loaded.size();
+  }
+
+  /**
+   * Counts a read of {@code tourist} towards the hot keys that {@link CacheWarmer} keeps cached.
+   */
+  private TouristResponseDTO recordRead(TouristResponseDTO tourist) {
+    if (tourist != null) {
+      hotKeys.record(tourist.getId());
+    }
+    return tourist;
+  }
+
+  /**
+   * Reads {@code key} from the cache and, on a miss, loads it through {@code singleFlight} so that
+   * concurrent misses for the same key share a single upstream call. The cache is checked again
+   * inside the flight to catch a load that completed between the first read and joining the flight.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T getCachedOrLoad(String cacheName, String key, Class<? super T> type, SingleFlight<T> singleFlight, Supplier<T> loader) {
+    Cache cache = cacheManager.getCache(cacheName);
+    long start = System.nanoTime();
+    T value = cache != null ? (T) cache.get(key, type) : null;
+    recordCacheLookup(cacheName, start, value != null ? 1 : 0, value != null ? 0 : 1);
+    if (value != null) {
+      return value;
+    }
+    return singleFlight.execute(key, () -> {
+      T cached = cache != null ? (T) cache.get(key, type) : null;
+      if (cached != null) {
+        return cached;
+      }
+      T loaded = loader.get();
       if (cache != null) {
-        cache.put(cacheKey, tourists);
+        fill(cache, key, loaded);
+      }
+      return loaded;
+    });
+  }
+
+  /**
+   * Non-blocking counterpart of {@link #getCachedOrLoad}. The cache is read with
+   * {@link Cache#retrieve}, misses share one upstream call through {@code singleFlight}, and the
+   * loaded value is written back on {@link #cacheWriteBackExecutor} without delaying the response.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> CompletableFuture<T> getCachedOrLoadAsync(String cacheName, String key, Class<? super T> type,
+                                                        SingleFlight<T> singleFlight, Supplier<CompletableFuture<T>> loader) {
+    Cache cache = cacheManager.getCache(cacheName);
+    long start = System.nanoTime();
+    CompletableFuture<?> lookup = cache != null ? cache.retrieve(key) : null;
+    // a cache may answer a miss with no future at all
+    CompletableFuture<?> cached = lookup != null ? lookup : CompletableFuture.completedFuture(null);
+    return cached.thenCompose(retrieved -> {
+      Object value = retrieved instanceof Cache.ValueWrapper wrapper ? wrapper.get() : retrieved;
+      boolean hit = type.isInstance(value);
+      recordCacheLookup(cacheName, start, hit ? 1 : 0, hit ? 0 : 1);
+      if (hit) {
+        return CompletableFuture.completedFuture((T) value);
       }
+      return singleFlight.executeAsync(key, () -> loader.get().thenApply(loaded -> {
+        if (cache != null && loaded != null) {
+          cacheWriteBackExecutor.execute(() -> writeBack(cache, key, loaded));
+        }
+        return loaded;
+      }));
+    });
+  }
+
+  /**
+   * Records the time of one cache read, near tier and Redis together, in {@code tourist.cache.lookup}
+   * and its hits and misses in {@code tourist.cache.requests}, both tagged with the cache name.
+   */
+  private void recordCacheLookup(String cacheName, long startNanos, int hits, int misses) {
+    CacheMeters meters = cacheMeters.get(cacheName);
+    meters.lookup().record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    if (hits > 0) {
+      meters.hits().increment(hits);
+    }
+    if (misses > 0) {
+      meters.misses().increment(misses);
+    }
+  }
+
+  private static CacheMeters cacheMeters(String cacheName, MeterRegistry meterRegistry) {
+    return new CacheMeters(Timer.builder("tourist.cache.lookup")
+            .description("Time to read keys from the near cache and Redis, misses included")
+            .tag("cache", cacheName)
+            .register(meterRegistry),
+            cacheRequests(cacheName, "hit", meterRegistry),
+            cacheRequests(cacheName, "miss", meterRegistry));
+  }
+
+  private static Counter cacheRequests(String cacheName, String result, MeterRegistry meterRegistry) {
+    return Counter.builder("tourist.cache.requests")
+            .description("Keys looked up in a cache, by result")
+            .tag("cache", cacheName)
+            .tag("result", result)
+            .register(meterRegistry);
+  }
+
+  /**
+   * Stores a value loaded for a miss; a near-cached one is not broadcast, since it is no write.
+   */
+  private static void fill(Cache cache, String key, Object value) {
+    if (cache instanceof TwoLevelCache twoLevelCache) {
+      twoLevelCache.fill(key, value);
+    } else {
+      cache.put(key, value);
     }
+  }
+
+  private void writeBack(Cache cache, String key, Object value) {
+    try {
+      fill(cache, key, value);
+    } catch (RuntimeException e) {
+      log.warn("Could not write {} back to cache {}: {}", key, cache.getName(), e.getMessage());
+    }
+  }
+
+  /**
+   * Nothing holds a thread while an async call is pending, so a deadline is what bounds it.
+   */
+  private TouristServiceGrpc.TouristServiceFutureStub futureStub() {
+    return touristServiceFutureStub.withDeadlineAfter(upstreamTimeout.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private static int clampPageLimit(int limit) {
+    return Math.max(1, Math.min(limit, MAX_PAGE_LIMIT));
+  }
+
+  /**
+   * Country comes last so that a country containing ':' cannot collide with another limit or token.
+   */
+  private static String countryPageKey(String country, int pageLimit, String token) {
+    return "country:" + pageLimit + ":" + token + ":" + country;
+  }
+
+  private static TouristServiceOuterClass.ListTouristsByCountryRequest countryPageRequest(String country, int pageLimit, String token) {
+    return TouristServiceOuterClass.ListTouristsByCountryRequest.newBuilder()
+            .setCountry(country)
+            .setLimit(pageLimit)
+            .setPageToken(token)
+            .build();
+  }
+
+  private static TouristPageDTO toPageDTO(TouristServiceOuterClass.ListTouristsResponse response) {
+    return TouristPageDTO.builder()
+            .tourists(response.getTouristsList()
+                    .stream()
+                    .map(TouristMapper::toResponseDTO)
+                    .collect(Collectors.toList()))
+            .nextPageToken(response.getNextPageToken().isEmpty() ? null : response.getNextPageToken())
+            .build();
+  }
+
+  private static TouristServiceOuterClass.SearchTouristsRequest searchRequest(String query, int limit) {
+    return TouristServiceOuterClass.SearchTouristsRequest.newBuilder()
+            .setQuery(query)
+            .setLimit(Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT)))
+            .build();
+  }
+
+  private static List<TouristSuggestionDTO> toSuggestions(TouristServiceOuterClass.SearchTouristsResponse response) {
+    return response.getSuggestionsList()
+            .stream()
+            .map(TouristMapper::toSuggestionDTO)
+            .collect(Collectors.toList());
+  }
+
+  private static Map<String, Long> toCountryStats(TouristServiceOuterClass.CountryStatsResponse response) {
+    Map<String, Long> stats = new LinkedHashMap<>();
+    response.getCountriesList().forEach(country -> stats.put(country.getCountry(), country.getCount()));
+    return stats;
+  }
+
+  private static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> listenableFuture) {
+    CompletableFuture<T> future = new CompletableFuture<>() {
+      @Override
+      public boolean cancel(boolean mayInterruptIfRunning) {
+        listenableFuture.cancel(mayInterruptIfRunning);
+        return super.cancel(mayInterruptIfRunning);
+      }
+    };
+    Futures.addCallback(listenableFuture, new FutureCallback<>() {
+      @Override
+      public void onSuccess(T result) {
+        future.complete(result);
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        future.completeExceptionally(t);
+      }
+    }, MoreExecutors.directExecutor());
+    return future;
+  }
 
-    return tourists;
+  @PreDestroy
+  public void shutdownCacheWriteBack() {
+    cacheWriteBackExecutor.shutdown();
+    pagesClearScheduler.shutdown();
   }
 
   public void saveNewTourist(TouristRequestDTO touristRequestDTO) throws Exception {
     try {
-      log.info("Sending new tourist creation request: {}", touristRequestDTO);
-      byte[] message = objectMapper.writeValueAsBytes(touristRequestDTO);
-      rabbitTemplate.convertAndSend(RabbitMQConfig.directExchangeName, RabbitMQConfig.touristPostRequestQueueRoutingKey, message);
+      log.info("Sending new tourist creation request for email: {}", touristRequestDTO.getEmail());
+      Message message = messageCodec.command(touristRequestDTO, payloadFormat);
+      rabbitTemplate.send(RabbitMQConfig.directExchangeName, RabbitMQConfig.touristPostRequestQueueRoutingKey, message);
       log.info("Tourist creation request successfully sent to RabbitMQ");
     } catch (AmqpException e) {
       log.error("Error while sending message to RabbitMQ", e);
@@ -159,9 +810,9 @@ public class TouristService {
 
   public void updateTourist(String id, TouristRequestDTO touristRequestDTO) throws Exception {
     try {
-      log.info("Sending update request for tourist with ID: {} and data: {}", id, touristRequestDTO);
-      byte[] message = objectMapper.writeValueAsBytes(touristRequestDTO);
-      rabbitTemplate.convertAndSend(RabbitMQConfig.directExchangeName, RabbitMQConfig.touristPutRequestQueueRoutingKey, message);
+      log.info("Sending update request for tourist with ID: {}", id);
+      Message message = messageCodec.updateCommand(touristRequestDTO, payloadFormat);
+      rabbitTemplate.send(RabbitMQConfig.directExchangeName, RabbitMQConfig.touristWritePartitionRoutingKey(RabbitMQConfig.partitionOf(touristRequestDTO.getId())), message);
       log.info("Tourist update request successfully sent to RabbitMQ");
     } catch (AmqpException e) {
       log.error("Error while sending update request for tourist with ID: {}", id, e);
@@ -178,7 +829,8 @@ public class TouristService {
   public void deleteTourist(String id) throws Exception {
     try {
       log.info("Sending delete request for tourist with ID: {}", id);
-      rabbitTemplate.convertAndSend(RabbitMQConfig.directExchangeName, RabbitMQConfig.touristDeleteRequestQueueRoutingKey, id.getBytes());
+      rabbitTemplate.send(RabbitMQConfig.directExchangeName, RabbitMQConfig.touristWritePartitionRoutingKey(RabbitMQConfig.partitionOf(id)),
+              messageCodec.deleteCommand(id, payloadFormat));
     } catch (AmqpException e) {
       log.error("Error while sending delete request for tourist with ID: {}", id, e);
       throw e;
@@ -191,149 +843,238 @@ public class TouristService {
     }
   }
 
+  public WriteMode getWriteMode() {
+    return writeMode;
+  }
+
+  public CompletableFuture<TouristWriteReply> saveNewTouristAwaitingReply(TouristRequestDTO touristRequestDTO) throws Exception {
+    log.info("Sending new tourist creation request awaiting reply for email: {}", touristRequestDTO.getEmail());
+    Message message = messageCodec.command(touristRequestDTO, payloadFormat);
+    return sendAwaitingReply("POST", RabbitMQConfig.touristPostRequestQueueRoutingKey, message, this::onSaveMethod);
+  }
+
+  public CompletableFuture<TouristWriteReply> updateTouristAwaitingReply(String id, TouristRequestDTO touristRequestDTO) throws Exception {
+    log.info("Sending update request awaiting reply for tourist with ID: {}", id);
+    Message message = messageCodec.updateCommand(touristRequestDTO, payloadFormat);
+    return sendAwaitingReply("PUT", RabbitMQConfig.touristWritePartitionRoutingKey(RabbitMQConfig.partitionOf(touristRequestDTO.getId())), message, this::onUpdateMethod);
+  }
+
+  public CompletableFuture<TouristWriteReply> deleteTouristAwaitingReply(String id) {
+    log.info("Sending delete request awaiting reply for tourist with ID: {}", id);
+    return sendAwaitingReply("DELETE", RabbitMQConfig.touristWritePartitionRoutingKey(RabbitMQConfig.partitionOf(id)),
+            messageCodec.deleteCommand(id, payloadFormat), this::onDeleteMethod);
+  }
+
+  /**
+   * Publishes a write with a fresh correlation id and this instance's reply queue. A successful
+   * reply is applied to the caches before the future completes, so the caller can read its own
+   * write right away; the response-queue message applies it again, harmlessly.
+   */
+  private CompletableFuture<TouristWriteReply> sendAwaitingReply(String operation, String routingKey, Message message,
+                                                                 Consumer<TouristResponseDTO> applyToCaches) {
+    String correlationId = UUID.randomUUID().toString();
+    CompletableFuture<TouristWriteReply> reply = pendingReplies.register(correlationId, operation);
+    try {
+      message.getMessageProperties().setCorrelationId(correlationId);
+      message.getMessageProperties().setReplyTo(writeReplyQueueName);
+      rabbitTemplate.send(RabbitMQConfig.directExchangeName, routingKey, message);
+    } catch (AmqpException e) {
+      log.error("Error while sending {} request to RabbitMQ", operation, e);
+      pendingReplies.fail(correlationId, e);
+    }
+    return reply.thenApply(result -> {
+      if (result.status() == TouristWriteReply.Status.OK) {
+        try {
+          applyToCaches.accept(result.tourist());
+          // right away, so the caller's next page read sees its write
+          evictTouristPages();
+        } catch (Exception e) {
+          log.error("Error applying {} reply to caches: {}", operation, result.tourist(), e);
+        }
+      }
+      return result;
+    });
+  }
+
+  @RabbitListener(queues = "#{touristWriteReplyQueue.name}")
+  private void onWriteReplyMessage(Message message) {
+    String correlationId = message.getMessageProperties().getCorrelationId();
+    try {
+      TouristWriteReply reply = messageCodec.readReply(message);
+      log.info("Received write reply {} for correlation id: {}", reply.status(), correlationId);
+      pendingReplies.complete(correlationId, reply);
+    } catch (IOException e) {
+      // redelivery would not make it readable; fail the write now rather than at its timeout,
+      // if the reply says which write it answers
+      if (correlationId != null) {
+        pendingReplies.fail(correlationId, e);
+      }
+      throw new AmqpRejectAndDontRequeueException("Malformed write reply for correlation id " + correlationId, e);
+    }
+  }
+
   @RabbitListener(queues = {RabbitMQConfig.touristPostResponseQueueName})
-  private void onPostResponseMessage(byte[] message) {
+  private void onPostResponseMessage(Message message) {
     try {
-      TouristResponseDTO touristResponseDTO = objectMapper.readValue(message, TouristResponseDTO.class);
-      log.info("Received response message for POST request: {}", touristResponseDTO);
-      onSaveMethod(touristResponseDTO);
+      for (TouristResponseDTO touristResponseDTO : messageCodec.readResults(message)) {
+        log.info("Received response message for POST request for tourist with ID: {}", touristResponseDTO.getId());
+        onSaveMethod(touristResponseDTO);
+      }
+      // once per message, which carries a whole batch in batch mode
+      evictTouristPagesSoon();
+      recordPropagation("POST", message);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
   @RabbitListener(queues = {RabbitMQConfig.touristPutResponseQueueName})
-  private void onPutResponseMessage(byte[] message) {
+  private void onPutResponseMessage(Message message) {
     try {
-      TouristResponseDTO touristResponseDTO = objectMapper.readValue(message, TouristResponseDTO.class);
-      log.info("Received response message for PUT request: {}", touristResponseDTO);
-      onUpdateMethod(touristResponseDTO);
+      for (TouristResponseDTO touristResponseDTO : messageCodec.readResults(message)) {
+        log.info("Received response message for PUT request for tourist with ID: {}", touristResponseDTO.getId());
+        onUpdateMethod(touristResponseDTO);
+      }
+      // once per message, which carries a whole batch in batch mode
+      evictTouristPagesSoon();
+      recordPropagation("PUT", message);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
   @RabbitListener(queues = {RabbitMQConfig.touristDeleteResponseQueueName})
-  private void onDeleteResponseMessage(byte[] message) {
+  private void onDeleteResponseMessage(Message message) {
     try {
-      TouristResponseDTO touristResponseDTO = objectMapper.readValue(message, TouristResponseDTO.class);
-      log.info("Received response message for DELETE request: {}", touristResponseDTO);
-      onDeleteMethod(touristResponseDTO);
+      for (TouristResponseDTO touristResponseDTO : messageCodec.readResults(message)) {
+        log.info("Received response message for DELETE request for tourist with ID: {}", touristResponseDTO.getId());
+        onDeleteMethod(touristResponseDTO);
+      }
+      // once per message, which carries a whole batch in batch mode
+      evictTouristPagesSoon();
+      recordPropagation("DELETE", message);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
-  private void onSaveMethod(TouristResponseDTO touristResponseDTO) {
-    log.info("Saving tourist: {}", touristResponseDTO);
-    Cache cache = cacheManager.getCache(REDIS_ALL_TOURISTS_CACHE_KEY);
-    if (cache != null) {
-      List<TouristResponseDTO> tourists = cache.get(REDIS_ALL_TOURISTS_CACHE_KEY, List.class);
-      if (tourists == null) {
-        tourists = new ArrayList<>();
-      }
-      tourists.add(touristResponseDTO);
-      cache.put(REDIS_ALL_TOURISTS_CACHE_KEY, tourists);
-      log.debug("Added tourist to cache with key: {}", REDIS_ALL_TOURISTS_CACHE_KEY);
+  /**
+   * Records {@code tourist.write.propagation}, from the gateway publishing a write to its result
+   * being applied to the caches, for results stamped by domain-service. The response queues are
+   * shared, so the write may have been published by another instance, on another clock.
+   */
+  private void recordPropagation(String operation, Message result) {
+    Long requestedAt = messageCodec.readRequestedAt(result);
+    if (requestedAt == null) {
+      return;
     }
+    propagationTimers.get(operation).record(Math.max(0, System.currentTimeMillis() - requestedAt), TimeUnit.MILLISECONDS);
+  }
 
-    Cache cacheByNameAndSurname = cacheManager.getCache(REDIS_TOURIST_BY_NAME_AND_SURNAME_CACHE_KEY);
-    if (cacheByNameAndSurname != null) {
-      String cacheKey = touristResponseDTO.getName() + "-" + touristResponseDTO.getSurname();
-      List<TouristResponseDTO> tourists = cacheByNameAndSurname.get(cacheKey, List.class);
-      if (tourists == null) {
-        tourists = new ArrayList<>();
-      }
-      tourists.add(touristResponseDTO);
-      cacheByNameAndSurname.put(cacheKey, tourists);
-      log.debug("Added tourist to cache with key: {}", cacheKey);
+  /**
+   * Applies a change published from domain-service's Mongo change stream, which also covers
+   * writes made straight to Mongo and writes whose response message was lost. Every instance
+   * receives every change, so near caches are evicted locally rather than broadcast, and the
+   * cached pages are cleared by {@link #evictTouristPagesSoon}, at most once per
+   * {@code gateway.changes.pages-clear-delay} and instance. An upsert the response listeners
+   * already applied is skipped by the store on its version. One consumer keeps the changes in
+   * stream order.
+   */
+  @RabbitListener(queues = "#{touristChangeQueue.name}", concurrency = "1")
+  private void onTouristChangeMessage(Message message) {
+    TouristChange change;
+    try {
+      change = messageCodec.readChange(message);
+    } catch (IOException e) {
+      throw new AmqpRejectAndDontRequeueException("Malformed tourist change event", e);
     }
+    log.debug("Received change of tourist {}, deleted: {}", change.id(), change.deleted());
+    evictTouristPagesSoon();
+    TouristResponseDTO tourist = change.deleted() ? TouristResponseDTO.builder().id(change.id()).build() : change.tourist();
+    TouristRedisStore.IndexedValues previous = change.deleted() ? touristRedisStore.remove(tourist) : touristRedisStore.upsert(tourist);
+    evictLocal(REDIS_TOURIST_BY_ID_CACHE_KEY, tourist.getId());
+    evictLocal(REDIS_TOURIST_BY_EMAIL_CACHE_KEY, tourist.getEmail());
+    evictLocal(REDIS_TOURIST_BY_EMAIL_CACHE_KEY, previous.email());
+    evictLocal(REDIS_TOURIST_BY_PHONE_CACHE_KEY, tourist.getPhoneNumber());
+    evictLocal(REDIS_TOURIST_BY_PHONE_CACHE_KEY, previous.phoneNumber());
   }
 
-  private void onDeleteMethod(TouristResponseDTO touristResponseDTO) {
-    String id = touristResponseDTO.getId();
-    log.info("Deleting tourist with ID: {}", id);
-    Cache cache = cacheManager.getCache(REDIS_ALL_TOURISTS_CACHE_KEY);
-    if (cache != null) {
-      List<TouristResponseDTO> tourists = cache.get(REDIS_ALL_TOURISTS_CACHE_KEY, List.class);
-      if (tourists != null) {
-        tourists.removeIf(tourist -> tourist.getId().equals(id));
-        cache.put(REDIS_ALL_TOURISTS_CACHE_KEY, tourists);
-        log.debug("Removed tourist from cache with key: {}", REDIS_ALL_TOURISTS_CACHE_KEY);
-      }
+  private void evictLocal(String cacheName, String key) {
+    // a null key would clear the whole near cache
+    if (key != null) {
+      cacheManager.evictLocal(cacheName, key);
     }
+  }
 
-    Cache cacheById = cacheManager.getCache(REDIS_TOURIST_BY_ID_CACHE_KEY);
-    if (cacheById != null) {
-      cacheById.evict(id);
-      log.debug("Evicted tourist from cache with key: {}", REDIS_TOURIST_BY_ID_CACHE_KEY);
+  private void evictTouristPages() {
+    Cache cache = cacheManager.getCache(REDIS_TOURIST_PAGES_CACHE_KEY);
+    if (cache != null) {
+      cache.clear();
+      touristRedisStore.renewPageTags();
+      log.debug("Cleared cache: {}", REDIS_TOURIST_PAGES_CACHE_KEY);
     }
+  }
 
-    Cache cacheByEmail = cacheManager.getCache(REDIS_TOURIST_BY_EMAIL_CACHE_KEY);
-    if (cacheByEmail != null) {
-      cacheByEmail.evict(touristResponseDTO.getEmail());
-      log.debug("Evicted tourist from cache with key: {}", REDIS_TOURIST_BY_EMAIL_CACHE_KEY);
+  /**
+   * Clears the cached pages {@code pagesClearDelay} after the first write result or change that
+   * asks for it, once for all of them received until then, so a burst of batches and their change
+   * events costs one {@code SCAN} of the pages rather than one per tourist. One received while the
+   * clear runs schedules the next one.
+   */
+  private void evictTouristPagesSoon() {
+    if (!pagesClearPending.compareAndSet(false, true)) {
+      return;
     }
+    pagesClearScheduler.schedule(() -> {
+      pagesClearPending.set(false);
+      try {
+        evictTouristPages();
+      } catch (RuntimeException e) {
+        log.warn("Clearing cache {} after tourist changes failed", REDIS_TOURIST_PAGES_CACHE_KEY, e);
+      }
+    }, pagesClearDelay.toMillis(), TimeUnit.MILLISECONDS);
+  }
 
-    Cache cacheByPhone = cacheManager.getCache(REDIS_TOURIST_BY_PHONE_CACHE_KEY);
-    if (cacheByPhone != null) {
-      cacheByPhone.evict(touristResponseDTO.getPhoneNumber());
-      log.debug("Evicted tourist from cache with key: {}", REDIS_TOURIST_BY_PHONE_CACHE_KEY);
-    }
+  private void onSaveMethod(TouristResponseDTO touristResponseDTO) {
+    log.info("Saving tourist with ID: {}", touristResponseDTO.getId());
+    TouristRedisStore.IndexedValues previous = touristRedisStore.upsert(touristResponseDTO);
+    invalidateNearCaches(touristResponseDTO, previous);
+    log.debug("Stored tourist with ID: {}", touristResponseDTO.getId());
+  }
 
-    Cache cacheByNameAndSurname = cacheManager.getCache(REDIS_TOURIST_BY_NAME_AND_SURNAME_CACHE_KEY);
-    if (cacheByNameAndSurname != null) {
-      String cacheKey = touristResponseDTO.getName() + "-" + touristResponseDTO.getSurname();
-      List<TouristResponseDTO> tourists = cacheByNameAndSurname.get(cacheKey, List.class);
-      if (tourists != null) {
-        tourists.removeIf(tourist -> tourist.getId().equals(id));
-        cacheByNameAndSurname.put(cacheKey, tourists);
-        log.debug("Updated cache for key: {}", cacheKey);
-      }
-    }
+  private void onDeleteMethod(TouristResponseDTO touristResponseDTO) {
+    String id = touristResponseDTO.getId();
+    log.info("Deleting tourist with ID: {}", id);
+    TouristRedisStore.IndexedValues previous = touristRedisStore.remove(touristResponseDTO);
+    invalidateNearCaches(touristResponseDTO, previous);
+    log.debug("Removed tourist with ID: {}", id);
   }
 
   private void onUpdateMethod(TouristResponseDTO touristResponseDTO) {
-    log.info("Updating tourist: {}", touristResponseDTO);
-    Cache cacheById = cacheManager.getCache(REDIS_TOURIST_BY_ID_CACHE_KEY);
-    if (cacheById != null) {
-      cacheById.put(touristResponseDTO.getId(), touristResponseDTO);
-      log.debug("Updated cache for ID: {}", touristResponseDTO.getId());
-    }
-
-    Cache cacheByEmail = cacheManager.getCache(REDIS_TOURIST_BY_EMAIL_CACHE_KEY);
-    if (cacheByEmail != null) {
-      cacheByEmail.put(touristResponseDTO.getEmail(), touristResponseDTO);
-      log.debug("Updated cache for email: {}", touristResponseDTO.getEmail());
-    }
-
-    Cache cacheByPhone = cacheManager.getCache(REDIS_TOURIST_BY_PHONE_CACHE_KEY);
-    if (cacheByPhone != null) {
-      cacheByPhone.put(touristResponseDTO.getPhoneNumber(), touristResponseDTO);
-      log.debug("Updated cache for phone: {}", touristResponseDTO.getPhoneNumber());
-    }
-
-    Cache cacheByNameAndSurname = cacheManager.getCache(REDIS_TOURIST_BY_NAME_AND_SURNAME_CACHE_KEY);
-    if (cacheByNameAndSurname != null) {
-      String cacheKey = touristResponseDTO.getName() + "-" + touristResponseDTO.getSurname();
-      List<TouristResponseDTO> tourists = cacheByNameAndSurname.get(cacheKey, List.class);
-      if (tourists != null) {
-        tourists.removeIf(tourist -> tourist.getId().equals(touristResponseDTO.getId()));
-        tourists.add(touristResponseDTO);
-        cacheByNameAndSurname.put(cacheKey, tourists);
-        log.debug("Updated cache for key: {}", cacheKey);
-      }
-    }
+    log.info("Updating tourist with ID: {}", touristResponseDTO.getId());
+    TouristRedisStore.IndexedValues previous = touristRedisStore.upsert(touristResponseDTO);
+    invalidateNearCaches(touristResponseDTO, previous);
+    log.debug("Updated tourist with ID: {}", touristResponseDTO.getId());
+  }
 
-    Cache allTouristsCache = cacheManager.getCache(REDIS_ALL_TOURISTS_CACHE_KEY);
-    if (allTouristsCache != null) {
-      List<TouristResponseDTO> tourists = allTouristsCache.get(REDIS_ALL_TOURISTS_CACHE_KEY, List.class);
-      if (tourists != null) {
-        tourists.removeIf(tourist -> tourist.getId().equals(touristResponseDTO.getId()));
-        tourists.add(touristResponseDTO);
-        allTouristsCache.put(REDIS_ALL_TOURISTS_CACHE_KEY, tourists);
-        log.debug("Update tourist in cache with key: {}", REDIS_ALL_TOURISTS_CACHE_KEY);
-      }
+  /**
+   * The store is written directly rather than through {@link Cache#put}, so local copies held by
+   * the near caches are dropped here, both under the tourist's current and its previous keys.
+   */
+  private void invalidateNearCaches(TouristResponseDTO tourist, TouristRedisStore.IndexedValues previous) {
+    cacheManager.invalidate(REDIS_TOURIST_BY_ID_CACHE_KEY, tourist.getId());
+    cacheManager.invalidate(REDIS_TOURIST_BY_EMAIL_CACHE_KEY, tourist.getEmail());
+    cacheManager.invalidate(REDIS_TOURIST_BY_PHONE_CACHE_KEY, tourist.getPhoneNumber());
+    if (!Objects.equals(previous.email(), tourist.getEmail())) {
+      cacheManager.invalidate(REDIS_TOURIST_BY_EMAIL_CACHE_KEY, previous.email());
     }
+    if (!Objects.equals(previous.phoneNumber(), tourist.getPhoneNumber())) {
+      cacheManager.invalidate(REDIS_TOURIST_BY_PHONE_CACHE_KEY, previous.phoneNumber());
+    }
+  }
+
+  @FunctionalInterface
+  public interface TouristChunkHandler {
+    void accept(List<TouristResponseDTO> tourists) throws IOException;
   }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.rus.nawm.apigateway.service;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+
+/**
+ * domain-service's direct answer to a write sent with a correlation id and reply-to queue.
+ * {@code tourist} is the persisted (or, for deletes, removed) entity when {@code status} is OK.
+ */
+public record TouristWriteReply(Status status, String message, TouristResponseDTO tourist) {
+
+  public enum Status {
+    OK, NOT_FOUND, CONFLICT, ERROR;
+
+    /**
+     * The status named {@code name}. Statuses this gateway does not know, e.g. from a newer
+     * domain-service, are read as {@code ERROR}, so the write fails instead of its reply being lost.
+     */
+    @JsonCreator
+    public static Status of(String name) {
+      for (Status status : values()) {
+        if (status.name().equals(name)) {
+          return status;
+        }
+      }
+      return ERROR;
+    }
+  }
+}
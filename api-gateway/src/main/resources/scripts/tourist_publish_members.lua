@@ -0,0 +1,7 @@
+-- Puts an id set loaded chunk by chunk in place of the live one, together with its list tag.
+-- KEYS: id set being loaded, live id set, list tag of the live set
+-- ARGV: list tag, ttl seconds
+redis.call('RENAME', KEYS[1], KEYS[2])
+redis.call('EXPIRE', KEYS[2], ARGV[2])
+redis.call('SET', KEYS[3], ARGV[1], 'EX', ARGV[2])
+return true
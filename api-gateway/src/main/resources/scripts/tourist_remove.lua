@@ -0,0 +1,36 @@
+-- Removes one tourist and every index entry pointing at it in a single atomic step.
+-- KEYS: entity, meta, all tourists set, email index, phone index, name+surname set as known by
+--       the caller, then the list tags of the all tourists set and of that name+surname set
+-- ARGV: id, email, phone, name+surname key as known by the caller, ttl seconds,
+--       then the key prefixes of the email index, phone index, name+surname sets and list tags
+-- As with upsert, the index entries recorded in meta are read and dropped here as well.
+-- Every loaded list the tourist leaves gets a new tag, chained from the old one.
+-- Returns the previously indexed {email, phone, name+surname key, version}.
+local id = ARGV[1]
+local ttl = tonumber(ARGV[5])
+local old = redis.call('HMGET', KEYS[2], 'email', 'phone', 'name', 'version')
+
+local function dropIndex(key, value)
+  if value and value ~= '' and redis.call('GET', key) == id then
+    redis.call('DEL', key)
+  end
+end
+
+local function dropMember(key, tagKey, value)
+  if value and value ~= '' and redis.call('TYPE', key).ok == 'zset' and redis.call('ZREM', key, id) == 1 then
+    redis.call('SET', tagKey, redis.sha1hex((redis.call('GET', tagKey) or '') .. '-' .. id), 'EX', ttl)
+  end
+end
+
+dropIndex(KEYS[4], ARGV[2])
+dropIndex(KEYS[5], ARGV[3])
+dropIndex(ARGV[6] .. (old[1] or ''), old[1])
+dropIndex(ARGV[7] .. (old[2] or ''), old[2])
+dropMember(KEYS[6], KEYS[8], ARGV[4])
+if old[3] then
+  dropMember(ARGV[8] .. old[3], ARGV[9] .. ARGV[8] .. old[3], old[3])
+end
+dropMember(KEYS[3], KEYS[7], id)
+
+redis.call('DEL', KEYS[1], KEYS[2])
+return old
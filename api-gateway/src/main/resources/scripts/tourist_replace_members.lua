@@ -0,0 +1,38 @@
+-- Stores one chunk of freshly loaded tourists with their index entries and, when given, adds
+-- them to the id set being loaded for them.
+-- KEYS: id set being loaded when ARGV[3] is '1', then 4 keys per tourist: entity, meta, email
+--       index, phone index
+-- ARGV: ttl seconds, loaded marker member, whether an id set is given ('1' or '0'),
+--       then 6 values per tourist: id, encoded value, email, phone, name+surname key, version or ''
+-- The set is a sorted set with every score 0, so members come back in id order. It is only read
+-- once tourist_publish_members.lua has renamed it into place.
+local ttl = tonumber(ARGV[1])
+local set = nil
+local k = 1
+if ARGV[3] == '1' then
+  set = KEYS[1]
+  k = 2
+  redis.call('ZADD', set, 0, ARGV[2])
+end
+for i = 4, #ARGV, 6 do
+  local id = ARGV[i]
+  local meta = KEYS[k + 1]
+  redis.call('SET', KEYS[k], ARGV[i + 1], 'EX', ttl)
+  redis.call('DEL', meta)
+  redis.call('HSET', meta, 'email', ARGV[i + 2], 'phone', ARGV[i + 3], 'name', ARGV[i + 4], 'version', ARGV[i + 5])
+  redis.call('EXPIRE', meta, ttl)
+  if ARGV[i + 2] ~= '' then
+    redis.call('SET', KEYS[k + 2], id, 'EX', ttl)
+  end
+  if ARGV[i + 3] ~= '' then
+    redis.call('SET', KEYS[k + 3], id, 'EX', ttl)
+  end
+  if set then
+    redis.call('ZADD', set, 0, id)
+  end
+  k = k + 4
+end
+if set then
+  redis.call('EXPIRE', set, ttl)
+end
+return true
@@ -0,0 +1,55 @@
+-- Writes one tourist and moves its secondary index entries in a single atomic step.
+-- KEYS: entity, meta, email index, phone index, name+surname set, all tourists set,
+--       then the list tags of the name+surname set and of the all tourists set
+-- ARGV: id, encoded value, ttl seconds, email, phone, name+surname key, version or '',
+--       then the key prefixes of the email index, phone index, name+surname sets and list tags
+-- The index entries the tourist had before are read from meta here and their keys built from
+-- the prefixes, so the write needs no read of its own and cannot race another one.
+-- A versioned write is skipped when meta already records the same or a newer version, as when a
+-- change event repeats the write a response listener already applied.
+-- Every loaded list the tourist joins, stays in or leaves gets a new tag, chained from the old one.
+-- Returns the previously indexed {email, phone, name+surname key, version}.
+local id = ARGV[1]
+local ttl = tonumber(ARGV[3])
+local old = redis.call('HMGET', KEYS[2], 'email', 'phone', 'name', 'version')
+if ARGV[7] ~= '' and old[4] and old[4] ~= '' and tonumber(old[4]) >= tonumber(ARGV[7]) then
+  return old
+end
+
+local function retag(tagKey, change)
+  redis.call('SET', tagKey, redis.sha1hex((redis.call('GET', tagKey) or '') .. change), 'EX', ttl)
+end
+
+if old[1] and old[1] ~= '' and old[1] ~= ARGV[4] and redis.call('GET', ARGV[8] .. old[1]) == id then
+  redis.call('DEL', ARGV[8] .. old[1])
+end
+if old[2] and old[2] ~= '' and old[2] ~= ARGV[5] and redis.call('GET', ARGV[9] .. old[2]) == id then
+  redis.call('DEL', ARGV[9] .. old[2])
+end
+if old[3] and old[3] ~= '' and old[3] ~= ARGV[6] then
+  local previousSet = ARGV[10] .. old[3]
+  if redis.call('TYPE', previousSet).ok == 'zset' and redis.call('ZREM', previousSet, id) == 1 then
+    retag(ARGV[11] .. previousSet, '-' .. id)
+  end
+end
+
+redis.call('SET', KEYS[1], ARGV[2], 'EX', ttl)
+redis.call('DEL', KEYS[2])
+redis.call('HSET', KEYS[2], 'email', ARGV[4], 'phone', ARGV[5], 'name', ARGV[6], 'version', ARGV[7])
+redis.call('EXPIRE', KEYS[2], ttl)
+if ARGV[4] ~= '' then
+  redis.call('SET', KEYS[3], id, 'EX', ttl)
+end
+if ARGV[5] ~= '' then
+  redis.call('SET', KEYS[4], id, 'EX', ttl)
+end
+-- sets only exist once fully loaded, never start a partial one
+if redis.call('TYPE', KEYS[5]).ok == 'zset' then
+  redis.call('ZADD', KEYS[5], 0, id)
+  retag(KEYS[7], '+' .. id .. ARGV[2])
+end
+if redis.call('TYPE', KEYS[6]).ok == 'zset' then
+  redis.call('ZADD', KEYS[6], 0, id)
+  retag(KEYS[8], '+' .. id .. ARGV[2])
+end
+return old
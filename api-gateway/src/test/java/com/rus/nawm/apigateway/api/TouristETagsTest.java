@@ -0,0 +1,62 @@
+package com.rus.nawm.apigateway.api;
+
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TouristETagsTest {
+  private static final TouristResponseDTO IVAN = tourist("6ad46e1294336d1cf6eeadf7", 9L);
+  private static final TouristResponseDTO ANN = tourist("6ad46ba730d41d0900aaf2eb", 2L);
+
+  @Test
+  void touristTagIsIdAndVersion() {
+    assertEquals("6ad46e1294336d1cf6eeadf7-9", TouristETags.of(IVAN));
+    assertNull(TouristETags.of(tourist("6ad46e1294336d1cf6eeadf7", null)));
+  }
+
+  @Test
+  void batchTagFollowsIdsVersionsAndOrder() {
+    String tag = TouristETags.of(List.of(IVAN, ANN));
+    assertEquals(tag, TouristETags.of(List.of(tourist(IVAN.getId(), 9L), tourist(ANN.getId(), 2L))));
+    assertNotEquals(tag, TouristETags.of(List.of(ANN, IVAN)));
+    assertNotEquals(tag, TouristETags.of(List.of(tourist(IVAN.getId(), 10L), ANN)));
+  }
+
+  @Test
+  void batchWithAnUnversionedTouristHasNoTag() {
+    assertNull(TouristETags.of(List.of(IVAN, tourist("6ad46ba730d41d0900aaf2eb", null))));
+  }
+
+  @Test
+  void ifNoneMatchComparesWeaklyAndAcceptsLists() {
+    assertTrue(TouristETags.matches("\"abc\"", "abc"));
+    assertTrue(TouristETags.matches("W/\"abc\"", "abc"));
+    assertTrue(TouristETags.matches("\"x\", W/\"abc\"", "abc"));
+    assertTrue(TouristETags.matches("*", "abc"));
+    assertFalse(TouristETags.matches("\"abcd\"", "abc"));
+    assertFalse(TouristETags.matches("abc", "abc"));
+    assertFalse(TouristETags.matches(null, "abc"));
+    assertFalse(TouristETags.matches("*", null));
+  }
+
+  @Test
+  void ifMatchNamesTheVersionOfThatTourist() {
+    assertEquals(9L, TouristETags.versionOf(" \"6ad46e1294336d1cf6eeadf7-9\" ", IVAN.getId()));
+    assertNull(TouristETags.versionOf("W/\"6ad46e1294336d1cf6eeadf7-9\"", IVAN.getId()));
+    assertNull(TouristETags.versionOf("\"6ad46ba730d41d0900aaf2eb-9\"", IVAN.getId()));
+    assertNull(TouristETags.versionOf("\"6ad46e1294336d1cf6eeadf7-\"", IVAN.getId()));
+    assertNull(TouristETags.versionOf("\"6ad46e1294336d1cf6eeadf7-x\"", IVAN.getId()));
+    assertNull(TouristETags.versionOf("*", IVAN.getId()));
+  }
+
+  private static TouristResponseDTO tourist(String id, Long version) {
+    return TouristResponseDTO.builder().id(id).name("Ivan").surname("Petrov").version(version).build();
+  }
+}
@@ -0,0 +1,62 @@
+package com.rus.nawm.apigateway.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+
+class CacheInvalidationListenerTest {
+  private final ConcurrentMapCacheManager remoteCacheManager = new ConcurrentMapCacheManager("touristById", "touristPages");
+  private final CacheInvalidationPublisher publisher = new CacheInvalidationPublisher(mock(RabbitTemplate.class));
+  private final TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(remoteCacheManager, Set.of("touristById"),
+          100, Duration.ofMinutes(1), publisher);
+  private final CacheInvalidationListener listener = new CacheInvalidationListener(cacheManager, publisher);
+
+  private TwoLevelCache cache;
+
+  @BeforeEach
+  void setUp() {
+    cache = (TwoLevelCache) cacheManager.getCache("touristById");
+    cache.put("1", "Ivan");
+    cache.put("2", "Ann");
+    // only the local tier is looked at below, so take Redis out of the picture
+    remoteCacheManager.getCache("touristById").clear();
+  }
+
+  @Test
+  void otherInstancesKeyIsDroppedLocally() {
+    listener.onInvalidation(new CacheInvalidationEvent("other", "touristById", "1"));
+
+    assertNull(cache.get("1"));
+    assertEquals("Ann", cache.get("2", String.class));
+  }
+
+  @Test
+  void otherInstancesClearDropsEveryKey() {
+    listener.onInvalidation(new CacheInvalidationEvent("other", "touristById", null));
+
+    assertNull(cache.get("1"));
+    assertNull(cache.get("2"));
+  }
+
+  @Test
+  void ownEventsAreIgnored() {
+    listener.onInvalidation(new CacheInvalidationEvent(publisher.getInstanceId(), "touristById", "1"));
+
+    assertEquals("Ivan", cache.get("1", String.class));
+  }
+
+  @Test
+  void cachesWithoutANearTierArePassedThrough() {
+    assertSame(remoteCacheManager.getCache("touristPages"), cacheManager.getCache("touristPages"));
+    listener.onInvalidation(new CacheInvalidationEvent("other", "touristPages", "1"));
+  }
+}
@@ -0,0 +1,91 @@
+package com.rus.nawm.apigateway.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotKeyTrackerTest {
+  // wide enough that the handful of keys below never collide in every row
+  private static final int WIDTH = 1 << 16;
+
+  @Test
+  void topKeysComeMostReadFirst() {
+    HotKeyTracker tracker = new HotKeyTracker(WIDTH, 10);
+    read(tracker, "a", 1);
+    read(tracker, "b", 3);
+    read(tracker, "c", 2);
+    tracker.record(null);
+
+    assertEquals(List.of(
+            new HotKeyTracker.HotKey("b", 3),
+            new HotKeyTracker.HotKey("c", 2),
+            new HotKeyTracker.HotKey("a", 1)), tracker.hotKeys());
+  }
+
+  @Test
+  void keyEntersAFullTopKOnlyByBeatingTheColdest() {
+    HotKeyTracker tracker = new HotKeyTracker(WIDTH, 2);
+    read(tracker, "a", 3);
+    read(tracker, "b", 2);
+
+    read(tracker, "c", 2);
+    assertEquals(List.of("a", "b"), keys(tracker));
+
+    tracker.record("c");
+    // tied with a at 3, ties are ranked by key
+    assertEquals(List.of(new HotKeyTracker.HotKey("c", 3), new HotKeyTracker.HotKey("a", 3)), tracker.hotKeys());
+  }
+
+  @Test
+  void decayHalvesCountsAndDropsKeysReadOnce() {
+    HotKeyTracker tracker = new HotKeyTracker(WIDTH, 2);
+    read(tracker, "a", 4);
+    read(tracker, "b", 1);
+
+    tracker.decay();
+
+    assertEquals(List.of(new HotKeyTracker.HotKey("a", 2)), tracker.hotKeys());
+    // the sketch was halved too, so the next read of a counts from 2
+    tracker.record("a");
+    assertEquals(new HotKeyTracker.HotKey("a", 3), tracker.hotKeys().get(0));
+  }
+
+  @Test
+  void decayReopensAFullTopK() {
+    HotKeyTracker tracker = new HotKeyTracker(WIDTH, 1);
+    read(tracker, "a", 8);
+    read(tracker, "b", 5);
+    assertEquals(List.of("a"), keys(tracker));
+
+    tracker.decay();
+    tracker.decay();
+
+    // a is down to 2 and b to 1, so two more reads of b take its place
+    read(tracker, "b", 2);
+    assertEquals(List.of("b"), keys(tracker));
+  }
+
+  @Test
+  void estimatesNeverUndercount() {
+    HotKeyTracker tracker = new HotKeyTracker(16, 100);
+    for (int i = 0; i < 200; i++) {
+      read(tracker, "k" + i, i % 5 + 1);
+    }
+
+    tracker.hotKeys().forEach(hot ->
+            assertTrue(hot.estimate() >= Integer.parseInt(hot.key().substring(1)) % 5 + 1, hot.key()));
+  }
+
+  private static void read(HotKeyTracker tracker, String key, int times) {
+    for (int i = 0; i < times; i++) {
+      tracker.record(key);
+    }
+  }
+
+  private static List<String> keys(HotKeyTracker tracker) {
+    return tracker.hotKeys().stream().map(HotKeyTracker.HotKey::key).toList();
+  }
+}
@@ -0,0 +1,138 @@
+package com.rus.nawm.apigateway.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final SingleFlight<String> flight = new SingleFlight<>("getTouristById", meterRegistry);
+
+  @Test
+  void concurrentCallersShareOneLoad() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger loads = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<String> leader = executor.submit(() -> flight.execute("1", () -> {
+        loads.incrementAndGet();
+        loading.countDown();
+        await(release);
+        return "Ivan";
+      }));
+      assertTrue(loading.await(5, TimeUnit.SECONDS));
+      Future<String> follower = executor.submit(() -> flight.execute("1", () -> {
+        loads.incrementAndGet();
+        return "Ann";
+      }));
+      // the follower has joined once it is counted as coalesced
+      while (counter("tourist.upstream.coalesced") == 0) {
+        Thread.onSpinWait();
+      }
+      release.countDown();
+
+      assertEquals("Ivan", leader.get(5, TimeUnit.SECONDS));
+      assertEquals("Ivan", follower.get(5, TimeUnit.SECONDS));
+      assertEquals(1, loads.get());
+      assertEquals(1, counter("tourist.upstream.calls"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void followerGetsTheLeadersExceptionAsIs() throws Exception {
+    IllegalStateException failure = new IllegalStateException("upstream down");
+    CompletableFuture<String> load = new CompletableFuture<>();
+    CompletableFuture<String> leader = flight.executeAsync("1", () -> load);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> follower = executor.submit(() -> flight.execute("1", () -> "Ann"));
+      while (counter("tourist.upstream.coalesced") == 0) {
+        Thread.onSpinWait();
+      }
+      load.completeExceptionally(failure);
+
+      Exception thrown = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+      assertSame(failure, thrown.getCause());
+      assertSame(failure, assertThrows(Exception.class, leader::join).getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void keyIsLoadedAgainOnceTheLoadIsOver() {
+    assertEquals("Ivan", flight.execute("1", () -> "Ivan"));
+    assertEquals("Ann", flight.execute("1", () -> "Ann"));
+    assertThrows(IllegalStateException.class, () -> flight.execute("1", () -> {
+      throw new IllegalStateException();
+    }));
+    assertEquals("Lee", flight.execute("1", () -> "Lee"));
+
+    assertEquals(4, counter("tourist.upstream.calls"));
+    assertEquals(0, counter("tourist.upstream.coalesced"));
+    assertEquals(0, meterRegistry.get("tourist.upstream.inflight").gauge().value());
+  }
+
+  @Test
+  void asyncCallersShareOneLoadAndMayCancelTheirCopy() {
+    CompletableFuture<String> load = new CompletableFuture<>();
+    AtomicInteger loads = new AtomicInteger();
+    CompletableFuture<String> first = flight.executeAsync("1", () -> {
+      loads.incrementAndGet();
+      return load;
+    });
+    CompletableFuture<String> second = flight.executeAsync("1", () -> {
+      loads.incrementAndGet();
+      return CompletableFuture.completedFuture("Ann");
+    });
+    CompletableFuture<String> otherKey = flight.executeAsync("2", () -> CompletableFuture.completedFuture("Lee"));
+
+    first.cancel(true);
+    assertFalse(second.isDone());
+    load.complete("Ivan");
+
+    assertEquals("Ivan", second.join());
+    assertEquals("Lee", otherKey.join());
+    assertEquals(1, loads.get());
+    assertEquals(1, counter("tourist.upstream.coalesced"));
+  }
+
+  @Test
+  void loaderThrowingBeforeReturningAFutureFailsTheFuture() {
+    CompletableFuture<String> failed = flight.executeAsync("1", () -> {
+      throw new IllegalArgumentException("bad key");
+    });
+
+    assertTrue(failed.isCompletedExceptionally());
+    assertEquals("Ivan", flight.executeAsync("1", () -> CompletableFuture.completedFuture("Ivan")).join());
+  }
+
+  private double counter(String name) {
+    return meterRegistry.get(name).counter().count();
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
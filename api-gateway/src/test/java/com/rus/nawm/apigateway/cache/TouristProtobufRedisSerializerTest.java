@@ -0,0 +1,111 @@
+package com.rus.nawm.apigateway.cache;
+
+import com.rus.nawm.apigateway.api.dto.TouristPageDTO;
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TouristProtobufRedisSerializerTest {
+  private static final TouristResponseDTO IVAN = new TouristResponseDTO("6ad46e1294336d1cf6eeadf7", "Ivan", "Petrov",
+          "ivan@example.com", "+70000000001", "ES", 17L);
+  // fields the cache must not turn into empty strings or zero
+  private static final TouristResponseDTO UNVERSIONED = new TouristResponseDTO("6ad46ba730d41d0900aaf2eb", "Ann", null,
+          "ann@example.com", null, null, null);
+
+  private final TouristProtobufRedisSerializer serializer = new TouristProtobufRedisSerializer(0);
+
+  @Test
+  void touristRoundTripsWithItsNulls() {
+    byte[] bytes = serializer.serialize(IVAN);
+
+    assertEquals(TouristProtobufRedisSerializer.TAG_TOURIST, bytes[0]);
+    assertEquals(IVAN, serializer.deserialize(bytes));
+    assertEquals(UNVERSIONED, serializer.deserialize(serializer.serialize(UNVERSIONED)));
+  }
+
+  @Test
+  void listRoundTrips() {
+    byte[] bytes = serializer.serialize(List.of(IVAN, UNVERSIONED));
+
+    assertEquals(TouristProtobufRedisSerializer.TAG_TOURIST_LIST, bytes[0]);
+    assertEquals(List.of(IVAN, UNVERSIONED), serializer.deserialize(bytes));
+    assertEquals(List.of(), serializer.deserialize(serializer.serialize(new ArrayList<>())));
+  }
+
+  @Test
+  void pageRoundTripsWithAndWithoutNextToken() {
+    TouristPageDTO page = TouristPageDTO.builder().tourists(List.of(IVAN)).nextPageToken("token").build();
+    TouristPageDTO last = TouristPageDTO.builder().tourists(List.of(UNVERSIONED)).build();
+
+    assertEquals(TouristProtobufRedisSerializer.TAG_TOURIST_PAGE, serializer.serialize(page)[0]);
+    assertEquals(page, serializer.deserialize(serializer.serialize(page)));
+    assertEquals(last, serializer.deserialize(serializer.serialize(last)));
+  }
+
+  @Test
+  void largeValuesAreDeflatedAndStillRoundTrip() {
+    TouristProtobufRedisSerializer compressing = new TouristProtobufRedisSerializer(256);
+    List<TouristResponseDTO> tourists = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      tourists.add(IVAN);
+    }
+
+    byte[] small = compressing.serialize(IVAN);
+    byte[] large = compressing.serialize(tourists);
+    assertEquals(0, small[0] & TouristProtobufRedisSerializer.FLAG_DEFLATE);
+    assertTrue((large[0] & TouristProtobufRedisSerializer.FLAG_DEFLATE) != 0);
+    assertTrue(large.length < serializer.serialize(tourists).length);
+    assertEquals(tourists, compressing.deserialize(large));
+    // the threshold only matters when writing
+    assertEquals(tourists, serializer.deserialize(large));
+  }
+
+  @Test
+  void truncatedCompressedValueIsRejected() {
+    List<TouristResponseDTO> tourists = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      tourists.add(IVAN);
+    }
+    byte[] large = new TouristProtobufRedisSerializer(256).serialize(tourists);
+
+    assertThrows(SerializationException.class, () -> serializer.deserialize(Arrays.copyOf(large, large.length / 2)));
+  }
+
+  @Test
+  void valuesWrittenAsJsonBeforeTheSwitchStillRead() {
+    GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+
+    assertEquals(IVAN, serializer.deserialize(json.serialize(IVAN)));
+    assertEquals(List.of(IVAN), serializer.deserialize(json.serialize(new ArrayList<>(List.of(IVAN)))));
+  }
+
+  @Test
+  void otherValuesGoThroughJson() {
+    Map<String, Long> counts = new HashMap<>(Map.of("ES", 2L));
+    byte[] bytes = serializer.serialize(counts);
+
+    assertEquals('{', bytes[0]);
+    assertEquals(counts, serializer.deserialize(bytes));
+    assertArrayEquals(new GenericJackson2JsonRedisSerializer().serialize(List.of("a")), serializer.serialize(List.of("a")));
+  }
+
+  @Test
+  void nullAndEmptyValuesStayNull() {
+    assertNull(serializer.serialize(null));
+    assertNull(serializer.deserialize(null));
+    assertNull(serializer.deserialize(new byte[0]));
+  }
+}
@@ -0,0 +1,209 @@
+package com.rus.nawm.apigateway.cache;
+
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the store's scripts against a Redis on localhost:6379, in database 15, which is flushed
+ * before every test. Skipped when no Redis is reachable.
+ */
+class TouristRedisStoreTest {
+  private static LettuceConnectionFactory connectionFactory;
+  private static RedisTemplate<String, byte[]> redisTemplate;
+
+  private TouristRedisStore store;
+
+  @BeforeAll
+  static void connect() {
+    RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration("localhost", 6379);
+    configuration.setDatabase(15);
+    connectionFactory = new LettuceConnectionFactory(configuration);
+    connectionFactory.afterPropertiesSet();
+    connectionFactory.start();
+    redisTemplate = new RedisTemplate<>();
+    redisTemplate.setConnectionFactory(connectionFactory);
+    redisTemplate.setKeySerializer(RedisSerializer.string());
+    redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+    redisTemplate.afterPropertiesSet();
+  }
+
+  @AfterAll
+  static void disconnect() {
+    if (connectionFactory != null) {
+      connectionFactory.destroy();
+    }
+  }
+
+  @BeforeEach
+  void setUp() {
+    boolean reachable;
+    try (var connection = connectionFactory.getConnection()) {
+      connection.serverCommands().flushDb();
+      reachable = true;
+    } catch (RuntimeException e) {
+      reachable = false;
+    }
+    assumeTrue(reachable, "no Redis on localhost:6379");
+    store = new TouristRedisStore(redisTemplate, connectionFactory, new TouristProtobufRedisSerializer(0), Duration.ofMinutes(1));
+  }
+
+  @Test
+  void upsertedTouristIsFoundByEveryIndex() {
+    TouristResponseDTO ivan = tourist("a1", "Ivan", "ivan@example.com", "+70000000001", 1L);
+
+    TouristRedisStore.IndexedValues previous = store.upsert(ivan);
+
+    assertNull(previous.email());
+    assertEquals(ivan, store.get("a1"));
+    assertEquals(ivan, store.getByEmail("ivan@example.com"));
+    assertEquals(ivan, store.getByPhoneNumber("+70000000001"));
+    assertEquals(1L, store.getVersionAsync("a1").join());
+    assertEquals(new TouristRedisStore.IdAndVersion("a1", 1), store.getVersionByEmailAsync("ivan@example.com").join());
+  }
+
+  @Test
+  void upsertMovesTheIndexesOffTheOldValues() {
+    store.upsert(tourist("a1", "Ivan", "ivan@example.com", "+70000000001", 1L));
+    TouristResponseDTO renamed = tourist("a1", "Vanya", "vanya@example.com", "+70000000002", 2L);
+
+    TouristRedisStore.IndexedValues previous = store.upsert(renamed);
+
+    assertEquals(new TouristRedisStore.IndexedValues("ivan@example.com", "+70000000001", "Ivan-Petrov", 1L), previous);
+    assertNull(store.getByEmail("ivan@example.com"));
+    assertNull(store.getByPhoneNumber("+70000000001"));
+    assertNull(redisTemplate.opsForValue().get(TouristRedisStore.EMAIL_PREFIX + "ivan@example.com"));
+    assertEquals(renamed, store.getByEmail("vanya@example.com"));
+    assertNull(store.getVersionByEmailAsync("ivan@example.com").join());
+  }
+
+  @Test
+  void olderOrRepeatedVersionIsSkipped() {
+    TouristResponseDTO current = tourist("a1", "Ivan", "ivan@example.com", "+70000000001", 5L);
+    store.upsert(current);
+
+    TouristRedisStore.IndexedValues stale = store.upsert(tourist("a1", "Ivan", "old@example.com", "+70000000001", 4L));
+    store.upsert(tourist("a1", "Ivan", "same@example.com", "+70000000001", 5L));
+
+    assertEquals(5L, stale.version());
+    assertEquals(current, store.get("a1"));
+    assertEquals(current, store.getByEmail("ivan@example.com"));
+    assertNull(redisTemplate.opsForValue().get(TouristRedisStore.EMAIL_PREFIX + "old@example.com"));
+    assertNull(redisTemplate.opsForValue().get(TouristRedisStore.EMAIL_PREFIX + "same@example.com"));
+
+    TouristResponseDTO newer = tourist("a1", "Ivan", "new@example.com", "+70000000001", 6L);
+    store.upsert(newer);
+    assertEquals(newer, store.get("a1"));
+  }
+
+  @Test
+  void unversionedTouristIsAlwaysWritten() {
+    store.upsert(tourist("a1", "Ivan", "ivan@example.com", "+70000000001", 5L));
+    TouristResponseDTO unversioned = tourist("a1", "Ivan", "other@example.com", "+70000000001", null);
+
+    store.upsert(unversioned);
+
+    assertEquals(unversioned, store.get("a1"));
+    assertNull(store.getVersionAsync("a1").join());
+  }
+
+  @Test
+  void removeDropsTheTouristAndTheIndexesFromMeta() {
+    store.upsert(tourist("a1", "Ivan", "ivan@example.com", "+70000000001", 1L));
+
+    // the caller may only know the id, the script finds the rest in the meta hash
+    TouristRedisStore.IndexedValues previous = store.remove(TouristResponseDTO.builder().id("a1").build());
+
+    assertEquals("ivan@example.com", previous.email());
+    assertNull(store.get("a1"));
+    assertNull(redisTemplate.opsForValue().get(TouristRedisStore.EMAIL_PREFIX + "ivan@example.com"));
+    assertNull(redisTemplate.opsForValue().get(TouristRedisStore.PHONE_PREFIX + "+70000000001"));
+    assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey(TouristRedisStore.META_PREFIX + "a1")));
+  }
+
+  @Test
+  void indexEntryTakenOverByAnotherTouristIsKept() {
+    store.upsert(tourist("a1", "Ivan", "shared@example.com", "+70000000001", 1L));
+    TouristResponseDTO ann = tourist("a2", "Ann", "shared@example.com", "+70000000002", 1L);
+    store.upsert(ann);
+
+    store.remove(tourist("a1", "Ivan", "shared@example.com", "+70000000001", 1L));
+
+    assertEquals(ann, store.getByEmail("shared@example.com"));
+  }
+
+  @Test
+  void loadedListsFollowWritesAndChangeTheirTags() {
+    TouristResponseDTO ivan = tourist("a1", "Ivan", "ivan@example.com", "+70000000001", 1L);
+    TouristResponseDTO ann = tourist("a3", "Ann", "ann@example.com", "+70000000003", 1L);
+    store.putAll(List.of(ivan, ann));
+    store.putByNameAndSurname("Ivan-Petrov", List.of(ivan));
+    String allTag = store.getAllTagAsync().join();
+    assertEquals(store.tagOf(List.of(ivan, ann)), allTag);
+
+    TouristResponseDTO lee = tourist("a2", "Lee", "lee@example.com", "+70000000002", 1L);
+    store.upsert(lee);
+    assertEquals(List.of(ivan, lee, ann), store.getAll());
+    String afterInsert = store.getAllTagAsync().join();
+    assertNotEquals(allTag, afterInsert);
+
+    TouristResponseDTO renamed = tourist("a1", "Vanya", "ivan@example.com", "+70000000001", 2L);
+    String nameTag = store.getNameAndSurnameTagAsync("Ivan-Petrov").join();
+    store.upsert(renamed);
+    assertEquals(List.of(), store.getByNameAndSurname("Ivan-Petrov"));
+    assertNotEquals(nameTag, store.getNameAndSurnameTagAsync("Ivan-Petrov").join());
+    // a name set that was never loaded is not started by a write
+    assertNull(store.getByNameAndSurname("Vanya-Petrov"));
+
+    store.remove(lee);
+    assertEquals(List.of(renamed, ann), store.getAll());
+    assertNotEquals(afterInsert, store.getAllTagAsync().join());
+  }
+
+  @Test
+  void largeListIsLoadedInChunksAndPublishedWhole() {
+    List<TouristResponseDTO> tourists = new ArrayList<>();
+    for (int i = 0; i < TouristRedisStore.WRITE_CHUNK_SIZE * 2 + 50; i++) {
+      tourists.add(tourist(String.format("b%05d", i), "Name" + i, "t" + i + "@example.com", "+7" + i, 1L));
+    }
+
+    store.putAll(tourists);
+
+    assertEquals(tourists, store.getAll());
+    assertEquals(store.tagOf(tourists), store.getAllTagAsync().join());
+    assertTrue(redisTemplate.keys(TouristRedisStore.ALL_TOURISTS_KEY + "::loading::*").isEmpty());
+    Map<String, TouristResponseDTO> byEmail = store.getByEmails(List.of("t0@example.com", "t449@example.com"));
+    assertEquals(2, byEmail.size());
+  }
+
+  @Test
+  void emptyListIsLoadedToo() {
+    assertNull(store.getAll());
+
+    store.putAll(List.of());
+
+    assertEquals(List.of(), store.getAll());
+  }
+
+  private static TouristResponseDTO tourist(String id, String name, String email, String phoneNumber, Long version) {
+    return new TouristResponseDTO(id, name, "Petrov", email, phoneNumber, "ES", version);
+  }
+}
@@ -0,0 +1,107 @@
+package com.rus.nawm.apigateway.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class TwoLevelCacheTest {
+  private final ConcurrentMapCache remote = new ConcurrentMapCache("touristById", true);
+  private final com.github.benmanes.caffeine.cache.Cache<Object, Object> local = Caffeine.newBuilder().build();
+  private final CacheInvalidationPublisher publisher = mock(CacheInvalidationPublisher.class);
+
+  private TwoLevelCache cache;
+
+  @BeforeEach
+  void setUp() {
+    cache = new TwoLevelCache(remote, local, publisher);
+  }
+
+  @Test
+  void remoteHitIsKeptLocally() {
+    remote.put("1", "Ivan");
+
+    assertEquals("Ivan", cache.get("1").get());
+    remote.evict("1");
+    assertEquals("Ivan", cache.get("1", String.class));
+  }
+
+  @Test
+  void missLoadsOnceIntoBothTiers() {
+    assertEquals("Ivan", cache.get("1", () -> "Ivan"));
+
+    assertEquals("Ivan", remote.get("1").get());
+    assertEquals("Ivan", local.getIfPresent("1"));
+    assertEquals("Ivan", cache.get("1", () -> "Ann"));
+  }
+
+  @Test
+  void retrieveCompletesFromEitherTier() {
+    remote.put("1", "Ivan");
+
+    assertEquals("Ivan", cache.retrieve("1").join());
+    assertEquals("Ivan", local.getIfPresent("1"));
+    assertNull(cache.retrieve("2"));
+  }
+
+  @Test
+  void putWritesBothTiersAndTellsOtherInstances() {
+    cache.put("1", "Ivan");
+
+    assertEquals("Ivan", remote.get("1").get());
+    assertEquals("Ivan", local.getIfPresent("1"));
+    verify(publisher).publish("touristById", "1");
+  }
+
+  @Test
+  void fillIsNotBroadcast() {
+    cache.fill("1", "Ivan");
+
+    assertEquals("Ivan", remote.get("1").get());
+    assertEquals("Ivan", local.getIfPresent("1"));
+    verify(publisher, never()).publish(anyString(), any());
+  }
+
+  @Test
+  void evictAndClearDropBothTiersAndTellOtherInstances() {
+    cache.put("1", "Ivan");
+    cache.put("2", "Ann");
+
+    cache.evict("1");
+    assertNull(remote.get("1"));
+    assertNull(local.getIfPresent("1"));
+    verify(publisher, times(2)).publish("touristById", "1");
+
+    cache.clear();
+    assertNull(remote.get("2"));
+    assertNull(local.getIfPresent("2"));
+    verify(publisher).publish(anyString(), isNull());
+  }
+
+  @Test
+  void evictLocalLeavesRedisAlone() {
+    cache.put("1", "Ivan");
+
+    cache.evictLocal("1");
+    assertNull(local.getIfPresent("1"));
+    assertEquals("Ivan", remote.get("1").get());
+  }
+
+  @Test
+  void valueOfAnotherTypeIsRejected() {
+    cache.put("1", "Ivan");
+
+    assertThrows(IllegalStateException.class, () -> cache.get("1", Integer.class));
+  }
+}
@@ -0,0 +1,138 @@
+package com.rus.nawm.apigateway.mapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rus.nawm.apigateway.TouristServiceOuterClass;
+import com.rus.nawm.apigateway.api.dto.TouristRequestDTO;
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import com.rus.nawm.apigateway.service.TouristChange;
+import com.rus.nawm.apigateway.service.TouristWriteReply;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TouristMessageCodecTest {
+  private static final TouristResponseDTO IVAN =
+          new TouristResponseDTO("a1", "Ivan", "Petrov", "ivan@example.com", "+70000000001", "ES", 3L);
+
+  private final TouristMessageCodec codec = new TouristMessageCodec();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void protobufCommandCarriesTheTouristAndItsPublishTime() throws IOException {
+    Message message = codec.command(request(), TouristMessageCodec.Format.PROTOBUF);
+
+    assertEquals(TouristMessageCodec.PROTOBUF_CONTENT_TYPE, message.getMessageProperties().getContentType());
+    assertEquals(TouristMessageCodec.Format.PROTOBUF, TouristMessageCodec.Format.of(message));
+    assertNotNull(message.getMessageProperties().getTimestamp());
+    TouristServiceOuterClass.Tourist tourist = TouristServiceOuterClass.Tourist.parseFrom(message.getBody());
+    assertEquals("ivan@example.com", tourist.getEmail());
+    assertFalse(tourist.hasId());
+    assertFalse(tourist.hasVersion());
+  }
+
+  @Test
+  void jsonCommandIsTheTouristWrappedInABase64String() throws IOException {
+    Message message = codec.command(request(), TouristMessageCodec.Format.JSON);
+
+    assertEquals(TouristMessageCodec.Format.JSON, TouristMessageCodec.Format.of(message));
+    assertNotNull(message.getMessageProperties().getTimestamp());
+    byte[] json = objectMapper.readValue(message.getBody(), byte[].class);
+    assertEquals(request(), objectMapper.readValue(json, TouristRequestDTO.class));
+  }
+
+  @Test
+  void updatesAndDeletesNameTheirOperation() throws IOException {
+    Message update = codec.updateCommand(request(), TouristMessageCodec.Format.JSON);
+    Message protobufDelete = codec.deleteCommand("a1", TouristMessageCodec.Format.PROTOBUF);
+    Message jsonDelete = codec.deleteCommand("a1", TouristMessageCodec.Format.JSON);
+
+    assertEquals("PUT", update.getMessageProperties().getHeader(TouristMessageCodec.OPERATION_HEADER));
+    assertEquals("DELETE", protobufDelete.getMessageProperties().getHeader(TouristMessageCodec.OPERATION_HEADER));
+    assertEquals("a1", TouristServiceOuterClass.TouristDeleteCommand.parseFrom(protobufDelete.getBody()).getId());
+    assertEquals("a1", new String(objectMapper.readValue(jsonDelete.getBody(), byte[].class)));
+  }
+
+  @Test
+  void resultsAreReadInTheFormatTheyArriveIn() throws IOException {
+    TouristResponseDTO ann = new TouristResponseDTO("a2", "Ann", "Lee", "ann@example.com", "+70000000002", "PT", null);
+    Message protobuf = protobuf(TouristServiceOuterClass.TouristWriteResults.newBuilder()
+            .addTourists(TouristMapper.toProto(IVAN))
+            .addTourists(TouristMapper.toProto(ann))
+            .build().toByteArray());
+
+    assertEquals(List.of(IVAN, ann), codec.readResults(protobuf));
+    assertEquals(List.of(IVAN), codec.readResults(json(IVAN)));
+    assertEquals(List.of(IVAN, ann), codec.readResults(json(List.of(IVAN, ann))));
+  }
+
+  @Test
+  void emptyJsonResultIsRejected() throws IOException {
+    assertThrows(IOException.class, () -> codec.readResults(json(" ".getBytes())));
+  }
+
+  @Test
+  void repliesAreReadInTheFormatTheyArriveIn() throws IOException {
+    Message protobuf = protobuf(TouristServiceOuterClass.TouristWriteReply.newBuilder()
+            .setStatus(TouristServiceOuterClass.TouristWriteReply.Status.CONFLICT)
+            .build().toByteArray());
+    TouristWriteReply ok = new TouristWriteReply(TouristWriteReply.Status.OK, null, IVAN);
+
+    assertEquals(new TouristWriteReply(TouristWriteReply.Status.CONFLICT, null, null), codec.readReply(protobuf));
+    assertEquals(ok, codec.readReply(json(ok)));
+  }
+
+  @Test
+  void changeEventsAreUpsertsOnlyWhenTheyCarryATourist() throws IOException {
+    Message upsert = protobuf(TouristServiceOuterClass.TouristChangeEvent.newBuilder()
+            .setId("a1")
+            .setOperation(TouristServiceOuterClass.TouristChangeEvent.Operation.UPSERT)
+            .setTourist(TouristMapper.toProto(IVAN))
+            .build().toByteArray());
+    Message delete = protobuf(TouristServiceOuterClass.TouristChangeEvent.newBuilder()
+            .setId("a1")
+            .setOperation(TouristServiceOuterClass.TouristChangeEvent.Operation.DELETE)
+            .build().toByteArray());
+
+    TouristChange upserted = codec.readChange(upsert);
+    assertEquals(IVAN, upserted.tourist());
+    assertTrue(codec.readChange(delete).deleted());
+  }
+
+  @Test
+  void requestedAtIsReadFromAnyNumericHeader() {
+    Message stamped = MessageBuilder.withBody(new byte[0]).setHeader(TouristMessageCodec.REQUESTED_AT_HEADER, 42).build();
+
+    assertEquals(42L, codec.readRequestedAt(stamped));
+    assertNull(codec.readRequestedAt(MessageBuilder.withBody(new byte[0]).build()));
+  }
+
+  private static TouristRequestDTO request() {
+    return TouristRequestDTO.builder()
+            .name("Ivan").surname("Petrov").email("ivan@example.com").phoneNumber("+70000000001").country("ES")
+            .build();
+  }
+
+  /**
+   * A message as domain-service writes it in the legacy JSON format.
+   */
+  private Message json(Object payload) throws IOException {
+    byte[] body = payload instanceof byte[] bytes ? bytes : objectMapper.writeValueAsBytes(payload);
+    return new Jackson2JsonMessageConverter().toMessage(body, new MessageProperties());
+  }
+
+  private static Message protobuf(byte[] body) {
+    return MessageBuilder.withBody(body).setContentType(TouristMessageCodec.PROTOBUF_CONTENT_TYPE).build();
+  }
+}
@@ -0,0 +1,85 @@
+package com.rus.nawm.apigateway.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PendingRepliesTest {
+  private static final TouristWriteReply OK = new TouristWriteReply(TouristWriteReply.Status.OK, null, null);
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  void replyCompletesTheRegisteredWrite() {
+    PendingReplies replies = new PendingReplies(1, Duration.ofMinutes(1), meterRegistry);
+    CompletableFuture<TouristWriteReply> reply = replies.register("c1", "save");
+
+    replies.complete("c1", OK);
+
+    assertSame(OK, reply.join());
+    assertEquals(0, meterRegistry.get("tourist.write.pending").gauge().value());
+    assertEquals(1, meterRegistry.get("tourist.write.round.trip").tag("operation", "save").tag("outcome", "OK").timer().count());
+  }
+
+  @Test
+  void writeWithoutAReplyTimesOut() throws InterruptedException {
+    PendingReplies replies = new PendingReplies(1, Duration.ofMillis(50), meterRegistry);
+    CompletableFuture<TouristWriteReply> reply = replies.register("c1", "delete");
+
+    ExecutionException failure = assertThrows(ExecutionException.class, reply::get);
+
+    assertInstanceOf(TimeoutException.class, failure.getCause());
+    // the waiter can wake before the timeout's own bookkeeping has run on the scheduler thread
+    awaitRoundTrips("TIMEOUT", 1);
+    // a late reply is dropped rather than completing anything
+    replies.complete("c1", OK);
+    assertEquals(0, meterRegistry.get("tourist.write.pending").gauge().value());
+  }
+
+  @Test
+  void fullTableRejectsUntilASlotIsReleased() {
+    PendingReplies replies = new PendingReplies(2, Duration.ofMinutes(1), meterRegistry);
+    replies.register("c1", "save");
+    replies.register("c2", "save");
+
+    assertThrows(RejectedExecutionException.class, () -> replies.register("c3", "save"));
+    assertEquals(1, meterRegistry.get("tourist.write.rejected").counter().count());
+
+    replies.fail("c1", new IllegalStateException("publish failed"));
+    CompletableFuture<TouristWriteReply> reply = replies.register("c3", "save");
+    assertFalse(reply.isDone());
+    assertEquals(1, meterRegistry.get("tourist.write.round.trip").tag("outcome", "ERROR").timer().count());
+  }
+
+  @Test
+  void replyForAnUnknownCorrelationIdIsIgnored() {
+    PendingReplies replies = new PendingReplies(1, Duration.ofMinutes(1), meterRegistry);
+    CompletableFuture<TouristWriteReply> reply = replies.register("c1", "save");
+
+    replies.complete("other", OK);
+    replies.fail("other", new IllegalStateException());
+
+    assertFalse(reply.isDone());
+    assertEquals(1, meterRegistry.get("tourist.write.pending").gauge().value());
+  }
+
+  private void awaitRoundTrips(String outcome, long count) throws InterruptedException {
+    long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (meterRegistry.find("tourist.write.round.trip").tag("outcome", outcome).timers().stream()
+            .mapToLong(timer -> timer.count()).sum() < count && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, meterRegistry.get("tourist.write.round.trip").tag("outcome", outcome).timer().count());
+  }
+}
@@ -0,0 +1,169 @@
+package com.rus.nawm.apigateway.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rus.nawm.apigateway.api.dto.TouristImportJobDTO;
+import com.rus.nawm.apigateway.cache.TouristRedisStore;
+import com.rus.nawm.apigateway.cache.TwoLevelCacheManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TouristImportServiceTest {
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Map<String, Map<String, String>> hashes = new HashMap<>();
+  private final List<JsonNode> chunks = new ArrayList<>();
+
+  private TouristImportService importService;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    HashOperations<String, Object, Object> hash = mock(HashOperations.class);
+    doAnswer(call -> {
+      hashes.computeIfAbsent(call.getArgument(0), key -> new HashMap<>()).putAll(call.getArgument(1));
+      return null;
+    }).when(hash).putAll(anyString(), anyMap());
+    doAnswer(call -> {
+      hashes.computeIfAbsent(call.getArgument(0), key -> new HashMap<>()).put(call.getArgument(1), call.getArgument(2));
+      return null;
+    }).when(hash).put(anyString(), any(), any());
+    when(hash.putIfAbsent(anyString(), any(), any())).thenAnswer(call ->
+            hashes.computeIfAbsent(call.getArgument(0), key -> new HashMap<>())
+                    .putIfAbsent(call.getArgument(1), call.getArgument(2)) == null);
+    when(hash.increment(anyString(), any(), anyLong())).thenAnswer(call ->
+            Long.parseLong(hashes.computeIfAbsent(call.getArgument(0), key -> new HashMap<>())
+                    .merge(call.getArgument(1), String.valueOf((long) call.getArgument(2)),
+                            (a, b) -> String.valueOf(Long.parseLong(a) + Long.parseLong(b)))));
+    when(hash.entries(anyString())).thenAnswer(call -> new HashMap<>(hashes.getOrDefault(call.getArgument(0), Map.of())));
+    ListOperations<String, String> list = mock(ListOperations.class);
+    when(list.range(anyString(), anyLong(), anyLong())).thenReturn(List.of());
+    StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    when(redisTemplate.opsForHash()).thenReturn(hash);
+    when(redisTemplate.opsForList()).thenReturn(list);
+
+    RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    doAnswer(call -> {
+      chunks.add(objectMapper.readTree((byte[]) call.getArgument(2)));
+      return null;
+    }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class));
+
+    importService = new TouristImportService(rabbitTemplate, redisTemplate, mock(TouristRedisStore.class),
+            mock(TwoLevelCacheManager.class), 2, Duration.ofDays(1));
+  }
+
+  @Test
+  void csvColumnsAreMappedByHeaderAndQuotesUnescaped() throws IOException {
+    TouristImportJobDTO job = importTourists(TouristImportService.Format.CSV,
+            "Country,phoneNumber,email,name,extra",
+            "ES,+70000000001,ivan@example.com,\"Ivan \"\"Vanya\"\", Jr\",ignored");
+
+    assertEquals(1, job.getSubmitted());
+    JsonNode tourist = chunks.get(0).get("tourists").get(0);
+    assertEquals("Ivan \"Vanya\", Jr", tourist.get("name").asText());
+    assertEquals("ivan@example.com", tourist.get("email").asText());
+    assertEquals("+70000000001", tourist.get("phoneNumber").asText());
+    assertEquals("ES", tourist.get("country").asText());
+    assertTrue(tourist.get("surname").isNull());
+  }
+
+  @Test
+  void csvWithoutTheKeyColumnsIsRejected() {
+    assertThrows(IllegalArgumentException.class, () -> importTourists(TouristImportService.Format.CSV, "name,email", "Ivan,ivan@example.com"));
+    assertThrows(IllegalArgumentException.class, () -> importTourists(TouristImportService.Format.CSV));
+  }
+
+  @Test
+  void ndjsonRowsLoseTheirIdAndVersion() throws IOException {
+    importTourists(TouristImportService.Format.NDJSON,
+            "{\"id\":\"6ad46e1294336d1cf6eeadf7\",\"version\":3,\"email\":\"ivan@example.com\",\"phoneNumber\":\"+70000000001\"}");
+
+    JsonNode tourist = chunks.get(0).get("tourists").get(0);
+    assertTrue(tourist.get("id").isNull());
+    assertTrue(tourist.get("version").isNull());
+    assertEquals("ivan@example.com", tourist.get("email").asText());
+  }
+
+  @Test
+  void malformedAndIncompleteRowsAreCountedAsInvalid() throws IOException {
+    TouristImportJobDTO job = importTourists(TouristImportService.Format.NDJSON,
+            "{\"email\":\"ivan@example.com\",\"phoneNumber\":\"+70000000001\"}",
+            "",
+            "{not json",
+            "{\"email\":\"ann@example.com\"}",
+            "{\"email\":\"lee@example.com\",\"phoneNumber\":\" \"}");
+
+    assertEquals(4, job.getRowsRead());
+    assertEquals(3, job.getInvalidRows());
+    assertEquals(1, job.getSubmitted());
+    assertEquals(3, job.getRejected());
+  }
+
+  @Test
+  void rowsArePublishedInChunks() throws IOException {
+    importTourists(TouristImportService.Format.NDJSON,
+            row(1), row(2), row(3), row(4), row(5));
+
+    assertEquals(List.of(2, 2, 1), chunks.stream().map(chunk -> chunk.get("tourists").size()).toList());
+    assertEquals(1, chunks.stream().map(chunk -> chunk.get("jobId").asText()).distinct().count());
+  }
+
+  @Test
+  void jobCompletesOnceEveryRowHasAResult() throws IOException {
+    TouristImportJobDTO job = importTourists(TouristImportService.Format.NDJSON, row(1), row(2), row(3));
+    assertEquals(TouristImportService.Status.PROCESSING.name(), job.getStatus());
+
+    onImportResult(new TouristImportResult(job.getJobId(), 2, 1, 1, 0, 0, List.of("email:tourist1@example.com"), List.of()));
+    job = importService.getJob(job.getJobId()).orElseThrow();
+    assertEquals(TouristImportService.Status.PROCESSING.name(), job.getStatus());
+    assertNull(job.getFinishedAt());
+
+    onImportResult(new TouristImportResult(job.getJobId(), 1, 0, 0, 1, 0, List.of("phoneNumber:+70000000003"), List.of()));
+    job = importService.getJob(job.getJobId()).orElseThrow();
+    assertEquals(TouristImportService.Status.COMPLETED.name(), job.getStatus());
+    assertNotNull(job.getFinishedAt());
+    assertEquals(1, job.getAccepted());
+    assertEquals(2, job.getRejected());
+    assertEquals(1, job.getDuplicateEmails());
+    assertEquals(1, job.getDuplicatePhoneNumbers());
+  }
+
+  private TouristImportJobDTO importTourists(TouristImportService.Format format, String... lines) throws IOException {
+    byte[] upload = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+    return importService.importTourists(new ByteArrayInputStream(upload), format);
+  }
+
+  private void onImportResult(TouristImportResult result) throws IOException {
+    ReflectionTestUtils.invokeMethod(importService, "onImportResultMessage", objectMapper.writeValueAsBytes(result));
+  }
+
+  private static String row(int i) {
+    return "{\"email\":\"tourist" + i + "@example.com\",\"phoneNumber\":\"+7000000000" + i + "\"}";
+  }
+}
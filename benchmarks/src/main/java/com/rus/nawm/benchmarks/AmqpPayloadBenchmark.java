@@ -0,0 +1,136 @@
+package com.rus.nawm.benchmarks;
+
+import com.rus.nawm.apigateway.api.dto.TouristRequestDTO;
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU per message of the AMQP write path in both payload formats, one step per side: the
+ * gateway encoding a command, domain-service decoding it and encoding the result, and the
+ * gateway decoding the result. {@code size} is the tourists per result message, 1 for the
+ * per-message listener and larger for the batch listener.
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar AmqpPayloadBenchmark -prof gc
+ * java -cp benchmarks/target/benchmarks.jar com.rus.nawm.benchmarks.AmqpPayloadBenchmark
+ * </pre>
+ *
+ * The second command prints the message body size for every format instead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AmqpPayloadBenchmark {
+
+  @Param({"json", "protobuf"})
+  public String format;
+
+  @Param({"1", "100"})
+  public int size;
+
+  private final com.rus.nawm.apigateway.mapper.TouristMessageCodec gatewayCodec =
+          new com.rus.nawm.apigateway.mapper.TouristMessageCodec();
+  private final com.rus.nawm.domain.domainservice.mapper.TouristMessageCodec domainCodec =
+          new com.rus.nawm.domain.domainservice.mapper.TouristMessageCodec();
+
+  private com.rus.nawm.apigateway.mapper.TouristMessageCodec.Format gatewayFormat;
+  private com.rus.nawm.domain.domainservice.mapper.TouristMessageCodec.Format domainFormat;
+  private TouristRequestDTO command;
+  private List<Tourist> results;
+  private Message encodedCommand;
+  private Message encodedResults;
+
+  @Setup
+  public void setUp() throws IOException {
+    gatewayFormat = com.rus.nawm.apigateway.mapper.TouristMessageCodec.Format.valueOf(format.toUpperCase());
+    domainFormat = com.rus.nawm.domain.domainservice.mapper.TouristMessageCodec.Format.valueOf(format.toUpperCase());
+    command = command(0);
+    results = results(size);
+    encodedCommand = gatewayCodec.command(command, gatewayFormat);
+    encodedResults = domainCodec.results(results, domainFormat);
+  }
+
+  @Benchmark
+  public Message encodeCommand() throws IOException {
+    return gatewayCodec.command(command, gatewayFormat);
+  }
+
+  @Benchmark
+  public Tourist decodeCommand() throws IOException {
+    return domainCodec.readTourist(encodedCommand);
+  }
+
+  @Benchmark
+  public Message encodeResults() throws IOException {
+    return domainCodec.results(results, domainFormat);
+  }
+
+  @Benchmark
+  public List<TouristResponseDTO> decodeResults() throws IOException {
+    return gatewayCodec.readResults(encodedResults);
+  }
+
+  static TouristRequestDTO command(int i) {
+    Tourist tourist = tourist(i);
+    return TouristRequestDTO.builder()
+            .name(tourist.getName())
+            .surname(tourist.getSurname())
+            .email(tourist.getEmail())
+            .phoneNumber(tourist.getPhoneNumber())
+            .country(tourist.getCountry())
+            .build();
+  }
+
+  static List<Tourist> results(int size) {
+    List<Tourist> tourists = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      tourists.add(tourist(i));
+    }
+    return tourists;
+  }
+
+  static Tourist tourist(int i) {
+    return Tourist.builder()
+            .id(String.format("678d0a83c419c90979e%05x", i))
+            .name("John" + i % 50)
+            .surname("Smith" + i % 200)
+            .email("john.smith" + i + "@example.com")
+            .phoneNumber("+1234" + (5000000 + i))
+            .country(i % 3 == 0 ? "Germany" : "Russia")
+            .build();
+  }
+
+  public static void main(String[] args) throws IOException {
+    var gatewayCodec = new com.rus.nawm.apigateway.mapper.TouristMessageCodec();
+    var domainCodec = new com.rus.nawm.domain.domainservice.mapper.TouristMessageCodec();
+    System.out.printf("%-10s %14s %14s %14s %16s%n", "format", "command bytes", "result bytes", "batch bytes", "bytes/tourist");
+    for (String format : new String[]{"json", "protobuf"}) {
+      int commandBytes = gatewayCodec.command(command(0),
+              com.rus.nawm.apigateway.mapper.TouristMessageCodec.Format.valueOf(format.toUpperCase())).getBody().length;
+      var domainFormat = com.rus.nawm.domain.domainservice.mapper.TouristMessageCodec.Format.valueOf(format.toUpperCase());
+      int resultBytes = domainCodec.result(tourist(0), domainFormat).getBody().length;
+      int batchBytes = domainCodec.results(results(100), domainFormat).getBody().length;
+      System.out.printf("%-10s %14d %14d %14d %16.1f%n", format, commandBytes, resultBytes, batchBytes, batchBytes / 100.0);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.rus.nawm.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point of {@code benchmarks.jar}: runs JMH with the {@code gc} profiler unless the command
+ * line picks profilers itself, so every run reports {@code gc.alloc.rate.norm}, the bytes
+ * allocated per operation, next to the time.
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar                          # everything, with -prof gc
+ * java -jar benchmarks/target/benchmarks.jar CacheUpdateBenchmark -prof stack
+ * java -jar benchmarks/target/benchmarks.jar -rf json -rff results.json
+ * </pre>
+ */
+public final class BenchmarkMain {
+
+  private BenchmarkMain() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    List<String> jmhArgs = new ArrayList<>(List.of(args));
+    if (!jmhArgs.contains("-prof") && !jmhArgs.contains("-lprof") && !jmhArgs.contains("-l") && !jmhArgs.contains("-h")) {
+      jmhArgs.add("-prof");
+      jmhArgs.add("gc");
+    }
+    Main.main(jmhArgs.toArray(String[]::new));
+  }
+}
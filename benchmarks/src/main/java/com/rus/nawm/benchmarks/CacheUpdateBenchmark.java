@@ -0,0 +1,83 @@
+package com.rus.nawm.benchmarks;
+
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import com.rus.nawm.apigateway.cache.TouristProtobufRedisSerializer;
+import com.rus.nawm.apigateway.cache.TouristRedisStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.rus.nawm.benchmarks.RedisCodecBenchmark.tourist;
+import static com.rus.nawm.benchmarks.RedisCodecBenchmark.value;
+
+/**
+ * Gateway CPU per applied update, for an {@code allTourists} list of {@code size} tourists.
+ * <ul>
+ *   <li>{@code listMutation}: what {@code onUpdateMethod} used to do for each cached list, read
+ *   the whole list through {@link GenericJackson2JsonRedisSerializer}, replace the tourist and
+ *   write the list back;</li>
+ *   <li>{@code indexedUpsert}: the client side of {@link TouristRedisStore#upsert} that replaced
+ *   it, encoding one tourist and its index keys. The Lua script then touches a fixed number of
+ *   keys in Redis, whatever the list size.</li>
+ * </ul>
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar CacheUpdateBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheUpdateBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int size;
+
+  private final GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer();
+  private final TouristProtobufRedisSerializer protobufSerializer = new TouristProtobufRedisSerializer(1024);
+
+  private byte[] cachedList;
+  private TouristResponseDTO updated;
+
+  @Setup
+  public void setUp() {
+    cachedList = jsonSerializer.serialize(value(size));
+    updated = tourist(size / 2);
+    updated.setName("Renamed");
+  }
+
+  @Benchmark
+  @SuppressWarnings("unchecked")
+  public byte[] listMutation() {
+    List<TouristResponseDTO> tourists = (List<TouristResponseDTO>) jsonSerializer.deserialize(cachedList);
+    tourists.removeIf(tourist -> tourist.getId().equals(updated.getId()));
+    tourists.add(updated);
+    return jsonSerializer.serialize(tourists);
+  }
+
+  @Benchmark
+  public Object[] indexedUpsert() {
+    return new Object[]{
+            protobufSerializer.serialize(updated),
+            updated.getId(),
+            updated.getEmail(),
+            updated.getPhoneNumber(),
+            TouristRedisStore.nameAndSurnameKey(updated.getName(), updated.getSurname())
+    };
+  }
+}
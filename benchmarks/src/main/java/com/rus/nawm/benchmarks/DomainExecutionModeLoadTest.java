@@ -0,0 +1,140 @@
+package com.rus.nawm.benchmarks;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.rus.nawm.apigateway.TouristServiceGrpc;
+import com.rus.nawm.apigateway.TouristServiceOuterClass;
+import com.rus.nawm.domain.domainservice.config.BlockingIoExecutors;
+import com.rus.nawm.domain.domainservice.config.ConcurrencyLimiter;
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop load against a gRPC server wired like domain-service's {@code ExecutionConfig},
+ * whose handler blocks on a simulated Mongo: a pool of {@code mongoPoolSize} connections with
+ * a fixed per-query latency. Prints throughput, latency percentiles and the peak number of
+ * platform threads for one execution mode.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.rus.nawm.benchmarks.DomainExecutionModeLoadTest \
+ *     [platform|virtual] [concurrency=2000] [mongoLatencyMillis=5] [seconds=20]
+ * </pre>
+ *
+ * Virtual threads need the load test itself to run on Java 21+.
+ */
+public class DomainExecutionModeLoadTest {
+
+  private static final int PLATFORM_THREADS = 200;
+  private static final int MAX_CONCURRENCY = 100;
+  private static final int MONGO_POOL_SIZE = 100;
+
+  public static void main(String[] args) throws Exception {
+    boolean virtual = args.length > 0 && "virtual".equals(args[0]);
+    int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    long mongoLatencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 5;
+    int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+    Semaphore mongoPool = new Semaphore(MONGO_POOL_SIZE, true);
+    ExecutorService executor = BlockingIoExecutors.newExecutor(virtual, PLATFORM_THREADS, "grpc-");
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(MAX_CONCURRENCY, new SimpleMeterRegistry());
+    Server server = Grpc.newServerBuilderForPort(0, InsecureServerCredentials.create())
+            .executor(limiter.limit(executor))
+            .addService(new TouristServiceGrpc.TouristServiceImplBase() {
+              @Override
+              public void getTouristById(TouristServiceOuterClass.GetTouristByIdRequest request,
+                                         StreamObserver<TouristServiceOuterClass.Tourist> responseObserver) {
+                mongoPool.acquireUninterruptibly();
+                try {
+                  Thread.sleep(mongoLatencyMillis);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                } finally {
+                  mongoPool.release();
+                }
+                responseObserver.onNext(TouristServiceOuterClass.Tourist.newBuilder().setId(request.getId()).build());
+                responseObserver.onCompleted();
+              }
+            })
+            .build()
+            .start();
+    ManagedChannel channel = Grpc.newChannelBuilder("localhost:" + server.getPort(), InsecureChannelCredentials.create()).build();
+    TouristServiceGrpc.TouristServiceFutureStub stub = TouristServiceGrpc.newFutureStub(channel);
+
+    // warm up, then measure
+    run(stub, concurrency, TimeUnit.SECONDS.toNanos(3));
+    ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+    long[] latencies = run(stub, concurrency, TimeUnit.SECONDS.toNanos(seconds));
+    int peakThreads = ManagementFactory.getThreadMXBean().getPeakThreadCount();
+
+    Arrays.sort(latencies);
+    System.out.printf("mode=%s virtualThreads=%s concurrency=%d mongoLatency=%dms%n",
+            virtual ? "virtual" : "platform", virtual && BlockingIoExecutors.virtualThreadsAvailable(), concurrency, mongoLatencyMillis);
+    System.out.printf("requests=%d throughput=%.0f req/s p50=%.1fms p99=%.1fms max=%.1fms peakPlatformThreads=%d%n",
+            latencies.length, latencies.length / (double) seconds,
+            percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6, peakThreads);
+
+    channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    executor.shutdownNow();
+  }
+
+  /**
+   * Keeps {@code concurrency} calls outstanding until {@code durationNanos} has passed and
+   * returns the latency of every call that completed.
+   */
+  private static long[] run(TouristServiceGrpc.TouristServiceFutureStub stub, int concurrency, long durationNanos)
+          throws InterruptedException {
+    long deadline = System.nanoTime() + durationNanos;
+    long[] latencies = new long[1 << 22];
+    AtomicInteger completed = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(concurrency);
+    TouristServiceOuterClass.GetTouristByIdRequest request =
+            TouristServiceOuterClass.GetTouristByIdRequest.newBuilder().setId("load").build();
+    for (int i = 0; i < concurrency; i++) {
+      new Object() {
+        void next() {
+          if (System.nanoTime() >= deadline) {
+            done.countDown();
+            return;
+          }
+          long start = System.nanoTime();
+          Futures.addCallback(stub.getTouristById(request), new FutureCallback<>() {
+            @Override
+            public void onSuccess(TouristServiceOuterClass.Tourist result) {
+              int index = completed.getAndIncrement();
+              if (index < latencies.length) {
+                latencies[index] = System.nanoTime() - start;
+              }
+              next();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+              done.countDown();
+            }
+          }, MoreExecutors.directExecutor());
+        }
+      }.next();
+    }
+    done.await();
+    return Arrays.copyOf(latencies, Math.min(completed.get(), latencies.length));
+  }
+
+  private static double percentile(long[] sorted, double percentile) {
+    return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+  }
+}
@@ -0,0 +1,115 @@
+package com.rus.nawm.benchmarks;
+
+import com.rus.nawm.apigateway.TouristServiceGrpc;
+import com.rus.nawm.apigateway.TouristServiceOuterClass;
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for domain-service that answers every lookup after a fixed delay without holding a
+ * thread, so the caller's execution model is the only thing that limits throughput.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.rus.nawm.benchmarks.FakeTouristUpstream 8090 20
+ * </pre>
+ *
+ * starts it on port 8090 with 20 ms latency, e.g. to run the gateway against it.
+ */
+public class FakeTouristUpstream extends TouristServiceGrpc.TouristServiceImplBase implements AutoCloseable {
+
+  private static final int ALL_TOURISTS = 100;
+
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+  private final long latencyMillis;
+  private final Server server;
+
+  public FakeTouristUpstream(int port, long latencyMillis) throws IOException {
+    this.latencyMillis = latencyMillis;
+    this.server = Grpc.newServerBuilderForPort(port, InsecureServerCredentials.create())
+            .addService(this)
+            .directExecutor()
+            .build()
+            .start();
+  }
+
+  public int getPort() {
+    return server.getPort();
+  }
+
+  @Override
+  public void getTouristById(TouristServiceOuterClass.GetTouristByIdRequest request, StreamObserver<TouristServiceOuterClass.Tourist> responseObserver) {
+    respondLater(tourist(request.getId(), request.getId() + "@example.com", "+49" + request.getId().hashCode()), responseObserver);
+  }
+
+  @Override
+  public void getTouristByEmail(TouristServiceOuterClass.GetTouristsByEmailRequest request, StreamObserver<TouristServiceOuterClass.Tourist> responseObserver) {
+    respondLater(tourist(Integer.toHexString(request.getEmail().hashCode()), request.getEmail(), "+49" + request.getEmail().hashCode()), responseObserver);
+  }
+
+  @Override
+  public void getTouristByPhoneNumber(TouristServiceOuterClass.GetTouristsByPhoneRequest request, StreamObserver<TouristServiceOuterClass.Tourist> responseObserver) {
+    respondLater(tourist(Integer.toHexString(request.getPhoneNumber().hashCode()), request.getPhoneNumber() + "@example.com", request.getPhoneNumber()), responseObserver);
+  }
+
+  @Override
+  public void getAllTourists(TouristServiceOuterClass.Empty request, StreamObserver<TouristServiceOuterClass.GetTouristsResponse> responseObserver) {
+    TouristServiceOuterClass.GetTouristsResponse.Builder response = TouristServiceOuterClass.GetTouristsResponse.newBuilder();
+    for (int i = 0; i < ALL_TOURISTS; i++) {
+      response.addTourists(tourist(Integer.toString(i), i + "@example.com", "+49" + i));
+    }
+    respondLater(response.build(), responseObserver);
+  }
+
+  @Override
+  public void listTourists(TouristServiceOuterClass.ListTouristsRequest request, StreamObserver<TouristServiceOuterClass.ListTouristsResponse> responseObserver) {
+    int from = request.getPageToken().isEmpty() ? 0 : Integer.parseInt(request.getPageToken());
+    int to = Math.min(from + Math.max(request.getLimit(), 1), ALL_TOURISTS);
+    TouristServiceOuterClass.ListTouristsResponse.Builder response = TouristServiceOuterClass.ListTouristsResponse.newBuilder();
+    for (int i = from; i < to; i++) {
+      response.addTourists(tourist(Integer.toString(i), i + "@example.com", "+49" + i));
+    }
+    if (to < ALL_TOURISTS) {
+      response.setNextPageToken(Integer.toString(to));
+    }
+    respondLater(response.build(), responseObserver);
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    scheduler.shutdownNow();
+  }
+
+  private <T> void respondLater(T response, StreamObserver<T> responseObserver) {
+    scheduler.schedule(() -> {
+      responseObserver.onNext(response);
+      responseObserver.onCompleted();
+    }, latencyMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private static TouristServiceOuterClass.Tourist tourist(String id, String email, String phoneNumber) {
+    return TouristServiceOuterClass.Tourist.newBuilder()
+            .setId(id)
+            .setName("Name" + id)
+            .setSurname("Surname" + id)
+            .setEmail(email)
+            .setPhoneNumber(phoneNumber)
+            .setCountry("Germany")
+            .build();
+  }
+
+  public static void main(String[] args) throws Exception {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 8090;
+    long latencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 20;
+    FakeTouristUpstream upstream = new FakeTouristUpstream(port, latencyMillis);
+    System.out.printf("Fake tourist upstream listening on %d with %d ms latency%n", upstream.getPort(), latencyMillis);
+    upstream.server.awaitTermination();
+  }
+}
@@ -0,0 +1,111 @@
+package com.rus.nawm.benchmarks;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.rus.nawm.apigateway.TouristServiceGrpc;
+import com.rus.nawm.apigateway.TouristServiceOuterClass;
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.ManagedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the gateway's upstream call for the two {@code gateway.execution-mode} settings
+ * while {@link #REQUESTS_IN_FLIGHT} requests are outstanding against a slow domain service.
+ * <ul>
+ *   <li>{@code blocking}: each request holds one of {@code requestThreads} threads (Tomcat's
+ *   default {@code server.tomcat.threads.max} is 200) for the whole blocking stub call;</li>
+ *   <li>{@code async}: every request is issued through the future stub at once and no thread
+ *   waits for a reply.</li>
+ * </ul>
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar GatewayExecutionModeBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GatewayExecutionModeBenchmark {
+
+  static final int REQUESTS_IN_FLIGHT = 2000;
+
+  @Param({"blocking", "async"})
+  public String mode;
+
+  @Param({"50", "200"})
+  public long upstreamLatencyMillis;
+
+  @Param({"200"})
+  public int requestThreads;
+
+  private FakeTouristUpstream upstream;
+  private ManagedChannel channel;
+  private TouristServiceGrpc.TouristServiceBlockingStub blockingStub;
+  private TouristServiceGrpc.TouristServiceFutureStub futureStub;
+  private ExecutorService requestPool;
+  private List<TouristServiceOuterClass.GetTouristByIdRequest> requests;
+
+  @Setup
+  public void setUp() throws Exception {
+    upstream = new FakeTouristUpstream(0, upstreamLatencyMillis);
+    channel = Grpc.newChannelBuilder("localhost:" + upstream.getPort(), InsecureChannelCredentials.create()).build();
+    blockingStub = TouristServiceGrpc.newBlockingStub(channel);
+    futureStub = TouristServiceGrpc.newFutureStub(channel);
+    requestPool = Executors.newFixedThreadPool(requestThreads);
+    requests = new ArrayList<>(REQUESTS_IN_FLIGHT);
+    for (int i = 0; i < REQUESTS_IN_FLIGHT; i++) {
+      requests.add(TouristServiceOuterClass.GetTouristByIdRequest.newBuilder().setId(Integer.toString(i)).build());
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    requestPool.shutdownNow();
+    channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    upstream.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(REQUESTS_IN_FLIGHT)
+  public List<TouristServiceOuterClass.Tourist> burst() throws Exception {
+    if ("blocking".equals(mode)) {
+      List<Future<TouristServiceOuterClass.Tourist>> futures = new ArrayList<>(REQUESTS_IN_FLIGHT);
+      for (TouristServiceOuterClass.GetTouristByIdRequest request : requests) {
+        futures.add(requestPool.submit(() -> blockingStub.getTouristById(request)));
+      }
+      List<TouristServiceOuterClass.Tourist> tourists = new ArrayList<>(REQUESTS_IN_FLIGHT);
+      for (Future<TouristServiceOuterClass.Tourist> future : futures) {
+        tourists.add(future.get());
+      }
+      return tourists;
+    }
+    List<ListenableFuture<TouristServiceOuterClass.Tourist>> futures = new ArrayList<>(REQUESTS_IN_FLIGHT);
+    for (TouristServiceOuterClass.GetTouristByIdRequest request : requests) {
+      futures.add(futureStub.getTouristById(request));
+    }
+    return Futures.allAsList(futures).get();
+  }
+}
@@ -0,0 +1,437 @@
+package com.rus.nawm.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rus.nawm.apigateway.ApiGatewayApplication;
+import com.rus.nawm.apigateway.api.dto.TouristRequestDTO;
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import com.rus.nawm.domain.domainservice.DomainServiceApplication;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.qpid.server.SystemLauncher;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Boots domain-service and api-gateway in this JVM against local stand-ins, so that a load test
+ * needs neither {@code infra/docker-compose.yaml} nor anything listening on the usual ports:
+ * <ul>
+ *   <li>gRPC: domain-service serves on an in-process transport the gateway's channel points at;</li>
+ *   <li>Mongo: mongo-java-server with its in-memory backend and oplog, for the change stream. It
+ *   ignores compound indexes, so name and surname lookups that miss the caches scan the collection;</li>
+ *   <li>Redis: the redis-server bundled with embedded-redis, run as a child process and without
+ *   persistence, since an in-JVM Redis serialises the gateway's Lua scripts behind a global lock
+ *   and makes Redis the bottleneck;</li>
+ *   <li>RabbitMQ: an in-memory Qpid broker speaking AMQP 0-9-1.</li>
+ * </ul>
+ * It seeds {@link #SEED_TOURISTS} tourists, then replays the {@code test.http} scenarios against
+ * the gateway open-loop at {@code rate} requests per second in the given mix, for
+ * {@link #WARMUP_SECONDS} unrecorded seconds and then {@code seconds} measured ones. Latency is
+ * taken from the moment each request was due, so a stall shows up in the percentiles instead of
+ * slowing the load down. Throughput and p50/p99/p999 per operation are printed and written as
+ * JSON to {@code report}.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.rus.nawm.benchmarks.LoadTestHarness \
+ *     [rate=500] [seconds=30] [mix=create=5,getById=40,getByEmail=15,getByPhone=15,getByName=15,update=7,delete=3] \
+ *     [report=load-report.json]
+ * </pre>
+ *
+ * Writes run in {@code await-reply} mode, so that creates answer with the id later requests use.
+ * Service settings can be overridden with system properties, e.g.
+ * {@code -Dgateway.execution-mode=async} or {@code -Dmessaging.batch.enabled=true}.
+ */
+public class LoadTestHarness {
+
+  private static final int SEED_TOURISTS = 1000;
+  private static final int SEED_CONCURRENCY = 32;
+  private static final int WARMUP_SECONDS = 10;
+  private static final long DRAIN_TIMEOUT_SECONDS = 30;
+  private static final String DEFAULT_MIX =
+          "create=5,getById=40,getByEmail=15,getByPhone=15,getByName=15,update=7,delete=3";
+  private static final String IN_PROCESS_NAME = "loadtest";
+  private static final String[] COUNTRIES = {"Russia", "Germany", "France", "Spain", "Italy", "Japan", "Brazil", "Canada"};
+
+  enum Operation {
+    CREATE("create"),
+    GET_BY_ID("getById"),
+    GET_BY_EMAIL("getByEmail"),
+    GET_BY_PHONE("getByPhone"),
+    GET_BY_NAME("getByName"),
+    UPDATE("update"),
+    DELETE("delete");
+
+    private final String key;
+
+    Operation(String key) {
+      this.key = key;
+    }
+
+    static Operation of(String key) {
+      return Arrays.stream(values())
+              .filter(operation -> operation.key.equals(key))
+              .findFirst()
+              .orElseThrow(() -> new IllegalArgumentException("Unknown operation " + key));
+    }
+  }
+
+  public record OperationReport(long requests, long errors, double throughput,
+                                double p50Millis, double p99Millis, double p999Millis, double maxMillis) {
+  }
+
+  public static void main(String[] args) throws Exception {
+    int rate = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+    Map<Operation, Integer> mix = parseMix(args.length > 2 ? args[2] : DEFAULT_MIX);
+    Path report = Path.of(args.length > 3 ? args[3] : "load-report.json");
+    System.setProperty("logback.configurationFile", "logback-loadtest.xml");
+
+    MemoryBackend mongoBackend = new MemoryBackend();
+    mongoBackend.enableOplog();
+    MongoServer mongo = new MongoServer(mongoBackend);
+    InetSocketAddress mongoAddress = mongo.bind();
+    int redisPort = freePort();
+    RedisServer redis = RedisServer.newRedisServer()
+            .bind("localhost")
+            .port(redisPort)
+            .setting("save \"\"")
+            .onShutdownForceStop(true)
+            .build();
+    redis.start();
+    int amqpPort = freePort();
+    SystemLauncher broker = startBroker(amqpPort);
+    // only there to keep the stand-ins quiet before Spring Boot takes over logging with logging.config
+    System.clearProperty("logback.configurationFile");
+
+    Map<String, Object> common = new HashMap<>();
+    // nothing from either module's application.yaml, only one of them survives shading
+    common.put("spring.config.name", "loadtest");
+    common.put("logging.config", "classpath:logback-loadtest.xml");
+    common.put("spring.main.banner-mode", "off");
+    common.put("server.port", 0);
+    common.put("spring.data.mongodb.uri", "mongodb://localhost:" + mongoAddress.getPort() + "/touristService");
+    common.put("spring.data.mongodb.auto-index-creation", true);
+    common.put("spring.data.redis.host", "localhost");
+    common.put("spring.data.redis.port", redisPort);
+    common.put("spring.rabbitmq.host", "localhost");
+    common.put("spring.rabbitmq.port", amqpPort);
+    common.put("spring.rabbitmq.username", "rabbit");
+    common.put("spring.rabbitmq.password", "1234");
+
+    ConfigurableApplicationContext domain = new SpringApplicationBuilder(DomainServiceApplication.class)
+            .properties(common)
+            .properties(Map.of(
+                    "grpc.server.port", -1,
+                    "grpc.server.in-process-name", IN_PROCESS_NAME))
+            .run();
+    ConfigurableApplicationContext gateway = new SpringApplicationBuilder(ApiGatewayApplication.class)
+            .properties(common)
+            .properties(Map.of(
+                    "grpc.server.port", -1,
+                    "grpc.client.touristService.address", "in-process:" + IN_PROCESS_NAME,
+                    "gateway.write-mode", "await-reply",
+                    "cache.protobuf-codec.caches", "tourists,touristsByEmail,touristsByPhone,touristsByNameAndSurname,allTourists,touristPages",
+                    "server.tomcat.max-connections", 20000,
+                    "spring.mvc.async.request-timeout", "30m"))
+            .run();
+
+    LoadTestHarness harness = new LoadTestHarness(
+            "http://localhost:" + gateway.getEnvironment().getProperty("local.server.port") + "/api/v1/tourist", mix);
+    try {
+      harness.seed();
+      harness.runAtRate(rate, WARMUP_SECONDS);
+      Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+      Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+      harness.runAtRate(rate, seconds, latencies, errors);
+
+      Map<String, Object> result = new LinkedHashMap<>();
+      result.put("rate", rate);
+      result.put("seconds", seconds);
+      result.put("seedTourists", SEED_TOURISTS);
+      Map<String, Integer> mixByKey = new LinkedHashMap<>();
+      mix.forEach((operation, weight) -> mixByKey.put(operation.key, weight));
+      result.put("mix", mixByKey);
+      Map<String, OperationReport> operations = new LinkedHashMap<>();
+      Histogram total = new Histogram(3);
+      long totalErrors = 0;
+      for (Operation operation : mix.keySet()) {
+        operations.put(operation.key, report(latencies.get(operation), errors.get(operation).sum(), seconds));
+        total.add(latencies.get(operation));
+        totalErrors += errors.get(operation).sum();
+      }
+      result.put("operations", operations);
+      result.put("total", report(total, totalErrors, seconds));
+
+      operations.forEach((key, operation) -> print(key, operation));
+      print("total", (OperationReport) result.get("total"));
+      harness.objectMapper.writerWithDefaultPrettyPrinter().writeValue(report.toFile(), result);
+      System.out.println("Report written to " + report.toAbsolutePath());
+    } finally {
+      gateway.close();
+      domain.close();
+      broker.shutdown();
+      redis.stop();
+      mongo.shutdownNow();
+    }
+    System.exit(0);
+  }
+
+  private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final AtomicLong sequence = new AtomicLong();
+  private final List<TouristResponseDTO> tourists = new ArrayList<>();
+  private final String baseUrl;
+  private final Operation[] operations;
+  private final int[] cumulativeWeights;
+
+  LoadTestHarness(String baseUrl, Map<Operation, Integer> mix) {
+    this.baseUrl = baseUrl;
+    this.operations = mix.keySet().toArray(Operation[]::new);
+    this.cumulativeWeights = new int[operations.length];
+    int sum = 0;
+    for (int i = 0; i < operations.length; i++) {
+      sum += mix.get(operations[i]);
+      cumulativeWeights[i] = sum;
+    }
+  }
+
+  /**
+   * Creates the tourists the first reads, updates and deletes pick from, with
+   * {@link #SEED_CONCURRENCY} creates outstanding.
+   */
+  void seed() throws InterruptedException {
+    Semaphore permits = new Semaphore(SEED_CONCURRENCY);
+    for (int i = 0; i < SEED_TOURISTS; i++) {
+      permits.acquire();
+      send(Operation.CREATE).whenComplete((response, error) -> permits.release());
+    }
+    permits.acquire(SEED_CONCURRENCY);
+    if (size() < SEED_TOURISTS) {
+      throw new IllegalStateException("Only " + size() + " of " + SEED_TOURISTS + " seed tourists were created");
+    }
+  }
+
+  void runAtRate(int rate, int seconds) throws InterruptedException {
+    runAtRate(rate, seconds, new EnumMap<>(Operation.class), new EnumMap<>(Operation.class));
+  }
+
+  /**
+   * Issues {@code rate * seconds} requests, one every {@code 1 / rate} seconds whether or not the
+   * previous ones have completed, and waits for them to complete.
+   */
+  void runAtRate(int rate, int seconds, Map<Operation, Histogram> latencies, Map<Operation, LongAdder> errors)
+          throws InterruptedException {
+    for (Operation operation : operations) {
+      latencies.put(operation, new ConcurrentHistogram(3));
+      errors.put(operation, new LongAdder());
+    }
+    AtomicInteger inFlight = new AtomicInteger();
+    long period = TimeUnit.SECONDS.toNanos(1) / rate;
+    long requests = (long) rate * seconds;
+    long start = System.nanoTime();
+    for (long i = 0; i < requests; i++) {
+      long due = start + i * period;
+      for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+        LockSupport.parkNanos(wait);
+      }
+      Operation operation = pick();
+      inFlight.incrementAndGet();
+      send(operation).whenComplete((response, error) -> {
+        if (error == null && response.statusCode() / 100 == 2) {
+          latencies.get(operation).recordValue(System.nanoTime() - due);
+        } else {
+          errors.get(operation).increment();
+        }
+        inFlight.decrementAndGet();
+      });
+    }
+    long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS);
+    while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  /**
+   * A weighted random operation, or a create while there is no tourist left to read, update or
+   * delete.
+   */
+  private Operation pick() {
+    int roll = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+    int index = 0;
+    while (cumulativeWeights[index] <= roll) {
+      index++;
+    }
+    return operations[index] != Operation.CREATE && size() == 0 ? Operation.CREATE : operations[index];
+  }
+
+  private CompletableFuture<HttpResponse<String>> send(Operation operation) {
+    return switch (operation) {
+      case CREATE -> {
+        long n = sequence.getAndIncrement();
+        TouristRequestDTO tourist = TouristRequestDTO.builder()
+                .name("Name" + n % 100)
+                .surname("Surname" + n % 10)
+                .email("load" + n + "@example.com")
+                .phoneNumber(String.format("+7%010d", n))
+                .country(COUNTRIES[(int) (n % COUNTRIES.length)])
+                .build();
+        yield exchange(json(HttpRequest.newBuilder(URI.create(baseUrl)), tourist, "POST"))
+                .thenApply(response -> {
+                  if (response.statusCode() / 100 == 2) {
+                    add(read(response.body()));
+                  }
+                  return response;
+                });
+      }
+      case GET_BY_ID -> get("/" + any().getId());
+      case GET_BY_EMAIL -> get("/email/" + any().getEmail());
+      case GET_BY_PHONE -> get("/phone/" + any().getPhoneNumber());
+      case GET_BY_NAME -> {
+        TouristResponseDTO tourist = any();
+        yield get("/name/" + tourist.getName() + "/surname/" + tourist.getSurname());
+      }
+      case UPDATE -> {
+        TouristResponseDTO tourist = any();
+        TouristRequestDTO update = TouristRequestDTO.builder()
+                .id(tourist.getId())
+                .name(tourist.getName())
+                .surname(tourist.getSurname())
+                .email(tourist.getEmail())
+                .phoneNumber(tourist.getPhoneNumber())
+                .country(COUNTRIES[ThreadLocalRandom.current().nextInt(COUNTRIES.length)])
+                .build();
+        yield exchange(json(HttpRequest.newBuilder(URI.create(baseUrl + "/" + tourist.getId())), update, "PUT"));
+      }
+      case DELETE -> exchange(HttpRequest.newBuilder(URI.create(baseUrl + "/" + take().getId())).DELETE().build());
+    };
+  }
+
+  private CompletableFuture<HttpResponse<String>> get(String path) {
+    return exchange(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build());
+  }
+
+  private HttpRequest json(HttpRequest.Builder builder, TouristRequestDTO body, String method) {
+    try {
+      return builder.header("Content-Type", "application/json")
+              .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+              .build();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private TouristResponseDTO read(String body) {
+    try {
+      return objectMapper.readValue(body, TouristResponseDTO.class);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unexpected create response " + body, e);
+    }
+  }
+
+  private CompletableFuture<HttpResponse<String>> exchange(HttpRequest request) {
+    return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+  }
+
+  private synchronized void add(TouristResponseDTO tourist) {
+    Objects.requireNonNull(tourist.getId(), "created tourist has no id");
+    tourists.add(tourist);
+  }
+
+  private synchronized TouristResponseDTO any() {
+    return tourists.get(ThreadLocalRandom.current().nextInt(tourists.size()));
+  }
+
+  /**
+   * Removes a random tourist, so that nothing picks it once its delete has been sent.
+   */
+  private synchronized TouristResponseDTO take() {
+    int index = ThreadLocalRandom.current().nextInt(tourists.size());
+    TouristResponseDTO tourist = tourists.get(index);
+    tourists.set(index, tourists.get(tourists.size() - 1));
+    tourists.remove(tourists.size() - 1);
+    return tourist;
+  }
+
+  private synchronized int size() {
+    return tourists.size();
+  }
+
+  private static Map<Operation, Integer> parseMix(String mix) {
+    Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+    for (String entry : mix.split(",")) {
+      String[] operationAndWeight = entry.split("=");
+      int weight = Integer.parseInt(operationAndWeight[1].trim());
+      if (weight > 0) {
+        weights.put(Operation.of(operationAndWeight[0].trim()), weight);
+      }
+    }
+    if (weights.isEmpty()) {
+      throw new IllegalArgumentException("No operation in mix " + mix);
+    }
+    return weights;
+  }
+
+  private static SystemLauncher startBroker(int port) throws Exception {
+    System.setProperty("qpid.amqp_port", String.valueOf(port));
+    System.setProperty("qpid.work_dir", Files.createTempDirectory("loadtest-broker").toString());
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("type", "Memory");
+    attributes.put("initialConfigurationLocation",
+            Objects.requireNonNull(LoadTestHarness.class.getResource("/loadtest-broker.json")).toExternalForm());
+    attributes.put("startupLoggedToSystemOut", false);
+    SystemLauncher broker = new SystemLauncher();
+    broker.startup(attributes);
+    return broker;
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static OperationReport report(Histogram latencies, long errors, int seconds) {
+    long requests = latencies.getTotalCount();
+    return new OperationReport(requests, errors, requests / (double) seconds,
+            millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(99)),
+            millis(latencies.getValueAtPercentile(99.9)), millis(latencies.getMaxValue()));
+  }
+
+  private static double millis(long nanos) {
+    return Math.round(nanos / 1e3) / 1e3;
+  }
+
+  private static void print(String operation, OperationReport report) {
+    System.out.printf("%-10s requests=%d errors=%d throughput=%.0f req/s p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms%n",
+            operation, report.requests(), report.errors(), report.throughput(),
+            report.p50Millis(), report.p99Millis(), report.p999Millis(), report.maxMillis());
+  }
+}
@@ -0,0 +1,109 @@
+package com.rus.nawm.benchmarks;
+
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import com.rus.nawm.apigateway.cache.TouristProtobufRedisSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode latency of the gateway cache value codecs, for a single tourist
+ * ({@code size = 1}) and for list values such as {@code allTourists}.
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar RedisCodecBenchmark -prof gc
+ * java -cp benchmarks/target/benchmarks.jar com.rus.nawm.benchmarks.RedisCodecBenchmark
+ * </pre>
+ *
+ * The second command prints the stored value size per tourist for every codec instead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedisCodecBenchmark {
+
+  @Param({"json", "protobuf", "protobuf-deflate"})
+  public String codec;
+
+  @Param({"1", "100", "1000"})
+  public int size;
+
+  private RedisSerializer<Object> serializer;
+  private Object value;
+  private byte[] encoded;
+
+  @Setup
+  public void setUp() {
+    serializer = serializer(codec);
+    value = value(size);
+    encoded = serializer.serialize(value);
+  }
+
+  @Benchmark
+  public byte[] encode() {
+    return serializer.serialize(value);
+  }
+
+  @Benchmark
+  public Object decode() {
+    return serializer.deserialize(encoded);
+  }
+
+  static RedisSerializer<Object> serializer(String codec) {
+    return switch (codec) {
+      case "json" -> new GenericJackson2JsonRedisSerializer();
+      case "protobuf" -> new TouristProtobufRedisSerializer(0);
+      case "protobuf-deflate" -> new TouristProtobufRedisSerializer(1024);
+      default -> throw new IllegalArgumentException("Unknown codec: " + codec);
+    };
+  }
+
+  static Object value(int size) {
+    if (size == 1) {
+      return tourist(0);
+    }
+    List<TouristResponseDTO> tourists = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      tourists.add(tourist(i));
+    }
+    return tourists;
+  }
+
+  static TouristResponseDTO tourist(int i) {
+    return TouristResponseDTO.builder()
+            .id(String.format("678d0a83c419c90979e%05x", i))
+            .name("John" + i % 50)
+            .surname("Smith" + i % 200)
+            .email("john.smith" + i + "@example.com")
+            .phoneNumber("+1234" + (5000000 + i))
+            .country(i % 3 == 0 ? "Germany" : "Russia")
+            .build();
+  }
+
+  public static void main(String[] args) {
+    System.out.printf("%-18s %6s %12s %16s%n", "codec", "size", "value bytes", "bytes/tourist");
+    for (String codec : new String[]{"json", "protobuf", "protobuf-deflate"}) {
+      for (int size : new int[]{1, 100, 1000}) {
+        int bytes = serializer(codec).serialize(value(size)).length;
+        System.out.printf("%-18s %6d %12d %16.1f%n", codec, size, bytes, (double) bytes / size);
+      }
+    }
+  }
+}
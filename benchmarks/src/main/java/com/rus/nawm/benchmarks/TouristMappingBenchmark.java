@@ -0,0 +1,80 @@
+package com.rus.nawm.benchmarks;
+
+import com.rus.nawm.apigateway.TouristServiceOuterClass;
+import com.rus.nawm.apigateway.api.dto.TouristResponseDTO;
+import com.rus.nawm.apigateway.mapper.TouristMapper;
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-tourist cost of the read-path conversions: the reflective {@link ModelMapper} calls the
+ * services used to make against the hand-written mappers that replaced them.
+ *
+ * <pre>
+ * mvn -pl benchmarks -am package -DskipTests
+ * java -jar benchmarks/target/benchmarks.jar TouristMappingBenchmark -prof gc
+ * </pre>
+ *
+ * {@code gc.alloc.rate.norm} in the profiler output is the allocation per mapped tourist.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TouristMappingBenchmark {
+
+  private final ModelMapper modelMapper = new ModelMapper();
+
+  private Tourist entity;
+  private TouristServiceOuterClass.Tourist proto;
+
+  @Setup
+  public void setUp() {
+    entity = Tourist.builder()
+            .id("678d0a83c419c90979e9c7af")
+            .name("John")
+            .surname("Smith")
+            .email("john.smith@example.com")
+            .phoneNumber("+1234567890")
+            .country("Germany")
+            .build();
+    proto = com.rus.nawm.domain.domainservice.mapper.TouristMapper.toProto(entity);
+    // ModelMapper builds its type maps lazily, keep that out of the measurement
+    modelMapper.map(entity, TouristServiceOuterClass.Tourist.Builder.class);
+    modelMapper.map(proto, TouristResponseDTO.class);
+  }
+
+  @Benchmark
+  public TouristServiceOuterClass.Tourist entityToProtoModelMapper() {
+    return modelMapper.map(entity, TouristServiceOuterClass.Tourist.Builder.class).build();
+  }
+
+  @Benchmark
+  public TouristServiceOuterClass.Tourist entityToProtoMapper() {
+    return com.rus.nawm.domain.domainservice.mapper.TouristMapper.toProto(entity);
+  }
+
+  @Benchmark
+  public TouristResponseDTO protoToDtoModelMapper() {
+    return modelMapper.map(proto, TouristResponseDTO.class);
+  }
+
+  @Benchmark
+  public TouristResponseDTO protoToDtoMapper() {
+    return TouristMapper.toResponseDTO(proto);
+  }
+}
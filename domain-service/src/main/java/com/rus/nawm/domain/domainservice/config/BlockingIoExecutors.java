@@ -0,0 +1,44 @@
+package com.rus.nawm.domain.domainservice.config;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executors that run blocking request handling. The services are built for Java 17,
+ * so virtual threads are looked up reflectively and only used when the runtime provides them.
+ */
+@Log4j2
+public final class BlockingIoExecutors {
+
+  private BlockingIoExecutors() {
+  }
+
+  public static boolean virtualThreadsAvailable() {
+    return Runtime.version().feature() >= 21;
+  }
+
+  /**
+   * One virtual thread per task when {@code virtualThreads} is set and supported, otherwise a
+   * fixed pool of {@code platformThreads} platform threads.
+   */
+  public static ExecutorService newExecutor(boolean virtualThreads, int platformThreads, String threadNamePrefix) {
+    if (virtualThreads) {
+      if (virtualThreadsAvailable()) {
+        try {
+          Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+          return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+          log.warn("Could not create a virtual thread executor, using platform threads", e);
+        }
+      } else {
+        log.warn("Virtual threads need Java 21+, running on {}; using {} platform threads for {}",
+                Runtime.version(), platformThreads, threadNamePrefix);
+      }
+    }
+    return Executors.newFixedThreadPool(platformThreads, new CustomizableThreadFactory(threadNamePrefix));
+  }
+}
@@ -0,0 +1,68 @@
+package com.rus.nawm.domain.domainservice.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many calls touch MongoDB at once. With virtual threads nothing else bounds the
+ * number of concurrent requests, so without it a burst would queue thousands of callers on the
+ * driver's connection pool and fail them with pool wait timeouts instead of just slowing down.
+ * <p>
+ * Wraps single repository and {@code MongoTemplate} calls rather than whole requests, so a
+ * permit is only held while talking to Mongo and a caller never needs two at once. Without a
+ * limit, i.e. {@code maxConcurrency <= 0}, calls just run. Publishes
+ * {@code domain.concurrency.permits.available} and {@code domain.concurrency.wait}.
+ */
+public class ConcurrencyLimiter {
+  // null when calls are not limited
+  private final Semaphore permits;
+  private final Timer waitTimer;
+
+  public ConcurrencyLimiter(int maxConcurrency, MeterRegistry meterRegistry) {
+    if (maxConcurrency <= 0) {
+      this.permits = null;
+      this.waitTimer = null;
+      return;
+    }
+    this.permits = new Semaphore(maxConcurrency, true);
+    Gauge.builder("domain.concurrency.permits.available", permits, Semaphore::availablePermits)
+            .description("Free slots for calls doing blocking Mongo I/O")
+            .register(meterRegistry);
+    this.waitTimer = Timer.builder("domain.concurrency.wait")
+            .description("Time calls waited for a free slot")
+            .register(meterRegistry);
+  }
+
+  public <T> T call(Supplier<T> task) {
+    if (permits == null) {
+      return task.get();
+    }
+    acquire();
+    try {
+      return task.get();
+    } finally {
+      permits.release();
+    }
+  }
+
+  public void run(Runnable task) {
+    call(() -> {
+      task.run();
+      return null;
+    });
+  }
+
+  private void acquire() {
+    if (permits.tryAcquire()) {
+      return;
+    }
+    long start = System.nanoTime();
+    permits.acquireUninterruptibly();
+    waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+}
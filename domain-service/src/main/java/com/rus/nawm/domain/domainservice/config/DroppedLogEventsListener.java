@@ -0,0 +1,35 @@
+package com.rus.nawm.domain.domainservice.config;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import net.logstash.logback.appender.listener.TcpAppenderListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts, per appender, the events an async appender dropped because its ring buffer was full.
+ * Attached in {@code logback-spring.xml}, before there is a meter registry, so the counts are
+ * kept here and exported by {@link LoggingMetrics}.
+ */
+public class DroppedLogEventsListener implements TcpAppenderListener<ILoggingEvent> {
+  private static final Map<String, LongAdder> DROPPED = new ConcurrentHashMap<>();
+
+  @Override
+  public void appenderStarted(Appender<ILoggingEvent> appender) {
+    DROPPED.computeIfAbsent(appender.getName(), name -> new LongAdder());
+  }
+
+  @Override
+  public void eventAppendFailed(Appender<ILoggingEvent> appender, ILoggingEvent event, Throwable reason) {
+    DROPPED.computeIfAbsent(appender.getName(), name -> new LongAdder()).increment();
+  }
+
+  /**
+   * Events dropped so far, by appender.
+   */
+  public static Map<String, LongAdder> dropped() {
+    return DROPPED;
+  }
+}
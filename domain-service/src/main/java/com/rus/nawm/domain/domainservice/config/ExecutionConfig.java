@@ -0,0 +1,137 @@
+package com.rus.nawm.domain.domainservice.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Chooses the threads that run gRPC calls and AMQP messages, both of which block on Mongo.
+ * <ul>
+ *   <li>{@code execution.mode=platform}: gRPC calls keep grpc-java's default cached pool and
+ *   listeners the {@code spring.rabbitmq.listener.simple.*} consumers, unchanged unless
+ *   {@code execution.platform-threads} opts into a fixed gRPC pool;</li>
+ *   <li>{@code execution.mode=virtual}: every gRPC callback and every listener consumer gets its
+ *   own virtual thread (Java 21+, a fixed pool of {@code execution.platform-threads}, 200 by
+ *   default, otherwise).</li>
+ * </ul>
+ * The Mongo calls those threads make go through the {@link ConcurrencyLimiter} bean, with
+ * {@code execution.max-concurrency} permits, by default none in platform mode and 100, to match
+ * the Mongo pool, in virtual mode. Threads not talking to Mongo, e.g. ones serving the search
+ * index or waiting on RabbitMQ, hold no permit.
+ */
+@Configuration
+@Log4j2
+public class ExecutionConfig {
+  static final int DEFAULT_PLATFORM_THREADS = 200;
+  // the Mongo driver's default connection pool size
+  static final int DEFAULT_MAX_CONCURRENCY = 100;
+
+  public enum Mode {
+    PLATFORM, VIRTUAL
+  }
+
+  @Value("${execution.mode:platform}")
+  private Mode mode;
+
+  // 0 leaves the pool size to the mode, see above
+  @Value("${execution.platform-threads:0}")
+  private int platformThreads;
+
+  @Value("${execution.max-concurrency:0}")
+  private int maxConcurrency;
+
+  @Value("${execution.virtual.rabbit-consumers:32}")
+  private int virtualRabbitConsumers;
+
+  private final List<ExecutorService> executors = new ArrayList<>();
+
+  @Bean
+  public ConcurrencyLimiter mongoConcurrencyLimiter(MeterRegistry meterRegistry) {
+    int permits = maxConcurrency > 0 ? maxConcurrency : mode == Mode.VIRTUAL ? DEFAULT_MAX_CONCURRENCY : 0;
+    if (permits > 0) {
+      log.info("Execution mode {}, at most {} concurrent Mongo calls", mode, permits);
+    } else {
+      log.info("Execution mode {}, Mongo calls are not limited", mode);
+    }
+    return new ConcurrencyLimiter(permits, meterRegistry);
+  }
+
+  @Bean
+  public GrpcServerConfigurer executionGrpcServerConfigurer() {
+    if (mode != Mode.VIRTUAL && platformThreads <= 0) {
+      return serverBuilder -> {
+      };
+    }
+    ExecutorService grpcExecutor = register(BlockingIoExecutors.newExecutor(mode == Mode.VIRTUAL,
+            platformThreads > 0 ? platformThreads : DEFAULT_PLATFORM_THREADS, "grpc-"));
+    return serverBuilder -> serverBuilder.executor(grpcExecutor);
+  }
+
+  @Bean
+  public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                             ConnectionFactory connectionFactory) {
+    return listenerContainerFactory(configurer, connectionFactory, "rabbit-");
+  }
+
+  /**
+   * Hands listeners up to {@code messaging.batch.size} messages at a time. A batch is closed early
+   * once no further message arrives within {@code messaging.batch.receive-timeout}, so a quiet
+   * queue is not held back waiting for a full batch.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "messaging.batch.enabled", havingValue = "true")
+  public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                                  ConnectionFactory connectionFactory,
+                                                                                  @Value("${messaging.batch.size:500}") int batchSize,
+                                                                                  @Value("${messaging.batch.receive-timeout:100ms}") Duration receiveTimeout) {
+    SimpleRabbitListenerContainerFactory factory = listenerContainerFactory(configurer, connectionFactory, "rabbit-batch-");
+    factory.setBatchListener(true);
+    factory.setConsumerBatchEnabled(true);
+    factory.setBatchSize(batchSize);
+    factory.setReceiveTimeout(receiveTimeout.toMillis());
+    // a batch is only acked once it has been applied, so the consumer must be allowed to hold all of it
+    factory.setPrefetchCount(Math.max(batchSize, 250));
+    return factory;
+  }
+
+  private SimpleRabbitListenerContainerFactory listenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                        ConnectionFactory connectionFactory,
+                                                                        String threadPrefix) {
+    SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+    configurer.configure(factory, connectionFactory);
+    if (mode == Mode.VIRTUAL) {
+      // the POST and import queues start their own consumers, the unpartitioned PUT and DELETE
+      // queues and the search change queue one each, and every owned write partition one more;
+      // the pool size only matters for the platform thread fallback
+      ExecutorService consumers = register(BlockingIoExecutors.newExecutor(true,
+              virtualRabbitConsumers * 2 + 3 + RabbitMQConfig.touristRequestPartitions, threadPrefix));
+      factory.setTaskExecutor(new TaskExecutorAdapter(consumers));
+      factory.setConcurrentConsumers(virtualRabbitConsumers);
+    }
+    return factory;
+  }
+
+  @PreDestroy
+  public void shutdownExecutors() {
+    executors.forEach(ExecutorService::shutdown);
+  }
+
+  private ExecutorService register(ExecutorService executor) {
+    executors.add(executor);
+    return executor;
+  }
+}
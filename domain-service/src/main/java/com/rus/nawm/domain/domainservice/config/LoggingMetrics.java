@@ -0,0 +1,29 @@
+package com.rus.nawm.domain.domainservice.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exports the log events that never reached an appender: {@code domain.logging.dropped} by
+ * appender, for events a full async buffer dropped rather than block the logging thread, and
+ * {@code domain.logging.sampled} by logger, for events left out by {@link LogSamplingFilter}.
+ */
+@Component
+public class LoggingMetrics {
+
+  public LoggingMetrics(MeterRegistry meterRegistry) {
+    DroppedLogEventsListener.dropped().forEach((appender, dropped) ->
+            FunctionCounter.builder("domain.logging.dropped", dropped, LongAdder::sum)
+                    .description("Log events dropped because the appender's buffer was full")
+                    .tag("appender", appender)
+                    .register(meterRegistry));
+    LogSamplingFilter.sampledOut().forEach((logger, sampledOut) ->
+            FunctionCounter.builder("domain.logging.sampled", sampledOut, LongAdder::sum)
+                    .description("Log events left out by sampling")
+                    .tag("logger", logger)
+                    .register(meterRegistry));
+  }
+}
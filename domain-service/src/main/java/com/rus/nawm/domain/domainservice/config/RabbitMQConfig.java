@@ -1,15 +1,23 @@
 package com.rus.nawm.domain.domainservice.config;
 
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
   public static final String touristPostRequestQueueName = "touristPostRequestQueue";
@@ -18,6 +26,9 @@ public class RabbitMQConfig {
   public static final String touristPostResponseQueueName = "touristPostResponseQueue";
   public static final String touristPutResponseQueueName = "touristPutResponseQueue";
   public static final String touristDeleteResponseQueueName = "touristDeleteResponseQueue";
+  public static final String touristImportRequestQueueName = "touristImportRequestQueue";
+  public static final String touristImportResponseQueueName = "touristImportResponseQueue";
+  public static final String touristWriteRequestQueueName = "touristWriteRequestQueue";
 
   public static final String touristPostRequestQueueRoutingKey = "tourist.post";
   public static final String touristPutRequestQueueRoutingKey = "tourist.put";
@@ -25,8 +36,35 @@ public class RabbitMQConfig {
   public static final String touristPostResponseQueueRoutingKey = "tourist.post.response";
   public static final String touristPutResponseQueueRoutingKey = "tourist.put.response";
   public static final String touristDeleteResponseQueueRoutingKey = "tourist.delete.response";
+  public static final String touristImportRequestQueueRoutingKey = "tourist.import";
+  public static final String touristImportResponseQueueRoutingKey = "tourist.import.response";
+  public static final String touristWriteRequestQueueRoutingKey = "tourist.write";
 
   public static final String directExchangeName = "touristExchange";
+  public static final String touristChangeExchangeName = "touristChangeExchange";
+
+  /**
+   * PUTs and DELETEs are routed to one of this many queues by a hash of the tourist id, see
+   * {@link #partitionOf(String)}. Both operations on one id share its partition queue, told apart
+   * by the {@code x-tourist-operation} header, and each partition queue has a single active
+   * consumer, so writes to one tourist are applied in the order they were sent while different
+   * partitions run in parallel. Gateway and domain-service must agree on the count, hence a
+   * constant rather than a property.
+   */
+  public static final int touristRequestPartitions = 16;
+
+  public static int partitionOf(String touristId) {
+    return Math.floorMod(touristId.hashCode(), touristRequestPartitions);
+  }
+
+  public static String touristWritePartitionQueueName(int partition) {
+    return touristWriteRequestQueueName + "." + partition;
+  }
+
+  public static String touristWritePartitionRoutingKey(int partition) {
+    return touristWriteRequestQueueRoutingKey + "." + partition;
+  }
+
   @Bean
   public MessageConverter messageConverter() {
     return new Jackson2JsonMessageConverter();
@@ -37,6 +75,30 @@ public class RabbitMQConfig {
     return new DirectExchange(directExchangeName);
   }
 
+  /**
+   * Every change to the tourists collection, published by {@code TouristChangeStreamTailer} to
+   * all gateway instances.
+   */
+  @Bean
+  public FanoutExchange touristChangeExchange() {
+    return new FanoutExchange(touristChangeExchangeName);
+  }
+
+  /**
+   * This instance's subscription to {@link #touristChangeExchange()}, which keeps its search index
+   * current with the writes applied by the other instances.
+   */
+  @Bean("touristSearchChangeQueue")
+  public Queue touristSearchChangeQueue() {
+    return new AnonymousQueue();
+  }
+
+  @Bean
+  public Binding touristSearchChangeBinding(@Qualifier("touristSearchChangeQueue") Queue touristSearchChangeQueue,
+                                            FanoutExchange touristChangeExchange) {
+    return BindingBuilder.bind(touristSearchChangeQueue).to(touristChangeExchange);
+  }
+
   @Bean("touristPostRequestQueue")
   public Queue touristPostRequestQueue() {
     return new Queue(touristPostRequestQueueName, true);
@@ -67,6 +129,16 @@ public class RabbitMQConfig {
     return new Queue(touristDeleteResponseQueueName, true);
   }
 
+  @Bean("touristImportRequestQueue")
+  public Queue touristImportRequestQueue() {
+    return new Queue(touristImportRequestQueueName, true);
+  }
+
+  @Bean("touristImportResponseQueue")
+  public Queue touristImportResponseQueue() {
+    return new Queue(touristImportResponseQueueName, true);
+  }
+
   @Bean
   public Binding postRequestBinding(@Qualifier("touristPostRequestQueue") Queue touristPostRequestQueue, DirectExchange directExchange) {
     return BindingBuilder.bind(touristPostRequestQueue).to(directExchange).with(touristPostRequestQueueRoutingKey);
@@ -96,4 +168,25 @@ public class RabbitMQConfig {
   public Binding deleteResponseBinding(@Qualifier("touristDeleteResponseQueue") Queue touristDeleteResponseQueue, DirectExchange directExchange) {
     return BindingBuilder.bind(touristDeleteResponseQueue).to(directExchange).with(touristDeleteResponseQueueRoutingKey);
   }
+
+  @Bean
+  public Binding importRequestBinding(@Qualifier("touristImportRequestQueue") Queue touristImportRequestQueue, DirectExchange directExchange) {
+    return BindingBuilder.bind(touristImportRequestQueue).to(directExchange).with(touristImportRequestQueueRoutingKey);
+  }
+
+  @Bean
+  public Binding importResponseBinding(@Qualifier("touristImportResponseQueue") Queue touristImportResponseQueue, DirectExchange directExchange) {
+    return BindingBuilder.bind(touristImportResponseQueue).to(directExchange).with(touristImportResponseQueueRoutingKey);
+  }
+
+  @Bean
+  public Declarables partitionedRequestQueues(DirectExchange directExchange) {
+    List<Declarable> declarables = new ArrayList<>();
+    for (int partition = 0; partition < touristRequestPartitions; partition++) {
+      Queue writeQueue = QueueBuilder.durable(touristWritePartitionQueueName(partition)).singleActiveConsumer().build();
+      declarables.add(writeQueue);
+      declarables.add(BindingBuilder.bind(writeQueue).to(directExchange).with(touristWritePartitionRoutingKey(partition)));
+    }
+    return new Declarables(declarables);
+  }
 }
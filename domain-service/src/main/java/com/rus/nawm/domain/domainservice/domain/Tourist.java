@@ -5,10 +5,23 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+/**
+ * Name and surname are only ever queried together, and country lookups page through a country
+ * by id, so both use one compound index instead of intersecting single-field ones.
+ * {@link com.rus.nawm.domain.domainservice.repository.TouristIndexVerifier} checks at startup that
+ * every repository query is still served by the index it was written for.
+ * <p>
+ * {@code version} is bumped by every write. A write that carries a version only applies while
+ * the stored tourist is still at that version.
+ */
 @Document(collection = "tourists")
+@CompoundIndex(name = "name_surname", def = "{ 'name' : 1, 'surname' : 1 }")
+@CompoundIndex(name = "country_id", def = "{ 'country' : 1, '_id' : 1 }")
 @Data
 @Builder
 @NoArgsConstructor
@@ -16,14 +29,13 @@ import org.springframework.data.mongodb.core.mapping.Document;
 public class Tourist {
   @Id
   private String id;
-  @Indexed
   private String name;
-  @Indexed
   private String surname;
   @Indexed(unique = true)
   private String email;
   @Indexed(unique = true)
   private String phoneNumber;
-  @Indexed
   private String country;
+  @Version
+  private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.rus.nawm.domain.domainservice.grpc;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every gRPC call from the moment it reaches the application executor to the moment it is
+ * closed, in {@code domain.grpc.server} tagged with the method as {@code operation} and the
+ * status code. Streaming calls are timed until their last message is sent. Time spent waiting
+ * for a {@code ConcurrencyLimiter} permit happens before and is in {@code domain.concurrency.wait}.
+ */
+@GrpcGlobalServerInterceptor
+public class GrpcMetricsInterceptor implements ServerInterceptor {
+  private final MeterRegistry meterRegistry;
+  // by method, then status code, so a closing call does not look its timer up in the registry
+  private final ConcurrentMap<String, ConcurrentMap<Status.Code, Timer>> timers = new ConcurrentHashMap<>();
+
+  public GrpcMetricsInterceptor(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                               ServerCallHandler<ReqT, RespT> next) {
+    long start = System.nanoTime();
+    String operation = call.getMethodDescriptor().getBareMethodName();
+    ConcurrentMap<Status.Code, Timer> operationTimers = timers.computeIfAbsent(operation, name -> new ConcurrentHashMap<>());
+    return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+      @Override
+      public void close(Status status, Metadata trailers) {
+        operationTimers.computeIfAbsent(status.getCode(), code -> timer(operation, code))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        super.close(status, trailers);
+      }
+    }, headers);
+  }
+
+  private Timer timer(String operation, Status.Code code) {
+    return Timer.builder("domain.grpc.server")
+            .description("Time to serve a gRPC call")
+            .tag("operation", operation)
+            .tag("status", code.name())
+            .register(meterRegistry);
+  }
+}
@@ -0,0 +1,35 @@
+package com.rus.nawm.domain.domainservice.grpc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation tokens for keyset pagination. A token wraps the id of the last
+ * tourist on the previous page; clients must treat it as an opaque string.
+ */
+final class PageTokens {
+  private static final String PREFIX = "v1:";
+
+  private PageTokens() {
+  }
+
+  static String encode(String lastId) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+  }
+
+  static String decode(String token) {
+    if (token == null || token.isEmpty()) {
+      return null;
+    }
+    String decoded;
+    try {
+      decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Malformed page token", e);
+    }
+    if (!decoded.startsWith(PREFIX) || decoded.length() == PREFIX.length()) {
+      throw new IllegalArgumentException("Malformed page token");
+    }
+    return decoded.substring(PREFIX.length());
+  }
+}
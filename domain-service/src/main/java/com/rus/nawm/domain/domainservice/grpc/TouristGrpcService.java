@@ -3,23 +3,43 @@ package com.rus.nawm.domain.domainservice.grpc;
 import com.rus.nawm.apigateway.TouristServiceGrpc;
 import com.rus.nawm.apigateway.TouristServiceOuterClass;
 import com.rus.nawm.domain.domainservice.domain.Tourist;
+import com.rus.nawm.domain.domainservice.mapper.TouristMapper;
+import com.rus.nawm.domain.domainservice.service.TouristSearchIndex;
 import com.rus.nawm.domain.domainservice.service.TouristService;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.log4j.Log4j2;
 import net.devh.boot.grpc.server.service.GrpcService;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Service
 @Log4j2
 @GrpcService
 public class TouristGrpcService extends TouristServiceGrpc.TouristServiceImplBase {
 
+  private static final int DEFAULT_STREAM_CHUNK_SIZE = 500;
+  private static final int MAX_STREAM_CHUNK_SIZE = 5000;
+  private static final int DEFAULT_PAGE_LIMIT = 50;
+  private static final int MAX_PAGE_LIMIT = 1000;
+  private static final int MAX_BATCH_SIZE = 1000;
+  private static final int DEFAULT_SEARCH_LIMIT = 10;
+  private static final int MAX_SEARCH_LIMIT = 100;
+
   private final TouristService touristService;
-  private final ModelMapper modelMapper = new ModelMapper();
 
   public TouristGrpcService(TouristService touristService) {
     this.touristService = touristService;
@@ -30,9 +50,9 @@ public class TouristGrpcService extends TouristServiceGrpc.TouristServiceImplBas
     log.info("Received getTouristByEmail request for email: {}", request.getEmail());
     Optional<Tourist> touristOpt = touristService.getTouristByEmail(request.getEmail());
     if (touristOpt.isPresent()) {
-      TouristServiceOuterClass.Tourist response = modelMapper.map(touristOpt.get(), TouristServiceOuterClass.Tourist.Builder.class).build();
+      TouristServiceOuterClass.Tourist response = TouristMapper.toProto(touristOpt.get());
       responseObserver.onNext(response);
-      log.info("Tourist found: {}", response);
+      log.info("Tourist found with ID: {}", response.getId());
     } else {
       log.warn("Tourist not found for email: {}", request.getEmail());
       responseObserver.onError(new Exception("Tourist not found"));
@@ -45,9 +65,9 @@ public class TouristGrpcService extends TouristServiceGrpc.TouristServiceImplBas
     log.info("Received getTouristByPhoneNumber request for phone number: {}", request.getPhoneNumber());
     Optional<Tourist> touristOpt = touristService.getTouristByPhoneNumber(request.getPhoneNumber());
     if (touristOpt.isPresent()) {
-      TouristServiceOuterClass.Tourist response = modelMapper.map(touristOpt.get(), TouristServiceOuterClass.Tourist.Builder.class).build();
+      TouristServiceOuterClass.Tourist response = TouristMapper.toProto(touristOpt.get());
       responseObserver.onNext(response);
-      log.info("Tourist found: {}", response);
+      log.info("Tourist found with ID: {}", response.getId());
     } else {
       log.warn("Tourist not found for phone number: {}", request.getPhoneNumber());
       responseObserver.onError(new Exception("Tourist not found"));
@@ -60,9 +80,9 @@ public class TouristGrpcService extends TouristServiceGrpc.TouristServiceImplBas
     log.info("Received getTouristById request for ID: {}", request.getId());
     Optional<Tourist> touristOpt = touristService.getTouristById(request.getId());
     if (touristOpt.isPresent()) {
-      TouristServiceOuterClass.Tourist response = modelMapper.map(touristOpt.get(), TouristServiceOuterClass.Tourist.Builder.class).build();
+      TouristServiceOuterClass.Tourist response = TouristMapper.toProto(touristOpt.get());
       responseObserver.onNext(response);
-      log.info("Tourist found: {}", response);
+      log.info("Tourist found with ID: {}", response.getId());
     } else {
       log.warn("Tourist not found for ID: {}", request.getId());
       responseObserver.onError(new Exception("Tourist not found"));
@@ -70,12 +90,59 @@ public class TouristGrpcService extends TouristServiceGrpc.TouristServiceImplBas
     responseObserver.onCompleted();
   }
 
+  @Override
+  public void getTouristsByIds(TouristServiceOuterClass.GetTouristsByIdsRequest request, StreamObserver<TouristServiceOuterClass.GetTouristsResponse> responseObserver) {
+    log.info("Received getTouristsByIds request for {} IDs", request.getIdsCount());
+    respondWithBatch(request.getIdsList(), touristService::getTouristsByIds, responseObserver);
+  }
+
+  @Override
+  public void getTouristsByEmails(TouristServiceOuterClass.GetTouristsByEmailsRequest request, StreamObserver<TouristServiceOuterClass.GetTouristsResponse> responseObserver) {
+    log.info("Received getTouristsByEmails request for {} emails", request.getEmailsCount());
+    respondWithBatch(request.getEmailsList(), touristService::getTouristsByEmails, responseObserver);
+  }
+
+  @Override
+  public void getTouristsByPhoneNumbers(TouristServiceOuterClass.GetTouristsByPhoneNumbersRequest request, StreamObserver<TouristServiceOuterClass.GetTouristsResponse> responseObserver) {
+    log.info("Received getTouristsByPhoneNumbers request for {} phone numbers", request.getPhoneNumbersCount());
+    respondWithBatch(request.getPhoneNumbersList(), touristService::getTouristsByPhoneNumbers, responseObserver);
+  }
+
+  /**
+   * Answers a batch lookup with one query for all distinct keys. Unknown keys are left out of the
+   * response rather than failing the call, so callers match results back by the returned fields.
+   */
+  private void respondWithBatch(List<String> keys, Function<Collection<String>, List<Tourist>> lookup,
+                                StreamObserver<TouristServiceOuterClass.GetTouristsResponse> responseObserver) {
+    Set<String> distinctKeys = new LinkedHashSet<>(keys);
+    if (distinctKeys.size() > MAX_BATCH_SIZE) {
+      log.warn("Rejecting batch lookup of {} keys", distinctKeys.size());
+      responseObserver.onError(Status.INVALID_ARGUMENT
+              .withDescription("At most " + MAX_BATCH_SIZE + " keys can be looked up at once")
+              .asRuntimeException());
+      return;
+    }
+    List<Tourist> tourists = distinctKeys.isEmpty() ? List.of() : lookup.apply(distinctKeys);
+    TouristServiceOuterClass.GetTouristsResponse.Builder responseBuilder = TouristServiceOuterClass.GetTouristsResponse.newBuilder();
+    tourists.forEach(tourist -> responseBuilder.addTourists(TouristMapper.toProto(tourist)));
+    log.info("Number of tourists found: {}", tourists.size());
+    responseObserver.onNext(responseBuilder.build());
+    responseObserver.onCompleted();
+  }
+
   @Override
   public void getTouristsByNameAndSurname(TouristServiceOuterClass.GetTouristsByNameAndSurnameRequest request, StreamObserver<TouristServiceOuterClass.GetTouristsResponse> responseObserver) {
     log.info("Received getTouristsByNameAndSurname request for name: {} and surname: {}", request.getName(), request.getSurname());
-    List<Tourist> tourists = touristService.getTouristsByNameAndSurname(request.getName(), request.getSurname());
+    List<Tourist> tourists;
+    try {
+      tourists = touristService.getTouristsByNameAndSurname(request.getName(), request.getSurname(), request.getFieldsList());
+    } catch (IllegalArgumentException e) {
+      log.warn("Rejecting getTouristsByNameAndSurname request: {}", e.getMessage());
+      responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+      return;
+    }
     TouristServiceOuterClass.GetTouristsResponse.Builder responseBuilder = TouristServiceOuterClass.GetTouristsResponse.newBuilder();
-    tourists.forEach(tourist -> responseBuilder.addTourists(modelMapper.map(tourist, TouristServiceOuterClass.Tourist.Builder.class).build()));
+    tourists.forEach(tourist -> responseBuilder.addTourists(TouristMapper.toProto(tourist)));
     log.info("Number of tourists found: {}", tourists.size());
     responseObserver.onNext(responseBuilder.build());
     responseObserver.onCompleted();
@@ -86,9 +153,125 @@ public class TouristGrpcService extends TouristServiceGrpc.TouristServiceImplBas
     log.info("Received getAllTourists request");
     List<Tourist> tourists = touristService.getAllTourists();
     TouristServiceOuterClass.GetTouristsResponse.Builder responseBuilder = TouristServiceOuterClass.GetTouristsResponse.newBuilder();
-    tourists.forEach(tourist -> responseBuilder.addTourists(modelMapper.map(tourist, TouristServiceOuterClass.Tourist.Builder.class).build()));
+    tourists.forEach(tourist -> responseBuilder.addTourists(TouristMapper.toProto(tourist)));
     log.info("Number of tourists found: {}", tourists.size());
     responseObserver.onNext(responseBuilder.build());
     responseObserver.onCompleted();
   }
+
+  @Override
+  public void listTourists(TouristServiceOuterClass.ListTouristsRequest request, StreamObserver<TouristServiceOuterClass.ListTouristsResponse> responseObserver) {
+    int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), MAX_PAGE_LIMIT) : DEFAULT_PAGE_LIMIT;
+    log.info("Received listTourists request with limit: {} and page token: {}", limit, request.getPageToken());
+    respondWithPage("listTourists", request.getPageToken(), limit, touristService::listTourists, responseObserver);
+  }
+
+  @Override
+  public void listTouristsByCountry(TouristServiceOuterClass.ListTouristsByCountryRequest request, StreamObserver<TouristServiceOuterClass.ListTouristsResponse> responseObserver) {
+    int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), MAX_PAGE_LIMIT) : DEFAULT_PAGE_LIMIT;
+    log.info("Received listTouristsByCountry request for country: {} with limit: {} and page token: {}",
+            request.getCountry(), limit, request.getPageToken());
+    respondWithPage("listTouristsByCountry", request.getPageToken(), limit,
+            (afterId, pageLimit) -> touristService.listTouristsByCountry(request.getCountry(), afterId, pageLimit), responseObserver);
+  }
+
+  private void respondWithPage(String method, String pageToken, int limit, BiFunction<String, Integer, List<Tourist>> lookup,
+                               StreamObserver<TouristServiceOuterClass.ListTouristsResponse> responseObserver) {
+    String afterId;
+    try {
+      afterId = PageTokens.decode(pageToken);
+    } catch (IllegalArgumentException e) {
+      log.warn("Rejecting {} request: {}", method, e.getMessage());
+      responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+      return;
+    }
+    // one extra row tells us whether another page exists without a count query
+    List<Tourist> tourists = lookup.apply(afterId, limit + 1);
+    boolean hasMore = tourists.size() > limit;
+    List<Tourist> page = hasMore ? tourists.subList(0, limit) : tourists;
+    TouristServiceOuterClass.ListTouristsResponse.Builder responseBuilder = TouristServiceOuterClass.ListTouristsResponse.newBuilder();
+    page.forEach(tourist -> responseBuilder.addTourists(TouristMapper.toProto(tourist)));
+    if (hasMore) {
+      responseBuilder.setNextPageToken(PageTokens.encode(page.get(page.size() - 1).getId()));
+    }
+    log.info("Number of tourists in page: {}", page.size());
+    responseObserver.onNext(responseBuilder.build());
+    responseObserver.onCompleted();
+  }
+
+  @Override
+  public void getCountryStats(TouristServiceOuterClass.Empty request, StreamObserver<TouristServiceOuterClass.CountryStatsResponse> responseObserver) {
+    log.info("Received getCountryStats request");
+    Map<String, Long> counts = touristService.getCountryCounts();
+    TouristServiceOuterClass.CountryStatsResponse.Builder responseBuilder = TouristServiceOuterClass.CountryStatsResponse.newBuilder();
+    counts.forEach((country, count) -> responseBuilder.addCountries(
+            TouristServiceOuterClass.CountryCount.newBuilder().setCountry(country).setCount(count)));
+    log.info("Number of countries: {}", counts.size());
+    responseObserver.onNext(responseBuilder.build());
+    responseObserver.onCompleted();
+  }
+
+  @Override
+  public void searchTourists(TouristServiceOuterClass.SearchTouristsRequest request, StreamObserver<TouristServiceOuterClass.SearchTouristsResponse> responseObserver) {
+    int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), MAX_SEARCH_LIMIT) : DEFAULT_SEARCH_LIMIT;
+    log.info("Received searchTourists request for query: {} with limit: {}", request.getQuery(), limit);
+    List<TouristSearchIndex.Suggestion> suggestions = touristService.searchTourists(request.getQuery(), limit);
+    TouristServiceOuterClass.SearchTouristsResponse.Builder responseBuilder = TouristServiceOuterClass.SearchTouristsResponse.newBuilder();
+    suggestions.forEach(suggestion -> responseBuilder.addSuggestions(TouristServiceOuterClass.TouristSuggestion.newBuilder()
+            .setId(suggestion.id())
+            .setName(Objects.requireNonNullElse(suggestion.name(), ""))
+            .setSurname(Objects.requireNonNullElse(suggestion.surname(), ""))
+            .setEmail(Objects.requireNonNullElse(suggestion.email(), ""))));
+    log.info("Number of suggestions: {}", suggestions.size());
+    responseObserver.onNext(responseBuilder.build());
+    responseObserver.onCompleted();
+  }
+
+  /**
+   * Streams the whole collection straight from a Mongo cursor in chunks of {@code chunkSize} tourists.
+   * Chunks are only produced while the transport reports the call as ready, so a slow client
+   * applies back-pressure to the cursor instead of piling messages up in the server heap.
+   */
+  @Override
+  public void streamAllTourists(TouristServiceOuterClass.StreamTouristsRequest request, StreamObserver<TouristServiceOuterClass.GetTouristsResponse> responseObserver) {
+    int chunkSize = request.getChunkSize() > 0 ? Math.min(request.getChunkSize(), MAX_STREAM_CHUNK_SIZE) : DEFAULT_STREAM_CHUNK_SIZE;
+    log.info("Received streamAllTourists request with chunk size: {}", chunkSize);
+    ServerCallStreamObserver<TouristServiceOuterClass.GetTouristsResponse> serverObserver =
+            (ServerCallStreamObserver<TouristServiceOuterClass.GetTouristsResponse>) responseObserver;
+    Stream<Tourist> tourists = touristService.streamAllTourists();
+    Iterator<Tourist> iterator = tourists.iterator();
+    AtomicBoolean finished = new AtomicBoolean(false);
+
+    serverObserver.setOnCancelHandler(() -> {
+      if (finished.compareAndSet(false, true)) {
+        log.warn("streamAllTourists cancelled by client");
+        tourists.close();
+      }
+    });
+    serverObserver.setOnReadyHandler(() -> {
+      if (finished.get()) {
+        return;
+      }
+      try {
+        while (serverObserver.isReady() && iterator.hasNext()) {
+          TouristServiceOuterClass.GetTouristsResponse.Builder chunk = TouristServiceOuterClass.GetTouristsResponse.newBuilder();
+          while (chunk.getTouristsCount() < chunkSize && iterator.hasNext()) {
+            chunk.addTourists(TouristMapper.toProto(iterator.next()));
+          }
+          serverObserver.onNext(chunk.build());
+        }
+        if (!iterator.hasNext() && finished.compareAndSet(false, true)) {
+          tourists.close();
+          serverObserver.onCompleted();
+          log.info("streamAllTourists completed");
+        }
+      } catch (Exception e) {
+        if (finished.compareAndSet(false, true)) {
+          log.error("Error while streaming tourists", e);
+          tourists.close();
+          serverObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+        }
+      }
+    });
+  }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.rus.nawm.domain.domainservice.mapper;
+
+import com.rus.nawm.apigateway.TouristServiceOuterClass;
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+
+/**
+ * Hand-written conversions between the {@link Tourist} document and its protobuf message.
+ * Plain field copies only: no reflection and no intermediate objects, since these run once
+ * per tourist on every read path.
+ */
+public final class TouristMapper {
+
+  private TouristMapper() {
+  }
+
+  public static TouristServiceOuterClass.Tourist toProto(Tourist tourist) {
+    TouristServiceOuterClass.Tourist.Builder builder = TouristServiceOuterClass.Tourist.newBuilder();
+    // protobuf builders reject nulls, absent fields keep the proto3 default
+    if (tourist.getId() != null) {
+      builder.setId(tourist.getId());
+    }
+    if (tourist.getName() != null) {
+      builder.setName(tourist.getName());
+    }
+    if (tourist.getSurname() != null) {
+      builder.setSurname(tourist.getSurname());
+    }
+    if (tourist.getEmail() != null) {
+      builder.setEmail(tourist.getEmail());
+    }
+    if (tourist.getPhoneNumber() != null) {
+      builder.setPhoneNumber(tourist.getPhoneNumber());
+    }
+    if (tourist.getCountry() != null) {
+      builder.setCountry(tourist.getCountry());
+    }
+    if (tourist.getVersion() != null) {
+      builder.setVersion(tourist.getVersion());
+    }
+    return builder.build();
+  }
+
+  public static Tourist toEntity(TouristServiceOuterClass.Tourist tourist) {
+    return Tourist.builder()
+            .id(emptyToNull(tourist.getId()))
+            .name(emptyToNull(tourist.getName()))
+            .surname(emptyToNull(tourist.getSurname()))
+            .email(emptyToNull(tourist.getEmail()))
+            .phoneNumber(emptyToNull(tourist.getPhoneNumber()))
+            .country(emptyToNull(tourist.getCountry()))
+            .version(tourist.hasVersion() ? tourist.getVersion() : null)
+            .build();
+  }
+
+  private static String emptyToNull(String value) {
+    return value.isEmpty() ? null : value;
+  }
+}
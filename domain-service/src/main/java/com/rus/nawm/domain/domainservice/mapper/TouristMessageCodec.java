@@ -0,0 +1,128 @@
+package com.rus.nawm.domain.domainservice.mapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rus.nawm.apigateway.TouristServiceOuterClass;
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import com.rus.nawm.domain.domainservice.service.TouristWriteReply;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads write commands and builds results and replies in either payload format, told apart by
+ * content type:
+ * <ul>
+ *   <li>{@code application/x-protobuf}: the protobuf messages from {@code tourist_service.proto};</li>
+ *   <li>anything else is the legacy JSON format, a JSON document serialized to bytes and then
+ *   wrapped by {@link Jackson2JsonMessageConverter} into a base64 JSON string.</li>
+ * </ul>
+ * Results and replies are always written in the format of the request they answer, so gateways
+ * on either format can be served while a rollout is in progress.
+ */
+public final class TouristMessageCodec {
+
+  public static final String PROTOBUF_CONTENT_TYPE = "application/x-protobuf";
+  /**
+   * Epoch millis at which the oldest request a result answers was published by the gateway.
+   */
+  public static final String REQUESTED_AT_HEADER = "x-requested-at";
+  /**
+   * {@code PUT} or {@code DELETE}, telling apart the two kinds of command on a partition queue.
+   */
+  public static final String OPERATION_HEADER = "x-tourist-operation";
+
+  public enum Format {
+    JSON, PROTOBUF;
+
+    public static Format of(Message message) {
+      return PROTOBUF_CONTENT_TYPE.equals(message.getMessageProperties().getContentType()) ? PROTOBUF : JSON;
+    }
+  }
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Jackson2JsonMessageConverter jsonConverter = new Jackson2JsonMessageConverter();
+
+  public Tourist readTourist(Message message) throws IOException {
+    if (Format.of(message) == Format.PROTOBUF) {
+      return TouristMapper.toEntity(TouristServiceOuterClass.Tourist.parseFrom(message.getBody()));
+    }
+    return objectMapper.readValue(unwrapJson(message), Tourist.class);
+  }
+
+  public String readId(Message message) throws IOException {
+    if (Format.of(message) == Format.PROTOBUF) {
+      return TouristServiceOuterClass.TouristDeleteCommand.parseFrom(message.getBody()).getId();
+    }
+    return new String(unwrapJson(message));
+  }
+
+  public String readOperation(Message message) {
+    return message.getMessageProperties().getHeader(OPERATION_HEADER);
+  }
+
+  public Message result(Tourist tourist, Format format) throws IOException {
+    return format == Format.PROTOBUF ? results(List.of(tourist), format) : json(tourist);
+  }
+
+  public Message results(List<Tourist> tourists, Format format) throws IOException {
+    if (format == Format.PROTOBUF) {
+      TouristServiceOuterClass.TouristWriteResults.Builder builder = TouristServiceOuterClass.TouristWriteResults.newBuilder();
+      tourists.forEach(tourist -> builder.addTourists(TouristMapper.toProto(tourist)));
+      return protobuf(builder.build().toByteArray());
+    }
+    return json(tourists);
+  }
+
+  public Message reply(TouristWriteReply reply, Format format) throws IOException {
+    if (format == Format.PROTOBUF) {
+      TouristServiceOuterClass.TouristWriteReply.Builder builder = TouristServiceOuterClass.TouristWriteReply.newBuilder()
+              .setStatus(TouristServiceOuterClass.TouristWriteReply.Status.valueOf(reply.status().name()));
+      if (reply.message() != null) {
+        builder.setMessage(reply.message());
+      }
+      if (reply.tourist() != null) {
+        builder.setTourist(TouristMapper.toProto(reply.tourist()));
+      }
+      return protobuf(builder.build().toByteArray());
+    }
+    return json(reply);
+  }
+
+  /**
+   * A change event for the tourist with {@code id}, an upsert when {@code tourist} is given and a
+   * delete otherwise. Change events are new and always protobuf.
+   */
+  public Message changeEvent(String id, Tourist tourist) {
+    TouristServiceOuterClass.TouristChangeEvent.Builder builder = TouristServiceOuterClass.TouristChangeEvent.newBuilder().setId(id);
+    if (tourist != null) {
+      builder.setOperation(TouristServiceOuterClass.TouristChangeEvent.Operation.UPSERT)
+              .setTourist(TouristMapper.toProto(tourist));
+    } else {
+      builder.setOperation(TouristServiceOuterClass.TouristChangeEvent.Operation.DELETE);
+    }
+    return protobuf(builder.build().toByteArray());
+  }
+
+  /**
+   * The change event published by {@link #changeEvent}.
+   */
+  public TouristServiceOuterClass.TouristChangeEvent readChangeEvent(Message message) throws IOException {
+    return TouristServiceOuterClass.TouristChangeEvent.parseFrom(message.getBody());
+  }
+
+  private byte[] unwrapJson(Message message) throws IOException {
+    return objectMapper.readValue(message.getBody(), byte[].class);
+  }
+
+  private Message json(Object payload) throws IOException {
+    return jsonConverter.toMessage(objectMapper.writeValueAsBytes(payload), new MessageProperties());
+  }
+
+  private static Message protobuf(byte[] body) {
+    return MessageBuilder.withBody(body).setContentType(PROTOBUF_CONTENT_TYPE).build();
+  }
+}
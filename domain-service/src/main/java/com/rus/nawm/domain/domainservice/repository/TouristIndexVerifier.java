@@ -0,0 +1,149 @@
+package com.rus.nawm.domain.domainservice.repository;
+
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import lombok.extern.log4j.Log4j2;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Explains the query shape of every {@link TouristRepository} method and flags plans that scan the
+ * collection, sort in memory, intersect indexes, filter documents after fetching them, or use
+ * another index than the one the query was written for. Runs at startup, logging a warning for
+ * each flagged query, and on demand through the {@code touristindexes} actuator endpoint, so an index
+ * regression shows up on deploy rather than as query latency.
+ */
+@Component
+@Endpoint(id = "touristindexes")
+@Log4j2
+public class TouristIndexVerifier {
+
+  /**
+   * Indexes replaced by the compound {@code name_surname} and {@code country_id} indexes. They are
+   * dropped at startup so the planner cannot keep choosing them.
+   */
+  private static final Set<String> SUPERSEDED_INDEXES = Set.of("name", "surname", "country", "country_name_surname");
+
+  public record QueryPlan(String query, String expectedIndex, List<String> indexes, List<String> stages,
+                          List<String> problems) {
+  }
+
+  private record QueryShape(String query, Document filter, Document sort, String expectedIndex) {
+  }
+
+  private static final List<QueryShape> QUERY_SHAPES = List.of(
+          new QueryShape("findById", new Document("_id", new ObjectId()), null, "_id_"),
+          new QueryShape("findByEmail", new Document("email", "john.smith@example.com"), null, "email"),
+          new QueryShape("findByPhoneNumber", new Document("phoneNumber", "+12345000000"), null, "phoneNumber"),
+          new QueryShape("findAllByCountry", new Document("country", "Germany"), null, "country_id"),
+          new QueryShape("findAllByCountry(Pageable)", new Document("country", "Germany"), new Document("_id", 1), "country_id"),
+          new QueryShape("findAllByCountryAndIdGreaterThan", new Document("country", "Germany").append("_id", new Document("$gt", new ObjectId())), new Document("_id", 1), "country_id"),
+          new QueryShape("findAllByNameAndSurname", new Document("name", "John").append("surname", "Smith"), null, "name_surname"),
+          new QueryShape("findAllByIdIn", new Document("_id", new Document("$in", List.of(new ObjectId(), new ObjectId()))), null, "_id_"),
+          new QueryShape("findAllByEmailIn", new Document("email", new Document("$in", List.of("a@example.com", "b@example.com"))), null, "email"),
+          new QueryShape("findAllByPhoneNumberIn", new Document("phoneNumber", new Document("$in", List.of("+1", "+2"))), null, "phoneNumber"),
+          new QueryShape("findAllBy", new Document(), new Document("_id", 1), "_id_"),
+          new QueryShape("findAllByIdGreaterThan", new Document("_id", new Document("$gt", new ObjectId())), new Document("_id", 1), "_id_"));
+
+  private final MongoTemplate mongoTemplate;
+
+  public TouristIndexVerifier(MongoTemplate mongoTemplate) {
+    this.mongoTemplate = mongoTemplate;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void verifyOnStartup() {
+    try {
+      dropSupersededIndexes();
+    } catch (Exception e) {
+      log.warn("Could not drop superseded tourist indexes", e);
+    }
+    List<QueryPlan> plans = queryPlans();
+    long flagged = plans.stream().filter(plan -> !plan.problems().isEmpty()).count();
+    plans.stream()
+            .filter(plan -> !plan.problems().isEmpty())
+            .forEach(plan -> log.warn("Query {} flagged, plan {} on indexes {}: {}", plan.query(), plan.stages(), plan.indexes(), plan.problems()));
+    log.info("Verified the plans of {} tourist queries, {} flagged", plans.size(), flagged);
+  }
+
+  @ReadOperation
+  public List<QueryPlan> queryPlans() {
+    List<QueryPlan> plans = new ArrayList<>(QUERY_SHAPES.size());
+    for (QueryShape shape : QUERY_SHAPES) {
+      plans.add(explain(shape));
+    }
+    return plans;
+  }
+
+  private void dropSupersededIndexes() {
+    IndexOperations indexOps = mongoTemplate.indexOps(Tourist.class);
+    for (IndexInfo index : indexOps.getIndexInfo()) {
+      if (SUPERSEDED_INDEXES.contains(index.getName())) {
+        log.info("Dropping tourist index {}, superseded by a compound index", index.getName());
+        indexOps.dropIndex(index.getName());
+      }
+    }
+  }
+
+  private QueryPlan explain(QueryShape shape) {
+    List<String> stages = new ArrayList<>();
+    Set<String> indexes = new LinkedHashSet<>();
+    List<String> problems = new ArrayList<>();
+    try {
+      var find = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Tourist.class)).find(shape.filter());
+      if (shape.sort() != null) {
+        find.sort(shape.sort()).limit(50);
+      }
+      Document queryPlanner = find.explain().get("queryPlanner", Document.class);
+      Document winningPlan = queryPlanner.get("winningPlan", Document.class);
+      // the slot-based engine of MongoDB 7+ nests the classic plan tree one level down
+      Document plan = winningPlan.containsKey("queryPlan") ? winningPlan.get("queryPlan", Document.class) : winningPlan;
+      walk(plan, stages, indexes, problems);
+      if (!indexes.contains(shape.expectedIndex())) {
+        problems.add("expected index " + shape.expectedIndex());
+      }
+    } catch (Exception e) {
+      problems.add("explain failed: " + e.getMessage());
+    }
+    return new QueryPlan(shape.query(), shape.expectedIndex(), List.copyOf(indexes), stages, problems);
+  }
+
+  private static void walk(Document node, List<String> stages, Set<String> indexes, List<String> problems) {
+    String stage = node.getString("stage");
+    stages.add(stage);
+    switch (stage) {
+      case "COLLSCAN" -> problems.add("COLLSCAN");
+      case "SORT" -> problems.add("in-memory SORT");
+      case "AND_SORTED", "AND_HASH" -> problems.add("index intersection");
+      case "FETCH" -> {
+        if (node.containsKey("filter")) {
+          problems.add("FETCH filters on fields outside the index");
+        }
+      }
+      case "IDHACK" -> indexes.add("_id_");
+      default -> {
+      }
+    }
+    if (node.containsKey("indexName")) {
+      indexes.add(node.getString("indexName"));
+    }
+    if (node.containsKey("inputStage")) {
+      walk(node.get("inputStage", Document.class), stages, indexes, problems);
+    }
+    if (node.containsKey("inputStages")) {
+      node.getList("inputStages", Document.class).forEach(input -> walk(input, stages, indexes, problems));
+    }
+  }
+}
@@ -1,12 +1,16 @@
 package com.rus.nawm.domain.domainservice.repository;
 
 import com.rus.nawm.domain.domainservice.domain.Tourist;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TouristRepository extends MongoRepository<Tourist, String> {
@@ -21,4 +25,22 @@ public interface TouristRepository extends MongoRepository<Tourist, String> {
 
   @Query("{ 'phoneNumber' : ?0 }")
   Optional<Tourist> findByPhoneNumber(String phoneNumber);
+
+  List<Tourist> findAllByIdIn(Collection<String> ids);
+
+  List<Tourist> findAllByEmailIn(Collection<String> emails);
+
+  List<Tourist> findAllByPhoneNumberIn(Collection<String> phoneNumbers);
+
+  List<Tourist> findAllBy(Pageable pageable);
+
+  List<Tourist> findAllByIdGreaterThan(String id, Pageable pageable);
+
+  List<Tourist> findAllByCountry(String country, Pageable pageable);
+
+  List<Tourist> findAllByCountryAndIdGreaterThan(String country, String id, Pageable pageable);
+
+  @Meta(cursorBatchSize = 500)
+  @Query("{}")
+  Stream<Tourist> streamAllBy();
 }
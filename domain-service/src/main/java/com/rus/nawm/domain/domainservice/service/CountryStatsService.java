@@ -0,0 +1,136 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import com.rus.nawm.domain.domainservice.config.ConcurrencyLimiter;
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import lombok.extern.log4j.Log4j2;
+import org.bson.Document;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Tourist counts per country, one {@code country_stats} document per country. The write path
+ * moves the counters as tourists are created, change country or are deleted, so reading the
+ * stats costs one document per country instead of a scan of all tourists. Tourists without a
+ * country are not counted.
+ * <p>
+ * Counters are updated after the tourist write, not in one transaction with it, so a crash in
+ * between leaves them off by one. They are rebuilt from the tourists when the collection is empty
+ * at startup, and on demand through the {@code countrystats} actuator endpoint.
+ */
+@Service
+@Endpoint(id = "countrystats")
+@Log4j2
+public class CountryStatsService {
+  static final String COLLECTION = "country_stats";
+
+  private final MongoTemplate mongoTemplate;
+  private final ConcurrencyLimiter mongoLimiter;
+
+  public CountryStatsService(MongoTemplate mongoTemplate, ConcurrencyLimiter mongoLimiter) {
+    this.mongoTemplate = mongoTemplate;
+    this.mongoLimiter = mongoLimiter;
+  }
+
+  /**
+   * Adds a tourist moving from one country to another to {@code deltas}. A {@code null} source
+   * is a created tourist, a {@code null} target a deleted one.
+   */
+  public static void move(Map<String, Long> deltas, String fromCountry, String toCountry) {
+    if (Objects.equals(fromCountry, toCountry)) {
+      return;
+    }
+    if (fromCountry != null) {
+      deltas.merge(fromCountry, -1L, Long::sum);
+    }
+    if (toCountry != null) {
+      deltas.merge(toCountry, 1L, Long::sum);
+    }
+  }
+
+  public void recordMove(String fromCountry, String toCountry) {
+    Map<String, Long> deltas = new LinkedHashMap<>();
+    move(deltas, fromCountry, toCountry);
+    record(deltas);
+  }
+
+  /**
+   * Applies counter deltas with one unordered bulk of {@code $inc} upserts. Failures are logged
+   * rather than thrown: the tourist write they belong to has already been applied.
+   */
+  public void record(Map<String, Long> deltas) {
+    BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+    int updates = 0;
+    for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+      if (delta.getValue() != 0) {
+        bulk.upsert(query(where("_id").is(delta.getKey())), new Update().inc("count", delta.getValue()));
+        updates++;
+      }
+    }
+    if (updates == 0) {
+      return;
+    }
+    try {
+      mongoLimiter.run(bulk::execute);
+    } catch (Exception e) {
+      log.error("Could not update country counters by {}", deltas, e);
+    }
+  }
+
+  /**
+   * Countries with at least one tourist, by name.
+   */
+  @ReadOperation
+  public Map<String, Long> counts() {
+    Map<String, Long> counts = new LinkedHashMap<>();
+    mongoLimiter.call(() -> mongoTemplate.find(query(where("count").gt(0)).with(Sort.by("_id")), Document.class, COLLECTION))
+            .forEach(stat -> counts.put(stat.getString("_id"), ((Number) stat.get("count")).longValue()));
+    return counts;
+  }
+
+  /**
+   * Recounts every country from the tourists collection and replaces the counters. Writes that
+   * land while the recount runs can be missed, so this is meant for an idle or freshly
+   * migrated database.
+   */
+  @WriteOperation
+  public Map<String, Long> rebuild() {
+    Aggregation recount = Aggregation.newAggregation(
+            Aggregation.match(where("country").ne(null)),
+            Aggregation.group("country").count().as("count"));
+    List<Document> stats = mongoTemplate.aggregate(recount, Tourist.class, Document.class).getMappedResults();
+    mongoTemplate.remove(query(where("_id").exists(true)), COLLECTION);
+    if (!stats.isEmpty()) {
+      mongoTemplate.insert(stats, COLLECTION);
+    }
+    log.info("Rebuilt tourist counts for {} countries", stats.size());
+    return counts();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuildIfEmpty() {
+    try {
+      if (mongoTemplate.estimatedCount(COLLECTION) == 0) {
+        rebuild();
+      }
+    } catch (Exception e) {
+      log.warn("Could not rebuild country counters", e);
+    }
+  }
+}
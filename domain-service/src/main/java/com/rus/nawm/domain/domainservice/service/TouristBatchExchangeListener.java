@@ -0,0 +1,207 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import com.rus.nawm.domain.domainservice.mapper.TouristMessageCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.rus.nawm.domain.domainservice.config.RabbitMQConfig.*;
+
+/**
+ * Batch counterpart of {@link TouristExchangeListener}, active with {@code messaging.batch.enabled=true}.
+ * Each request queue is drained in batches of up to {@code messaging.batch.size} messages, every
+ * batch is applied with a single bulk write, and the applied tourists go back as one response
+ * message holding all of them. Items that fail are logged one by one and counted in
+ * {@code domain.batch.failures}, so one bad row never holds back the rest of its batch.
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "messaging.batch.enabled", havingValue = "true")
+public class TouristBatchExchangeListener {
+  private static final String BATCH_CONTAINER_FACTORY = "batchRabbitListenerContainerFactory";
+
+  private final TouristMessageCodec codec = new TouristMessageCodec();
+
+  private final TouristService touristService;
+  private final TouristMessageSender messageSender;
+  private final TouristWriteMetrics writeMetrics;
+  private final MeterRegistry meterRegistry;
+  // registered once per tag combination rather than looked up in the registry on every batch
+  private final ConcurrentMap<String, DistributionSummary> batchSizes = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Failures, Counter> failureCounters = new ConcurrentHashMap<>();
+
+  @Autowired
+  public TouristBatchExchangeListener(TouristService touristService, TouristMessageSender messageSender,
+                                      TouristWriteMetrics writeMetrics, MeterRegistry meterRegistry) {
+    this.touristService = touristService;
+    this.messageSender = messageSender;
+    this.writeMetrics = writeMetrics;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @RabbitListener(queues = {touristPostRequestQueueName}, containerFactory = BATCH_CONTAINER_FACTORY)
+  public void onPostBatch(List<Message> messages) {
+    onSaveBatch("POST", messages, touristPostResponseQueueRoutingKey);
+  }
+
+  @RabbitListener(queues = {touristPutRequestQueueName}, containerFactory = BATCH_CONTAINER_FACTORY, concurrency = TouristPartitionConsumers.LEGACY_QUEUE_CONCURRENCY)
+  public void onPutBatch(List<Message> messages) {
+    onSaveBatch("PUT", messages, touristPutResponseQueueRoutingKey);
+  }
+
+  @RabbitListener(queues = {touristDeleteRequestQueueName}, containerFactory = BATCH_CONTAINER_FACTORY, concurrency = TouristPartitionConsumers.LEGACY_QUEUE_CONCURRENCY)
+  public void onDeleteBatch(List<Message> messages) {
+    recordBatchSize("DELETE", messages.size());
+    long start = System.nanoTime();
+    List<String> ids = new ArrayList<>(messages.size());
+    List<Message> parsed = new ArrayList<>(messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      writeMetrics.received("DELETE", messages.get(i));
+      try {
+        ids.add(codec.readId(messages.get(i)));
+        parsed.add(messages.get(i));
+      } catch (Exception e) {
+        log.error("Skipping undeserializable DELETE message {} of {}", i, messages.size(), e);
+        failureCounter("DELETE", "INVALID_MESSAGE").increment();
+        messageSender.reply(messages.get(i), TouristWriteReply.failed(e));
+      }
+    }
+    try {
+      log.info("Received batch of {} tourist ids for DELETE", ids.size());
+      TouristBatchResult result = touristService.deleteAll(ids);
+      result.failures().forEach(failure -> reportFailure("DELETE", failure, ids.get(failure.index())));
+      respond(touristDeleteResponseQueueRoutingKey, parsed, result);
+      writeMetrics.processed("DELETE", start, "OK");
+    } catch (Exception e) {
+      log.error("Error processing DELETE batch of {} tourist ids", ids.size(), e);
+      parsed.forEach(message -> messageSender.reply(message, TouristWriteReply.failed(e)));
+      writeMetrics.processed("DELETE", start, "ERROR");
+    }
+  }
+
+  /**
+   * Entry point of the partition queues, which carry both PUTs and DELETEs. The batch is cut into
+   * runs of one operation and the runs are applied one after another, so a DELETE following a PUT
+   * of the same tourist still lands after it.
+   */
+  public void onWriteBatch(List<Message> messages) {
+    int start = 0;
+    while (start < messages.size()) {
+      String operation = codec.readOperation(messages.get(start));
+      int end = start + 1;
+      while (end < messages.size() && Objects.equals(operation, codec.readOperation(messages.get(end)))) {
+        end++;
+      }
+      List<Message> run = messages.subList(start, end);
+      if ("PUT".equals(operation)) {
+        onPutBatch(run);
+      } else if ("DELETE".equals(operation)) {
+        onDeleteBatch(run);
+      } else {
+        log.error("Rejecting {} partitioned writes with unknown operation: {}", run.size(), operation);
+        failureCounter("UNKNOWN", "INVALID_MESSAGE").increment(run.size());
+        run.forEach(message -> messageSender.reply(message, TouristWriteReply.failed(new IllegalArgumentException("Unknown operation: " + operation))));
+      }
+      start = end;
+    }
+  }
+
+  private void onSaveBatch(String operation, List<Message> messages, String responseRoutingKey) {
+    recordBatchSize(operation, messages.size());
+    long start = System.nanoTime();
+    List<Tourist> tourists = new ArrayList<>(messages.size());
+    List<Message> parsed = new ArrayList<>(messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      writeMetrics.received(operation, messages.get(i));
+      try {
+        tourists.add(codec.readTourist(messages.get(i)));
+        parsed.add(messages.get(i));
+      } catch (Exception e) {
+        log.error("Skipping undeserializable {} message {} of {}", operation, i, messages.size(), e);
+        failureCounter(operation, "INVALID_MESSAGE").increment();
+        messageSender.reply(messages.get(i), TouristWriteReply.failed(e));
+      }
+    }
+    try {
+      log.info("Received batch of {} tourists for {}", tourists.size(), operation);
+      TouristBatchResult result = touristService.saveAll(tourists);
+      result.failures().forEach(failure -> reportFailure(operation, failure, tourists.get(failure.index())));
+      respond(responseRoutingKey, parsed, result);
+      writeMetrics.processed(operation, start, "OK");
+    } catch (Exception e) {
+      log.error("Error processing {} batch of {} tourists", operation, tourists.size(), e);
+      parsed.forEach(message -> messageSender.reply(message, TouristWriteReply.failed(e)));
+      writeMetrics.processed(operation, start, "ERROR");
+    }
+  }
+
+  /**
+   * Publishes the applied tourists, one response message per payload format present in the
+   * batch, and answers every request that asked for a reply. Applied tourists come back in
+   * request order, less the failed indexes. A response message is stamped with the publish time
+   * of the oldest request in the batch.
+   */
+  private void respond(String responseRoutingKey, List<Message> requests, TouristBatchResult result) throws IOException {
+    TouristWriteReply[] failures = new TouristWriteReply[requests.size()];
+    result.failures().forEach(failure -> failures[failure.index()] = TouristWriteReply.failed(failure));
+    Map<TouristMessageCodec.Format, List<Tourist>> applied = new EnumMap<>(TouristMessageCodec.Format.class);
+    Date requestedAt = null;
+    int next = 0;
+    for (int i = 0; i < requests.size(); i++) {
+      Date publishedAt = requests.get(i).getMessageProperties().getTimestamp();
+      if (publishedAt != null && (requestedAt == null || publishedAt.before(requestedAt))) {
+        requestedAt = publishedAt;
+      }
+      if (failures[i] != null) {
+        messageSender.reply(requests.get(i), failures[i]);
+        continue;
+      }
+      Tourist tourist = result.applied().get(next++);
+      applied.computeIfAbsent(TouristMessageCodec.Format.of(requests.get(i)), format -> new ArrayList<>()).add(tourist);
+      messageSender.reply(requests.get(i), TouristWriteReply.ok(tourist));
+    }
+    for (Map.Entry<TouristMessageCodec.Format, List<Tourist>> entry : applied.entrySet()) {
+      messageSender.publishAll(responseRoutingKey, entry.getValue(), entry.getKey(), requestedAt);
+    }
+  }
+
+  private void reportFailure(String operation, TouristBatchResult.Failure failure, Object item) {
+    log.error("{} of {} failed with {}: {}", operation, item, failure.reason(), failure.message());
+    failureCounter(operation, failure.reason().name()).increment();
+  }
+
+  private void recordBatchSize(String operation, int size) {
+    batchSizes.computeIfAbsent(operation, name -> DistributionSummary.builder("domain.batch.size")
+            .description("Messages per batch taken from a tourist request queue")
+            .tag("operation", name)
+            .register(meterRegistry)).record(size);
+  }
+
+  private Counter failureCounter(String operation, String reason) {
+    return failureCounters.computeIfAbsent(new Failures(operation, reason), failures -> Counter.builder("domain.batch.failures")
+            .description("Batched tourist requests that could not be applied")
+            .tag("operation", failures.operation())
+            .tag("reason", failures.reason())
+            .register(meterRegistry));
+  }
+
+  private record Failures(String operation, String reason) {
+  }
+}
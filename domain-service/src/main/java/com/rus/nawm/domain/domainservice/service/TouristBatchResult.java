@@ -0,0 +1,22 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+
+import java.util.List;
+
+/**
+ * Outcome of one bulk write: the tourists that were applied, and the items that were not,
+ * identified by their position in the submitted batch.
+ */
+public record TouristBatchResult(List<Tourist> applied, List<Failure> failures) {
+
+  /**
+   * {@code CONFLICT} is a tourist whose stored version is no longer the one it carries.
+   */
+  public enum Reason {
+    DUPLICATE_KEY, CONFLICT, NOT_FOUND, WRITE_ERROR
+  }
+
+  public record Failure(int index, Reason reason, String message) {
+  }
+}
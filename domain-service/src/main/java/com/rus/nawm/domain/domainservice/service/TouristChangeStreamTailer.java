@@ -0,0 +1,240 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import com.rus.nawm.domain.domainservice.mapper.TouristMessageCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.rus.nawm.domain.domainservice.config.RabbitMQConfig.touristChangeExchangeName;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Tails a change stream on the tourists collection and publishes every insert, update, replace
+ * and delete as a {@code TouristChangeEvent} on the {@code touristChangeExchange} fanout, so that
+ * every gateway instance sees every write, including writes made straight to Mongo.
+ * <p>
+ * One instance tails at a time: it holds a lease in the {@code change_stream_checkpoints}
+ * collection, renewed together with the resume token of the last published change every
+ * {@code messaging.change-stream.checkpoint-interval}. A new owner, or the same instance after
+ * a restart, resumes after the stored token, so no change is lost; the changes published since
+ * the last checkpoint are published again, which the gateways apply idempotently. A lease that
+ * is not renewed for {@code messaging.change-stream.lease} is taken over by another instance.
+ * <p>
+ * Change streams need a replica set. On a standalone server opening the stream fails and is
+ * retried every lease period, with a warning each time.
+ */
+@Component
+@Log4j2
+public class TouristChangeStreamTailer implements SmartLifecycle {
+  static final String CHECKPOINTS_COLLECTION = "change_stream_checkpoints";
+  private static final String STREAM_ID = "tourists";
+
+  private static final List<String> OPERATIONS = List.of("insert", "update", "replace", "delete");
+
+  private final String instanceId = UUID.randomUUID().toString();
+  private final TouristMessageCodec codec = new TouristMessageCodec();
+  private final MongoTemplate mongoTemplate;
+  private final RabbitTemplate rabbitTemplate;
+  private final boolean enabled;
+  private final Duration lease;
+  private final Duration checkpointInterval;
+  private final Counter upserts;
+  private final Counter deletes;
+
+  private Thread tailer;
+  private volatile boolean running;
+
+  public TouristChangeStreamTailer(MongoTemplate mongoTemplate, RabbitTemplate rabbitTemplate, MeterRegistry meterRegistry,
+                                   @Value("${messaging.change-stream.enabled:true}") boolean enabled,
+                                   @Value("${messaging.change-stream.lease:10s}") Duration lease,
+                                   @Value("${messaging.change-stream.checkpoint-interval:1s}") Duration checkpointInterval) {
+    this.mongoTemplate = mongoTemplate;
+    this.rabbitTemplate = rabbitTemplate;
+    this.enabled = enabled;
+    this.lease = lease;
+    this.checkpointInterval = checkpointInterval;
+    this.upserts = Counter.builder("domain.changestream.events").tag("operation", "upsert").register(meterRegistry);
+    this.deletes = Counter.builder("domain.changestream.events").tag("operation", "delete").register(meterRegistry);
+  }
+
+  @Override
+  public void start() {
+    if (!enabled) {
+      log.info("Tourist change stream is disabled");
+      return;
+    }
+    running = true;
+    tailer = new Thread(this::run, "tourist-change-stream");
+    tailer.setDaemon(true);
+    tailer.start();
+  }
+
+  @Override
+  public void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    try {
+      // tryNext returns at least every checkpoint interval
+      tailer.join(checkpointInterval.toMillis() * 2 + 1000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      // lets another instance take over right away instead of after the lease
+      mongoTemplate.updateFirst(ownLease(), Update.update("leaseUntil", new Date(0)), CHECKPOINTS_COLLECTION);
+    } catch (Exception e) {
+      log.warn("Could not release the tourist change stream lease", e);
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  private void run() {
+    while (running) {
+      try {
+        Document checkpoint = acquireLease();
+        if (checkpoint == null) {
+          sleep(lease.toMillis() / 2);
+          continue;
+        }
+        String resumeToken = checkpoint.getString("resumeToken");
+        log.info("Tailing tourist changes as instance {}, resuming after {}", instanceId, resumeToken);
+        tail(resumeToken == null ? null : BsonDocument.parse(resumeToken));
+      } catch (Exception e) {
+        log.warn("Tourist change stream failed, retrying in {}: {}", lease, e.getMessage());
+        sleep(lease.toMillis());
+      }
+    }
+  }
+
+  /**
+   * Takes the lease if it is free, expired or already ours.
+   *
+   * @return the checkpoint document, or {@code null} when another instance holds the lease
+   */
+  private Document acquireLease() {
+    Date now = new Date();
+    Query claimable = query(where("_id").is(STREAM_ID)
+            .orOperator(where("owner").is(instanceId), where("leaseUntil").lt(now)));
+    Update claim = new Update().set("owner", instanceId).set("leaseUntil", new Date(now.getTime() + lease.toMillis()));
+    try {
+      return mongoTemplate.findAndModify(claimable, claim, FindAndModifyOptions.options().upsert(true).returnNew(true),
+              Document.class, CHECKPOINTS_COLLECTION);
+    } catch (DuplicateKeyException e) {
+      // the upsert collided with the document of a live owner
+      return null;
+    }
+  }
+
+  private void tail(BsonDocument resumeToken) {
+    ChangeStreamIterable<Document> changes = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Tourist.class))
+            .watch(List.of(Aggregates.match(Filters.in("operationType", OPERATIONS))))
+            .fullDocument(FullDocument.UPDATE_LOOKUP)
+            .maxAwaitTime(checkpointInterval.toMillis(), TimeUnit.MILLISECONDS);
+    if (resumeToken != null) {
+      changes = changes.resumeAfter(resumeToken);
+    }
+    try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changes.cursor()) {
+      long nextCheckpoint = System.nanoTime() + checkpointInterval.toNanos();
+      BsonDocument published = resumeToken;
+      while (running) {
+        ChangeStreamDocument<Document> change = cursor.tryNext();
+        if (change != null) {
+          publish(change);
+        }
+        // past the last published change, and advanced by the server while no changes arrive
+        BsonDocument token = cursor.getResumeToken();
+        if (token != null) {
+          published = token;
+        }
+        if (System.nanoTime() - nextCheckpoint >= 0) {
+          if (!checkpoint(published)) {
+            log.warn("Lost the tourist change stream lease, another instance tails now");
+            return;
+          }
+          nextCheckpoint = System.nanoTime() + checkpointInterval.toNanos();
+        }
+      }
+      checkpoint(published);
+    }
+  }
+
+  private void publish(ChangeStreamDocument<Document> change) {
+    Document fullDocument = change.getFullDocument();
+    String id = idOf(change, fullDocument);
+    if (id == null) {
+      // skipped rather than retried, a change that can never be published would stall the stream
+      log.warn("Skipping {} change without a tourist id: {}", change.getOperationTypeString(), change);
+      return;
+    }
+    // an update whose tourist was deleted before the lookup has no full document left
+    Tourist tourist = fullDocument == null ? null : mongoTemplate.getConverter().read(Tourist.class, fullDocument);
+    rabbitTemplate.send(touristChangeExchangeName, "", codec.changeEvent(id, tourist));
+    (tourist == null ? deletes : upserts).increment();
+    log.debug("Published {} of tourist {}", change.getOperationTypeString(), id);
+  }
+
+  /**
+   * Stores the token and renews the lease in one update, which only matches while we own it.
+   */
+  private boolean checkpoint(BsonDocument resumeToken) {
+    Update update = Update.update("leaseUntil", new Date(System.currentTimeMillis() + lease.toMillis()));
+    if (resumeToken != null) {
+      update.set("resumeToken", resumeToken.toJson()).set("checkpointAt", new Date());
+    }
+    return mongoTemplate.updateFirst(ownLease(), update, CHECKPOINTS_COLLECTION).getMatchedCount() > 0;
+  }
+
+  private Query ownLease() {
+    return query(where("_id").is(STREAM_ID).and("owner").is(instanceId));
+  }
+
+  private static String idOf(ChangeStreamDocument<Document> change, Document fullDocument) {
+    BsonValue key = change.getDocumentKey() == null ? null : change.getDocumentKey().get("_id");
+    if (key != null) {
+      return key.isObjectId() ? key.asObjectId().getValue().toHexString() : key.isString() ? key.asString().getValue() : null;
+    }
+    Object id = fullDocument == null ? null : fullDocument.get("_id");
+    return id instanceof ObjectId objectId ? objectId.toHexString() : id instanceof String string ? string : null;
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
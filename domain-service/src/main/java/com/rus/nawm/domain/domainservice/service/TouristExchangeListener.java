@@ -1,70 +1,110 @@
 package com.rus.nawm.domain.domainservice.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mongodb.DuplicateKeyException;
 import com.mongodb.MongoWriteException;
 import com.rus.nawm.domain.domainservice.domain.Tourist;
+import com.rus.nawm.domain.domainservice.mapper.TouristMessageCodec;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.rabbit.support.ListenerExecutionFailedException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import static com.rus.nawm.domain.domainservice.config.RabbitMQConfig.*;
 
 @Service
 @Log4j2
+@ConditionalOnProperty(name = "messaging.batch.enabled", havingValue = "false", matchIfMissing = true)
 public class TouristExchangeListener {
-  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final TouristMessageCodec codec = new TouristMessageCodec();
 
   private final TouristService touristService;
-  private final RabbitTemplate rabbitTemplate;
+  private final TouristMessageSender messageSender;
+  private final TouristWriteMetrics writeMetrics;
 
   @Autowired
-  public TouristExchangeListener(TouristService touristService, RabbitTemplate rabbitTemplate) {
+  public TouristExchangeListener(TouristService touristService, TouristMessageSender messageSender,
+                                 TouristWriteMetrics writeMetrics) {
     this.touristService = touristService;
-    this.rabbitTemplate = rabbitTemplate;
+    this.messageSender = messageSender;
+    this.writeMetrics = writeMetrics;
   }
 
   @RabbitListener(queues = {touristPostRequestQueueName})
-  public void onPostMethod(byte[] message) {
+  public void onPostMethod(Message message) {
+    long start = writeMetrics.received("POST", message);
+    String outcome = "OK";
     try {
-      Tourist tourist = objectMapper.readValue(message, Tourist.class);
-      log.info("Received and deserialized tourist object for POST: {}", tourist);
+      Tourist tourist = codec.readTourist(message);
+      log.info("Received and deserialized tourist object for POST with email: {}", tourist.getEmail());
       tourist = touristService.save(tourist);
-      byte[] messageMQ = objectMapper.writeValueAsBytes(tourist);
-      rabbitTemplate.convertAndSend(directExchangeName, touristPostResponseQueueRoutingKey, messageMQ);
+      messageSender.publish(touristPostResponseQueueRoutingKey, tourist, message);
+      messageSender.reply(message, TouristWriteReply.ok(tourist));
     } catch (Exception e) {
+      outcome = "ERROR";
       log.error("Error processing POST request for tourist", e);
+      messageSender.reply(message, TouristWriteReply.failed(e));
+    } finally {
+      writeMetrics.processed("POST", start, outcome);
     }
   }
 
-  @RabbitListener(queues = {touristPutRequestQueueName})
-  public void onPutMethod(byte[] message) {
+  @RabbitListener(queues = {touristPutRequestQueueName}, concurrency = TouristPartitionConsumers.LEGACY_QUEUE_CONCURRENCY)
+  public void onPutMethod(Message message) {
+    long start = writeMetrics.received("PUT", message);
+    String outcome = "OK";
     try {
-      Tourist touristEntity = objectMapper.readValue(message, Tourist.class);
-      log.info("Received and deserialized tourist object for PUT: {}", touristEntity);
+      Tourist touristEntity = codec.readTourist(message);
+      log.info("Received and deserialized tourist object for PUT with ID: {}", touristEntity.getId());
       touristEntity = touristService.updateTourist(touristEntity);
-      byte[] messageMQ = objectMapper.writeValueAsBytes(touristEntity);
-      rabbitTemplate.convertAndSend(directExchangeName, touristPutResponseQueueRoutingKey, messageMQ);
+      messageSender.publish(touristPutResponseQueueRoutingKey, touristEntity, message);
+      messageSender.reply(message, TouristWriteReply.ok(touristEntity));
     } catch (ListenerExecutionFailedException | MongoWriteException | DuplicateKeyException e) {
+      outcome = "ERROR";
       log.error("Error processing PUT request for tourist", e);
+      messageSender.reply(message, TouristWriteReply.failed(e));
     } catch (Exception e) {
+      outcome = "ERROR";
       log.error("Error updating tourist object", e);
+      messageSender.reply(message, TouristWriteReply.failed(e));
+    } finally {
+      writeMetrics.processed("PUT", start, outcome);
     }
   }
 
-  @RabbitListener(queues = {touristDeleteRequestQueueName})
-  public void onDeleteMethod(byte[] message) {
-    String id = new String(message);
+  /**
+   * Entry point of the partition queues, which carry both PUTs and DELETEs.
+   */
+  public void onWriteMethod(Message message) {
+    String operation = codec.readOperation(message);
+    if ("PUT".equals(operation)) {
+      onPutMethod(message);
+    } else if ("DELETE".equals(operation)) {
+      onDeleteMethod(message);
+    } else {
+      log.error("Rejecting partitioned write with unknown operation: {}", operation);
+      messageSender.reply(message, TouristWriteReply.failed(new IllegalArgumentException("Unknown operation: " + operation)));
+    }
+  }
+
+  @RabbitListener(queues = {touristDeleteRequestQueueName}, concurrency = TouristPartitionConsumers.LEGACY_QUEUE_CONCURRENCY)
+  public void onDeleteMethod(Message message) {
+    long start = writeMetrics.received("DELETE", message);
+    String outcome = "OK";
     try {
+      String id = codec.readId(message);
       log.info("Received tourist id for DELETE: {}", id);
       Tourist deletedTourist = touristService.deleteTourist(id);
-      byte[] responseMessage = objectMapper.writeValueAsBytes(deletedTourist);
-      rabbitTemplate.convertAndSend(directExchangeName, touristDeleteResponseQueueRoutingKey, responseMessage);
+      messageSender.publish(touristDeleteResponseQueueRoutingKey, deletedTourist, message);
+      messageSender.reply(message, TouristWriteReply.ok(deletedTourist));
     } catch (Exception e) {
+      outcome = "ERROR";
       log.error("Error processing DELETE request for tourist", e);
+      messageSender.reply(message, TouristWriteReply.failed(e));
+    } finally {
+      writeMetrics.processed("DELETE", start, outcome);
     }
   }
-}
\ No newline at end of file
+}
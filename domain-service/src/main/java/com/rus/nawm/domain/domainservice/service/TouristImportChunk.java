@@ -0,0 +1,11 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+
+import java.util.List;
+
+/**
+ * One chunk of a bulk import job, as published by the gateway while it streams the upload.
+ */
+public record TouristImportChunk(String jobId, List<Tourist> tourists) {
+}
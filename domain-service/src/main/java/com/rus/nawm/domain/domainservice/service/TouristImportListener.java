@@ -0,0 +1,97 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.rus.nawm.domain.domainservice.config.RabbitMQConfig.*;
+
+/**
+ * Applies bulk import chunks with one unordered insert each and reports per-chunk counts back
+ * to the gateway, which aggregates them into the job status.
+ */
+@Service
+@Log4j2
+public class TouristImportListener {
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final TouristService touristService;
+  private final RabbitTemplate rabbitTemplate;
+
+  @Autowired
+  public TouristImportListener(TouristService touristService, RabbitTemplate rabbitTemplate) {
+    this.touristService = touristService;
+    this.rabbitTemplate = rabbitTemplate;
+  }
+
+  @RabbitListener(queues = {touristImportRequestQueueName})
+  public void onImportChunk(byte[] message) {
+    try {
+      TouristImportChunk chunk = objectMapper.readValue(message, TouristImportChunk.class);
+      byte[] messageMQ = objectMapper.writeValueAsBytes(importChunk(chunk));
+      rabbitTemplate.convertAndSend(directExchangeName, touristImportResponseQueueRoutingKey, messageMQ);
+    } catch (Exception e) {
+      log.error("Error processing import chunk", e);
+    }
+  }
+
+  private TouristImportResult importChunk(TouristImportChunk chunk) {
+    List<Tourist> tourists = chunk.tourists();
+    log.info("Received import chunk of {} tourists for job {}", tourists.size(), chunk.jobId());
+    try {
+      // imports only ever add tourists, so ids coming from partner files are replaced
+      return toImportResult(chunk.jobId(), tourists, touristService.insertAll(tourists));
+    } catch (Exception e) {
+      // still answered, so that the job's counts add up and it can complete
+      log.error("Error importing chunk of {} tourists for job {}", tourists.size(), chunk.jobId(), e);
+      return new TouristImportResult(chunk.jobId(), tourists.size(), 0, 0, 0, tourists.size(), List.of(), List.of());
+    }
+  }
+
+  private TouristImportResult toImportResult(String jobId, List<Tourist> tourists, TouristBatchResult batchResult) {
+    int duplicateEmails = 0;
+    int duplicatePhoneNumbers = 0;
+    int failed = 0;
+    List<String> conflicts = new ArrayList<>();
+    for (TouristBatchResult.Failure failure : batchResult.failures()) {
+      Tourist tourist = tourists.get(failure.index());
+      String field = failure.reason() == TouristBatchResult.Reason.DUPLICATE_KEY ? duplicateField(failure.message()) : null;
+      if ("email".equals(field)) {
+        duplicateEmails++;
+        conflicts.add("email:" + tourist.getEmail());
+      } else if ("phoneNumber".equals(field)) {
+        duplicatePhoneNumbers++;
+        conflicts.add("phoneNumber:" + tourist.getPhoneNumber());
+      } else {
+        failed++;
+        log.error("Import of {} for job {} failed with {}: {}", tourist, jobId, failure.reason(), failure.message());
+      }
+    }
+    return new TouristImportResult(jobId, tourists.size(), batchResult.applied().size(),
+            duplicateEmails, duplicatePhoneNumbers, failed, conflicts, batchResult.applied());
+  }
+
+  /**
+   * Picks the violated unique index out of the server's E11000 message; the indexes are named
+   * after their fields.
+   */
+  private static String duplicateField(String message) {
+    if (message == null) {
+      return null;
+    }
+    if (message.contains("index: phoneNumber")) {
+      return "phoneNumber";
+    }
+    if (message.contains("index: email")) {
+      return "email";
+    }
+    return null;
+  }
+}
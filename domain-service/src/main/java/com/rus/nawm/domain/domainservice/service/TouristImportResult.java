@@ -0,0 +1,20 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+
+import java.util.List;
+
+/**
+ * Outcome of one {@link TouristImportChunk}. Every submitted row is counted exactly once, as
+ * accepted, as a duplicate email or phone number, or as failed. {@code conflicts} names the
+ * conflicting values, e.g. {@code email:jane@example.com}.
+ */
+public record TouristImportResult(String jobId,
+                                  int submitted,
+                                  int accepted,
+                                  int duplicateEmails,
+                                  int duplicatePhoneNumbers,
+                                  int failed,
+                                  List<String> conflicts,
+                                  List<Tourist> tourists) {
+}
@@ -0,0 +1,66 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import com.rus.nawm.domain.domainservice.mapper.TouristMessageCodec;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+import static com.rus.nawm.domain.domainservice.config.RabbitMQConfig.directExchangeName;
+
+/**
+ * Publishes write results to the response queues and {@link TouristWriteReply}s to reply-to
+ * queues, encoded by {@link TouristMessageCodec} in the format of the request they answer.
+ * Replies go through the default exchange; requests without a reply-to address are
+ * fire-and-forget and get none. Results carry the publish time of the request they answer, when
+ * it has one, so gateways can time the whole write.
+ */
+@Component
+@Log4j2
+public class TouristMessageSender {
+  private final TouristMessageCodec codec = new TouristMessageCodec();
+
+  private final RabbitTemplate rabbitTemplate;
+
+  public TouristMessageSender(RabbitTemplate rabbitTemplate) {
+    this.rabbitTemplate = rabbitTemplate;
+  }
+
+  public void publish(String routingKey, Tourist tourist, Message request) throws IOException {
+    Message result = codec.result(tourist, TouristMessageCodec.Format.of(request));
+    rabbitTemplate.send(directExchangeName, routingKey, stamped(result, request.getMessageProperties().getTimestamp()));
+  }
+
+  public void publishAll(String routingKey, List<Tourist> tourists, TouristMessageCodec.Format format, Date requestedAt) throws IOException {
+    if (!tourists.isEmpty()) {
+      rabbitTemplate.send(directExchangeName, routingKey, stamped(codec.results(tourists, format), requestedAt));
+    }
+  }
+
+  public void reply(Message request, TouristWriteReply reply) {
+    String replyTo = request.getMessageProperties().getReplyTo();
+    String correlationId = request.getMessageProperties().getCorrelationId();
+    if (replyTo == null || correlationId == null) {
+      return;
+    }
+    try {
+      Message message = codec.reply(reply, TouristMessageCodec.Format.of(request));
+      message.getMessageProperties().setCorrelationId(correlationId);
+      rabbitTemplate.send("", replyTo, message);
+    } catch (Exception e) {
+      log.error("Error replying to {} for correlation id {}", replyTo, correlationId, e);
+    }
+  }
+
+  private static Message stamped(Message result, Date requestedAt) {
+    if (requestedAt != null) {
+      result.getMessageProperties().setHeader(TouristMessageCodec.REQUESTED_AT_HEADER, requestedAt.getTime());
+    }
+    return result;
+  }
+}
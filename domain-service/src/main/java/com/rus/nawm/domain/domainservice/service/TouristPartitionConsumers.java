@@ -0,0 +1,200 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import lombok.extern.log4j.Log4j2;
+import org.bson.Document;
+import org.springframework.amqp.core.BatchMessageListener;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.rus.nawm.domain.domainservice.config.RabbitMQConfig.*;
+
+/**
+ * Consumes the partition queues, which carry PUTs and DELETEs alike, with one consumer per
+ * partition, spreading the partitions over the running domain-service instances.
+ * <p>
+ * Instances find each other through heartbeats in the {@code domain_instances} collection, written
+ * every {@code messaging.partitions.heartbeat-interval}; an instance that has not written one for
+ * {@code messaging.partitions.instance-ttl} is left out. Each partition goes to the live instance
+ * with the highest rendezvous hash, so every instance computes the same assignment on its own and
+ * an instance joining or leaving only moves the partitions it gains or gives up. Partition queues
+ * are single-active-consumer, so while a partition changes hands the new owner stays idle until
+ * the old one has cancelled, and writes to one tourist are never applied out of order.
+ * <p>
+ * The unpartitioned {@code touristPutRequestQueue} and {@code touristDeleteRequestQueue} are still
+ * consumed by the listeners, with {@link #LEGACY_QUEUE_CONCURRENCY} consumers, so that messages
+ * from gateways without partitioning drain in order.
+ */
+@Component
+@Log4j2
+public class TouristPartitionConsumers implements SmartLifecycle {
+  static final String INSTANCES_COLLECTION = "domain_instances";
+  static final String LEGACY_QUEUE_CONCURRENCY = "1";
+
+  private final String instanceId = UUID.randomUUID().toString();
+  private final MongoTemplate mongoTemplate;
+  private final RabbitListenerEndpointRegistry endpointRegistry;
+  private final SimpleRabbitListenerContainerFactory containerFactory;
+  private final MessageListener writeListener;
+  private final Duration heartbeatInterval;
+  private final Duration instanceTtl;
+
+  private final Set<Integer> ownedPartitions = new TreeSet<>();
+  private ScheduledExecutorService scheduler;
+  private volatile boolean running;
+
+  public TouristPartitionConsumers(MongoTemplate mongoTemplate, RabbitListenerEndpointRegistry endpointRegistry,
+                                   @Qualifier("rabbitListenerContainerFactory") SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory,
+                                   @Qualifier("batchRabbitListenerContainerFactory") ObjectProvider<SimpleRabbitListenerContainerFactory> batchRabbitListenerContainerFactory,
+                                   ObjectProvider<TouristExchangeListener> exchangeListener,
+                                   ObjectProvider<TouristBatchExchangeListener> batchExchangeListener,
+                                   @Value("${messaging.partitions.heartbeat-interval:2s}") Duration heartbeatInterval,
+                                   @Value("${messaging.partitions.instance-ttl:10s}") Duration instanceTtl) {
+    this.mongoTemplate = mongoTemplate;
+    this.endpointRegistry = endpointRegistry;
+    this.heartbeatInterval = heartbeatInterval;
+    this.instanceTtl = instanceTtl;
+    TouristBatchExchangeListener batchListener = batchExchangeListener.getIfAvailable();
+    if (batchListener != null) {
+      this.containerFactory = batchRabbitListenerContainerFactory.getObject();
+      this.writeListener = (BatchMessageListener) batchListener::onWriteBatch;
+    } else {
+      TouristExchangeListener listener = exchangeListener.getObject();
+      this.containerFactory = rabbitListenerContainerFactory;
+      this.writeListener = listener::onWriteMethod;
+    }
+  }
+
+  @Override
+  public void start() {
+    log.info("Starting partition consumers as instance {}", instanceId);
+    scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("partition-rebalance-"));
+    scheduler.scheduleWithFixedDelay(this::rebalance, 0, heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    running = true;
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    scheduler.shutdown();
+    try {
+      scheduler.awaitTermination(heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    new ArrayList<>(ownedPartitions).forEach(this::stopPartition);
+    try {
+      // lets the other instances take over on their next tick instead of after the TTL
+      mongoTemplate.remove(Query.query(Criteria.where("_id").is(instanceId)), INSTANCES_COLLECTION);
+    } catch (Exception e) {
+      log.warn("Could not deregister instance {}", instanceId, e);
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  private void rebalance() {
+    try {
+      Date now = new Date();
+      mongoTemplate.upsert(Query.query(Criteria.where("_id").is(instanceId)), Update.update("heartbeatAt", now), INSTANCES_COLLECTION);
+      Query live = Query.query(Criteria.where("heartbeatAt").gte(new Date(now.getTime() - instanceTtl.toMillis())));
+      List<String> instances = new ArrayList<>();
+      mongoTemplate.find(live, Document.class, INSTANCES_COLLECTION).forEach(instance -> instances.add(instance.getString("_id")));
+      if (!instances.contains(instanceId)) {
+        instances.add(instanceId);
+      }
+      Set<Integer> assigned = new TreeSet<>();
+      for (int partition = 0; partition < touristRequestPartitions; partition++) {
+        if (instanceId.equals(owner(partition, instances))) {
+          assigned.add(partition);
+        }
+      }
+      if (assigned.equals(ownedPartitions)) {
+        return;
+      }
+      new ArrayList<>(ownedPartitions).stream().filter(partition -> !assigned.contains(partition)).forEach(this::stopPartition);
+      assigned.stream().filter(partition -> !ownedPartitions.contains(partition)).forEach(this::startPartition);
+      log.info("Consuming partitions {} of {} as one of {} instances", ownedPartitions, touristRequestPartitions, instances.size());
+    } catch (Exception e) {
+      // single active consumer keeps ordering even if another instance takes over meanwhile
+      log.warn("Partition rebalance failed, keeping partitions {}", ownedPartitions, e);
+    }
+  }
+
+  static String owner(int partition, List<String> instances) {
+    String owner = null;
+    long best = Long.MIN_VALUE;
+    for (String instance : instances) {
+      long score = score(instance, partition);
+      if (owner == null || score > best || (score == best && instance.compareTo(owner) < 0)) {
+        owner = instance;
+        best = score;
+      }
+    }
+    return owner;
+  }
+
+  /**
+   * splitmix64 finalizer over the instance and partition, so that partitions spread evenly even
+   * though instance ids only differ in a few hash bits.
+   */
+  private static long score(String instance, int partition) {
+    long h = instance.hashCode() * 0x9E3779B97F4A7C15L + partition;
+    h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+    h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+    return h ^ (h >>> 31);
+  }
+
+  private void startPartition(int partition) {
+    register("touristPartition-" + partition, touristWritePartitionQueueName(partition), writeListener);
+    ownedPartitions.add(partition);
+  }
+
+  private void stopPartition(int partition) {
+    unregister("touristPartition-" + partition);
+    ownedPartitions.remove(partition);
+  }
+
+  private void register(String id, String queueName, MessageListener listener) {
+    SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+    endpoint.setId(id);
+    endpoint.setQueueNames(queueName);
+    endpoint.setMessageListener(listener);
+    // one consumer per partition is what keeps its messages in order
+    endpoint.setConcurrency("1");
+    endpointRegistry.registerListenerContainer(endpoint, containerFactory, true);
+  }
+
+  private void unregister(String id) {
+    MessageListenerContainer container = endpointRegistry.unregisterListenerContainer(id);
+    if (container != null) {
+      container.stop();
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import com.rus.nawm.apigateway.TouristServiceOuterClass;
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import com.rus.nawm.domain.domainservice.mapper.TouristMapper;
+import com.rus.nawm.domain.domainservice.mapper.TouristMessageCodec;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * In-memory prefix index over the name, surname and email of every tourist, for typeahead search.
+ * <p>
+ * Terms are folded to lower case without diacritics and kept in a sorted set as
+ * {@code term + '\0' + id}, so the tourists whose term starts with a prefix are one contiguous
+ * range of the set. A lookup walks that range until it has {@code limit} tourists, which keeps it
+ * independent of the collection size for the short prefixes typeahead sends.
+ * <p>
+ * The index is built from a cursor scan when the application is ready and kept current by the
+ * write paths of {@link TouristService} and by the {@code touristChangeExchange} fanout, which
+ * brings in the writes the other instances apply to their partitions. A change event older than
+ * the version already indexed is ignored. Without a change stream, e.g. on a standalone Mongo,
+ * each instance only sees its own writes after the build. Searches during the build see the
+ * tourists scanned so far. Writes that land while the scan runs win over the scanned documents, so
+ * a tourist updated or deleted mid-scan is not resurrected in its old form.
+ */
+@Component
+@Log4j2
+public class TouristSearchIndex {
+  /**
+   * Upper bound on the index entries one search walks, so that a multi-term query whose first term
+   * matches half the collection still answers quickly, with fewer results.
+   */
+  static final int MAX_SCANNED_ENTRIES = 10_000;
+
+  private static final char SEPARATOR = '\0';
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+  private record Entry(String id, String name, String surname, String email, Long version, List<String> terms) {
+  }
+
+  public record Suggestion(String id, String name, String surname, String email) {
+  }
+
+  private final NavigableSet<String> terms = new ConcurrentSkipListSet<>();
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final TouristMessageCodec codec = new TouristMessageCodec();
+  private final MongoTemplate mongoTemplate;
+  private final Timer lookupTimer;
+
+  /**
+   * Ids written while the startup scan runs, {@code null} outside of it.
+   */
+  private volatile Set<String> writtenDuringBuild;
+
+  public TouristSearchIndex(MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+    this.mongoTemplate = mongoTemplate;
+    this.lookupTimer = Timer.builder("domain.search.lookup")
+            .description("Time to answer one typeahead search from the in-memory index")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+    Gauge.builder("domain.search.index.tourists", entries, Map::size)
+            .description("Tourists in the typeahead search index")
+            .register(meterRegistry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void build() {
+    long start = System.nanoTime();
+    Set<String> written = ConcurrentHashMap.newKeySet();
+    writtenDuringBuild = written;
+    Query scan = new Query();
+    scan.fields().include("name", "surname", "email", "version");
+    long scanned = 0;
+    try (Stream<Tourist> tourists = mongoTemplate.stream(scan, Tourist.class)) {
+      for (Tourist tourist : (Iterable<Tourist>) tourists::iterator) {
+        entries.compute(tourist.getId(), (id, current) -> written.contains(id) ? current : replace(current, tourist));
+        scanned++;
+      }
+      log.info("Built the search index over {} tourists in {} ms", scanned, (System.nanoTime() - start) / 1_000_000);
+    } catch (Exception e) {
+      log.error("Building the search index failed after {} tourists, search only covers tourists written since", scanned, e);
+    } finally {
+      writtenDuringBuild = null;
+    }
+  }
+
+  public void put(Tourist tourist) {
+    markWritten(tourist.getId());
+    entries.compute(tourist.getId(), (id, current) -> replace(current, tourist));
+  }
+
+  @RabbitListener(queues = "#{touristSearchChangeQueue.name}", concurrency = "1")
+  public void onTouristChange(Message message) {
+    TouristServiceOuterClass.TouristChangeEvent event;
+    try {
+      event = codec.readChangeEvent(message);
+    } catch (IOException e) {
+      throw new AmqpRejectAndDontRequeueException("Malformed tourist change event", e);
+    }
+    if (event.getOperation() == TouristServiceOuterClass.TouristChangeEvent.Operation.UPSERT && event.hasTourist()) {
+      put(TouristMapper.toEntity(event.getTourist()));
+    } else {
+      remove(event.getId());
+    }
+  }
+
+  public void remove(String id) {
+    markWritten(id);
+    entries.computeIfPresent(id, (key, current) -> {
+      current.terms().forEach(term -> terms.remove(term + SEPARATOR + key));
+      return null;
+    });
+  }
+
+  /**
+   * Tourists for which every whitespace separated term of {@code query} is a prefix of the name,
+   * surname or email, ordered by the matching term, at most {@code limit} of them.
+   */
+  public List<Suggestion> search(String query, int limit) {
+    long start = System.nanoTime();
+    List<String> prefixes = WHITESPACE.splitAsStream(normalize(query)).filter(prefix -> !prefix.isEmpty()).toList();
+    if (prefixes.isEmpty() || limit <= 0) {
+      return List.of();
+    }
+    // the longest prefix has the narrowest range, the others are checked per tourist
+    String driver = prefixes.stream().max((a, b) -> Integer.compare(a.length(), b.length())).orElseThrow();
+    Set<String> seen = new LinkedHashSet<>();
+    List<Suggestion> suggestions = new ArrayList<>(limit);
+    int scanned = 0;
+    for (String key : terms.subSet(driver, true, driver + Character.MAX_VALUE, false)) {
+      if (suggestions.size() >= limit || ++scanned > MAX_SCANNED_ENTRIES) {
+        break;
+      }
+      String id = key.substring(key.indexOf(SEPARATOR) + 1);
+      Entry entry = entries.get(id);
+      if (entry != null && seen.add(id) && matchesAll(entry, prefixes)) {
+        suggestions.add(new Suggestion(entry.id(), entry.name(), entry.surname(), entry.email()));
+      }
+    }
+    lookupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    return suggestions;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  private void markWritten(String id) {
+    Set<String> written = writtenDuringBuild;
+    if (written != null) {
+      written.add(id);
+    }
+  }
+
+  /**
+   * Swaps the terms of {@code current} for those of {@code tourist}, unless {@code tourist} is an
+   * older version. Runs inside {@link ConcurrentHashMap#compute}, so writes to one tourist never
+   * interleave.
+   */
+  private Entry replace(Entry current, Tourist tourist) {
+    if (current != null && current.version() != null && tourist.getVersion() != null && tourist.getVersion() < current.version()) {
+      return current;
+    }
+    List<String> newTerms = termsOf(tourist);
+    if (current != null) {
+      current.terms().stream()
+              .filter(term -> !newTerms.contains(term))
+              .forEach(term -> terms.remove(term + SEPARATOR + current.id()));
+    }
+    newTerms.forEach(term -> terms.add(term + SEPARATOR + tourist.getId()));
+    return new Entry(tourist.getId(), tourist.getName(), tourist.getSurname(), tourist.getEmail(), tourist.getVersion(), newTerms);
+  }
+
+  private static boolean matchesAll(Entry entry, List<String> prefixes) {
+    for (String prefix : prefixes) {
+      if (entry.terms().stream().noneMatch(term -> term.startsWith(prefix))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<String> termsOf(Tourist tourist) {
+    return Stream.of(tourist.getName(), tourist.getSurname(), tourist.getEmail())
+            .filter(value -> value != null && !value.isBlank())
+            .flatMap(value -> Arrays.stream(WHITESPACE.split(normalize(value))))
+            .filter(term -> !term.isEmpty())
+            .distinct()
+            .toList();
+  }
+
+  static String normalize(String value) {
+    String folded = DIACRITICS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+    return folded.toLowerCase(Locale.ROOT).replace(SEPARATOR, ' ').trim();
+  }
+}
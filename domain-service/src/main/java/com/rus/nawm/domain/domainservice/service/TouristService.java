@@ -1,30 +1,69 @@
 package com.rus.nawm.domain.domainservice.service;
 
 import com.mongodb.DuplicateKeyException;
+import com.mongodb.ErrorCategory;
 import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.rus.nawm.domain.domainservice.config.ConcurrencyLimiter;
 import com.rus.nawm.domain.domainservice.domain.Tourist;
 import com.rus.nawm.domain.domainservice.repository.TouristRepository;
 import lombok.extern.log4j.Log4j2;
+import org.bson.types.ObjectId;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 
 @Service
 @Log4j2
 public class TouristService {
+  private static final Set<String> PROJECTABLE_FIELDS = Set.of("id", "name", "surname", "email", "phoneNumber", "country", "version");
+
   private final TouristRepository touristRepository;
+  private final MongoTemplate mongoTemplate;
+  private final CountryStatsService countryStats;
+  private final TouristSearchIndex searchIndex;
+  private final ConcurrencyLimiter mongoLimiter;
 
-  public TouristService(TouristRepository touristRepository) {
+  public TouristService(TouristRepository touristRepository, MongoTemplate mongoTemplate, CountryStatsService countryStats,
+                        TouristSearchIndex searchIndex, ConcurrencyLimiter mongoLimiter) {
     this.touristRepository = touristRepository;
+    this.mongoTemplate = mongoTemplate;
+    this.countryStats = countryStats;
+    this.searchIndex = searchIndex;
+    this.mongoLimiter = mongoLimiter;
   }
 
   public Tourist deleteTourist(String id) {
     log.info("Deleting tourist with ID: {}", id);
     try {
-      Tourist t = getTouristById(id).orElseThrow(() -> new NoSuchElementException("No such tourist"));
-      touristRepository.deleteById(id);
+      Tourist t = Optional.ofNullable(mongoLimiter.call(() -> mongoTemplate.findAndRemove(query(where("id").is(id)), Tourist.class)))
+              .orElseThrow(() -> new NoSuchElementException("No such tourist"));
+      countryStats.recordMove(t.getCountry(), null);
+      searchIndex.remove(id);
       log.info("Tourist with ID: {} successfully deleted", id);
       return t;
     } catch (Exception e) {
@@ -34,10 +73,10 @@ public class TouristService {
   }
 
   public Tourist save(Tourist tourist) throws MongoWriteException {
-    log.info("Saving tourist: {}", tourist);
+    log.info("Saving tourist with email: {}", tourist.getEmail());
     try {
-      Tourist savedTourist = touristRepository.save(tourist);
-      log.info("Tourist successfully saved: {}", savedTourist);
+      Tourist savedTourist = replace(tourist);
+      log.info("Tourist successfully saved with ID: {}", savedTourist.getId());
       return savedTourist;
     } catch (MongoWriteException | DuplicateKeyException e) {
       log.error("Error while saving tourist: {}", tourist, e);
@@ -45,9 +84,180 @@ public class TouristService {
     }
   }
 
+  /**
+   * Saves many tourists with an ordered {@code bulkWrite}, with the same semantics as calling
+   * {@link #save} for each in turn: tourists without an id are inserted, the others are replaced or
+   * upserted, and two writes to one id land in batch order. A failing item, e.g. a duplicate email,
+   * is reported by its index and the write resumes right after it, so it costs one more round trip
+   * but does not stop the rest.
+   * <p>
+   * A tourist that carries a version is applied on its own, between the bulk writes before and
+   * after it, exactly as {@link #save} would: it is never upserted, and is reported as
+   * {@code NOT_FOUND} or {@code CONFLICT} when its id is unknown or its version stale.
+   * <p>
+   * The versions reported for unversioned tourists are derived from the ones read before the write;
+   * a concurrent write to the same tourist in between can make them lag behind the stored ones.
+   */
+  public TouristBatchResult saveAll(List<Tourist> tourists) {
+    log.info("Bulk saving {} tourists", tourists.size());
+    if (tourists.isEmpty()) {
+      return new TouristBatchResult(List.of(), List.of());
+    }
+    Map<String, Tourist> previous = previous(tourists);
+    boolean[] inserted = new boolean[tourists.size()];
+    Tourist[] replacedAtVersion = new Tourist[tourists.size()];
+    for (int i = 0; i < tourists.size(); i++) {
+      Tourist tourist = tourists.get(i);
+      if (tourist.getId() == null) {
+        // assigned here because the bulk insert does not write generated ids and versions back
+        tourist.setId(new ObjectId().toHexString());
+        tourist.setVersion(0L);
+        inserted[i] = true;
+      }
+    }
+    List<TouristBatchResult.Failure> failures = new ArrayList<>();
+    int from = 0;
+    while (from < tourists.size()) {
+      if (!inserted[from] && tourists.get(from).getVersion() != null) {
+        try {
+          replacedAtVersion[from] = replaceAtVersion(tourists.get(from));
+        } catch (RuntimeException e) {
+          failures.add(new TouristBatchResult.Failure(from, reasonOf(e), e.getMessage()));
+        }
+        from++;
+        continue;
+      }
+      int to = from;
+      BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Tourist.class);
+      for (; to < tourists.size() && (inserted[to] || tourists.get(to).getVersion() == null); to++) {
+        if (inserted[to]) {
+          bulk.insert(tourists.get(to));
+        } else {
+          bulk.upsert(current(tourists.get(to)), replacement(tourists.get(to)));
+        }
+      }
+      try {
+        mongoLimiter.run(bulk::execute);
+        from = to;
+      } catch (BulkOperationException e) {
+        // an ordered write stops at its first error
+        BulkWriteError error = e.getErrors().get(0);
+        failures.add(new TouristBatchResult.Failure(from + error.getIndex(), reasonOf(error), error.getMessage()));
+        from += error.getIndex() + 1;
+      }
+    }
+    Set<Integer> failed = new HashSet<>();
+    failures.forEach(failure -> failed.add(failure.index()));
+    List<Tourist> applied = new ArrayList<>(tourists.size() - failed.size());
+    Map<String, Long> countryDeltas = new HashMap<>();
+    for (int i = 0; i < tourists.size(); i++) {
+      if (!failed.contains(i)) {
+        Tourist tourist = tourists.get(i);
+        Tourist replaced = replacedAtVersion[i] != null ? replacedAtVersion[i] : previous.get(tourist.getId());
+        if (!inserted[i]) {
+          tourist.setVersion(nextVersion(tourist.getVersion() != null ? tourist : replaced));
+        }
+        applied.add(tourist);
+        searchIndex.put(tourist);
+        CountryStatsService.move(countryDeltas, replaced != null ? replaced.getCountry() : null, tourist.getCountry());
+        previous.put(tourist.getId(), tourist);
+      }
+    }
+    countryStats.record(countryDeltas);
+    log.info("Bulk saved {} of {} tourists", applied.size(), tourists.size());
+    return new TouristBatchResult(applied, failures);
+  }
+
+  /**
+   * Inserts many new tourists with one unordered {@code bulkWrite}: the server attempts every
+   * insert, and each one it rejects, e.g. for a duplicate email, is reported by its index. Ids
+   * carried by the tourists are replaced with generated ones.
+   */
+  public TouristBatchResult insertAll(List<Tourist> tourists) {
+    log.info("Bulk inserting {} tourists", tourists.size());
+    if (tourists.isEmpty()) {
+      return new TouristBatchResult(List.of(), List.of());
+    }
+    BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Tourist.class);
+    for (Tourist tourist : tourists) {
+      // assigned here because the bulk insert does not write generated ids and versions back
+      tourist.setId(new ObjectId().toHexString());
+      tourist.setVersion(0L);
+      bulk.insert(tourist);
+    }
+    List<TouristBatchResult.Failure> failures = new ArrayList<>();
+    try {
+      mongoLimiter.run(bulk::execute);
+    } catch (BulkOperationException e) {
+      for (BulkWriteError error : e.getErrors()) {
+        failures.add(new TouristBatchResult.Failure(error.getIndex(), reasonOf(error), error.getMessage()));
+      }
+    }
+    Set<Integer> failed = new HashSet<>();
+    failures.forEach(failure -> failed.add(failure.index()));
+    List<Tourist> applied = new ArrayList<>(tourists.size() - failed.size());
+    Map<String, Long> countryDeltas = new HashMap<>();
+    for (int i = 0; i < tourists.size(); i++) {
+      if (!failed.contains(i)) {
+        Tourist tourist = tourists.get(i);
+        applied.add(tourist);
+        searchIndex.put(tourist);
+        CountryStatsService.move(countryDeltas, null, tourist.getCountry());
+      }
+    }
+    countryStats.record(countryDeltas);
+    log.info("Bulk inserted {} of {} tourists", applied.size(), tourists.size());
+    return new TouristBatchResult(applied, failures);
+  }
+
+  /**
+   * Countries and versions of the stored tourists that a bulk save is about to replace, by id,
+   * read with one projected {@code $in} query. Ids without a stored tourist are absent from the map.
+   */
+  private Map<String, Tourist> previous(List<Tourist> tourists) {
+    List<String> ids = tourists.stream().map(Tourist::getId).filter(Objects::nonNull).toList();
+    Map<String, Tourist> previous = new HashMap<>();
+    if (!ids.isEmpty()) {
+      Query stored = query(where("id").in(ids));
+      stored.fields().include("country", "version");
+      mongoLimiter.call(() -> mongoTemplate.find(stored, Tourist.class)).forEach(tourist -> previous.put(tourist.getId(), tourist));
+    }
+    return previous;
+  }
+
+  /**
+   * Deletes many tourists with one {@code $in} lookup and one {@code deleteMany}, returning the
+   * deleted documents. Ids without a tourist, or repeated ones, are reported as not found.
+   */
+  public TouristBatchResult deleteAll(List<String> ids) {
+    log.info("Bulk deleting {} tourists", ids.size());
+    Map<String, Tourist> found = new HashMap<>();
+    mongoLimiter.call(() -> touristRepository.findAllByIdIn(ids)).forEach(tourist -> found.put(tourist.getId(), tourist));
+    List<Tourist> applied = new ArrayList<>(found.size());
+    List<TouristBatchResult.Failure> failures = new ArrayList<>();
+    for (int i = 0; i < ids.size(); i++) {
+      Tourist tourist = found.remove(ids.get(i));
+      if (tourist != null) {
+        applied.add(tourist);
+      } else {
+        failures.add(new TouristBatchResult.Failure(i, TouristBatchResult.Reason.NOT_FOUND, "No such tourist"));
+      }
+    }
+    if (!applied.isEmpty()) {
+      List<String> appliedIds = applied.stream().map(Tourist::getId).toList();
+      mongoLimiter.run(() -> mongoTemplate.remove(query(where("id").in(appliedIds)), Tourist.class));
+      Map<String, Long> countryDeltas = new HashMap<>();
+      applied.forEach(tourist -> CountryStatsService.move(countryDeltas, tourist.getCountry(), null));
+      countryStats.record(countryDeltas);
+      appliedIds.forEach(searchIndex::remove);
+    }
+    log.info("Bulk deleted {} of {} tourists", applied.size(), ids.size());
+    return new TouristBatchResult(applied, failures);
+  }
+
   public Optional<Tourist> getTouristByEmail(String email) {
     log.info("Fetching tourist by email: {}", email);
-    Optional<Tourist> tourist = touristRepository.findByEmail(email);
+    Optional<Tourist> tourist = mongoLimiter.call(() -> touristRepository.findByEmail(email));
     if (tourist.isPresent()) {
       log.info("Tourist found with email: {}", email);
     } else {
@@ -58,7 +268,7 @@ public class TouristService {
 
   public Optional<Tourist> getTouristByPhoneNumber(String phoneNumber) {
     log.info("Fetching tourist by phone number: {}", phoneNumber);
-    Optional<Tourist> tourist = touristRepository.findByPhoneNumber(phoneNumber);
+    Optional<Tourist> tourist = mongoLimiter.call(() -> touristRepository.findByPhoneNumber(phoneNumber));
     if (tourist.isPresent()) {
       log.info("Tourist found with phone number: {}", phoneNumber);
     } else {
@@ -69,7 +279,7 @@ public class TouristService {
 
   public Optional<Tourist> getTouristById(String id) {
     log.info("Fetching tourist by ID: {}", id);
-    Optional<Tourist> tourist = touristRepository.findById(id);
+    Optional<Tourist> tourist = mongoLimiter.call(() -> touristRepository.findById(id));
     if (tourist.isPresent()) {
       log.info("Tourist found with ID: {}", id);
     } else {
@@ -78,11 +288,36 @@ public class TouristService {
     return tourist;
   }
 
+  /**
+   * Resolves many tourists with a single {@code $in} query. Keys without a match are
+   * simply absent from the result, which is in no particular order.
+   */
+  public List<Tourist> getTouristsByIds(Collection<String> ids) {
+    log.info("Fetching {} tourists by ID", ids.size());
+    List<Tourist> tourists = mongoLimiter.call(() -> touristRepository.findAllByIdIn(ids));
+    log.info("Found {} of {} tourists by ID", tourists.size(), ids.size());
+    return tourists;
+  }
+
+  public List<Tourist> getTouristsByEmails(Collection<String> emails) {
+    log.info("Fetching {} tourists by email", emails.size());
+    List<Tourist> tourists = mongoLimiter.call(() -> touristRepository.findAllByEmailIn(emails));
+    log.info("Found {} of {} tourists by email", tourists.size(), emails.size());
+    return tourists;
+  }
+
+  public List<Tourist> getTouristsByPhoneNumbers(Collection<String> phoneNumbers) {
+    log.info("Fetching {} tourists by phone number", phoneNumbers.size());
+    List<Tourist> tourists = mongoLimiter.call(() -> touristRepository.findAllByPhoneNumberIn(phoneNumbers));
+    log.info("Found {} of {} tourists by phone number", tourists.size(), phoneNumbers.size());
+    return tourists;
+  }
+
   public Tourist updateTourist(Tourist tourist) {
-    log.info("Updating tourist: {}", tourist);
+    log.info("Updating tourist with ID: {}", tourist.getId());
     try {
-      Tourist updatedTourist = touristRepository.save(tourist);
-      log.info("Tourist successfully updated: {}", updatedTourist);
+      Tourist updatedTourist = replace(tourist);
+      log.info("Tourist successfully updated with ID: {}", updatedTourist.getId());
       return updatedTourist;
     } catch (Exception e) {
       log.error("Error while updating tourist: {}", tourist, e);
@@ -90,17 +325,190 @@ public class TouristService {
     }
   }
 
+  /**
+   * Inserts a tourist without an id, otherwise replaces or upserts it and bumps its version, then
+   * moves the country counters from the replaced document's country to the new one and updates
+   * the search index. A tourist that carries a version is only replaced while the stored one is
+   * still at that version, and is never upserted.
+   *
+   * @throws OptimisticLockingFailureException if the stored tourist has moved on from the
+   *                                           version the caller read
+   */
+  private Tourist replace(Tourist tourist) {
+    if (tourist.getId() == null) {
+      tourist.setVersion(null);
+      Tourist inserted = mongoLimiter.call(() -> touristRepository.insert(tourist));
+      countryStats.recordMove(null, inserted.getCountry());
+      searchIndex.put(inserted);
+      return inserted;
+    }
+    Long expectedVersion = tourist.getVersion();
+    Tourist previous = expectedVersion != null
+            ? replaceAtVersion(tourist)
+            : mongoLimiter.call(() -> mongoTemplate.findAndModify(current(tourist), replacement(tourist), FindAndModifyOptions.options().upsert(true), Tourist.class));
+    tourist.setVersion(nextVersion(expectedVersion != null ? tourist : previous));
+    countryStats.recordMove(previous == null ? null : previous.getCountry(), tourist.getCountry());
+    searchIndex.put(tourist);
+    return tourist;
+  }
+
+  /**
+   * Replaces the stored tourist only while it is still at the version {@code tourist} carries,
+   * returning the replaced document.
+   *
+   * @throws NoSuchElementException            if there is no tourist with that id
+   * @throws OptimisticLockingFailureException if the stored tourist is at another version
+   */
+  private Tourist replaceAtVersion(Tourist tourist) {
+    Tourist previous = mongoLimiter.call(() -> mongoTemplate.findAndModify(current(tourist), replacement(tourist), Tourist.class));
+    if (previous == null) {
+      if (!mongoLimiter.call(() -> touristRepository.existsById(tourist.getId()))) {
+        throw new NoSuchElementException("No such tourist");
+      }
+      throw new OptimisticLockingFailureException("Tourist " + tourist.getId() + " is no longer at version " + tourist.getVersion());
+    }
+    return previous;
+  }
+
+  private static TouristBatchResult.Reason reasonOf(BulkWriteError error) {
+    return ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY
+            ? TouristBatchResult.Reason.DUPLICATE_KEY
+            : TouristBatchResult.Reason.WRITE_ERROR;
+  }
+
+  private static TouristBatchResult.Reason reasonOf(RuntimeException e) {
+    if (e instanceof OptimisticLockingFailureException) {
+      return TouristBatchResult.Reason.CONFLICT;
+    }
+    if (e instanceof NoSuchElementException) {
+      return TouristBatchResult.Reason.NOT_FOUND;
+    }
+    return e instanceof org.springframework.dao.DuplicateKeyException
+            ? TouristBatchResult.Reason.DUPLICATE_KEY
+            : TouristBatchResult.Reason.WRITE_ERROR;
+  }
+
+  /**
+   * Matches the stored tourist by id and, when the tourist carries one, by version.
+   */
+  private static Query current(Tourist tourist) {
+    Query query = query(where("id").is(tourist.getId()));
+    if (tourist.getVersion() != null) {
+      query.addCriteria(where("version").is(tourist.getVersion()));
+    }
+    return query;
+  }
+
+  /**
+   * Sets every field of {@code tourist}, unsets the {@code null} ones and increments the version,
+   * so the stored document ends up as a replace would leave it, with a version one past the
+   * replaced one or {@code 1} for a new or unversioned document.
+   */
+  private static Update replacement(Tourist tourist) {
+    Update update = new Update().inc("version", 1);
+    setOrUnset(update, "name", tourist.getName());
+    setOrUnset(update, "surname", tourist.getSurname());
+    setOrUnset(update, "email", tourist.getEmail());
+    setOrUnset(update, "phoneNumber", tourist.getPhoneNumber());
+    setOrUnset(update, "country", tourist.getCountry());
+    return update;
+  }
+
+  private static void setOrUnset(Update update, String field, Object value) {
+    if (value == null) {
+      update.unset(field);
+    } else {
+      update.set(field, value);
+    }
+  }
+
+  private static long nextVersion(Tourist replaced) {
+    return replaced == null || replaced.getVersion() == null ? 1 : replaced.getVersion() + 1;
+  }
+
   public List<Tourist> getTouristsByNameAndSurname(String name, String surname) {
     log.info("Fetching tourists by name: {} and surname: {}", name, surname);
-    List<Tourist> tourists = touristRepository.findAllByNameAndSurname(name, surname);
+    List<Tourist> tourists = mongoLimiter.call(() -> touristRepository.findAllByNameAndSurname(name, surname));
+    log.info("Found {} tourists with name: {} and surname: {}", tourists.size(), name, surname);
+    return tourists;
+  }
+
+  /**
+   * Same lookup as {@link #getTouristsByNameAndSurname(String, String)}, reading only the given
+   * fields from Mongo. The others are left {@code null} on the returned tourists.
+   */
+  public List<Tourist> getTouristsByNameAndSurname(String name, String surname, Collection<String> fields) {
+    if (fields.isEmpty()) {
+      return getTouristsByNameAndSurname(name, surname);
+    }
+    Set<String> unknown = new LinkedHashSet<>(fields);
+    unknown.removeAll(PROJECTABLE_FIELDS);
+    if (!unknown.isEmpty()) {
+      throw new IllegalArgumentException("Unknown tourist fields: " + unknown);
+    }
+    log.info("Fetching fields {} of tourists by name: {} and surname: {}", fields, name, surname);
+    Query query = query(where("name").is(name).and("surname").is(surname));
+    query.fields().include(fields.toArray(String[]::new));
+    List<Tourist> tourists = mongoLimiter.call(() -> mongoTemplate.find(query, Tourist.class));
     log.info("Found {} tourists with name: {} and surname: {}", tourists.size(), name, surname);
     return tourists;
   }
 
   public List<Tourist> getAllTourists() {
     log.info("Fetching all tourists");
-    List<Tourist> tourists = touristRepository.findAll();
+    List<Tourist> tourists = mongoLimiter.call(touristRepository::findAll);
     log.info("Found {} tourists", tourists.size());
     return tourists;
   }
+
+  /**
+   * Returns up to {@code limit} tourists ordered by id, starting strictly after {@code afterId}
+   * (or from the beginning when it is {@code null}). Keyset pagination keeps every page an index
+   * range scan on {@code _id}, no matter how deep the client pages.
+   */
+  public List<Tourist> listTourists(String afterId, int limit) {
+    log.info("Listing {} tourists after ID: {}", limit, afterId);
+    Pageable pageable = PageRequest.of(0, limit, Sort.by(Sort.Direction.ASC, "id"));
+    List<Tourist> tourists = mongoLimiter.call(() -> afterId == null
+            ? touristRepository.findAllBy(pageable)
+            : touristRepository.findAllByIdGreaterThan(afterId, pageable));
+    log.info("Found {} tourists for page", tourists.size());
+    return tourists;
+  }
+
+  /**
+   * Same keyset pagination as {@link #listTourists}, within one country. The {@code country_id}
+   * index serves both the filter and the order.
+   */
+  public List<Tourist> listTouristsByCountry(String country, String afterId, int limit) {
+    log.info("Listing {} tourists in country: {} after ID: {}", limit, country, afterId);
+    Pageable pageable = PageRequest.of(0, limit, Sort.by(Sort.Direction.ASC, "id"));
+    List<Tourist> tourists = mongoLimiter.call(() -> afterId == null
+            ? touristRepository.findAllByCountry(country, pageable)
+            : touristRepository.findAllByCountryAndIdGreaterThan(country, afterId, pageable));
+    log.info("Found {} tourists in country: {} for page", tourists.size(), country);
+    return tourists;
+  }
+
+  public List<TouristSearchIndex.Suggestion> searchTourists(String query, int limit) {
+    log.info("Searching tourists by prefix: {} with limit: {}", query, limit);
+    List<TouristSearchIndex.Suggestion> suggestions = searchIndex.search(query, limit);
+    log.info("Found {} tourists by prefix: {}", suggestions.size(), query);
+    return suggestions;
+  }
+
+  public Map<String, Long> getCountryCounts() {
+    log.info("Fetching tourist counts per country");
+    return countryStats.counts();
+  }
+
+  /**
+   * Opens a Mongo cursor over the whole collection. The caller owns the returned
+   * stream and must close it to release the cursor. Only opening it takes a Mongo permit, the
+   * batches fetched while it is consumed do not.
+   */
+  public Stream<Tourist> streamAllTourists() {
+    log.info("Opening cursor over all tourists");
+    return mongoLimiter.call(touristRepository::streamAllBy);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.amqp.core.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the AMQP write path: {@code domain.write.queue.wait} from the gateway publishing a
+ * request to a listener receiving it, and {@code domain.write.processing} from receiving it to
+ * having published its result and reply, for one message or one batch. Both are tagged with the
+ * operation, the latter also with the outcome.
+ * <p>
+ * The queue wait compares the gateway's clock with ours, so it is only as accurate as the clocks
+ * are in sync.
+ */
+@Component
+public class TouristWriteMetrics {
+  private final MeterRegistry meterRegistry;
+  // registered once per tag combination rather than looked up in the registry on every message
+  private final ConcurrentMap<String, Timer> queueWaitTimers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Processing, Timer> processingTimers = new ConcurrentHashMap<>();
+
+  public TouristWriteMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Records the queue wait of {@code request}, if the gateway stamped it.
+   *
+   * @return the start of processing, to pass to {@link #processed}
+   */
+  public long received(String operation, Message request) {
+    Date publishedAt = request.getMessageProperties().getTimestamp();
+    if (publishedAt != null) {
+      queueWaitTimers.computeIfAbsent(operation, this::queueWaitTimer)
+              .record(Math.max(0, System.currentTimeMillis() - publishedAt.getTime()), TimeUnit.MILLISECONDS);
+    }
+    return System.nanoTime();
+  }
+
+  public void processed(String operation, long startNanos, String outcome) {
+    processingTimers.computeIfAbsent(new Processing(operation, outcome), this::processingTimer)
+            .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private Timer queueWaitTimer(String operation) {
+    return Timer.builder("domain.write.queue.wait")
+            .description("Time from the gateway publishing a write to a listener receiving it")
+            .tag("operation", operation)
+            .register(meterRegistry);
+  }
+
+  private Timer processingTimer(Processing processing) {
+    return Timer.builder("domain.write.processing")
+            .description("Time to apply a write message or batch and publish its results")
+            .tag("operation", processing.operation())
+            .tag("outcome", processing.outcome())
+            .register(meterRegistry);
+  }
+
+  private record Processing(String operation, String outcome) {
+  }
+}
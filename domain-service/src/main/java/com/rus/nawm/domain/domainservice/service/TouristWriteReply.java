@@ -0,0 +1,39 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Direct answer to a write request that named a reply-to queue. It is sent in addition to the
+ * response-queue message, so the requesting gateway can complete its HTTP call with the outcome.
+ */
+public record TouristWriteReply(Status status, String message, Tourist tourist) {
+
+  public enum Status {
+    OK, NOT_FOUND, CONFLICT, ERROR
+  }
+
+  public static TouristWriteReply ok(Tourist tourist) {
+    return new TouristWriteReply(Status.OK, null, tourist);
+  }
+
+  public static TouristWriteReply failed(Exception e) {
+    Status status = e instanceof DuplicateKeyException || e instanceof com.mongodb.DuplicateKeyException
+            || e instanceof OptimisticLockingFailureException
+            ? Status.CONFLICT
+            : e instanceof NoSuchElementException ? Status.NOT_FOUND : Status.ERROR;
+    return new TouristWriteReply(status, e.getMessage(), null);
+  }
+
+  public static TouristWriteReply failed(TouristBatchResult.Failure failure) {
+    Status status = switch (failure.reason()) {
+      case DUPLICATE_KEY, CONFLICT -> Status.CONFLICT;
+      case NOT_FOUND -> Status.NOT_FOUND;
+      case WRITE_ERROR -> Status.ERROR;
+    };
+    return new TouristWriteReply(status, failure.message(), null);
+  }
+}
@@ -0,0 +1,45 @@
+package com.rus.nawm.domain.domainservice.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RabbitMQConfigTest {
+
+  @Test
+  void partitionIsInRangeAndStable() {
+    for (int i = 0; i < 10_000; i++) {
+      String id = Integer.toHexString(i * 7919) + "ad46e12943";
+      int partition = RabbitMQConfig.partitionOf(id);
+      assertTrue(partition >= 0 && partition < RabbitMQConfig.touristRequestPartitions, id);
+      assertEquals(partition, RabbitMQConfig.partitionOf(id));
+    }
+  }
+
+  @Test
+  void idsWithNegativeHashCodesGetAPartition() {
+    String id = "polygenelubricants";
+    assertTrue(id.hashCode() < 0);
+    int partition = RabbitMQConfig.partitionOf(id);
+    assertTrue(partition >= 0 && partition < RabbitMQConfig.touristRequestPartitions);
+  }
+
+  @Test
+  void objectIdsUseEveryPartition() {
+    Set<Integer> used = new HashSet<>();
+    for (int i = 0; i < 1_000; i++) {
+      used.add(RabbitMQConfig.partitionOf(String.format("6ad46e1294336d1c%08x", i)));
+    }
+    assertEquals(RabbitMQConfig.touristRequestPartitions, used.size());
+  }
+
+  @Test
+  void partitionQueuesAndRoutingKeysNameThePartition() {
+    assertEquals("touristWriteRequestQueue.3", RabbitMQConfig.touristWritePartitionQueueName(3));
+    assertEquals("tourist.write.3", RabbitMQConfig.touristWritePartitionRoutingKey(3));
+  }
+}
@@ -0,0 +1,42 @@
+package com.rus.nawm.domain.domainservice.grpc;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PageTokensTest {
+
+  @Test
+  void decodesWhatItEncoded() {
+    assertEquals("6ad46e1294336d1cf6eeadf7", PageTokens.decode(PageTokens.encode("6ad46e1294336d1cf6eeadf7")));
+  }
+
+  @Test
+  void encodesUrlSafeWithoutPadding() {
+    String token = PageTokens.encode("~~~>>>???");
+    assertFalse(token.contains("+") || token.contains("/") || token.contains("="), token);
+  }
+
+  @Test
+  void missingTokenStartsAtTheFirstPage() {
+    assertNull(PageTokens.decode(null));
+    assertNull(PageTokens.decode(""));
+  }
+
+  @Test
+  void rejectsTokensItDidNotIssue() {
+    assertThrows(IllegalArgumentException.class, () -> PageTokens.decode("not base64!"));
+    assertThrows(IllegalArgumentException.class, () -> PageTokens.decode(urlBase64("6ad46e1294336d1cf6eeadf7")));
+    assertThrows(IllegalArgumentException.class, () -> PageTokens.decode(urlBase64("v1:")));
+  }
+
+  private static String urlBase64(String value) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,114 @@
+package com.rus.nawm.domain.domainservice.mapper;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rus.nawm.apigateway.TouristServiceOuterClass;
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import com.rus.nawm.domain.domainservice.service.TouristWriteReply;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TouristMessageCodecTest {
+  private static final Tourist IVAN = new Tourist("a1", "Ivan", "Petrov", "ivan@example.com", "+70000000001", "ES", 3L);
+
+  private final TouristMessageCodec codec = new TouristMessageCodec();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void commandsAreReadInTheFormatTheyArriveIn() throws IOException {
+    Tourist unsaved = new Tourist(null, "Ann", null, "ann@example.com", "+70000000002", null, null);
+
+    assertEquals(IVAN, codec.readTourist(protobuf(TouristMapper.toProto(IVAN).toByteArray())));
+    // absent protobuf fields read as null rather than the proto3 empty string
+    assertEquals(unsaved, codec.readTourist(protobuf(TouristMapper.toProto(unsaved).toByteArray())));
+    assertEquals(IVAN, codec.readTourist(json(objectMapper.writeValueAsBytes(IVAN))));
+  }
+
+  @Test
+  void deleteCommandsCarryTheIdAndOperation() throws IOException {
+    Message protobuf = protobuf(TouristServiceOuterClass.TouristDeleteCommand.newBuilder().setId("a1").build().toByteArray());
+    protobuf.getMessageProperties().setHeader(TouristMessageCodec.OPERATION_HEADER, "DELETE");
+
+    assertEquals("a1", codec.readId(protobuf));
+    assertEquals("a1", codec.readId(json("a1".getBytes())));
+    assertEquals("DELETE", codec.readOperation(protobuf));
+    assertNull(codec.readOperation(json("a1".getBytes())));
+  }
+
+  @Test
+  void resultsAreWrittenInTheFormatOfTheRequest() throws IOException {
+    Tourist ann = new Tourist("a2", "Ann", "Lee", "ann@example.com", "+70000000002", "PT", 1L);
+
+    Message protobuf = codec.result(IVAN, TouristMessageCodec.Format.PROTOBUF);
+    Message batch = codec.results(List.of(IVAN, ann), TouristMessageCodec.Format.PROTOBUF);
+    Message json = codec.result(IVAN, TouristMessageCodec.Format.JSON);
+    Message jsonBatch = codec.results(List.of(IVAN, ann), TouristMessageCodec.Format.JSON);
+
+    assertEquals(TouristMessageCodec.Format.PROTOBUF, TouristMessageCodec.Format.of(protobuf));
+    assertEquals(List.of(TouristMapper.toProto(IVAN)), TouristServiceOuterClass.TouristWriteResults.parseFrom(protobuf.getBody()).getTouristsList());
+    assertEquals(2, TouristServiceOuterClass.TouristWriteResults.parseFrom(batch.getBody()).getTouristsCount());
+    // a single JSON result stays a bare object, as gateways from before batching expect
+    assertEquals(TouristMessageCodec.Format.JSON, TouristMessageCodec.Format.of(json));
+    assertEquals(IVAN, objectMapper.readValue(unwrap(json), Tourist.class));
+    JsonNode tourists = objectMapper.readTree(unwrap(jsonBatch));
+    assertTrue(tourists.isArray());
+    assertEquals("a2", tourists.get(1).get("id").asText());
+  }
+
+  @Test
+  void repliesAreWrittenInTheFormatOfTheRequest() throws IOException {
+    TouristWriteReply conflict = new TouristWriteReply(TouristWriteReply.Status.CONFLICT, "stale version", null);
+
+    TouristServiceOuterClass.TouristWriteReply protobuf = TouristServiceOuterClass.TouristWriteReply.parseFrom(
+            codec.reply(conflict, TouristMessageCodec.Format.PROTOBUF).getBody());
+    TouristServiceOuterClass.TouristWriteReply ok = TouristServiceOuterClass.TouristWriteReply.parseFrom(
+            codec.reply(TouristWriteReply.ok(IVAN), TouristMessageCodec.Format.PROTOBUF).getBody());
+    JsonNode json = objectMapper.readTree(unwrap(codec.reply(conflict, TouristMessageCodec.Format.JSON)));
+
+    assertEquals(TouristServiceOuterClass.TouristWriteReply.Status.CONFLICT, protobuf.getStatus());
+    assertEquals("stale version", protobuf.getMessage());
+    assertFalse(protobuf.hasTourist());
+    assertFalse(ok.hasMessage());
+    assertEquals(TouristMapper.toProto(IVAN), ok.getTourist());
+    assertEquals("CONFLICT", json.get("status").asText());
+    assertEquals("stale version", json.get("message").asText());
+  }
+
+  @Test
+  void changeEventsAreUpsertsOnlyWhenTheyCarryATourist() throws IOException {
+    TouristServiceOuterClass.TouristChangeEvent upsert = codec.readChangeEvent(codec.changeEvent("a1", IVAN));
+    TouristServiceOuterClass.TouristChangeEvent delete = codec.readChangeEvent(codec.changeEvent("a1", null));
+
+    assertEquals(TouristServiceOuterClass.TouristChangeEvent.Operation.UPSERT, upsert.getOperation());
+    assertEquals(IVAN, TouristMapper.toEntity(upsert.getTourist()));
+    assertEquals(TouristServiceOuterClass.TouristChangeEvent.Operation.DELETE, delete.getOperation());
+    assertEquals("a1", delete.getId());
+    assertFalse(delete.hasTourist());
+  }
+
+  /**
+   * A command as a gateway writes it in the legacy JSON format.
+   */
+  private static Message json(byte[] payload) {
+    return new Jackson2JsonMessageConverter().toMessage(payload, new MessageProperties());
+  }
+
+  private static Message protobuf(byte[] body) {
+    return MessageBuilder.withBody(body).setContentType(TouristMessageCodec.PROTOBUF_CONTENT_TYPE).build();
+  }
+
+  private byte[] unwrap(Message message) throws IOException {
+    return objectMapper.readValue(message.getBody(), byte[].class);
+  }
+}
@@ -0,0 +1,51 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountryStatsServiceTest {
+
+  @Test
+  void createdTouristCountsForItsCountry() {
+    Map<String, Long> deltas = new HashMap<>();
+    CountryStatsService.move(deltas, null, "ES");
+    assertEquals(Map.of("ES", 1L), deltas);
+  }
+
+  @Test
+  void deletedTouristNoLongerCounts() {
+    Map<String, Long> deltas = new HashMap<>();
+    CountryStatsService.move(deltas, "ES", null);
+    assertEquals(Map.of("ES", -1L), deltas);
+  }
+
+  @Test
+  void changingCountryMovesOneCount() {
+    Map<String, Long> deltas = new HashMap<>();
+    CountryStatsService.move(deltas, "ES", "PT");
+    assertEquals(Map.of("ES", -1L, "PT", 1L), deltas);
+  }
+
+  @Test
+  void keepingTheCountryOrHavingNoneChangesNothing() {
+    Map<String, Long> deltas = new HashMap<>();
+    CountryStatsService.move(deltas, "ES", "ES");
+    CountryStatsService.move(deltas, null, null);
+    assertTrue(deltas.isEmpty());
+  }
+
+  @Test
+  void movesOfABatchAddUp() {
+    Map<String, Long> deltas = new HashMap<>();
+    CountryStatsService.move(deltas, null, "ES");
+    CountryStatsService.move(deltas, null, "ES");
+    CountryStatsService.move(deltas, "ES", "PT");
+    CountryStatsService.move(deltas, "PT", null);
+    assertEquals(Map.of("ES", 1L, "PT", 0L), deltas);
+  }
+}
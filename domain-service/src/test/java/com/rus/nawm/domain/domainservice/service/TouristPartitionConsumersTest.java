@@ -0,0 +1,76 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.rus.nawm.domain.domainservice.config.RabbitMQConfig.touristRequestPartitions;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TouristPartitionConsumersTest {
+  private static final List<String> INSTANCES = List.of("domain-a:1", "domain-b:1", "domain-c:1");
+
+  @Test
+  void everyPartitionHasOneOfTheInstancesAsOwner() {
+    for (int partition = 0; partition < touristRequestPartitions; partition++) {
+      assertTrue(INSTANCES.contains(TouristPartitionConsumers.owner(partition, INSTANCES)));
+    }
+  }
+
+  @Test
+  void assignmentDoesNotDependOnTheOrderInstancesAreListedIn() {
+    List<String> shuffled = new ArrayList<>(INSTANCES);
+    Collections.reverse(shuffled);
+    assertEquals(owners(INSTANCES), owners(shuffled));
+  }
+
+  @Test
+  void joiningInstanceOnlyTakesPartitionsOver() {
+    Map<Integer, String> before = owners(INSTANCES);
+    List<String> grown = new ArrayList<>(INSTANCES);
+    grown.add("domain-d:1");
+    owners(grown).forEach((partition, owner) ->
+            assertTrue(owner.equals(before.get(partition)) || owner.equals("domain-d:1"), "partition " + partition));
+  }
+
+  @Test
+  void leavingInstanceOnlyHandsItsOwnPartitionsOn() {
+    Map<Integer, String> before = owners(INSTANCES);
+    Map<Integer, String> after = owners(List.of("domain-a:1", "domain-c:1"));
+    before.forEach((partition, owner) -> {
+      if (!owner.equals("domain-b:1")) {
+        assertEquals(owner, after.get(partition), "partition " + partition);
+      }
+    });
+  }
+
+  @Test
+  void partitionsSpreadOverTheInstances() {
+    List<String> instances = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      instances.add("domain-" + i + ":8080");
+    }
+    Map<String, Integer> owned = new HashMap<>();
+    owners(instances).values().forEach(owner -> owned.merge(owner, 1, Integer::sum));
+    assertTrue(owned.size() > 1, owned.toString());
+  }
+
+  @Test
+  void noInstancesNoOwner() {
+    assertNull(TouristPartitionConsumers.owner(0, List.of()));
+  }
+
+  private static Map<Integer, String> owners(List<String> instances) {
+    Map<Integer, String> owners = new HashMap<>();
+    for (int partition = 0; partition < touristRequestPartitions; partition++) {
+      owners.put(partition, TouristPartitionConsumers.owner(partition, instances));
+    }
+    return owners;
+  }
+}
@@ -0,0 +1,87 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TouristSearchIndexTest {
+  private TouristSearchIndex index;
+
+  @BeforeEach
+  void setUp() {
+    // the Mongo template is only used by the startup scan
+    index = new TouristSearchIndex(null, new SimpleMeterRegistry());
+    index.put(tourist("1", "Ivan", "Petrov", "ivan.petrov@example.com", 1L));
+    index.put(tourist("2", "Ivana", "Horvat", "ivana@example.com", 1L));
+    index.put(tourist("3", "José", "Álvarez", "jose@example.com", 1L));
+  }
+
+  @Test
+  void normalizeFoldsCaseAndDiacritics() {
+    assertEquals("jose alvarez", TouristSearchIndex.normalize("  José ÁLVAREZ "));
+    assertEquals("a b", TouristSearchIndex.normalize("a\0b"));
+  }
+
+  @Test
+  void findsTouristsByPrefixOfAnyField() {
+    assertEquals(List.of("1", "2"), ids(index.search("iva", 10)));
+    assertEquals(List.of("1"), ids(index.search("petr", 10)));
+    assertEquals(List.of("2"), ids(index.search("ivana@", 10)));
+  }
+
+  @Test
+  void matchesIgnoringCaseAndDiacritics() {
+    assertEquals(List.of("3"), ids(index.search("ALV", 10)));
+    assertEquals(List.of("3"), ids(index.search("josé", 10)));
+  }
+
+  @Test
+  void everyTermOfTheQueryHasToMatch() {
+    assertEquals(List.of("1"), ids(index.search("ivan pet", 10)));
+    assertTrue(index.search("ivan alv", 10).isEmpty());
+  }
+
+  @Test
+  void returnsAtMostLimitTourists() {
+    assertEquals(1, index.search("iva", 1).size());
+    assertTrue(index.search("iva", 0).isEmpty());
+    assertTrue(index.search("   ", 10).isEmpty());
+  }
+
+  @Test
+  void updateReplacesTheOldTerms() {
+    index.put(tourist("1", "Ivan", "Sidorov", "ivan.sidorov@example.com", 2L));
+    assertTrue(index.search("petrov", 10).isEmpty());
+    assertEquals(List.of("1"), ids(index.search("sidorov", 10)));
+    assertEquals(3, index.size());
+  }
+
+  @Test
+  void olderVersionDoesNotOverwriteANewerOne() {
+    index.put(tourist("1", "Ivan", "Sidorov", "ivan.sidorov@example.com", 3L));
+    index.put(tourist("1", "Ivan", "Petrov", "ivan.petrov@example.com", 2L));
+    assertEquals(List.of("1"), ids(index.search("sidorov", 10)));
+    assertTrue(index.search("petrov", 10).isEmpty());
+  }
+
+  @Test
+  void removedTouristIsNoLongerFound() {
+    index.remove("1");
+    assertEquals(List.of("2"), ids(index.search("iva", 10)));
+    assertEquals(2, index.size());
+  }
+
+  private static Tourist tourist(String id, String name, String surname, String email, Long version) {
+    return Tourist.builder().id(id).name(name).surname(surname).email(email).version(version).build();
+  }
+
+  private static List<String> ids(List<TouristSearchIndex.Suggestion> suggestions) {
+    return suggestions.stream().map(TouristSearchIndex.Suggestion::id).toList();
+  }
+}
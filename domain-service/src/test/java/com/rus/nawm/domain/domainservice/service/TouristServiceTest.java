@@ -0,0 +1,153 @@
+package com.rus.nawm.domain.domainservice.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.rus.nawm.domain.domainservice.config.ConcurrencyLimiter;
+import com.rus.nawm.domain.domainservice.domain.Tourist;
+import com.rus.nawm.domain.domainservice.repository.TouristRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TouristServiceTest {
+  private static final int DUPLICATE_KEY = 11000;
+
+  private final TouristRepository touristRepository = mock(TouristRepository.class);
+  private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+  private final CountryStatsService countryStats = mock(CountryStatsService.class);
+  private final TouristSearchIndex searchIndex = mock(TouristSearchIndex.class);
+  private final BulkOperations bulk = mock(BulkOperations.class);
+
+  private TouristService touristService;
+
+  @BeforeEach
+  void setUp() {
+    when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(Tourist.class))).thenReturn(bulk);
+    touristService = new TouristService(touristRepository, mongoTemplate, countryStats, searchIndex,
+            new ConcurrencyLimiter(0, new SimpleMeterRegistry()));
+  }
+
+  @Test
+  void saveAllReportsFailuresByTheirIndexInTheBatch() {
+    Tourist stored = tourist("b", "PT", 3L);
+    when(mongoTemplate.find(any(Query.class), eq(Tourist.class))).thenReturn(List.of(stored));
+    // the ordered bulk of a, b and c stops at b, its second item
+    BulkOperationException failure = bulkFailure(new BulkWriteError(DUPLICATE_KEY, "duplicate email", new BsonDocument(), 1));
+    when(bulk.execute()).thenThrow(failure).thenReturn(null);
+    when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Tourist.class))).thenReturn(null);
+    when(touristRepository.existsById("d")).thenReturn(true);
+
+    TouristBatchResult result = touristService.saveAll(List.of(
+            tourist(null, "ES", null),
+            tourist("b", "ES", null),
+            tourist(null, "ES", null),
+            tourist("d", "ES", 7L),
+            tourist(null, "ES", null)));
+
+    assertEquals(List.of(
+            new TouristBatchResult.Failure(1, TouristBatchResult.Reason.DUPLICATE_KEY, "duplicate email"),
+            new TouristBatchResult.Failure(3, TouristBatchResult.Reason.CONFLICT, "Tourist d is no longer at version 7")),
+            result.failures());
+    assertEquals(3, result.applied().size());
+    result.applied().forEach(tourist -> assertEquals(0L, tourist.getVersion()));
+    verify(countryStats).record(Map.of("ES", 3L));
+  }
+
+  @Test
+  void saveAllReportsAnUnknownVersionedTouristAsNotFound() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(Tourist.class))).thenReturn(null);
+    when(touristRepository.existsById("d")).thenReturn(false);
+
+    TouristBatchResult result = touristService.saveAll(List.of(tourist("d", "ES", 2L)));
+
+    assertEquals(List.of(new TouristBatchResult.Failure(0, TouristBatchResult.Reason.NOT_FOUND, "No such tourist")), result.failures());
+    verify(bulk, never()).execute();
+  }
+
+  @Test
+  void saveAllBumpsTheVersionsOfReplacedTourists() {
+    when(mongoTemplate.find(any(Query.class), eq(Tourist.class))).thenReturn(List.of(tourist("b", "PT", 3L)));
+
+    TouristBatchResult result = touristService.saveAll(List.of(tourist("b", "ES", null), tourist("b", "FR", null)));
+
+    assertEquals(List.of(4L, 5L), result.applied().stream().map(Tourist::getVersion).toList());
+    verify(countryStats).record(Map.of("PT", -1L, "ES", 0L, "FR", 1L));
+  }
+
+  @Test
+  void insertAllReportsEveryRejectedInsert() {
+    BulkOperationException failure = bulkFailure(
+            new BulkWriteError(DUPLICATE_KEY, "duplicate email", new BsonDocument(), 0),
+            new BulkWriteError(121, "validation failed", new BsonDocument(), 2));
+    when(bulk.execute()).thenThrow(failure);
+    Tourist carriedId = tourist("6ad46e1294336d1cf6eeadf7", "ES", 4L);
+
+    TouristBatchResult result = touristService.insertAll(List.of(
+            tourist(null, "ES", null), carriedId, tourist(null, "ES", null), tourist(null, "PT", null)));
+
+    assertEquals(List.of(
+            new TouristBatchResult.Failure(0, TouristBatchResult.Reason.DUPLICATE_KEY, "duplicate email"),
+            new TouristBatchResult.Failure(2, TouristBatchResult.Reason.WRITE_ERROR, "validation failed")),
+            result.failures());
+    assertEquals(List.of(carriedId, result.applied().get(1)), result.applied());
+    assertNotEquals("6ad46e1294336d1cf6eeadf7", carriedId.getId());
+    assertEquals(0L, carriedId.getVersion());
+    verify(mongoTemplate).bulkOps(BulkOperations.BulkMode.UNORDERED, Tourist.class);
+    verify(countryStats).record(Map.of("ES", 1L, "PT", 1L));
+  }
+
+  @Test
+  void deleteAllReportsMissingAndRepeatedIdsAsNotFound() {
+    Tourist x = tourist("x", "ES", 1L);
+    Tourist y = tourist("y", "PT", 1L);
+    when(touristRepository.findAllByIdIn(anyList())).thenReturn(List.of(x, y));
+
+    TouristBatchResult result = touristService.deleteAll(List.of("x", "missing", "x", "y"));
+
+    assertEquals(List.of(x, y), result.applied());
+    assertEquals(List.of(1, 2), result.failures().stream().map(TouristBatchResult.Failure::index).toList());
+    result.failures().forEach(failure -> assertEquals(TouristBatchResult.Reason.NOT_FOUND, failure.reason()));
+    verify(mongoTemplate).remove(any(Query.class), eq(Tourist.class));
+    verify(countryStats).record(Map.of("ES", -1L, "PT", -1L));
+    verify(searchIndex).remove("x");
+    verify(searchIndex).remove("y");
+  }
+
+  @Test
+  void deleteAllWithoutMatchesWritesNothing() {
+    when(touristRepository.findAllByIdIn(anyList())).thenReturn(List.of());
+
+    TouristBatchResult result = touristService.deleteAll(List.of("missing"));
+
+    assertEquals(1, result.failures().size());
+    verify(mongoTemplate, never()).remove(any(Query.class), eq(Tourist.class));
+  }
+
+  private static BulkOperationException bulkFailure(BulkWriteError... errors) {
+    BulkOperationException failure = mock(BulkOperationException.class);
+    when(failure.getErrors()).thenReturn(List.of(errors));
+    return failure;
+  }
+
+  private static Tourist tourist(String id, String country, Long version) {
+    return Tourist.builder().id(id).name("Ivan").surname("Petrov").country(country).version(version).build();
+  }
+}